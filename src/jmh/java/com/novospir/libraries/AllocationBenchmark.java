@@ -0,0 +1,88 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Garbage per operation of the hot paths, reported by the JMH GC profiler as {@code gc.alloc.rate.norm}
+ * (bytes per operation). Points cycle through allocated tiles of a dense canvas, so the numbers are the steady
+ * state of editing, not the one-off cost of allocating tiles.
+ *
+ * <p>Run with {@code mvn -P jmh -DskipTests verify -Djmh.main=com.novospir.libraries.AllocationBenchmark -Djmh.args=},
+ * which adds the profiler and writes {@code target/jmh-allocation.json}.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AllocationBenchmark {
+
+    @State(Scope.Thread)
+    public static class Leaves {
+        QuadGraphics2D graphics;
+        QuadNode[] leaves;
+
+        @Setup(Level.Trial)
+        public void setUp(CanvasState canvas) {
+            graphics = (QuadGraphics2D) canvas.image.createGraphics();
+            leaves = new QuadNode[CanvasState.POINTS];
+            for (int i = 0; i < leaves.length; i++) leaves[i] = canvas.image.findLeaf(canvas.xs[i], canvas.ys[i]);
+        }
+    }
+
+    @Benchmark
+    public void setRGB(CanvasState canvas) {
+        int i = canvas.next();
+        canvas.image.setRGB(canvas.xs[i], canvas.ys[i], i);
+    }
+
+    /// Leaves under a 300² region, as collected by every draw
+    @Benchmark
+    public List<QuadNode> findLeaves(CanvasState canvas) {
+        int i = canvas.next();
+        return canvas.image.findLeaves(canvas.xs[i], canvas.ys[i], 300, 300, false);
+    }
+
+    /// The per-tile Graphics setup of every draw
+    @Benchmark
+    public void prepareTileGraphics(CanvasState canvas, Leaves leaves) {
+        leaves.graphics.prepareTileGraphics(leaves.leaves[canvas.next()]).dispose();
+    }
+
+    @Benchmark
+    public int[] getPixels(CanvasState canvas, PixelBenchmark.Buffers buffers) {
+        int i = canvas.next();
+        return canvas.image.getRaster().getPixels(canvas.xs[i], canvas.ys[i], PixelBenchmark.BLOCK, PixelBenchmark.BLOCK, buffers.pixels);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AllocationBenchmark.class.getSimpleName())
+                .param("fill", "1.0")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-allocation.json")
+                .build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The baseline for {@link PixelBenchmark} and {@link CanvasBenchmark#toBufferedImage}: the same operations on a
+ * plain {@value CanvasState#AREA}² {@link BufferedImage}, at random points kept inside it.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BufferedImageBenchmark {
+    static final int EXPORT = 1024;
+
+    @Benchmark
+    public int getRGB(Plain plain) {
+        int i = plain.next();
+        return plain.image.getRGB(plain.xs[i], plain.ys[i]);
+    }
+
+    @Benchmark
+    public void setRGB(Plain plain) {
+        int i = plain.next();
+        plain.image.setRGB(plain.xs[i], plain.ys[i], 0xFF000000 | i);
+    }
+
+    @Benchmark
+    public int[] getPixels(Plain plain) {
+        int i = plain.next();
+        return plain.image.getRaster().getPixels(plain.blockXs[i], plain.blockYs[i],
+                PixelBenchmark.BLOCK, PixelBenchmark.BLOCK, plain.pixels);
+    }
+
+    @Benchmark
+    public void setPixels(Plain plain) {
+        int i = plain.next();
+        plain.image.getRaster().setPixels(plain.blockXs[i], plain.blockYs[i],
+                PixelBenchmark.BLOCK, PixelBenchmark.BLOCK, plain.pixels);
+    }
+
+    /// A copy of a 1024² region into a new image, as {@code toBufferedImage} returns
+    @Benchmark
+    public BufferedImage copyRegion(Plain plain) {
+        int i = plain.next();
+        int x = Math.min(plain.xs[i], CanvasState.AREA - EXPORT), y = Math.min(plain.ys[i], CanvasState.AREA - EXPORT);
+        BufferedImage out = new BufferedImage(EXPORT, EXPORT, BufferedImage.TYPE_INT_ARGB);
+        WritableRaster region = plain.image.getRaster().createWritableChild(x, y, EXPORT, EXPORT, 0, 0, null);
+        out.getRaster().setDataElements(0, 0, region);
+        return out;
+    }
+
+    @State(Scope.Thread)
+    public static class Plain {
+        BufferedImage image;
+        final int[] xs = new int[CanvasState.POINTS];
+        final int[] ys = new int[CanvasState.POINTS];
+        final int[] blockXs = new int[CanvasState.POINTS];
+        final int[] blockYs = new int[CanvasState.POINTS];
+        final int[] pixels = new int[PixelBenchmark.BLOCK * PixelBenchmark.BLOCK * 4];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            image = new BufferedImage(CanvasState.AREA, CanvasState.AREA, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setPaint(new GradientPaint(0, 0, Color.RED, CanvasState.AREA, CanvasState.AREA, Color.BLUE));
+            g.fillRect(0, 0, CanvasState.AREA, CanvasState.AREA);
+            g.dispose();
+            Random rng = new Random(41);
+            for (int i = 0; i < CanvasState.POINTS; i++) {
+                xs[i] = rng.nextInt(CanvasState.AREA);
+                ys[i] = rng.nextInt(CanvasState.AREA);
+                blockXs[i] = Math.min(xs[i], CanvasState.AREA - PixelBenchmark.BLOCK);
+                blockYs[i] = Math.min(ys[i], CanvasState.AREA - PixelBenchmark.BLOCK);
+            }
+        }
+
+        /// @return the index of the next point of the sequence
+        int next() {
+            return next = (next + 1) & (CanvasState.POINTS - 1);
+        }
+    }
+}
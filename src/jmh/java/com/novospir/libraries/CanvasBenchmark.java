@@ -0,0 +1,62 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-canvas operations: region export, bounds recomputation and tree growth.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CanvasBenchmark {
+
+    @Benchmark
+    public BufferedImage toBufferedImage(CanvasState canvas) {
+        int i = canvas.next();
+        return canvas.image.toBufferedImage(new Rectangle(canvas.xs[i] - 512, canvas.ys[i] - 512, 1024, 1024));
+    }
+
+    /// Bounds after a write, which walks the tree again
+    @Benchmark
+    public Rectangle getLogicalBounds(CanvasState canvas) {
+        canvas.image.markBoundsDirty();
+        return canvas.image.getLogicalBounds();
+    }
+
+    @State(Scope.Thread)
+    public static class Growth {
+        /// Distance of the far write from the origin, i.e. how many levels the root grows
+        @Param({"10000", "1000000", "100000000"})
+        public int distance;
+
+        @Param({"128"})
+        public int tileSize;
+    }
+
+    /// A new canvas written at the origin and at a far corner, so the root wraps itself until it spans both
+    @Benchmark
+    public InfiniteBufferedImage treeGrowth(Growth growth) {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(growth.tileSize).build());
+        image.setRGB(0, 0, 0xFF000000);
+        image.setRGB(growth.distance, -growth.distance, 0xFF000000);
+        return image;
+    }
+}
@@ -0,0 +1,59 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * A canvas of {@value #AREA}² pixels in which a {@code fill} fraction of the tiles is allocated, with a
+ * fixed sequence of random points across the whole area (allocated or not) for the benchmarks to cycle through.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@State(Scope.Thread)
+public class CanvasState {
+    static final int AREA = 4096;
+    static final int POINTS = 1 << 12;
+
+    @Param({"64", "128", "256"})
+    public int tileSize;
+
+    /// Fraction of the tiles of the area that hold pixels: 1.0 for a dense layer, 0.05 for sparse strokes
+    @Param({"1.0", "0.05"})
+    public double fill;
+
+    InfiniteBufferedImage image;
+    final int[] xs = new int[POINTS];
+    final int[] ys = new int[POINTS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(tileSize).build());
+        Random rng = new Random(41);
+        Graphics2D g = image.createGraphics();
+        for (int y = 0; y < AREA; y += tileSize) {
+            for (int x = 0; x < AREA; x += tileSize) {
+                if (rng.nextDouble() >= fill) continue;
+                g.setColor(new Color(rng.nextInt() | 0xFF000000));
+                g.fillRect(x, y, tileSize, tileSize);
+            }
+        }
+        g.dispose();
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = rng.nextInt(AREA);
+            ys[i] = rng.nextInt(AREA);
+        }
+    }
+
+    /// @return the index of the next point of the sequence
+    int next() {
+        return next = (next + 1) & (POINTS - 1);
+    }
+}
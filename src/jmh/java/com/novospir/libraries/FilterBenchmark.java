@@ -0,0 +1,76 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A blur of a dense {@value #AREA}² canvas: tile by tile through {@code convolve}, and by exporting the region
+ * to one {@link BufferedImage} for a 2D {@link ConvolveOp} with the same weights.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FilterBenchmark {
+    static final int AREA = 1024;
+
+    @Benchmark
+    public InfiniteBufferedImage convolve(Canvas canvas) {
+        return canvas.image.convolve(canvas.kernel);
+    }
+
+    @Benchmark
+    public BufferedImage convolveOp(Canvas canvas) {
+        int r = canvas.kernel.getRadius();
+        BufferedImage region = canvas.image.toBufferedImage(-r, -r, AREA + 2 * r, AREA + 2 * r);
+        return canvas.op.filter(region, null);
+    }
+
+    @State(Scope.Thread)
+    public static class Canvas {
+        @Param({"64", "256"})
+        public int tileSize;
+
+        @Param({"gaussian", "box"})
+        public String kernelType;
+
+        InfiniteBufferedImage image;
+        SeparableKernel kernel;
+        ConvolveOp op;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(tileSize).build());
+            Graphics2D g = image.createGraphics();
+            g.setPaint(new GradientPaint(0, 0, Color.RED, AREA, AREA, Color.BLUE));
+            g.fillRect(0, 0, AREA, AREA);
+            g.dispose();
+
+            kernel = kernelType.equals("box") ? SeparableKernel.box(4) : SeparableKernel.gaussian(3);
+            float[] row = kernel.getWeights();
+            float[] weights = new float[row.length * row.length];
+            for (int i = 0; i < weights.length; i++) weights[i] = row[i / row.length] * row[i % row.length];
+            op = new ConvolveOp(new Kernel(row.length, row.length, weights), ConvolveOp.EDGE_ZERO_FILL, null);
+        }
+    }
+}
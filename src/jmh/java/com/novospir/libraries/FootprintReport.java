@@ -0,0 +1,115 @@
+package com.novospir.libraries;
+
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Random;
+
+/**
+ * Exact retained sizes of the quadtree, from object layouts rather than {@code Runtime} memory deltas:
+ * the layout of a {@link QuadNode}, the cost of an internal node, the marginal cost of an allocated tile per
+ * tile size and format, and the random-write canvas quoted in the readme next to the equivalent BufferedImage,
+ * the nodes of a 256² tile grid as {@link QuadNode} objects and in a {@link CompactQuadTree}, and the stroke
+ * and fill workloads of {@link TileSizeBenchmark} per tile size.
+ *
+ * <p>Run with {@code mvn -P jmh -DskipTests verify -Djmh.main=com.novospir.libraries.FootprintReport -Djmh.args=}.
+ * Sizes depend on the JVM (compressed pointers, object alignment), which JOL prints first.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public final class FootprintReport {
+    private static final int TILES = 64;
+    private static final int GRID = 256;
+
+    private FootprintReport() {
+    }
+
+    public static void main(String[] args) {
+        System.out.println(VM.current().details());
+        System.out.println(ClassLayout.parseClass(QuadNode.class).toPrintable());
+
+        QuadNode internal = new QuadNode(0, 0, 256);
+        internal.children = new QuadNode[4];
+        System.out.printf("Internal node (node + children array):  %,d bytes%n", GraphLayout.parseInstance(internal).totalSize());
+        System.out.println();
+
+        System.out.println("Marginal bytes per allocated tile (leaf node, tile and its share of internal nodes):");
+        System.out.printf("%-16s %8s %12s %12s %9s%n", "type", "tile", "retained", "pixels", "overhead");
+        int[] types = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_BINARY};
+        String[] names = {"TYPE_INT_ARGB", "TYPE_BYTE_GRAY", "TYPE_BYTE_BINARY"};
+        for (int t = 0; t < types.length; t++) {
+            for (int tileSize : new int[]{64, 128, 256, 512}) {
+                long perTile = perTile(tileSize, types[t]);
+                long pixels = pixelBytes(tileSize, types[t]);
+                System.out.printf("%-16s %8s %,12d %,12d %8.2f%%%n", names[t], tileSize + "x" + tileSize, perTile, pixels,
+                        100.0 * (perTile - pixels) / pixels);
+            }
+        }
+        System.out.println();
+
+        // The scenario of InfiniteBufferedImageTest quoted in the readme: 100,000 random writes within 1024²
+        InfiniteBufferedImage written = new InfiniteBufferedImage();
+        Random rng = new Random(42);
+        for (int i = 0; i < 100_000; i++) written.setRGB(rng.nextInt(1024), rng.nextInt(1024), rng.nextInt());
+        System.out.printf("100,000 writes, %,d tiles of %d px:  %,d bytes%n", written.getAllocatedLeafCount(),
+                written.getTileSize(), GraphLayout.parseInstance(written).totalSize());
+        System.out.printf("BufferedImage 1024 x 1024:         %,d bytes%n",
+                GraphLayout.parseInstance(new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_ARGB)).totalSize());
+        System.out.printf("Empty InfiniteBufferedImage:       %,d bytes%n",
+                GraphLayout.parseInstance(new InfiniteBufferedImage()).totalSize());
+        System.out.println();
+
+        // The nodes alone: every tile of a dense grid shares one data object, counted once
+        QuadNode root = new QuadNode(0, 0, 64);
+        CompactQuadTree<Object> compact = new CompactQuadTree<>(64);
+        Object tile = new Object();
+        for (long y = 0; y < GRID * 64; y += 64) {
+            for (long x = 0; x < GRID * 64; x += 64) {
+                if (!root.contains(x, y)) root = root.growToFit(x, y);
+                root.getOrCreateLeaf(x, y, 64).data = tile;
+                compact.findOrCreate(x, y, () -> tile);
+            }
+        }
+        System.out.printf("Node store of %,d tiles, per tile:  QuadNode %,.1f bytes, CompactQuadTree %,.1f bytes%n",
+                GRID * GRID, (double) GraphLayout.parseInstance(root).totalSize() / (GRID * GRID),
+                (double) GraphLayout.parseInstance(compact).totalSize() / (GRID * GRID));
+        InfiniteBitmap bitmap = new InfiniteBitmap(InfiniteImageOptions.builder().tileSize(64).build());
+        bitmap.fillRect(0, 0, GRID * 64, GRID * 64);
+        System.out.printf("InfiniteBitmap of %,d 64x64 tiles:   %,d bytes (%,d of bits)%n", GRID * GRID,
+                GraphLayout.parseInstance(bitmap).totalSize(), (long) GRID * GRID * 64 * 64 / 8);
+        System.out.println();
+
+        System.out.println("Tile size sweep, retained size after the workloads of TileSizeBenchmark:");
+        System.out.printf("%6s %14s %14s %14s %14s%n", "tile", "stroke tiles", "stroke bytes", "fill tiles", "fill bytes");
+        for (int tileSize = 32; tileSize <= 1024; tileSize <<= 1) {
+            InfiniteImageOptions options = InfiniteImageOptions.builder().tileSize(tileSize).build();
+            InfiniteBufferedImage strokes = TileSizeBenchmark.strokes(new InfiniteBufferedImage(options));
+            InfiniteBufferedImage fills = TileSizeBenchmark.fills(new InfiniteBufferedImage(options));
+            System.out.printf("%6d %,14d %,14d %,14d %,14d%n", tileSize,
+                    strokes.getAllocatedLeafCount(), GraphLayout.parseInstance(strokes).totalSize(),
+                    fills.getAllocatedLeafCount(), GraphLayout.parseInstance(fills).totalSize());
+        }
+    }
+
+    /// @return the retained bytes a canvas gains per tile, between TILES and 2 * TILES tiles in a row
+    private static long perTile(int tileSize, int type) {
+        return (retained(2 * TILES, tileSize, type) - retained(TILES, tileSize, type)) / TILES;
+    }
+
+    private static long retained(int tiles, int tileSize, int type) {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder()
+                .tileSize(tileSize).imageType(type).build());
+        for (int i = 0; i < tiles; i++) image.setRGB(i * tileSize, 0, 0xFFFFFFFF);
+        return GraphLayout.parseInstance(image).totalSize();
+    }
+
+    private static long pixelBytes(int tileSize, int type) {
+        BufferedImage tile = new BufferedImage(tileSize, tileSize, type);
+        return (long) tile.getRaster().getDataBuffer().getSize()
+                * DataBuffer.getDataTypeSize(tile.getRaster().getDataBuffer().getDataType()) / 8;
+    }
+}
@@ -0,0 +1,116 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each {@link QuadGraphics2D} primitive, drawn at random points of a dense or sparse canvas. Shapes are
+ * {@value #SHAPE} pixels wide, so they cross tile boundaries for every tile size.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GraphicsBenchmark {
+    static final int SHAPE = 150;
+
+    @State(Scope.Thread)
+    public static class Pen {
+        Graphics2D g;
+        Shape path;
+        BufferedImage sprite;
+
+        @Setup(Level.Trial)
+        public void setUp(CanvasState canvas) {
+            g = canvas.image.createGraphics();
+            g.setColor(new Color(30, 120, 200, 180));
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 24));
+            Path2D.Double star = new Path2D.Double();
+            for (int i = 0; i < 10; i++) {
+                double r = i % 2 == 0 ? SHAPE / 2.0 : SHAPE / 5.0, a = Math.PI * i / 5;
+                if (i == 0) star.moveTo(r * Math.cos(a), r * Math.sin(a));
+                else star.lineTo(r * Math.cos(a), r * Math.sin(a));
+            }
+            star.closePath();
+            path = star;
+            sprite = new BufferedImage(SHAPE, SHAPE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D s = sprite.createGraphics();
+            s.setPaint(new GradientPaint(0, 0, Color.RED, SHAPE, SHAPE, Color.BLUE));
+            s.fillOval(0, 0, SHAPE, SHAPE);
+            s.dispose();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            g.dispose();
+        }
+    }
+
+    @Benchmark
+    public void drawLine(CanvasState canvas, Pen pen) {
+        int i = canvas.next();
+        pen.g.drawLine(canvas.xs[i], canvas.ys[i], canvas.xs[i] + SHAPE, canvas.ys[i] + SHAPE / 3);
+    }
+
+    @Benchmark
+    public void drawRect(CanvasState canvas, Pen pen) {
+        int i = canvas.next();
+        pen.g.drawRect(canvas.xs[i], canvas.ys[i], SHAPE, SHAPE);
+    }
+
+    @Benchmark
+    public void fillRect(CanvasState canvas, Pen pen) {
+        int i = canvas.next();
+        pen.g.fillRect(canvas.xs[i], canvas.ys[i], SHAPE, SHAPE);
+    }
+
+    @Benchmark
+    public void drawOval(CanvasState canvas, Pen pen) {
+        int i = canvas.next();
+        pen.g.drawOval(canvas.xs[i], canvas.ys[i], SHAPE, SHAPE);
+    }
+
+    @Benchmark
+    public void fillOval(CanvasState canvas, Pen pen) {
+        int i = canvas.next();
+        pen.g.fillOval(canvas.xs[i], canvas.ys[i], SHAPE, SHAPE);
+    }
+
+    @Benchmark
+    public void fillShape(CanvasState canvas, Pen pen) {
+        int i = canvas.next();
+        pen.g.fill(AffineTransform.getTranslateInstance(canvas.xs[i], canvas.ys[i]).createTransformedShape(pen.path));
+    }
+
+    @Benchmark
+    public void drawString(CanvasState canvas, Pen pen) {
+        int i = canvas.next();
+        pen.g.drawString("Infinite", canvas.xs[i], canvas.ys[i]);
+    }
+
+    @Benchmark
+    public void drawImage(CanvasState canvas, Pen pen) {
+        int i = canvas.next();
+        pen.g.drawImage(pen.sprite, canvas.xs[i], canvas.ys[i], null);
+    }
+}
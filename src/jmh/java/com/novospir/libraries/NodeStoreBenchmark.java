@@ -0,0 +1,89 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tile lookups in a tree of 2^20 tiles, stored as {@link QuadNode} objects or in a {@link CompactQuadTree}.
+ *
+ * <p>The tiles fill a 1024 x 1024 grid of 64-pixel tiles, every {@code spread}-th tile on each axis, so a
+ * spread of 1 is a dense canvas and a spread of 8 a sparse one six levels deeper. Lookups go to random allocated
+ * tiles, which for a tree of this size mostly miss the CPU caches; the tiles hold no pixels, so only the nodes
+ * are measured.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class NodeStoreBenchmark {
+    static final int TILE = 64;
+    static final int GRID = 1024;
+    static final int POINTS = 1 << 16;
+
+    @Benchmark
+    public Object objectTree(Trees trees) {
+        int i = trees.next();
+        return trees.root.findLeaf(trees.xs[i], trees.ys[i]);
+    }
+
+    @Benchmark
+    public Object compactTree(Trees trees) {
+        int i = trees.next();
+        return trees.compact.get(trees.compact.find(trees.xs[i], trees.ys[i]));
+    }
+
+    @State(Scope.Thread)
+    public static class Trees {
+        @Param({"1", "8"})
+        public int spread;
+
+        QuadNode root;
+        CompactQuadTree<Object> compact;
+        final long[] xs = new long[POINTS];
+        final long[] ys = new long[POINTS];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Object tile = new Object();
+            root = new QuadNode(0, 0, TILE);
+            compact = new CompactQuadTree<>(TILE);
+            // Row by row, as a canvas is usually painted
+            for (long row = 0; row < GRID; row++) {
+                for (long col = 0; col < GRID; col++) {
+                    long x = col * spread * TILE, y = row * spread * TILE;
+                    if (!root.contains(x, y)) root = root.growToFit(x, y);
+                    root.getOrCreateLeaf(x, y, TILE).data = tile;
+                    compact.findOrCreate(x, y, () -> tile);
+                }
+            }
+            Random rng = new Random(47);
+            for (int i = 0; i < POINTS; i++) {
+                xs[i] = (long) rng.nextInt(GRID) * spread * TILE + rng.nextInt(TILE);
+                ys[i] = (long) rng.nextInt(GRID) * spread * TILE + rng.nextInt(TILE);
+            }
+        }
+
+        /// @return the index of the next point of the sequence
+        int next() {
+            return next = (next + 1) & (POINTS - 1);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code save} and {@code load} of the sparse tiled file format: a dense 4096² gradient with noise (64 MB of
+ * tiles), and 1,000 strokes scattered over 100,000² (40 GB as a single BufferedImage).
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PersistenceBenchmark {
+
+    @Benchmark
+    public Path save(Canvas canvas) throws IOException {
+        canvas.image.save(canvas.target);
+        return canvas.target;
+    }
+
+    @Benchmark
+    public InfiniteBufferedImage load(Canvas canvas) throws IOException {
+        return InfiniteBufferedImage.load(canvas.saved);
+    }
+
+    @State(Scope.Thread)
+    public static class Canvas {
+        @Param({"dense", "sparse"})
+        public String content;
+
+        InfiniteBufferedImage image;
+        Path saved;
+        Path target;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            image = new InfiniteBufferedImage();
+            Random rng = new Random(5);
+            if (content.equals("dense")) {
+                Graphics2D g = image.createGraphics();
+                g.setPaint(new GradientPaint(0, 0, Color.RED, 4096, 4096, Color.BLUE));
+                g.fillRect(0, 0, 4096, 4096);
+                g.dispose();
+                for (int i = 0; i < 200_000; i++) image.setRGB(rng.nextInt(4096), rng.nextInt(4096), rng.nextInt());
+            } else {
+                for (int i = 0; i < 1000; i++) {
+                    int x = rng.nextInt(100_000) - 50_000, y = rng.nextInt(100_000) - 50_000;
+                    for (int j = 0; j < 32; j++) image.setRGB(x + j, y, 0xFF00FF00);
+                }
+            }
+            saved = Files.createTempFile("persistence", ".ibif");
+            target = Files.createTempFile("persistence", ".ibif");
+            image.save(saved);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(saved);
+            Files.deleteIfExists(target);
+        }
+    }
+}
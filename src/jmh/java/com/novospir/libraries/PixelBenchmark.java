@@ -0,0 +1,57 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-pixel and bulk raster access at random points of a dense or sparse canvas.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PixelBenchmark {
+    static final int BLOCK = 100; // bulk block side, spans tiles for every tile size
+
+    @Benchmark
+    public int getRGB(CanvasState canvas) {
+        int i = canvas.next();
+        return canvas.image.getRGB(canvas.xs[i], canvas.ys[i]);
+    }
+
+    @Benchmark
+    public void setRGB(CanvasState canvas) {
+        int i = canvas.next();
+        canvas.image.setRGB(canvas.xs[i], canvas.ys[i], 0xFF000000 | i);
+    }
+
+    @Benchmark
+    public int[] getPixels(CanvasState canvas, Buffers buffers) {
+        int i = canvas.next();
+        return canvas.image.getRaster().getPixels(canvas.xs[i], canvas.ys[i], BLOCK, BLOCK, buffers.pixels);
+    }
+
+    @Benchmark
+    public void setPixels(CanvasState canvas, Buffers buffers) {
+        int i = canvas.next();
+        canvas.image.getRaster().setPixels(canvas.xs[i], canvas.ys[i], BLOCK, BLOCK, buffers.pixels);
+    }
+
+    @State(Scope.Thread)
+    public static class Buffers {
+        final int[] pixels = new int[BLOCK * BLOCK * 4];
+    }
+}
@@ -0,0 +1,104 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The tile size tradeoff behind the {@code tile.size} setting, from 32² to 1024² tiles: sparse strokes and dense
+ * fills into a new canvas, and region reads and exports from a dense one. {@link FootprintReport} measures the
+ * retained size of the same stroke and fill workloads.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TileSizeBenchmark {
+    static final int AREA = 4096;
+    static final int STROKES = 2000;
+    static final int FILLS = 10;
+    static final int REGION = 256;
+
+    /// 2000 horizontal strokes of 16 px at random points of a {@value #AREA}² area around the origin
+    @Benchmark
+    public InfiniteBufferedImage sparseStrokes(Sweep sweep) {
+        return strokes(new InfiniteBufferedImage(sweep.options));
+    }
+
+    /// 10 overlapping 1024² fills along the diagonal
+    @Benchmark
+    public InfiniteBufferedImage denseFills(Sweep sweep) {
+        return fills(new InfiniteBufferedImage(sweep.options));
+    }
+
+    /// One 256² {@code getPixels} from the filled canvas, at offsets that cross tile edges
+    @Benchmark
+    public int[] regionRead(Sweep sweep) {
+        int offset = sweep.next();
+        return sweep.image.getRaster().getPixels(offset, offset, REGION, REGION, sweep.pixels);
+    }
+
+    /// {@code toBufferedImage} of a 1024² region of the filled canvas
+    @Benchmark
+    public BufferedImage export(Sweep sweep) {
+        return sweep.image.toBufferedImage(new Rectangle(0, 0, 1024, 1024));
+    }
+
+    static InfiniteBufferedImage strokes(InfiniteBufferedImage image) {
+        Random rng = new Random(42);
+        for (int i = 0; i < STROKES; i++) {
+            int x = rng.nextInt(AREA) - AREA / 2, y = rng.nextInt(AREA) - AREA / 2;
+            for (int j = 0; j < 16; j++) image.setRGB(x + j, y, 0xFFFF0000);
+        }
+        return image;
+    }
+
+    static InfiniteBufferedImage fills(InfiniteBufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLUE);
+        for (int i = 0; i < FILLS; i++) g.fillRect(i * 100, i * 100, 1024, 1024);
+        g.dispose();
+        return image;
+    }
+
+    @State(Scope.Thread)
+    public static class Sweep {
+        @Param({"32", "64", "128", "256", "512", "1024"})
+        public int tileSize;
+
+        InfiniteImageOptions options;
+        InfiniteBufferedImage image;
+        final int[] pixels = new int[REGION * REGION * 4];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            options = InfiniteImageOptions.builder().tileSize(tileSize).build();
+            image = fills(new InfiniteBufferedImage(options));
+        }
+
+        /// @return the next of 16 offsets 16 px apart
+        int next() {
+            next = (next + 1) & 15;
+            return next * 16;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.novospir.libraries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A per-pixel transform (RGB inversion) over a dense {@value #AREA}² canvas, per pixel through
+ * {@code getRGB}/{@code setRGB} and per tile through {@code tiles()}, sequential and parallel.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TileStreamBenchmark {
+    static final int AREA = 1024;
+
+    @Benchmark
+    public InfiniteBufferedImage perPixel(Canvas canvas) {
+        InfiniteBufferedImage image = canvas.image;
+        for (int y = 0; y < AREA; y++) {
+            for (int x = 0; x < AREA; x++) image.setRGB(x, y, invert(image.getRGB(x, y)));
+        }
+        return image;
+    }
+
+    @Benchmark
+    public InfiniteBufferedImage tiles(Canvas canvas) {
+        try (Stream<TileView> tiles = canvas.image.tiles()) {
+            tiles.forEach(TileStreamBenchmark::invert);
+        }
+        return canvas.image;
+    }
+
+    @Benchmark
+    public InfiniteBufferedImage parallelTiles(Canvas canvas) {
+        try (Stream<TileView> tiles = canvas.image.tiles()) {
+            tiles.parallel().forEach(TileStreamBenchmark::invert);
+        }
+        return canvas.image;
+    }
+
+    private static void invert(TileView tile) {
+        int[] argb = tile.getWritableData();
+        for (int i = 0; i < argb.length; i++) argb[i] = invert(argb[i]);
+    }
+
+    private static int invert(int argb) {
+        return argb & 0xFF000000 | ~argb & 0x00FFFFFF;
+    }
+
+    @State(Scope.Thread)
+    public static class Canvas {
+        @Param({"64", "128"})
+        public int tileSize;
+
+        InfiniteBufferedImage image;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(tileSize).build());
+            Graphics2D g = image.createGraphics();
+            g.setPaint(new GradientPaint(0, 0, Color.RED, AREA, AREA, Color.BLUE));
+            g.fillRect(0, 0, AREA, AREA);
+            g.dispose();
+        }
+    }
+}
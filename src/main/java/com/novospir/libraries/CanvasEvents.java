@@ -0,0 +1,125 @@
+package com.novospir.libraries;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.awt.*;
+
+/**
+ * Java Flight Recorder events for the expensive operations of an infinite canvas, so UI stalls can be correlated
+ * with library internals in a recording without attaching a sampling profiler.
+ *
+ * <h3>Events:</h3>
+ * <ul>
+ *   <li><b>{@code com.novospir.libraries.BoundsRecomputation}</b> - {@code getLogicalBounds()} rescanning every tile
+ *   <li><b>{@code com.novospir.libraries.Export}</b> - {@code toBufferedImage} copying a region out
+ *   <li><b>{@code com.novospir.libraries.CopyArea}</b> - {@code Graphics2D.copyArea}
+ *   <li><b>{@code com.novospir.libraries.TransformedDrawImage}</b> - {@code drawImage} with an {@code AffineTransform}
+ *   <li><b>{@code com.novospir.libraries.TreeGrowth}</b> - the root doubling to contain a write far away
+ *   <li><b>{@code com.novospir.libraries.TileAllocation}</b> - one draw or bulk write allocating blank tiles
+ *   <li><b>{@code com.novospir.libraries.Compaction}</b> - {@code compact()}
+ *   <li><b>{@code com.novospir.libraries.Convolution}</b> - {@code convolve()} filtering every allocated tile
+ * </ul>
+ *
+ * <p>Every event carries its duration, a canvas region and a tile count. They are enabled by default, with stack
+ * traces, so a plain {@code -XX:StartFlightRecording} records them; a disabled event costs a check of
+ * {@link Event#isEnabled()}. Events are only created by the library.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class CanvasEvents {
+
+    private CanvasEvents() {
+    }
+
+    @Category({"Novospir", "Infinite Image"})
+    @StackTrace
+    abstract static class RegionEvent extends Event {
+        @Label("X") @Description("Left edge of the region in canvas coordinates")
+        long x;
+        @Label("Y") @Description("Top edge of the region in canvas coordinates")
+        long y;
+        @Label("Width")
+        long width;
+        @Label("Height")
+        long height;
+        @Label("Tiles") @Description("Leaves read or written by the operation")
+        int tiles;
+
+        void setRegion(long x, long y, long width, long height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        void setRegion(Rectangle region) {
+            setRegion(region.x, region.y, region.width, region.height);
+        }
+
+        void setRegion(QuadNode node) {
+            setRegion(node.x, node.y, node.size, node.size);
+        }
+    }
+
+    @Name("com.novospir.libraries.BoundsRecomputation")
+    @Label("Bounds Recomputation")
+    @Description("Rescan of every allocated tile for the logical bounds; the region is the bounds found")
+    static final class BoundsRecomputation extends RegionEvent {
+    }
+
+    @Name("com.novospir.libraries.Export")
+    @Label("Region Export")
+    @Description("Copy of a region into a BufferedImage")
+    static final class Export extends RegionEvent {
+    }
+
+    @Name("com.novospir.libraries.CopyArea")
+    @Label("Copy Area")
+    @Description("Graphics2D.copyArea; the region is the source, tiles counts the destination leaves")
+    static final class CopyArea extends RegionEvent {
+        @Label("Dx")
+        int dx;
+        @Label("Dy")
+        int dy;
+    }
+
+    @Name("com.novospir.libraries.TransformedDrawImage")
+    @Label("Transformed Draw Image")
+    @Description("Graphics2D.drawImage with an AffineTransform; the region is the transformed footprint")
+    static final class TransformedDrawImage extends RegionEvent {
+    }
+
+    @Name("com.novospir.libraries.TreeGrowth")
+    @Label("Tree Growth")
+    @Description("Root doublings to contain a write; the region is the new root, tiles are not counted")
+    static final class TreeGrowth extends RegionEvent {
+        @Label("Levels") @Description("Times the root doubled")
+        int levels;
+    }
+
+    @Name("com.novospir.libraries.TileAllocation")
+    @Label("Tile Allocation")
+    @Description("Blank tiles allocated by one draw or bulk write; the region is the area written")
+    static final class TileAllocation extends RegionEvent {
+    }
+
+    @Name("com.novospir.libraries.Compaction")
+    @Label("Compaction")
+    @Description("compact(); the region is the root, tiles counts the leaves released")
+    static final class Compaction extends RegionEvent {
+    }
+
+    @Name("com.novospir.libraries.Convolution")
+    @Label("Convolution")
+    @Description("convolve() into a destination image; the region spans the tiles filtered, tiles counts those written")
+    static final class Convolution extends RegionEvent {
+        @Label("Radius") @Description("Pixels the kernel reaches on each side")
+        int radius;
+    }
+}
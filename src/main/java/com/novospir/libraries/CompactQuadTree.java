@@ -0,0 +1,222 @@
+package com.novospir.libraries;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A quadtree of equally sized tiles kept in flat primitive arrays instead of one {@link QuadNode} per node.
+ *
+ * <p>Internal nodes are blocks of four {@code int} child references in one shared {@code children} array, and
+ * tiles are indices into parallel arrays of tile data, tile origin and the child slot that refers to the tile.
+ * A child reference is {@code 0} for an empty quadrant, a positive node index, or {@code ~tile} for a tile.
+ * Block 0 is a header whose slot 0 refers to the root, so the root needs no special case: a one-tile tree is a
+ * header pointing at a tile.
+ *
+ * <h3>Compared to QuadNode:</h3>
+ * <ul>
+ *   <li>An internal node costs 16 bytes instead of a node and a child array (88 bytes), and a tile costs
+ *       24 bytes of parallel arrays instead of a leaf node (56 bytes), before the growth slack of the arrays
+ *   <li>Node coordinates are not stored: a lookup descends by the bits of the point's offset from the root,
+ *       touching one {@code int} per level, and the blocks of a tree built in order are adjacent in memory
+ *   <li>Tiles cannot be merged or shared between snapshots, which is why {@link InfiniteBufferedImage} keeps its
+ *       object tree; {@link InfiniteBitmap}, with fixed tiles and no snapshots, uses this one
+ * </ul>
+ *
+ * <p>Released tile indices are reused by later tiles. Internal nodes are kept until {@link #clear()}, like the
+ * internal nodes of an object tree until it is compacted.
+ *
+ * @param <T> the type of the tile data
+ * @see QuadNode
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class CompactQuadTree<T> {
+    private final int tileSize;
+    private final int shift; // log2(tileSize)
+
+    private long rootX, rootY, rootSize;
+    private int levels; // internal levels between the root and the tiles: log2(rootSize / tileSize)
+
+    private int[] children = new int[4 * 16];
+    private int nodeCount = 1; // block 0 is the header
+
+    private Object[] tiles = new Object[16];
+    private long[] tileX = new long[16];
+    private long[] tileY = new long[16];
+    private int[] tileSlot = new int[16]; // position in children of the reference to each tile
+    private int tileCount;                // high-water mark of tile indices
+    private int[] freeTiles = new int[16];
+    private int freeCount;
+
+    /// Creates an empty tree of tiles aligned to multiples of {@code tileSize}, which must be a power of two
+    CompactQuadTree(int tileSize) {
+        if (Integer.bitCount(tileSize) != 1)
+            throw new IllegalArgumentException(String.format("Tile size must be a power of two: [%,d]", tileSize));
+        this.tileSize = tileSize;
+        this.shift = Integer.numberOfTrailingZeros(tileSize);
+        this.rootSize = tileSize;
+    }
+
+    /// @return the index of the tile containing (x,y), or -1 if there is none
+    int find(long x, long y) {
+        long dx = x - rootX, dy = y - rootY;
+        if (Long.compareUnsigned(dx, rootSize) >= 0 || Long.compareUnsigned(dy, rootSize) >= 0) return -1;
+        int ref = children[0];
+        for (int bit = shift + levels - 1; ref > 0; bit--) {
+            ref = children[ref << 2 | quadrant(dx, dy, bit)];
+        }
+        return ref < 0 ? ~ref : -1;
+    }
+
+    /**
+     * Returns the index of the tile containing (x,y), growing the tree and creating the tile if needed.
+     *
+     * @param factory Supplies the data of a new tile
+     * @return the index of the (possibly new) tile
+     * @throws IllegalArgumentException if the point lies outside the range of {@link QuadNode#growToFit}
+     */
+    int findOrCreate(long x, long y, Supplier<? extends T> factory) {
+        if (!contains(x, y)) grow(x, y);
+        long dx = x - rootX, dy = y - rootY;
+        int slot = 0;
+        for (int bit = shift + levels - 1; bit >= shift; bit--) {
+            int ref = children[slot];
+            if (ref == 0) {
+                ref = newNode(); // may reallocate children, so assign after the call
+                children[slot] = ref;
+            }
+            slot = ref << 2 | quadrant(dx, dy, bit);
+        }
+        int ref = children[slot];
+        if (ref < 0) return ~ref;
+
+        int tile = newTile();
+        tiles[tile] = factory.get();
+        tileX[tile] = rootX + (dx & -tileSize);
+        tileY[tile] = rootY + (dy & -tileSize);
+        tileSlot[tile] = slot;
+        children[slot] = ~tile;
+        return tile;
+    }
+
+    /// @return the data of a tile
+    @SuppressWarnings("unchecked")
+    T get(int tile) {
+        return (T) tiles[tile];
+    }
+
+    /// @return the x-coordinate of a tile's top-left corner
+    long tileX(int tile) {
+        return tileX[tile];
+    }
+
+    /// @return the y-coordinate of a tile's top-left corner
+    long tileY(int tile) {
+        return tileY[tile];
+    }
+
+    /// Removes a tile from the tree; its index may be handed out again by {@link #findOrCreate}
+    void release(int tile) {
+        children[tileSlot[tile]] = 0;
+        tiles[tile] = null;
+        if (freeCount == freeTiles.length) freeTiles = Arrays.copyOf(freeTiles, freeCount * 2);
+        freeTiles[freeCount++] = tile;
+    }
+
+    /// Visits the index of every tile in index order; the action may release the visited tile
+    void forEach(IntConsumer action) {
+        int end = tileCount;
+        for (int tile = 0; tile < end; tile++) {
+            if (tiles[tile] != null) action.accept(tile);
+        }
+    }
+
+    /// Removes every tile and node, and shrinks the root back to one tile
+    void clear() {
+        children = new int[4 * 16];
+        nodeCount = 1;
+        tiles = new Object[16];
+        tileX = new long[16];
+        tileY = new long[16];
+        tileSlot = new int[16];
+        tileCount = freeCount = 0;
+        rootX = rootY = 0;
+        levels = 0;
+        rootSize = tileSize;
+    }
+
+    /// @return the number of tiles in the tree
+    int size() {
+        return tileCount - freeCount;
+    }
+
+    /// @return the number of internal nodes, including those left empty by released tiles
+    int nodeCount() {
+        return nodeCount - 1;
+    }
+
+    /// @return the width and height of the area covered by the root
+    long rootSize() {
+        return rootSize;
+    }
+
+    /// @return the number of levels between the root and the tiles
+    int depth() {
+        return levels;
+    }
+
+    private boolean contains(long x, long y) {
+        return Long.compareUnsigned(x - rootX, rootSize) < 0 && Long.compareUnsigned(y - rootY, rootSize) < 0;
+    }
+
+    /// Quadrant 0-3 (NW, NE, SW, SE, as in {@link QuadNode#getQuadrant}) of an offset from the root at a level
+    private static int quadrant(long dx, long dy, int bit) {
+        return (int) (dx >>> bit) & 1 | ((int) (dy >>> bit) & 1) << 1;
+    }
+
+    /**
+     * Grows the root to contain (x,y), placed like {@link QuadNode#growToFit} places a new root, and links the
+     * old root in through a chain of new nodes.
+     */
+    private void grow(long x, long y) {
+        QuadNode grown = new QuadNode(rootX, rootY, rootSize).growToFit(x, y);
+        int old = children[0];
+        if (old != 0) {
+            int slot = 0;
+            long nodeX = grown.x, nodeY = grown.y;
+            for (long size = grown.size; size > rootSize; size >>= 1) {
+                int node = newNode();
+                children[slot] = node;
+                long half = size >> 1;
+                int quadrant = (rootX - nodeX >= half ? 1 : 0) | (rootY - nodeY >= half ? 2 : 0);
+                nodeX += (quadrant & 1) * half;
+                nodeY += (quadrant >> 1) * half;
+                slot = node << 2 | quadrant;
+            }
+            children[slot] = old;
+            if (old < 0) tileSlot[~old] = slot;
+        }
+        rootX = grown.x;
+        rootY = grown.y;
+        rootSize = grown.size;
+        levels = Long.numberOfTrailingZeros(rootSize) - shift;
+    }
+
+    private int newNode() {
+        if (4 * nodeCount == children.length) children = Arrays.copyOf(children, children.length * 2);
+        return nodeCount++;
+    }
+
+    private int newTile() {
+        if (freeCount > 0) return freeTiles[--freeCount];
+        if (tileCount == tiles.length) {
+            int capacity = tileCount * 2;
+            tiles = Arrays.copyOf(tiles, capacity);
+            tileX = Arrays.copyOf(tileX, capacity);
+            tileY = Arrays.copyOf(tileY, capacity);
+            tileSlot = Arrays.copyOf(tileSlot, capacity);
+        }
+        return tileCount++;
+    }
+}
@@ -0,0 +1,77 @@
+package com.novospir.libraries;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Keeps cold tiles in the heap, compressed with {@link TileCodec}.
+ *
+ * <p>Tiles that have not been accessed for the idle period are encoded at the start of the next lookup
+ * and their BufferedImage is released; the next access decodes them again. There is no byte budget:
+ * every tile stays in the heap, hot tiles as rasters and cold tiles as a uniform pixel or a Deflate
+ * payload. Line art and flat fills, which are mostly uniform or repetitive, typically shrink 10-50x.
+ *
+ * <p>A clean tile keeps its previous payload while it is decoded, so tiles that are only read are not
+ * compressed again when they go cold.
+ *
+ * @see TilePager
+ * @see InfiniteImageOptions.Builder#compressedStorage(java.time.Duration)
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class CompressedTileStore extends TilePager {
+    private final TileCodec codec = new TileCodec();
+    private long storedBytes;
+    private boolean closed;
+
+    /// A compressed tile
+    private static final class Entry {
+        byte encoding;
+        byte[] payload;
+    }
+
+    /// @param idleNanos Time after which an untouched tile is compressed
+    CompressedTileStore(int tileSize, int type, long idleNanos) {
+        super(tileSize, type, Long.MAX_VALUE, idleNanos);
+    }
+
+    @Override
+    void read(QuadNode leaf, BufferedImage tile) {
+        ensureOpen();
+        Entry entry = (Entry) leaf.data;
+        codec.decode(entry.encoding, entry.payload, entry.payload.length, tile.getRaster());
+    }
+
+    @Override
+    void write(QuadNode leaf) {
+        ensureOpen();
+        Entry entry = leaf.data != null ? (Entry) leaf.data : new Entry();
+        if (entry.payload != null) storedBytes -= entry.payload.length;
+        codec.encode(leaf.image.getRaster());
+        entry.encoding = codec.encoding();
+        entry.payload = Arrays.copyOf(codec.payload(), codec.length());
+        storedBytes += entry.payload.length;
+        leaf.data = entry;
+    }
+
+    @Override
+    void free(QuadNode leaf) {
+        storedBytes -= ((Entry) leaf.data).payload.length;
+    }
+
+    @Override
+    long storedBytes() {
+        return storedBytes;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        codec.end();
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Compressed tile store is closed");
+    }
+}
@@ -50,7 +50,6 @@ class DataBufferDecoder {
     // Constructor
     public DataBufferDecoder(SampleModel sm, DataBuffer db) {
         this.numBands = sm.getNumBands();
-        this.scanlineStride = sm.getWidth();
         this.dataElementSize = sm.getNumDataElements();
         this.dataType = getDataType(db);
         this.elementSizeBytes = getElementSizeBytes(dataType);
@@ -59,6 +58,7 @@ class DataBufferDecoder {
         // Handle different SampleModel types
         if (sm instanceof ComponentSampleModel) {
             ComponentSampleModel csm = (ComponentSampleModel) sm;
+            this.scanlineStride = csm.getScanlineStride();
             this.pixelStride = csm.getPixelStride();
             this.bandOffsets = csm.getBandOffsets();
             this.isPacked = false;
@@ -66,6 +66,7 @@ class DataBufferDecoder {
             this.bitShifts = null;
         } else if (sm instanceof SinglePixelPackedSampleModel) {
             SinglePixelPackedSampleModel spsm = (SinglePixelPackedSampleModel) sm;
+            this.scanlineStride = spsm.getScanlineStride();
             this.pixelStride = 1;
             this.isPacked = true;
             this.bitMasks = spsm.getBitMasks();
@@ -77,6 +78,8 @@ class DataBufferDecoder {
             }
         } else if (sm instanceof MultiPixelPackedSampleModel) {
             MultiPixelPackedSampleModel mppsm = (MultiPixelPackedSampleModel) sm;
+            // Stride in data elements; several pixels share one element
+            this.scanlineStride = mppsm.getScanlineStride();
             this.pixelStride = 1;
             this.isPacked = true;
 
@@ -93,6 +96,7 @@ class DataBufferDecoder {
             }
         } else {
             // Default case
+            this.scanlineStride = sm.getWidth() * numBands;
             this.pixelStride = numBands;
             this.isPacked = false;
             this.bitMasks = null;
@@ -0,0 +1,88 @@
+package com.novospir.libraries;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The set of tiles written since the last drain, each with the bounding box of the writes inside it.
+ *
+ * <p>Tiles are the cells of the canvas tile grid (tile size and origin of the image), whatever the size
+ * of the leaf that was written: a write to a merged leaf marks each tile it touches. Consecutive writes to
+ * one tile, e.g. {@code setRGB} along a row, only widen the cached box of that tile.
+ *
+ * @see InfiniteBufferedImage#drainDirtyRegions()
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class DirtyRegions {
+    private final int tileSize;
+    private final int originX, originY;
+    // Key: tile row in the high half, tile column offset to unsigned in the low half, so keys sort row-major
+    private final Map<Long, int[]> tiles = new HashMap<>(); // {minX, minY, maxX, maxY}, max exclusive
+
+    private long lastKey;
+    private int[] last; // box of the tile written last, or null
+
+    DirtyRegions(int tileSize, int originX, int originY) {
+        this.tileSize = tileSize;
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    /// Marks the pixels [x, x+w) x [y, y+h) as written; w and h must be positive
+    void add(int x, int y, int w, int h) {
+        long endX = (long) x + w, endY = (long) y + h;
+        long col1 = Math.floorDiv((long) x - originX, tileSize), col2 = Math.floorDiv(endX - 1 - originX, tileSize);
+        long row1 = Math.floorDiv((long) y - originY, tileSize), row2 = Math.floorDiv(endY - 1 - originY, tileSize);
+        for (long row = row1; row <= row2; row++) {
+            long top = originY + row * tileSize;
+            int y1 = (int) Math.max(y, top), y2 = (int) Math.min(endY, top + tileSize);
+            for (long col = col1; col <= col2; col++) {
+                long left = originX + col * tileSize;
+                int x1 = (int) Math.max(x, left), x2 = (int) Math.min(endX, left + tileSize);
+                long key = row << 32 | (col - Integer.MIN_VALUE) & 0xFFFFFFFFL;
+                int[] box = last != null && key == lastKey ? last : tiles.get(key);
+                if (box == null) {
+                    tiles.put(key, box = new int[]{x1, y1, x2, y2});
+                } else {
+                    box[0] = Math.min(box[0], x1);
+                    box[1] = Math.min(box[1], y1);
+                    box[2] = Math.max(box[2], x2);
+                    box[3] = Math.max(box[3], y2);
+                }
+                lastKey = key;
+                last = box;
+            }
+        }
+    }
+
+    /**
+     * Clips a region of the long canvas to the int range, the part that int rectangles can report.
+     *
+     * @return the part of [x, x+w) x [y, y+h) within [Integer.MIN_VALUE, Integer.MAX_VALUE), or {@code null} if none
+     */
+    static Rectangle clip(long x, long y, long w, long h) {
+        long x1 = Math.max(x, Integer.MIN_VALUE), x2 = Math.min(x + w, Integer.MAX_VALUE);
+        long y1 = Math.max(y, Integer.MIN_VALUE), y2 = Math.min(y + h, Integer.MAX_VALUE);
+        if (x1 >= x2 || y1 >= y2) return null;
+        return new Rectangle((int) x1, (int) y1, (int) (x2 - x1), (int) (y2 - y1));
+    }
+
+    /// @return the written part of each dirty tile, in row-major tile order, and forgets them
+    List<Rectangle> drain() {
+        Long[] keys = tiles.keySet().toArray(new Long[0]);
+        Arrays.sort(keys);
+        List<Rectangle> regions = new ArrayList<>(keys.length);
+        for (Long key : keys) {
+            int[] box = tiles.get(key);
+            regions.add(new Rectangle(box[0], box[1], box[2] - box[0], box[3] - box[1]));
+        }
+        tiles.clear();
+        last = null;
+        return regions;
+    }
+}
@@ -0,0 +1,27 @@
+package com.novospir.libraries;
+
+import java.awt.*;
+
+/**
+ * Receives the regions of an {@link InfiniteBufferedImage} that change, e.g. to schedule a repaint.
+ *
+ * <p>Listeners are called synchronously on the writing thread, once per write ({@code setRGB}, a raster
+ * write or a {@code Graphics2D} draw) after the pixels have changed, and once per
+ * {@link InfiniteBufferedImage#restore(ImageSnapshot) restore}. Keep them short: a listener that
+ * repaints should only record the region and repaint later.
+ *
+ * @see InfiniteBufferedImage#addChangeListener(ImageChangeListener)
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+@FunctionalInterface
+public interface ImageChangeListener {
+
+    /**
+     * @param image The image that changed
+     * @param region Pixels that may have changed, in canvas coordinates; at least the written pixels and,
+     *               for draws and bulk writes, all of every tile they touched; clipped to the int range, so
+     *               writes entirely beyond it are not reported
+     */
+    void imageChanged(InfiniteBufferedImage image, Rectangle region);
+}
@@ -0,0 +1,317 @@
+package com.novospir.libraries;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Draws an image file into an {@link InfiniteBufferedImage} one band of tile rows at a time, so a
+ * source far larger than the heap (or than a single {@link BufferedImage} can hold) never has to be
+ * decoded whole.
+ *
+ * <h3>Decoding:</h3>
+ * <ul>
+ *   <li><b>Streaming</b> - the JDK's JPEG and non-interlaced PNG readers write rows top to bottom, so
+ *       they decode in a single pass into a destination whose raster keeps only the current band;
+ *       each band is drawn into the canvas as soon as the reader moves past it. Peak memory is one
+ *       band of {@code width x tileSize} pixels
+ *   <li><b>Banded</b> - other readers (interlaced PNG, GIF, BMP, TIFF, ...) read a few tile rows at a
+ *       time through {@link ImageReadParam#setSourceRegion(Rectangle)}. Formats with random access
+ *       read only the band; compressed sequential formats decode the rows above it again for every band
+ * </ul>
+ *
+ * <p>Bands and blocks are aligned to the canvas tile grid, so each block lands in one tile. Blocks
+ * whose pixels are all fully transparent are skipped and never allocate a tile; other blocks are
+ * drawn with the default SrcOver composite, exactly as {@code drawImage} of the decoded source would.
+ *
+ * @see InfiniteBufferedImage#importImage(Path, int, int)
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class ImageImporter {
+    /// Memory for one band of the banded fallback, which re-reads from the start for sequential formats
+    static final long BAND_BYTES = 32L << 20;
+
+    private final int x, y;
+    private final int width, height;
+    private final int tileSize;
+    private final int originX, originY;
+    private final Graphics2D graphics;
+    private int[] samples = new int[0];
+
+    private ImageImporter(InfiniteBufferedImage target, int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.tileSize = target.getTileSize();
+        this.originX = target.getOptions().getOriginX();
+        this.originY = target.getOptions().getOriginY();
+        this.graphics = target.createGraphics();
+    }
+
+    static void importImage(InfiniteBufferedImage target, Path source, int x, int y) throws IOException {
+        try (ImageInputStream in = new FileImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) throw new IOException("No ImageIO reader for " + source);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) x + width > Integer.MAX_VALUE || (long) y + height > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException(String.format(
+                            "Image of %dx%d at (%d, %d) exceeds the canvas coordinate range", width, height, x, y));
+                }
+                ImageImporter importer = new ImageImporter(target, x, y, width, height);
+                try {
+                    if (readsRowsInOrder(reader)) importer.stream(reader);
+                    else importer.readBands(reader);
+                } finally {
+                    importer.graphics.dispose();
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /* ------ DECODING ------ */
+
+    private void stream(ImageReader reader) throws IOException {
+        ImageTypeSpecifier type = reader.getImageTypes(0).next();
+        ColorModel cm = type.getColorModel();
+        WritableRaster band = Raster.createWritableRaster(type.getSampleModel(width, Math.min(tileSize, height)), null);
+        BandRaster rows = new BandRaster(new BufferedImage(cm, band, cm.isAlphaPremultiplied(), null),
+                new Rectangle(width, height));
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setDestination(new BufferedImage(cm, rows, cm.isAlphaPremultiplied(), null));
+        reader.read(0, param);
+        rows.flush();
+    }
+
+    private void readBands(ImageReader reader) throws IOException {
+        // A few tile rows per read, since sequential formats decode everything above the band each time
+        long tileRowBytes = (long) width * tileSize * 4;
+        int tileRows = (int) Math.max(1, Math.min(BAND_BYTES / tileRowBytes, height));
+        ImageReadParam param = reader.getDefaultReadParam();
+        for (int top = 0; top < height; ) {
+            int end = top;
+            for (int i = 0; i < tileRows && end < height; i++) end = nextBoundary(end);
+            param.setSourceRegion(new Rectangle(0, top, width, end - top));
+            drawBand(reader.read(0, param), top);
+            top = end;
+        }
+    }
+
+    /// @return true for readers known to write every row once, top to bottom
+    private static boolean readsRowsInOrder(ImageReader reader) throws IOException {
+        if (!reader.getClass().getName().startsWith("com.sun.imageio.plugins.")) return false;
+        switch (reader.getFormatName().toLowerCase()) {
+            case "jpeg":
+                return true; // progressive JPEGs are buffered by the decoder and still output top to bottom
+            case "png":
+                IIOMetadata metadata = reader.getImageMetadata(0);
+                Node root = metadata.getAsTree(metadata.getNativeMetadataFormatName());
+                for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+                    if (!"IHDR".equals(node.getNodeName())) continue;
+                    Node interlace = node.getAttributes().getNamedItem("interlaceMethod");
+                    return interlace != null && "none".equals(interlace.getNodeValue());
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /* ------ DRAWING ------ */
+
+    /// Draws a decoded band whose first row is source row {@code top}, one tile-aligned block at a time
+    private void drawBand(BufferedImage band, int top) {
+        int rows = band.getHeight();
+        for (int by = 0; by < rows; ) {
+            int h = Math.min(nextBoundary(top + by) - top, rows) - by;
+            for (int bx = 0; bx < width; ) {
+                int w = Math.min(tileSize - Math.floorMod(x + bx - originX, tileSize), width - bx);
+                if (!isTransparent(band, bx, by, w, h)) {
+                    graphics.drawImage(band.getSubimage(bx, by, w, h), x + bx, y + top + by, null);
+                }
+                bx += w;
+            }
+            by += h;
+        }
+    }
+
+    /// @return true if every pixel of the block has zero alpha, so drawing it would change nothing
+    private boolean isTransparent(BufferedImage band, int bx, int by, int w, int h) {
+        if (!band.getColorModel().hasAlpha()) return false;
+        WritableRaster alpha = band.getAlphaRaster();
+        if (samples.length < w) samples = new int[w];
+        for (int row = by; row < by + h; row++) {
+            if (alpha != null) {
+                alpha.getSamples(bx, row, w, 1, 0, samples);
+                for (int i = 0; i < w; i++) if (samples[i] != 0) return false;
+            } else {
+                // Indexed sources keep alpha in the palette
+                band.getRGB(bx, row, w, 1, samples, 0, w);
+                for (int i = 0; i < w; i++) if (samples[i] >>> 24 != 0) return false;
+            }
+        }
+        return true;
+    }
+
+    /// @return the first source row of the next canvas tile row after source row {@code row}, capped at the height
+    private int nextBoundary(int row) {
+        return (int) Math.min(height, (long) row + tileSize - Math.floorMod(y + row - originY, tileSize));
+    }
+
+    /**
+     * Destination raster of the full source size that only stores the current band. Rows are
+     * redirected into the band; when the reader writes past it, the band is drawn into the canvas
+     * and reused for the next one. Writing a row above the current band is an error.
+     */
+    private final class BandRaster extends WritableRaster {
+        private final BufferedImage bandImage;
+        private final WritableRaster band;
+        private int top, end;
+        private boolean written;
+
+        /// @param bounds The full source size, which may exceed what one raster can hold
+        BandRaster(BufferedImage bandImage, Rectangle bounds) {
+            super(bandImage.getSampleModel(), bandImage.getRaster().getDataBuffer(), bounds, new Point(0, 0), null);
+            this.bandImage = bandImage;
+            this.band = bandImage.getRaster();
+        }
+
+        /// Draws the current band if anything was written to it
+        void flush() {
+            if (!written) return;
+            drawBand(end - top == band.getHeight() ? bandImage : bandImage.getSubimage(0, 0, width, end - top), top);
+            written = false;
+        }
+
+        /// @return the band row of source row {@code row}, moving to its band first
+        private int bandRow(int row, int rows) {
+            if (row >= end) {
+                flush();
+                top = Math.max(0, row - Math.floorMod(y + row - originY, tileSize));
+                end = nextBoundary(top);
+            }
+            if (row < top || row + rows > end) {
+                throw new IllegalStateException(String.format(
+                        "Rows %d-%d were decoded outside the current band %d-%d", row, row + rows - 1, top, end - 1));
+            }
+            written = true;
+            return row - top;
+        }
+
+        @Override
+        public void setRect(int dx, int dy, Raster src) {
+            int first = src.getMinY() + dy, last = first + src.getHeight();
+            for (int row = first; row < last; ) {
+                bandRow(row, 1);
+                int rows = Math.min(end, last) - row;
+                Raster part = rows == src.getHeight() ? src
+                        : src.createChild(src.getMinX(), row - dy, src.getWidth(), rows, src.getMinX(), row - dy, null);
+                band.setRect(dx, dy - top, part);
+                row += rows;
+            }
+        }
+
+        @Override
+        public void setDataElements(int x, int y, Object inData) {
+            band.setDataElements(x, bandRow(y, 1), inData);
+        }
+
+        @Override
+        public void setDataElements(int x, int y, Raster inRaster) {
+            setRect(x, y, inRaster);
+        }
+
+        @Override
+        public void setDataElements(int x, int y, int w, int h, Object inData) {
+            band.setDataElements(x, bandRow(y, h), w, h, inData);
+        }
+
+        @Override
+        public void setPixel(int x, int y, int[] iArray) {
+            band.setPixel(x, bandRow(y, 1), iArray);
+        }
+
+        @Override
+        public void setPixel(int x, int y, float[] fArray) {
+            band.setPixel(x, bandRow(y, 1), fArray);
+        }
+
+        @Override
+        public void setPixel(int x, int y, double[] dArray) {
+            band.setPixel(x, bandRow(y, 1), dArray);
+        }
+
+        @Override
+        public void setPixels(int x, int y, int w, int h, int[] iArray) {
+            band.setPixels(x, bandRow(y, h), w, h, iArray);
+        }
+
+        @Override
+        public void setPixels(int x, int y, int w, int h, float[] fArray) {
+            band.setPixels(x, bandRow(y, h), w, h, fArray);
+        }
+
+        @Override
+        public void setPixels(int x, int y, int w, int h, double[] dArray) {
+            band.setPixels(x, bandRow(y, h), w, h, dArray);
+        }
+
+        @Override
+        public void setSample(int x, int y, int b, int s) {
+            band.setSample(x, bandRow(y, 1), b, s);
+        }
+
+        @Override
+        public void setSample(int x, int y, int b, float s) {
+            band.setSample(x, bandRow(y, 1), b, s);
+        }
+
+        @Override
+        public void setSample(int x, int y, int b, double s) {
+            band.setSample(x, bandRow(y, 1), b, s);
+        }
+
+        @Override
+        public void setSamples(int x, int y, int w, int h, int b, int[] iArray) {
+            band.setSamples(x, bandRow(y, h), w, h, b, iArray);
+        }
+
+        @Override
+        public void setSamples(int x, int y, int w, int h, int b, float[] fArray) {
+            band.setSamples(x, bandRow(y, h), w, h, b, fArray);
+        }
+
+        @Override
+        public void setSamples(int x, int y, int w, int h, int b, double[] dArray) {
+            band.setSamples(x, bandRow(y, h), w, h, b, dArray);
+        }
+
+        @Override
+        public WritableRaster createWritableChild(int parentX, int parentY, int w, int h,
+                                                  int childMinX, int childMinY, int[] bandList) {
+            throw new UnsupportedOperationException("Band destinations have no child rasters");
+        }
+    }
+}
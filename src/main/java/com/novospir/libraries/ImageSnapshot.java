@@ -0,0 +1,76 @@
+package com.novospir.libraries;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * Immutable view of the content of an {@link InfiniteBufferedImage} at the time it was taken.
+ *
+ * <p>A snapshot holds the quadtree root of that moment and shares all nodes and tiles with the image.
+ * The image never modifies a shared node or tile: a write copies the nodes on the path from the root to
+ * the written tile, and the tile itself, so the image and the snapshot only diverge where the image was
+ * written after the snapshot was taken.
+ *
+ * <h3>Cost:</h3>
+ * <ul>
+ *   <li>Taking a snapshot is O(1) and allocates nothing but this object
+ *   <li>A snapshot keeps alive the tiles the image has rewritten since: one tile per written tile, however
+ *       many snapshots share it; tiles that were never written after a snapshot are not duplicated
+ *   <li>Dropping a snapshot releases the tiles only it still references, through garbage collection
+ * </ul>
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * Deque<ImageSnapshot> undo = new ArrayDeque<>();
+ * undo.push(image.snapshot());
+ * drawStroke(image.createGraphics());
+ * image.restore(undo.pop()); // undo the stroke
+ * }</pre>
+ *
+ * @see InfiniteBufferedImage#snapshot()
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public final class ImageSnapshot {
+    final InfiniteBufferedImage owner;
+    final QuadNode root;
+    private final int type;
+
+    ImageSnapshot(InfiniteBufferedImage owner, QuadNode root) {
+        this.owner = owner;
+        this.root = root;
+        this.type = owner.getType();
+    }
+
+    /** Gets the ARGB value at (x,y) when the snapshot was taken, or 0 if outside any filled tile */
+    public int getRGB(int x, int y) {
+        if (!root.contains(x, y)) return 0;
+        QuadNode leaf = root.findLeaf(x, y);
+        if (leaf == null || leaf.image == null) return 0;
+        return leaf.image.getRGB((int) (x - leaf.x), (int) (y - leaf.y));
+    }
+
+    /** Returns a region of the snapshot, in the same format as the tiles of the image */
+    public BufferedImage toBufferedImage(Rectangle bounds) {
+        BufferedImage out = new BufferedImage(bounds.width, bounds.height, type);
+        copyLeaves(root, bounds, out.getRaster());
+        return out;
+    }
+
+    /// @return true if the snapshot was taken from the given image, so it can be restored into it
+    public boolean isSnapshotOf(InfiniteBufferedImage image) {
+        return owner == image;
+    }
+
+    private static void copyLeaves(QuadNode node, Rectangle bounds, WritableRaster out) {
+        if (!bounds.intersects(node.x, node.y, node.size, node.size)) return;
+        if (node.isLeaf()) {
+            if (node.image != null) InfiniteBufferedImage.copyRect(out, (int) (node.x - bounds.x), (int) (node.y - bounds.y), node.image.getRaster());
+            return;
+        }
+        for (QuadNode child : node.children) {
+            if (child != null) copyLeaves(child, bounds, out);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.novospir.libraries;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of the work an {@link InfiniteBufferedImage} does, to find out why a canvas is slow or large.
+ * Enabled per image with {@link InfiniteImageOptions.Builder#collectStats(boolean)}; images without it skip
+ * every counter behind a single null check.
+ *
+ * <h3>Statistics:</h3>
+ * <ul>
+ *   <li><b>Tree shape</b> - allocated tiles, internal nodes and depth, computed by walking the tree when read
+ *   <li><b>Growth</b> - tiles created and root doublings
+ *   <li><b>Lookups</b> - single-point leaf lookups and the mean depth they descend
+ *   <li><b>Bounds</b> - recomputations of {@link InfiniteBufferedImage#getLogicalBounds()} and the pixels they scan
+ *   <li><b>Draws</b> - {@link QuadGraphics2D} calls per primitive and the mean number of tiles each touches
+ *   <li><b>Export</b> - encoded bytes written by {@code save}, {@code exportImage} and {@code exportTilePyramid}
+ * </ul>
+ *
+ * <p>Counters are cumulative since the image was created and {@link LongAdder}s, so they are cheap to update and
+ * safe to read from another thread, e.g. through {@link #registerMBean(String) JMX}. The tree shape is read
+ * without locking: while another thread writes, it is approximate.
+ *
+ * @see InfiniteBufferedImage#getStats()
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public final class ImageStats implements ImageStatsMXBean {
+    /** JMX domain of {@link #registerMBean(String)} */
+    public static final String JMX_DOMAIN = "com.novospir.libraries";
+
+    private final InfiniteBufferedImage image;
+    final LongAdder tileCreations = new LongAdder();
+    final LongAdder treeGrowths = new LongAdder();
+    final LongAdder leafLookups = new LongAdder();
+    final LongAdder leafHits = new LongAdder();
+    final LongAdder lookupDepth = new LongAdder();
+    final LongAdder boundsRecomputations = new LongAdder();
+    final LongAdder pixelsScanned = new LongAdder();
+    final LongAdder bytesExported = new LongAdder();
+    private final LongAdder drawTiles = new LongAdder();
+    private final Map<String, LongAdder> draws = new ConcurrentHashMap<>();
+
+    ImageStats(InfiniteBufferedImage image) {
+        this.image = image;
+    }
+
+    /// Counts a lookup; @param depth levels descended to the leaf, or -1 if no leaf holds the point
+    void countLookup(int depth) {
+        leafLookups.increment();
+        if (depth < 0) return;
+        leafHits.increment();
+        lookupDepth.add(depth);
+    }
+
+    /// Counts one call of a draw primitive that touched {@code tiles} leaves
+    void countDraw(String primitive, int tiles) {
+        draws.computeIfAbsent(primitive, p -> new LongAdder()).increment();
+        drawTiles.add(tiles);
+    }
+
+    @Override
+    public int getAllocatedTiles() {
+        return allocatedTiles(image.getRoot());
+    }
+
+    @Override
+    public int getInternalNodes() {
+        return internalNodes(image.getRoot());
+    }
+
+    @Override
+    public int getTreeDepth() {
+        return depth(image.getRoot());
+    }
+
+    @Override
+    public long getTileCreations() {
+        return tileCreations.sum();
+    }
+
+    @Override
+    public long getTreeGrowths() {
+        return treeGrowths.sum();
+    }
+
+    @Override
+    public long getLeafLookups() {
+        return leafLookups.sum();
+    }
+
+    /// @return mean levels descended by lookups that found a leaf, or 0 if none did
+    @Override
+    public double getAverageLookupDepth() {
+        long hits = leafHits.sum();
+        return hits == 0 ? 0 : (double) lookupDepth.sum() / hits;
+    }
+
+    @Override
+    public long getBoundsRecomputations() {
+        return boundsRecomputations.sum();
+    }
+
+    @Override
+    public long getPixelsScanned() {
+        return pixelsScanned.sum();
+    }
+
+    /// @return draw calls per primitive, sorted by name
+    @Override
+    public Map<String, Long> getDrawCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        draws.forEach((primitive, count) -> counts.put(primitive, count.sum()));
+        return counts;
+    }
+
+    /// @return mean tiles touched per draw call, or 0 if nothing was drawn
+    @Override
+    public double getAverageDrawFanOut() {
+        long calls = 0;
+        for (LongAdder count : draws.values()) calls += count.sum();
+        return calls == 0 ? 0 : (double) drawTiles.sum() / calls;
+    }
+
+    @Override
+    public long getBytesExported() {
+        return bytesExported.sum();
+    }
+
+    /**
+     * Returns every statistic under a stable name, e.g. for a metrics registry or a log line. Draw counts appear
+     * as {@code draws.<primitive>}.
+     *
+     * @return A new map in a fixed order; values are {@link Long}, {@link Integer} or {@link Double}
+     */
+    public Map<String, Number> toMap() {
+        Map<String, Number> map = new LinkedHashMap<>();
+        map.put("allocatedTiles", getAllocatedTiles());
+        map.put("internalNodes", getInternalNodes());
+        map.put("treeDepth", getTreeDepth());
+        map.put("tileCreations", getTileCreations());
+        map.put("treeGrowths", getTreeGrowths());
+        map.put("leafLookups", getLeafLookups());
+        map.put("averageLookupDepth", getAverageLookupDepth());
+        map.put("boundsRecomputations", getBoundsRecomputations());
+        map.put("pixelsScanned", getPixelsScanned());
+        getDrawCounts().forEach((primitive, count) -> map.put("draws." + primitive, count));
+        map.put("averageDrawFanOut", getAverageDrawFanOut());
+        map.put("bytesExported", getBytesExported());
+        return map;
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server as
+     * {@code com.novospir.libraries:type=InfiniteBufferedImage,name=<name>}. The server keeps the image
+     * reachable until the bean is unregistered with {@code unregisterMBean}.
+     *
+     * @param name Name of the image, e.g. the layer name; quoted as needed
+     * @return The name the bean was registered under
+     * @throws IllegalStateException if a bean is already registered under that name
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=InfiniteBufferedImage,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException(String.format("An image is already registered as '%s'", name), e);
+        } catch (JMException e) {
+            throw new IllegalArgumentException(String.format("Cannot register image statistics as '%s'", name), e);
+        }
+    }
+
+    private static int allocatedTiles(QuadNode node) {
+        QuadNode[] children = node.children; // read once: a writing thread may merge the node meanwhile
+        if (children == null) return InfiniteBufferedImage.isAllocated(node) ? 1 : 0;
+        int sum = 0;
+        for (QuadNode child : children) {
+            if (child != null) sum += allocatedTiles(child);
+        }
+        return sum;
+    }
+
+    private static int internalNodes(QuadNode node) {
+        QuadNode[] children = node.children;
+        if (children == null) return 0;
+        int sum = 1;
+        for (QuadNode child : children) {
+            if (child != null) sum += internalNodes(child);
+        }
+        return sum;
+    }
+
+    private static int depth(QuadNode node) {
+        QuadNode[] children = node.children;
+        if (children == null) return 0;
+        int max = 0;
+        for (QuadNode child : children) {
+            if (child != null) max = Math.max(max, depth(child));
+        }
+        return max + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageStats" + toMap();
+    }
+}
@@ -0,0 +1,49 @@
+package com.novospir.libraries;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link ImageStats} of one {@link InfiniteBufferedImage}, registered with
+ * {@link ImageStats#registerMBean(String)}. Each attribute is one entry of {@link ImageStats#toMap()}.
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public interface ImageStatsMXBean {
+
+    /// @return leaves that hold a tile, in the heap or paged out
+    int getAllocatedTiles();
+
+    /// @return nodes with children
+    int getInternalNodes();
+
+    /// @return levels below the root of the deepest node
+    int getTreeDepth();
+
+    /// @return tiles allocated since the image was created, including tiles released since
+    long getTileCreations();
+
+    /// @return times the root doubled to contain a write
+    long getTreeGrowths();
+
+    /// @return single-point leaf lookups, for reads and writes
+    long getLeafLookups();
+
+    /// @return mean levels descended by lookups that found a leaf
+    double getAverageLookupDepth();
+
+    /// @return times the logical bounds were recomputed by scanning every tile
+    long getBoundsRecomputations();
+
+    /// @return pixels read by bounds recomputations
+    long getPixelsScanned();
+
+    /// @return draw calls of each {@link QuadGraphics2D} primitive, by method name, e.g. "fillRect"
+    Map<String, Long> getDrawCounts();
+
+    /// @return mean tiles touched per draw call
+    double getAverageDrawFanOut();
+
+    /// @return encoded bytes written by save, exportImage and exportTilePyramid
+    long getBytesExported();
+}
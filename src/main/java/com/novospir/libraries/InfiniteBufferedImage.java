@@ -1,13 +1,31 @@
 package com.novospir.libraries;
 
-import com.novospir.libraries.config.ConfigLoader;
-
+import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * An infinite-space BufferedImage implementation using a quadtree-based tiling system.
@@ -39,8 +57,30 @@ import java.awt.image.Raster;
  * 
  * <h3>Implementation Notes:</h3>
  * <ul>
- *   <li>Tile size is configurable through config.properties
+ *   <li>Tile size is configurable per image through {@link InfiniteImageOptions}, defaulting to config.properties
+ *   <li>Tiles use the image type given at construction (TYPE_INT_ARGB by default), so
+ *       mask or heightmap layers can be stored as e.g. TYPE_BYTE_GRAY or TYPE_BYTE_BINARY
  *   <li>Accessing coordinates that haven't been written to returns transparent pixels
+ *   <li>With {@link InfiniteImageOptions.Builder#mergeThreshold(int) adaptive leaves}, dense regions
+ *       are merged into leaves larger than a tile; {@link #compact()} splits them again when sparse
+ *   <li>With {@link InfiniteImageOptions.Builder#mappedStorage(Path, long) mapped storage}, only a budget of
+ *       recently used tiles stays in the heap and the rest is paged to a memory-mapped file;
+ *       {@link #close()} deletes that file. {@link InfiniteImageOptions.Builder#spillStorage(Path, long) Spill storage}
+ *       instead compresses evicted tiles to a scratch file, to bound the memory of long sessions, and
+ *       {@link InfiniteImageOptions.Builder#compressedStorage(java.time.Duration) compressed storage} compresses
+ *       idle tiles in the heap
+ *   <li>Nodes have long coordinates: content may lie anywhere in [-2^62, 2^62) per axis, and writes beyond
+ *       that throw {@link IllegalArgumentException}. The int methods address the window of the canvas around
+ *       (0, 0); the long methods ({@link #getRGB(long, long)}, {@link #toBufferedImage(long, long, int, int)},
+ *       {@link #getLogicalBounds(long, long)}, {@link #createGraphics(long, long)}) address the rest. The root
+ *       grows to a far write in one step, and {@link #rebalance()} shrinks it again once far content is gone
+ *   <li>Dirty regions, change listeners, the autosave journal and tile pyramids report int rectangles, so they
+ *       only cover content within the int range
+ *   <li>{@link #tileIterator(TileOrder)} and {@link #tileSpliterator(TileOrder)} visit the allocated tiles in
+ *       Z-order or Hilbert order, one subtree after another, for whole-canvas passes and parallel streams;
+ *       {@link #tiles()} streams them with direct access to their pixels, for per-pixel transforms
+ *   <li>{@link #convolve(SeparableKernel, InfiniteBufferedImage)} blurs tile by tile in parallel, each tile reading
+ *       a halo of the kernel radius from its neighbours
  * </ul>
  * 
  * @see QuadNode
@@ -49,17 +89,29 @@ import java.awt.image.Raster;
  * @author Novospir, Adam
  * @since 1.0
  */
-public class InfiniteBufferedImage implements AbstractBufferedImage {
+public class InfiniteBufferedImage implements AbstractBufferedImage, Closeable {
 
-    private final int TILE_SIZE = ConfigLoader.getInstance().getInt("tile.size", 128);
+    private final InfiniteImageOptions options;
+    private final int TILE_SIZE;
+    private final int mergeThreshold;
+    private final int maxLeafSize;
     private QuadNode root;
     private final int type;
+    private final int numBands;
+    private final int alphaBand;
     private final InfiniteWritableRaster raster;
+    private final TilePager pager; // null unless tiles are paged out to a store
+    private int epoch; // nodes of older epochs are shared with snapshots and copied before they are written
+    private final DirtyRegions dirtyRegions;
+    private final List<ImageChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private Rectangle changed; // written since listeners were last notified, or null
+    private final ImageStats stats; // null unless statistics are collected
+    private int tilesCreated, tilesReleased; // running totals, for the tile counts of flight recorder events
 
-    private int minX = Integer.MAX_VALUE;
-    private int minY = Integer.MAX_VALUE;
-    private int maxX = Integer.MIN_VALUE;
-    private int maxY = Integer.MIN_VALUE;
+    private long minX = Long.MAX_VALUE;
+    private long minY = Long.MAX_VALUE;
+    private long maxX = Long.MIN_VALUE;
+    private long maxY = Long.MIN_VALUE;
     private boolean boundsValid = false;
 
     /**
@@ -76,130 +128,281 @@ public class InfiniteBufferedImage implements AbstractBufferedImage {
      * @param y The y-coordinate for the position of the starting image
      */
     public InfiniteBufferedImage(int x, int y) {
-        this.root = new QuadNode(x, y, TILE_SIZE);
-        this.type = BufferedImage.TYPE_INT_ARGB;
+        this(x, y, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Creates a scalable buffered image whose tiles use the given pixel format
+     * @param x The x-coordinate for the position of the starting image
+     * @param y The y-coordinate for the position of the starting image
+     * @param imageType One of the predefined {@link BufferedImage} types, e.g. {@link BufferedImage#TYPE_BYTE_GRAY}
+     * @throws IllegalArgumentException if {@code imageType} is {@link BufferedImage#TYPE_CUSTOM} or unknown
+     */
+    public InfiniteBufferedImage(int x, int y, int imageType) {
+        this(InfiniteImageOptions.builder().origin(x, y).imageType(imageType).build());
+    }
+
+    /**
+     * Creates a scalable buffered image with per-image tuning, such as its tile size
+     * @param options The tile size, tile format and origin of this image
+     * @see InfiniteImageOptions#builder()
+     */
+    public InfiniteBufferedImage(InfiniteImageOptions options) {
+        BufferedImage prototype = new BufferedImage(1, 1, options.getImageType());
+        ColorModel cm = prototype.getColorModel();
+
+        this.options = options;
+        this.TILE_SIZE = options.getTileSize();
+        this.mergeThreshold = options.getMergeThreshold();
+        this.maxLeafSize = options.getMaxLeafSize();
+        this.root = new QuadNode(options.getOriginX(), options.getOriginY(), TILE_SIZE);
+        this.type = options.getImageType();
+        this.numBands = prototype.getRaster().getNumBands();
+        // Indexed models keep their transparency in the palette, not in a band
+        this.alphaBand = cm.hasAlpha() && !(cm instanceof IndexColorModel) ? numBands - 1 : -1;
         this.raster = new InfiniteWritableRaster(this);
+        this.pager = options.createPager();
+        this.dirtyRegions = new DirtyRegions(TILE_SIZE, options.getOriginX(), options.getOriginY());
+        this.stats = options.isCollectingStats() ? new ImageStats(this) : null;
     }
 
-    /** Returns the image type. If it is not one of the known types, TYPE_CUSTOM is returned. <br>
-     *
-     * Currently, InfiniteBufferedImage is hard-coded to be TYPE_INT_ARGB
+    /**
+     * Creates a scalable buffered image whose tiles use the given pixel format
+     * </br> Initializes with an origin of (0, 0)
+     * @param imageType One of the predefined {@link BufferedImage} types, e.g. {@link BufferedImage#TYPE_BYTE_GRAY}
+     * @see #InfiniteBufferedImage(int, int, int)
+     */
+    public InfiniteBufferedImage(int imageType) {
+        this(0, 0, imageType);
+    }
+
+    /** Returns the image type used by every tile of this image (TYPE_INT_ARGB by default).
      * @return the image type of this BufferedImage.
      */
     protected int getType(){
         return type;
     }
 
+    /// @return the width and height of a leaf tile, in pixels; merged leaves span a power-of-two multiple of it
+    public int getTileSize() {
+        return TILE_SIZE;
+    }
+
+    /// @return the options this image was created with
+    public InfiniteImageOptions getOptions() {
+        return options;
+    }
+
+    /// @return the number of raster bands of a tile, e.g. 4 for TYPE_INT_ARGB and 1 for TYPE_BYTE_GRAY
+    int getNumBands() {
+        return numBands;
+    }
+
     /** Gets the ARGB value at (x,y), or 0 if outside any filled tile */
     public int getRGB(int x, int y) {
         QuadNode node = findLeaf(x, y);
         if (node == null || node.image == null) return 0;
-        return node.image.getRGB(x - node.x, y - node.y);
+        return node.image.getRGB((int) (x - node.x), (int) (y - node.y));
+    }
+
+    /** Gets the ARGB value at (x,y) anywhere on the canvas, or 0 if outside any filled tile */
+    public int getRGB(long x, long y) {
+        QuadNode node = findLeaf(x, y);
+        if (node == null || node.image == null) return 0;
+        return node.image.getRGB((int) (x - node.x), (int) (y - node.y));
     }
 
     /** Sets the ARGB value at (x,y), expanding the tree as needed */
     public void setRGB(int x, int y, int argb) {
         QuadNode node = findOrCreateLeaf(x, y);
-        node.image.setRGB(x - node.x, y - node.y, argb);
+        node.image.setRGB((int) (x - node.x), (int) (y - node.y), argb);
         this.markBoundsDirty();
     }
 
-    /** Returns the full raster across all tiles (for export) */
+    /**
+     * Sets the ARGB value at (x,y) anywhere on the canvas, expanding the tree as needed
+     * @throws IllegalArgumentException if the point lies outside [-2^62, 2^62) on either axis
+     */
+    public void setRGB(long x, long y, int argb) {
+        QuadNode node = findOrCreateLeaf(x, y);
+        node.image.setRGB((int) (x - node.x), (int) (y - node.y), argb);
+        this.markBoundsDirty();
+    }
+
+    /** Returns the full raster across all tiles (for export), in the same format as the tiles */
     public BufferedImage toBufferedImage(Rectangle bounds) {
-        BufferedImage out = new BufferedImage(bounds.width, bounds.height, type);
-        Graphics g = out.getGraphics();
-        paint(g, bounds.x, bounds.y);
-        g.dispose();
+        return toBufferedImage(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * Copies a region anywhere on the canvas into a BufferedImage, in the same format as the tiles.
+     *
+     * @param x Canvas x of the region's left edge, which becomes 0 in the result
+     * @param y Canvas y of the region's top edge, which becomes 0 in the result
+     * @param width The width of the region
+     * @param height The height of the region
+     * @return A new image of the region
+     */
+    public BufferedImage toBufferedImage(long x, long y, int width, int height) {
+        BufferedImage out = new BufferedImage(width, height, type);
+        WritableRaster outRaster = out.getRaster();
+        CanvasEvents.Export event = new CanvasEvents.Export();
+        event.begin();
+        for (QuadNode leaf : findLeaves(x, y, width, height, false)) {
+            if (leaf == null || leaf.image == null) continue;
+            // Raw raster copy: exact for every format, clipped to the output
+            copyRect(outRaster, (int) (leaf.x - x), (int) (leaf.y - y), leaf.image.getRaster());
+            event.tiles++;
+        }
+        if (event.shouldCommit()) {
+            event.setRegion(x, y, width, height);
+            event.commit();
+        }
         return out;
     }
 
     /**
      * Returns the calculated bounding Rectangle of this InfiniteBufferedImage.
      * @return the calculated bounding box of this InfiniteBufferedImage.
+     * @throws ArithmeticException if the content extends past the int range, see {@link #getLogicalBounds(long, long)}
      */
     public Rectangle getLogicalBounds(){
+        return getLogicalBounds(0, 0);
+    }
+
+    /**
+     * Returns the calculated bounding box of the content, relative to a point of the canvas, e.g. the origin
+     * of a {@link #createGraphics(long, long) long-origin Graphics}.
+     *
+     * @param originX Canvas x that becomes 0 in the result
+     * @param originY Canvas y that becomes 0 in the result
+     * @return the bounding box of the content, translated by (-originX, -originY)
+     * @throws ArithmeticException if the translated bounds do not fit in a Rectangle
+     */
+    public Rectangle getLogicalBounds(long originX, long originY) {
         // ie. if destroy() is called, needs to be able to revert to previous "logical bounds"
         if (!boundsValid) {
             // Only recompute if we've never computed, grown or if we've shrunk
             recomputeBounds();
         }
-        int x = Math.min(minX, maxX);
-        int y = Math.min(minY, maxY);
-        int w = Math.abs(maxX - minX);
-        int h = Math.abs(maxY - minY);
-        return new Rectangle(x, y, w, h);
+        long x = Math.min(minX, maxX) - originX;
+        long y = Math.min(minY, maxY) - originY;
+        long w = Math.abs(maxX - minX);
+        long h = Math.abs(maxY - minY);
+        return new Rectangle(Math.toIntExact(x), Math.toIntExact(y), Math.toIntExact(w), Math.toIntExact(h));
     }
 
     protected void markBoundsDirty() {
         boundsValid = false;
+        // Every write ends here, after its pixels have changed
+        if (changed != null) {
+            Rectangle region = changed;
+            changed = null;
+            for (ImageChangeListener listener : listeners) listener.imageChanged(this, region);
+        }
+    }
+
+    /// Records that [x, x+w) x [y, y+h) is about to be written: marks its tiles dirty, and notes it for the listeners
+    private void markWritten(long x, long y, long w, long h) {
+        // Both report int rectangles, so they only see the part of the write within the int range
+        Rectangle region = DirtyRegions.clip(x, y, w, h);
+        if (region == null) return;
+        dirtyRegions.add(region.x, region.y, region.width, region.height);
+        if (listeners.isEmpty()) return;
+        if (changed == null) changed = region;
+        else changed.add(region);
     }
 
     private void recomputeBounds() {
-        minX = Integer.MAX_VALUE;
-        minY = Integer.MAX_VALUE;
-        maxX = Integer.MIN_VALUE;
-        maxY = Integer.MIN_VALUE;
+        minX = Long.MAX_VALUE;
+        minY = Long.MAX_VALUE;
+        maxX = Long.MIN_VALUE;
+        maxY = Long.MIN_VALUE;
 
+        if (stats != null) stats.boundsRecomputations.increment();
+        CanvasEvents.BoundsRecomputation event = new CanvasEvents.BoundsRecomputation();
+        event.begin();
+        int tiles = 0;
         if (root != null) {
-            walkQuadTreeForBounds(root);
+            tiles = walkQuadTreeForBounds(root);
         }
 
         // Handle case where no tiles exist
-        if (minX == Integer.MAX_VALUE) {
+        if (minX == Long.MAX_VALUE) {
             minX = minY = maxX = maxY = 0;
         }
 
         boundsValid = true;
+        if (event.shouldCommit()) {
+            event.tiles = tiles;
+            event.setRegion(minX, minY, maxX - minX, maxY - minY);
+            event.commit();
+        }
     }
 
-    private void walkQuadTreeForBounds(QuadNode node) {
-        if (node == null) return;
+    /// @return the number of tiles scanned
+    private int walkQuadTreeForBounds(QuadNode node) {
+        if (node == null) return 0;
 
         // If it's a leaf node, scan for actual data bounds
-        if (node.image != null) {
+        if (isAllocated(node)) {
             scanTileForDataBounds(node);
-            return;
+            return 1;
         }
 
         // If it's an internal node, recurse into children
+        int tiles = 0;
         if (node.children != null) {
             for (QuadNode child : node.children) {
                 if (child != null) {
-                    walkQuadTreeForBounds(child);
+                    tiles += walkQuadTreeForBounds(child);
                 }
             }
         }
+        return tiles;
     }
 
     private void scanTileForDataBounds(QuadNode node) {
-        Raster raster = node.image.getRaster();
-        int tileX = node.x;
-        int tileY = node.y;
-        int tileWidth = node.size;
-        int tileHeight = node.size;
-        
-        // Scan the tile to find actual pixel data bounds
-        boolean foundData = false;
+        Raster raster = scanImage(node).getRaster();
+        long tileX = node.x;
+        long tileY = node.y;
+        int tileWidth = raster.getWidth();
+        int tileHeight = raster.getHeight();
+        if (stats != null) stats.pixelsScanned.add((long) tileWidth * tileHeight);
+
+        // Scan the tile row by row to find actual pixel data bounds
         int tileMinX = Integer.MAX_VALUE;
         int tileMinY = Integer.MAX_VALUE;
         int tileMaxX = Integer.MIN_VALUE;
         int tileMaxY = Integer.MIN_VALUE;
-        
-        // Scan for non-transparent pixels
+
+        int[] row = new int[tileWidth * numBands];
         for (int y = 0; y < tileHeight; y++) {
-            for (int x = 0; x < tileWidth; x++) {
-                if (hasNonTransparentPixel(raster, x, y)) {
-                    foundData = true;
-                    tileMinX = Math.min(tileMinX, x);
-                    tileMinY = Math.min(tileMinY, y);
-                    tileMaxX = Math.max(tileMaxX, x + 1);
-                    tileMaxY = Math.max(tileMaxY, y + 1);
+            int first = -1, last = -1;
+            if (alphaBand >= 0) {
+                // Formats with alpha: a pixel is content if its alpha is non-zero
+                raster.getSamples(0, y, tileWidth, 1, alphaBand, row);
+                for (int x = 0; x < tileWidth; x++) {
+                    if (row[x] != 0) { if (first < 0) first = x; last = x; }
+                }
+            } else {
+                // Other formats: a pixel is content if any band is non-zero
+                raster.getPixels(0, y, tileWidth, 1, row);
+                for (int x = 0; x < tileWidth; x++) {
+                    for (int b = 0; b < numBands; b++) {
+                        if (row[x * numBands + b] != 0) { if (first < 0) first = x; last = x; break; }
+                    }
                 }
             }
+            if (first < 0) continue;
+            tileMinX = Math.min(tileMinX, first);
+            tileMaxX = Math.max(tileMaxX, last + 1);
+            tileMinY = Math.min(tileMinY, y);
+            tileMaxY = y + 1;
         }
-        
+
         // Update global bounds with actual data bounds
-        if (foundData) {
+        if (tileMaxY != Integer.MIN_VALUE) {
             minX = Math.min(minX, tileX + tileMinX);
             minY = Math.min(minY, tileY + tileMinY);
             maxX = Math.max(maxX, tileX + tileMaxX);
@@ -207,24 +410,22 @@ public class InfiniteBufferedImage implements AbstractBufferedImage {
         }
     }
 
-    private boolean hasNonTransparentPixel(Raster raster, int x, int y) {
-        // Check if pixel has non-transparent data
-        // For RGB images, check if alpha channel is non-zero
-        if (raster.getNumBands() >= 4) {
-            return raster.getSample(x, y, 3) != 0; // Alpha channel
-        }
-        // For other formats, check if any band is non-zero
-        for (int b = 0; b < raster.getNumBands(); b++) {
-            if (raster.getSample(x, y, b) != 0) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /** Returns a Graphics2D to draw onto this image via a wrapper */
     public Graphics2D createGraphics() {
-        return new QuadGraphics2D(this);
+        return new QuadGraphics2D(this, 0, 0);
+    }
+
+    /**
+     * Returns a Graphics2D whose user space (0, 0) is at a point of the canvas, to draw on content beyond the int
+     * range. Its transform, clip and coordinates are relative to that point, like those of a Graphics translated
+     * by (originX, originY), but without the precision loss of a translation in {@code double}.
+     *
+     * @param originX Canvas x of the Graphics' origin
+     * @param originY Canvas y of the Graphics' origin
+     * @return A Graphics2D drawing onto this image
+     */
+    public Graphics2D createGraphics(long originX, long originY) {
+        return new QuadGraphics2D(this, originX, originY);
     }
 
     /** Returns the aggregate/virtual raster - processes over all effected leaf on each read/write */
@@ -232,14 +433,14 @@ public class InfiniteBufferedImage implements AbstractBufferedImage {
         return this.raster;
     }
 
-    /// @return the number of leaves currently allocated for this InfiniteBufferedImage
+    /// @return the number of leaves currently allocated for this InfiniteBufferedImage (a merged leaf counts once)
     public int getAllocatedLeafCount() {
         return countAllocatedLeaves(root);
     }
 
     private int countAllocatedLeaves(QuadNode node) {
         if (node == null) return 0;
-        if (node.isLeaf()) return node.image != null ? 1 : 0;
+        if (node.isLeaf()) return isAllocated(node) ? 1 : 0;
         int sum = 0;
         if (node.children != null) {
             for (QuadNode c : node.children) sum += countAllocatedLeaves(c);
@@ -247,88 +448,900 @@ public class InfiniteBufferedImage implements AbstractBufferedImage {
         return sum;
     }
 
-    QuadNode findLeaf(int x, int y) {
-        QuadNode node = root;
-        while (!node.isLeaf()) {
-            int index = node.getQuadrant(x, y);
-            if (node.children[index] == null) return null;
-            node = node.children[index];
+    /**
+     * Returns the allocated tiles in the given order. Tiles paged out to a tile store are included and stay
+     * paged out. The image must not be modified until the iteration is done.
+     *
+     * @param order Z-order, the cheapest, or Hilbert order, in which consecutive tiles are neighbours
+     * @return An iterator over the allocated tiles; a merged leaf is one tile
+     */
+    public Iterator<TileView> tileIterator(TileOrder order) {
+        return Spliterators.iterator(tileSpliterator(order));
+    }
+
+    /**
+     * Returns the allocated tiles in the given order, for {@link java.util.stream.StreamSupport#stream parallel
+     * streams}. Splits follow the quadtree, so each part of a split is a run of whole subtrees: a contiguous
+     * region of the canvas and a contiguous run of the order. The size estimate is exact before the first split.
+     * The image must not be modified until the stream is done.
+     *
+     * <pre>{@code
+     * long merged = StreamSupport.stream(canvas.tileSpliterator(TileOrder.HILBERT), true)
+     *         .filter(tile -> tile.getSize() > canvas.getTileSize())
+     *         .count();
+     * }</pre>
+     *
+     * @param order Z-order, the cheapest, or Hilbert order, in which consecutive tiles are neighbours
+     * @return An ordered spliterator over the allocated tiles; a merged leaf is one tile
+     */
+    public Spliterator<TileView> tileSpliterator(TileOrder order) {
+        return leafSpliterator(order, leaf -> new TileView(this, leaf));
+    }
+
+    /**
+     * Streams the allocated tiles in Z-order, with direct access to their pixels; see {@link #tiles(TileOrder)}.
+     *
+     * @return A sequential stream of the allocated tiles, which {@link Stream#parallel()} splits by subtree
+     */
+    public Stream<TileView> tiles() {
+        return tiles(TileOrder.Z_ORDER);
+    }
+
+    /**
+     * Streams the allocated tiles in the given order, for transforms that read and write whole tiles instead of
+     * single pixels through {@link #getRGB(int, int)} and {@link #setRGB(int, int, int)}. A parallel stream splits
+     * by subtree, so each thread works on its own region of the canvas.
+     *
+     * <p>Each {@link TileView} gives the tile's raster or packed {@code int[]} pixels. Writing through a view
+     * copies a tile shared with a snapshot first and marks the tile dirty; change listeners are notified when
+     * the stream is closed, or otherwise with the next write. Only unallocated tiles stay untouched: a transform
+     * that makes transparent pixels opaque must write them with {@code setRGB} or a Graphics instead. The image
+     * must not be modified other than through the views until the stream is done.
+     *
+     * @param order Z-order, the cheapest, or Hilbert order, in which consecutive tiles are neighbours
+     * @return A sequential stream of the allocated tiles; close it to notify the change listeners of its writes
+     */
+    public Stream<TileView> tiles(TileOrder order) {
+        return StreamSupport.stream(tileSpliterator(order), false).onClose(this::flushChanges);
+    }
+
+    /// Walks the allocated leaves of the current tree; see {@link LeafSpliterator}
+    <T> Spliterator<T> leafSpliterator(TileOrder order, Function<QuadNode, ? extends T> view) {
+        Objects.requireNonNull(order, "order");
+        return new LeafSpliterator<>(root, order, view, getAllocatedLeafCount());
+    }
+
+    /**
+     * Splits merged leaves that have an entirely empty quadrant and releases leaves without content.
+     *
+     * <p>Merged leaves only exist with {@link InfiniteImageOptions.Builder#mergeThreshold(int) adaptive leaves};
+     * releasing empty tiles is useful for every image, e.g. after erasing with {@link AlphaComposite#Clear}.
+     * Pixel values are unchanged. This scans every allocated pixel, so call it at quiet points
+     * (after a batch of edits) rather than after every draw. With paged or compressed tile storage, it also
+     * evicts tiles that are over budget or idle.
+     */
+    public void compact() {
+        CanvasEvents.Compaction event = new CanvasEvents.Compaction();
+        event.begin();
+        int released = tilesReleased;
+        if (pager != null) pager.trim();
+        QuadNode compacted = compactNode(root);
+        root = compacted != null ? compacted : newNode(root.x, root.y, root.size);
+        if (event.shouldCommit()) {
+            event.tiles = tilesReleased - released;
+            event.setRegion(root);
+            event.commit();
         }
-        return node.contains(x, y) ? node : null;
     }
 
-    /// Guarantees to return a QuadNode with a non-null image
-    QuadNode findOrCreateLeaf(int x, int y) {
-        // If tree is too small, grow tree to contain given coordinates
-        while (!root.contains(x, y)) {
-            root = root.growToFit(x, y);
+    /**
+     * Re-roots the tree on its content, so lookups descend about log2(extent / tile size) levels again.
+     *
+     * <p>The root only ever grows: after far-away content is cleared and {@link #compact() compacted}, every
+     * lookup still descends from a root sized for the old extent. This rebuilds the internal nodes under the
+     * smallest root that spans the allocated leaves, centered on them. Leaves and their tiles are kept as they
+     * are, so pixel values, snapshots and paged-out tiles are unaffected. Costs one walk of the tree; call it at
+     * quiet points, e.g. after {@code compact()}.
+     */
+    public void rebalance() {
+        rebuildRoot(false, 0, 0);
+    }
+
+    /**
+     * Rebuilds the internal nodes under the smallest root spanning the allocated leaves and, if {@code fit}, a point.
+     *
+     * @return true if the root changed
+     * @throws IllegalArgumentException if the content and the point cannot fit under one root
+     */
+    private boolean rebuildRoot(boolean fit, long px, long py) {
+        List<QuadNode> leaves = new ArrayList<>();
+        collectAllocated(root, leaves);
+        if (leaves.isEmpty() && !fit) {
+            if (root.size == TILE_SIZE) return false;
+            root = newNode(root.x, root.y, TILE_SIZE);
+            return true;
         }
-        // Recursively search for leaf at given coordinates
-        QuadNode leaf = getOrCreateLeafAt(x, y, root, root.size);
-        if (leaf.image == null) leaf.image = new BufferedImage(TILE_SIZE, TILE_SIZE, type);
-        return leaf;
+        // Merged leaves stay aligned to their size relative to the root, so the root moves in steps of the largest
+        long unit = TILE_SIZE;
+        long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        for (QuadNode leaf : leaves) {
+            unit = Math.max(unit, leaf.size);
+            minX = Math.min(minX, leaf.x);
+            minY = Math.min(minY, leaf.y);
+            maxX = Math.max(maxX, leaf.x + leaf.size);
+            maxY = Math.max(maxY, leaf.y + leaf.size);
+        }
+        if (fit) {
+            minX = Math.min(minX, px);
+            minY = Math.min(minY, py);
+            maxX = Math.max(maxX, px + 1);
+            maxY = Math.max(maxY, py + 1);
+        }
+        // Grow a cell of that size at the top-left of the content until it spans the content, as writes would
+        QuadNode corner = new QuadNode(root.x + Math.floorDiv(minX - root.x, unit) * unit,
+                root.y + Math.floorDiv(minY - root.y, unit) * unit, unit);
+        QuadNode rebuilt = corner.growToFit(maxX - 1, maxY - 1);
+        if (!fit && rebuilt.size >= root.size) return false; // already as small as its content allows
+
+        QuadNode top = newNode(rebuilt.x, rebuilt.y, rebuilt.size);
+        for (QuadNode leaf : leaves) {
+            if (leaf.size == top.size) {
+                top = leaf;
+                break;
+            }
+            QuadNode node = top;
+            while (node.size / 2 > leaf.size) {
+                long half = node.size / 2;
+                int quadrant = node.getQuadrant(leaf.x, leaf.y);
+                if (node.children == null) node.children = new QuadNode[4];
+                if (node.children[quadrant] == null) {
+                    node.children[quadrant] = newNode(node.x + (quadrant & 1) * half, node.y + (quadrant >> 1) * half, half);
+                }
+                node = node.children[quadrant];
+            }
+            if (node.children == null) node.children = new QuadNode[4];
+            node.children[node.getQuadrant(leaf.x, leaf.y)] = leaf;
+        }
+        root = top;
+        return true;
     }
 
-    List<QuadNode> findLeaves(Rectangle2D bounds, boolean createIfMissing){
-        return findLeaves((int) bounds.getX(), (int) bounds.getY(), (int) bounds.getWidth(), (int) bounds.getHeight(), createIfMissing);
+    private static void collectAllocated(QuadNode node, List<QuadNode> out) {
+        if (node.isLeaf()) {
+            if (isAllocated(node)) out.add(node);
+            return;
+        }
+        for (QuadNode child : node.children) {
+            if (child != null) collectAllocated(child, out);
+        }
     }
 
-    List<QuadNode> findLeaves(int x, int y, int w, int h, boolean createIfMissing){
-        List<QuadNode> nodes = new ArrayList<>();
-        int endX = x + w - 1;
-        int endY = y + h - 1;
+    /**
+     * Compacts a subtree, copying only the nodes that change if they are shared with a snapshot.
+     *
+     * @return the node itself if nothing changed, its compacted replacement, or {@code null} if it holds no content
+     */
+    private QuadNode compactNode(QuadNode node) {
+        if (node.isLeaf()) {
+            if (!isAllocated(node)) return null;
+            if (node.size <= TILE_SIZE) {
+                if (hasContent(scanImage(node).getRaster(), 0, 0, TILE_SIZE, TILE_SIZE)) return node;
+                if (pager != null) pager.release(node);
+                tilesReleased++;
+                return null;
+            }
+            QuadNode split = splitIfSparse(node);
+            if (split == null) return node;
+            node = split;
+        }
+
+        QuadNode[] children = null;
+        boolean empty = true;
+        for (int i = 0; i < 4; i++) {
+            QuadNode child = node.children[i];
+            if (child == null) continue;
+            QuadNode compacted = compactNode(child);
+            if (compacted != child) {
+                if (children == null) children = node.children.clone();
+                children[i] = compacted;
+            }
+            if (compacted != null) empty = false;
+        }
+        if (empty) return null;
+        if (children == null) return node;
+        node = owned(node, false);
+        node.children = children;
+        return node;
+    }
 
-        int startTileX = Math.floorDiv(x, TILE_SIZE) * TILE_SIZE;
-        int endTileX   = Math.floorDiv(endX, TILE_SIZE) * TILE_SIZE;
-        int startTileY = Math.floorDiv(y, TILE_SIZE) * TILE_SIZE;
-        int endTileY   = Math.floorDiv(endY, TILE_SIZE) * TILE_SIZE;
+    /// @return a new node with the non-empty quadrants of a merged leaf as children, or {@code null} if no quadrant is empty
+    private QuadNode splitIfSparse(QuadNode node) {
+        int half = (int) (node.size / 2); // merged leaves are at most maxLeafSize
+        Raster merged = node.image.getRaster();
+        boolean[] occupied = new boolean[4];
+        boolean sparse = false;
+        for (int i = 0; i < 4; i++) {
+            occupied[i] = hasContent(merged, (i & 1) * half, (i >> 1) * half, half, half);
+            sparse |= !occupied[i];
+        }
+        if (!sparse) return null;
 
-        for (int i = startTileX; i <= endTileX; i += TILE_SIZE) {
-            for (int j = startTileY; j <= endTileY; j += TILE_SIZE) {
-                nodes.add(createIfMissing ? findOrCreateLeaf(i, j) : findLeaf(i, j));
+        QuadNode split = newNode(node.x, node.y, node.size);
+        split.children = new QuadNode[4];
+        for (int i = 0; i < 4; i++) {
+            if (!occupied[i]) continue;
+            QuadNode child = newNode(node.x + (i & 1) * half, node.y + (i >> 1) * half, half);
+            child.image = new BufferedImage(half, half, type);
+            copyRect(child.image.getRaster(), (int) (node.x - child.x), (int) (node.y - child.y), merged);
+            split.children[i] = child;
+        }
+        return split;
+    }
+
+    /// @return true if any pixel of the region has a non-zero alpha (or any non-zero band, for formats without alpha)
+    private boolean hasContent(Raster raster, int x, int y, int w, int h) {
+        int[] row = new int[w * numBands];
+        for (int ry = y; ry < y + h; ry++) {
+            if (alphaBand >= 0) {
+                raster.getSamples(x, ry, w, 1, alphaBand, row);
+                for (int i = 0; i < w; i++) if (row[i] != 0) return true;
+            } else {
+                raster.getPixels(x, ry, w, 1, row);
+                for (int i = 0; i < w * numBands; i++) if (row[i] != 0) return true;
             }
         }
-        return nodes;
+        return false;
+    }
+
+    /**
+     * Saves every allocated leaf to a sparse tiled file. Only content is written: the file size
+     * depends on the allocated tiles, not on the extent of the canvas. Fully transparent tiles are
+     * skipped and uniform tiles are stored as a single pixel; other tiles are Deflate-compressed.
+     *
+     * @param path The file to create or overwrite
+     * @throws IOException if the file cannot be written
+     * @see #load(Path)
+     */
+    public void save(Path path) throws IOException {
+        InfiniteImageFile.write(this, path);
+        countExported(path);
+    }
+
+    /**
+     * Loads an image written by {@link #save(Path)}, including its options (tile size, type and merging).
+     *
+     * @param path The file to read
+     * @return A new InfiniteBufferedImage with the saved content
+     * @throws IOException if the file cannot be read or is not a valid infinite image file
+     */
+    public static InfiniteBufferedImage load(Path path) throws IOException {
+        return InfiniteImageFile.read(path);
+    }
+
+    /**
+     * Starts an autosave journal in a directory: saves a checkpoint of the current content now, then each
+     * {@link TileJournal#commit()} appends only the tiles written since the previous commit. Once the journal
+     * exceeds {@code maxJournalBytes}, the next commit writes a new checkpoint instead. The journal drains
+     * {@link #drainDirtyRegions()} for its own use.
+     *
+     * @param directory Existing directory for the checkpoint and journal files; previous ones are replaced
+     * @param maxJournalBytes Journal size beyond which a commit takes a new checkpoint, e.g. {@code 64L << 20}
+     * @return The open journal; close it when done
+     * @throws IOException if the checkpoint or the journal cannot be written
+     * @see #recover(Path)
+     */
+    public TileJournal openJournal(Path directory, long maxJournalBytes) throws IOException {
+        return TileJournal.open(this, directory, maxJournalBytes);
+    }
+
+    /**
+     * Restores an image autosaved with {@link #openJournal(Path, long)}, e.g. after a crash: loads the last
+     * checkpoint and replays every committed batch of the journal. A batch that was cut short is dropped.
+     *
+     * @param directory The directory of the journal
+     * @return A new InfiniteBufferedImage with the content of the last commit
+     * @throws IOException if the checkpoint is missing or a file is not a valid checkpoint or journal
+     */
+    public static InfiniteBufferedImage recover(Path directory) throws IOException {
+        return TileJournal.recover(directory);
+    }
+
+    /**
+     * Draws an image file (any format ImageIO reads, e.g. PNG or JPEG) with its top-left corner at (x, y),
+     * decoding it in bands of tile rows instead of as one BufferedImage, so sources larger than the heap can be
+     * imported. Fully transparent blocks of the source are skipped and allocate no tiles; everything else is
+     * composited as {@code createGraphics().drawImage(ImageIO.read(source), x, y, null)} would.
+     *
+     * @param source The image file
+     * @param x Canvas x of the source's left edge
+     * @param y Canvas y of the source's top edge
+     * @throws IOException if the file cannot be read or no ImageIO reader supports it
+     * @throws IllegalArgumentException if the source would extend past the integer coordinate range
+     */
+    public void importImage(Path source, int x, int y) throws IOException {
+        ImageImporter.importImage(this, source, x, y);
+    }
+
+    /**
+     * Returns a read-only view of a region, in this image's type, that renders full-width strips of one tile row
+     * on demand instead of allocating the region up front. Consumers that read it top to bottom through
+     * {@link RenderedImage#getData(Rectangle)} hold one strip at a time; {@code getData()} copies the whole region.
+     * The view is not a snapshot: it reads the tiles when a strip is first requested.
+     *
+     * @param region The region of the canvas, which becomes (0, 0) in the view
+     * @return A view whose tiles are the strips of the region
+     * @throws IllegalArgumentException if the region is empty
+     */
+    public RenderedImage asRenderedImage(Rectangle region) {
+        return new RegionImage(this, region);
+    }
+
+    /**
+     * Writes a region to an image file strip by strip, so regions too large for a single BufferedImage can be
+     * exported. The PNG, TIFF and BMP writers pull rows as they encode and keep memory to one tile row of the
+     * region; the JPEG writer requests the whole image at once and has no such bound.
+     *
+     * @param region The region of the canvas to write
+     * @param formatName An ImageIO format name, e.g. "png" or "tiff"
+     * @param target The file to create or overwrite
+     * @throws IOException if the file cannot be written or no ImageIO writer supports this format and image type
+     * @throws IllegalArgumentException if the region is empty
+     */
+    public void exportImage(Rectangle region, String formatName, Path target) throws IOException {
+        if (!ImageIO.write(asRenderedImage(region), formatName, target.toFile())) throw noWriter(formatName);
+        countExported(target);
+    }
+
+    /**
+     * Writes a region to a stream strip by strip, as {@link #exportImage(Rectangle, String, Path)} does.
+     * The stream is not closed.
+     *
+     * @param region The region of the canvas to write
+     * @param formatName An ImageIO format name, e.g. "png" or "tiff"
+     * @param out The stream to write to
+     * @throws IOException if the stream cannot be written or no ImageIO writer supports this format and image type
+     * @throws IllegalArgumentException if the region is empty
+     */
+    public void exportImage(Rectangle region, String formatName, OutputStream out) throws IOException {
+        if (stats != null) out = new CountingOutputStream(out, stats.bytesExported);
+        if (!ImageIO.write(asRenderedImage(region), formatName, out)) throw noWriter(formatName);
+    }
+
+    /**
+     * Writes the content as a zoom-level pyramid of PNG tiles, {@code directory/z/x/y.png}, for slippy-map and
+     * deep-zoom viewers. The deepest level is at full resolution and each level above halves it, down to a single
+     * tile at level 0; tiles are numbered from the top-left corner of {@link #getLogicalBounds()}. Empty regions
+     * are skipped and have no files. Subtrees are exported in parallel; the image must not be modified meanwhile.
+     *
+     * @param directory The directory to write into; created if missing
+     * @param tileSize The side of each output tile, e.g. 256; a power of two
+     * @return the deepest zoom level, or -1 if the image is empty and nothing was written
+     * @throws IOException if a tile cannot be written
+     * @throws IllegalArgumentException if the tile size is not a power of two
+     * @see TilePyramid
+     */
+    public int exportTilePyramid(Path directory, int tileSize) throws IOException {
+        return TilePyramid.write(this, directory, tileSize);
+    }
+
+    /**
+     * Convolves the content with a separable kernel, e.g. a Gaussian or box blur, into a new image with the same
+     * options; see {@link #convolve(SeparableKernel, InfiniteBufferedImage)}.
+     *
+     * @param kernel The kernel, e.g. {@link SeparableKernel#gaussian(double)}
+     * @return A new image holding the filtered content
+     */
+    public InfiniteBufferedImage convolve(SeparableKernel kernel) {
+        InfiniteBufferedImage destination = new InfiniteBufferedImage(options);
+        convolve(kernel, destination);
+        return destination;
     }
 
     /**
-     Recursively navigates the quadtree to locate the leaf node that contains the given global
-     coordinates. If necessary, this method will create any missing intermediate nodes along
-     the path to ensure the leaf exists.
+     * Convolves the content with a separable kernel, tile by tile, and writes the result into another image.
+     * Only the allocated tiles and the tiles within the kernel radius of them are filtered; each reads a halo of
+     * the radius from its neighbours, so the result has no seams at tile edges. Tiles are filtered in parallel.
+     * Alpha is premultiplied during the convolution, so transparent pixels do not darken the edges of content.
+     *
+     * <p>Destination tiles that receive content are replaced; tiles the kernel does not reach keep their pixels.
+     * Neither image may be modified until the call returns.
+     *
+     * @param kernel      The kernel, e.g. {@link SeparableKernel#gaussian(double)} or {@link SeparableKernel#box(int)}
+     * @param destination The image to write into; may have a different tile size or image type
+     * @throws IllegalArgumentException if the destination is this image, or the halo of content near the edge of
+     *                                  the coordinate range falls outside it
+     * @see SeparableConvolution
+     */
+    public void convolve(SeparableKernel kernel, InfiniteBufferedImage destination) {
+        SeparableConvolution.apply(this, Objects.requireNonNull(kernel, "kernel"), Objects.requireNonNull(destination, "destination"));
+    }
+
+    /// Adds the size of a file just written to the exported bytes, if statistics are collected
+    void countExported(Path file) throws IOException {
+        if (stats != null) stats.bytesExported.add(Files.size(file));
+    }
+
+    private IOException noWriter(String formatName) {
+        return new IOException(String.format("No ImageIO writer for format '%s' and image type %d", formatName, type));
+    }
+
+    /**
+     * Takes an immutable snapshot of the current content in constant time, e.g. for an undo history.
+     *
+     * <p>The snapshot shares every quadtree node and tile with this image. Afterwards, writes copy the
+     * nodes on the path to each written tile and the tile itself before changing it, so a snapshot only
+     * costs the memory of the tiles written since it was taken. Reading and compacting are unaffected.
+     *
+     * @return A read-only view of the content at this point, which {@link #restore(ImageSnapshot)} can bring back
+     * @throws UnsupportedOperationException if tiles are paged out to a store, since stored tiles cannot be shared
+     */
+    public ImageSnapshot snapshot() {
+        if (pager != null) {
+            throw new UnsupportedOperationException("Snapshots are not supported with " + options.getTileStorage() + " tile storage");
+        }
+        epoch++; // every existing node now belongs to the snapshot
+        return new ImageSnapshot(this, root);
+    }
+
+    /**
+     * Replaces the content with a snapshot of this image in constant time; the snapshot stays valid and can
+     * be restored again. Content not held by any snapshot is released.
+     *
+     * @param snapshot A snapshot taken from this image
+     * @throws IllegalArgumentException if the snapshot was taken from another image
+     */
+    public void restore(ImageSnapshot snapshot) {
+        if (snapshot.owner != this) throw new IllegalArgumentException("Snapshot was taken from another image");
+        // Snapshot nodes are older than the current epoch, so the next writes copy them
+        QuadNode previous = root;
+        root = snapshot.root;
+        markChanged(previous, root);
+        markBoundsDirty();
+    }
+
+    /**
+     * Returns the tiles written since the last call, and starts recording anew. Each region is the part of
+     * one tile (a cell of the tile grid) that was written: exactly the pixels set by {@code setRGB} and
+     * {@code setPixel}, and the whole tile for draws and bulk raster writes, whose pixels are not tracked
+     * individually. A {@link #restore(ImageSnapshot) restore} marks the tiles that differ from the snapshot.
+     *
+     * <p>Use it to repaint or save only what changed instead of rescanning the canvas. A dirty tile may have
+     * been cleared since, so consumers that save should expect empty regions. Only the int range of the canvas
+     * is tracked: writes through the long methods beyond it are not reported.
+     *
+     * @return The written regions in row-major tile order, at most one per tile; empty if nothing was written
+     */
+    public List<Rectangle> drainDirtyRegions() {
+        return dirtyRegions.drain();
+    }
+
+    /// Registers a listener called after each write, see {@link ImageChangeListener}
+    public void addChangeListener(ImageChangeListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    /// Unregisters a listener; does nothing if it was not registered
+    public void removeChangeListener(ImageChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /// Marks the leaves of two trees that differ; subtrees they share (snapshot history) are skipped
+    private void markChanged(QuadNode a, QuadNode b) {
+        if (a == b) return;
+        if (a == null || b == null) {
+            markLeaves(a != null ? a : b);
+            return;
+        }
+        if (a.size != b.size && !a.isLeaf() && !b.isLeaf()) {
+            // A grown root keeps the old root as a descendant; compare that quadrant, the others are new
+            QuadNode big = a.size > b.size ? a : b, small = big == a ? b : a;
+            boolean matched = false;
+            for (QuadNode child : big.children) {
+                if (child != null && child.contains(small.x, small.y)) {
+                    markChanged(child, small);
+                    matched = true;
+                } else if (child != null) {
+                    markLeaves(child);
+                }
+            }
+            if (!matched) markLeaves(small);
+            return;
+        }
+        if (a.size != b.size || a.x != b.x || a.y != b.y || a.isLeaf() || b.isLeaf()) {
+            markLeaves(a);
+            markLeaves(b);
+            return;
+        }
+        for (int i = 0; i < 4; i++) markChanged(a.children[i], b.children[i]);
+    }
 
-     <p>This function assumes the quadtree subdivides space into quadrants until the specified
-     {@code TILE_SIZE} is reached. Each recursive call descends one level deeper, halving the
-     node size until the target leaf node is found.</p>
+    private void markLeaves(QuadNode node) {
+        if (node.isLeaf()) {
+            if (node.image != null) markWritten(node.x, node.y, node.size, node.size);
+            return;
+        }
+        for (QuadNode child : node.children) {
+            if (child != null) markLeaves(child);
+        }
+    }
 
-     @param globalX the global X coordinate in the full image space
-     @param globalY the global Y coordinate in the full image space
-     @param current the current node being examined
-     @param size the size (width/height) of the current node in pixels
+    /// @return hit, miss and eviction counters of the in-heap tile budget; all zero if tiles always stay in the heap
+    public TileCacheStats getTileCacheStats() {
+        return pager != null ? pager.stats() : TileCacheStats.NONE;
+    }
 
-     @return the {@link QuadNode} leaf that corresponds to the given coordinates
+    /**
+     * Returns the live statistics of this image, which can also be {@link ImageStats#toMap() exported as a map}
+     * or {@link ImageStats#registerMBean(String) registered with JMX}.
+     *
+     * @return The statistics, updated as the image is used
+     * @throws IllegalStateException unless the image was created with {@link InfiniteImageOptions.Builder#collectStats(boolean)}
      */
-    private QuadNode getOrCreateLeafAt(int globalX, int globalY, QuadNode current, int size){
-        if (size == TILE_SIZE) return current;
+    public ImageStats getStats() {
+        if (stats == null) throw new IllegalStateException("Statistics are not collected; enable them with InfiniteImageOptions.Builder.collectStats");
+        return stats;
+    }
 
-        int half = size / 2;
-        int cx = (globalX >= current.x + half) ? 1 : 0;
-        int cy = (globalY >= current.y + half) ? 1 : 0;
-        int childIndex = cy * 2 + cx;
+    /// @return the statistics to update, or {@code null} if they are not collected
+    ImageStats stats() {
+        return stats;
+    }
 
-        if (current.children == null)
-            current.children = new QuadNode[4];
+    /**
+     * Releases the tile store of an image with {@link InfiniteImageOptions.Builder#mappedStorage(Path, long) mapped}
+     * or {@link InfiniteImageOptions.Builder#spillStorage(Path, long) spill} storage and deletes its scratch file;
+     * the image must not be used afterwards.
+     * Does nothing for images whose tiles stay in the heap.
+     *
+     * @throws java.io.UncheckedIOException if the scratch file cannot be deleted
+     */
+    @Override
+    public void close() {
+        if (pager != null) pager.close();
+    }
 
-        if (current.children[childIndex] == null) {
-            int childX = current.x + (cx * half);
-            int childY = current.y + (cy * half);
-            current.children[childIndex] = new QuadNode(childX, childY, half);
+    /// @return the pager of an image with mapped storage, or {@code null} if all tiles stay in the heap
+    TilePager getPager() {
+        return pager;
+    }
+
+    QuadNode getRoot() {
+        return root;
+    }
+
+    /// Replaces the whole tree, e.g. with one read from a file; the root must use this image's tile grid
+    void setRoot(QuadNode root) {
+        this.root = root;
+        markBoundsDirty();
+    }
+
+    /// Replaces the pixels under a raster in the tile format, with its top-left corner at (x, y)
+    void writeTile(long x, long y, Raster tile) {
+        for (QuadNode leaf : findLeaves(x, y, tile.getWidth(), tile.getHeight(), true)) {
+            copyRect(leaf.image.getRaster(), (int) (x - leaf.x), (int) (y - leaf.y), tile);
         }
+        markBoundsDirty();
+    }
 
-        return getOrCreateLeafAt(globalX, globalY, current.children[childIndex], half);
+    /**
+     * Copies a raster in the tile format into another with its top-left corner at (dx, dy), clipped to the
+     * destination. Unlike {@link WritableRaster#setRect(int, int, Raster)}, which goes through the samples of every
+     * band, this copies data elements: one array copy per row for int tiles.
+     */
+    static void copyRect(WritableRaster dst, int dx, int dy, Raster src) {
+        long left = Math.max(dst.getMinX(), (long) dx + src.getMinX());
+        long top = Math.max(dst.getMinY(), (long) dy + src.getMinY());
+        long right = Math.min(dst.getMinX() + dst.getWidth(), (long) dx + src.getMinX() + src.getWidth());
+        long bottom = Math.min(dst.getMinY() + dst.getHeight(), (long) dy + src.getMinY() + src.getHeight());
+        if (left >= right || top >= bottom) return;
+        Raster part = src.createChild((int) (left - dx), (int) (top - dy), (int) (right - left), (int) (bottom - top), 0, 0, null);
+        dst.setDataElements((int) left, (int) top, part);
+    }
+
+    /**
+     * Returns the leaf at the position of a leaf of the current tree for writing: copies the nodes on its path
+     * and its tile where a snapshot shares them, and marks the whole leaf as written. Called by the views of
+     * parallel tile streams, hence synchronized; each view asks once, for its own leaf.
+     *
+     * @throws UnsupportedOperationException if tiles are paged out to a tile store
+     */
+    synchronized QuadNode writableLeaf(QuadNode leaf) {
+        requireHeapTiles();
+        // Spliterators have read the children of every node above the leaf before handing out its view,
+        // so replacing children on the path does not race with them
+        QuadNode node = root = owned(root);
+        while (node.size > leaf.size) {
+            int index = node.getQuadrant(leaf.x, leaf.y);
+            node = node.children[index] = owned(node.children[index]);
+        }
+        markWritten(node.x, node.y, node.size, node.size);
+        boundsValid = false;
+        return node;
+    }
+
+    /// @throws UnsupportedOperationException if tiles are paged out to a store, where they cannot be accessed directly
+    void requireHeapTiles() {
+        if (pager != null) {
+            throw new UnsupportedOperationException("Direct tile access is not supported with " + options.getTileStorage() + " tile storage");
+        }
+    }
+
+    /// Notifies the change listeners of writes through tile views
+    private synchronized void flushChanges() {
+        if (changed != null) markBoundsDirty();
+    }
+
+    /// @return true if tiles have an alpha band, so all-zero tiles are indistinguishable from unallocated space
+    boolean hasAlpha() {
+        return alphaBand >= 0;
+    }
+
+    /**
+     * Reads a leaf for a walk over the whole tree. A paged-out tile is decoded into a scratch image that is
+     * only valid until the next call, and stays paged out.
+     *
+     * @return the leaf's pixels for reading, or {@code null} if the leaf is not allocated
+     */
+    BufferedImage scanImage(QuadNode leaf) {
+        if (pager == null || leaf.image != null) return leaf.image;
+        return leaf.data != null ? pager.peek(leaf) : null;
+    }
+
+    /// @return true if an allocated leaf intersects the region; walks the tree without touching any tile
+    boolean hasAllocatedLeaf(Rectangle region) {
+        return hasAllocatedLeaf(root, region);
+    }
+
+    private static boolean hasAllocatedLeaf(QuadNode node, Rectangle region) {
+        if (!region.intersects(node.x, node.y, node.size, node.size)) return false;
+        if (node.isLeaf()) return isAllocated(node);
+        for (QuadNode child : node.children) {
+            if (child != null && hasAllocatedLeaf(child, region)) return true;
+        }
+        return false;
+    }
+
+    /// @return a new node of the current epoch
+    private QuadNode newNode(long x, long y, long size) {
+        QuadNode node = new QuadNode(x, y, size);
+        node.epoch = epoch;
+        return node;
+    }
+
+    /// @return a new blank tile; copies and merges of existing tiles are not counted as created
+    private BufferedImage newTile(int size) {
+        tilesCreated++;
+        if (stats != null) stats.tileCreations.increment();
+        return new BufferedImage(size, size, type);
+    }
+
+    /// @return the node if it belongs to the current epoch, otherwise a copy that does, with its own copy of the tile to write to
+    private QuadNode owned(QuadNode node) {
+        return owned(node, true);
+    }
+
+    /// @param copyTile Whether the tile of a shared leaf is about to be written and must be copied too
+    private QuadNode owned(QuadNode node, boolean copyTile) {
+        if (node.epoch == epoch) return node;
+        QuadNode copy = node.copy(epoch);
+        if (copyTile && copy.image != null) {
+            copy.image = new BufferedImage(node.image.getWidth(), node.image.getHeight(), type);
+            copyRect(copy.image.getRaster(), 0, 0, node.image.getRaster());
+        }
+        return copy;
+    }
+
+    /// Grows the root in one step until it contains the point; @throws IllegalArgumentException past {@link QuadNode#MAX_SIZE}
+    private void growToFit(long x, long y) {
+        if (root.contains(x, y)) return;
+        CanvasEvents.TreeGrowth event = new CanvasEvents.TreeGrowth();
+        event.begin();
+        QuadNode previous = root;
+        try {
+            root = root.growToFit(x, y);
+        } catch (IllegalArgumentException e) {
+            // A root at the size limit cannot move; re-rooting on the content may still fit the point
+            rebuildRoot(true, x, y);
+            if (event.shouldCommit()) {
+                event.setRegion(root);
+                event.commit();
+            }
+            return;
+        }
+        // The new root and the chain of nodes down to the previous root belong to the current epoch
+        for (QuadNode node = root; node != previous; node = node.children[node.getQuadrant(previous.x, previous.y)]) {
+            node.epoch = epoch;
+        }
+        int levels = Long.numberOfTrailingZeros(root.size / previous.size);
+        if (stats != null) stats.treeGrowths.add(levels);
+        if (event.shouldCommit()) {
+            event.levels = levels;
+            event.setRegion(root);
+            event.commit();
+        }
+    }
+
+    /// @return true if the leaf holds pixels, in the heap or paged out to the tile store
+    static boolean isAllocated(QuadNode leaf) {
+        return leaf.image != null || leaf.data != null;
+    }
+
+    /// The returned leaf is only for reading; tiles written through it may not be written back to the tile store
+    QuadNode findLeaf(long x, long y) {
+        QuadNode leaf = root.findLeaf(x, y);
+        // Leaves and the root are power-of-two multiples of the tile size, so the depth follows from their ratio
+        if (stats != null) stats.countLookup(leaf != null ? Long.numberOfTrailingZeros(root.size / leaf.size) : -1);
+        if (pager != null && leaf != null && isAllocated(leaf)) {
+            pager.trim();
+            pager.access(leaf, false);
+        }
+        return leaf;
+    }
+
+    /// Guarantees to return a QuadNode with a non-null image (a tile, or a merged leaf covering the point)
+    QuadNode findOrCreateLeaf(long x, long y) {
+        if (pager != null) pager.trim();
+        // If tree is too small, grow tree to contain given coordinates
+        growToFit(x, y);
+        // Descend to the leaf at given coordinates, creating missing nodes and copying shared ones on the way
+        QuadNode leaf = root = owned(root);
+        while (leaf.size > TILE_SIZE && !(leaf.isLeaf() && leaf.image != null)) {
+            long half = leaf.size / 2;
+            int index = leaf.getQuadrant(x, y);
+            if (leaf.children == null) leaf.children = new QuadNode[4];
+            QuadNode child = leaf.children[index];
+            leaf = leaf.children[index] = child != null ? owned(child)
+                    : newNode(leaf.x + (index & 1) * half, leaf.y + (index >> 1) * half, half);
+        }
+        if (!isAllocated(leaf)) leaf.image = newTile(TILE_SIZE);
+        if (stats != null) stats.countLookup(Long.numberOfTrailingZeros(root.size / leaf.size));
+        if (pager != null) pager.access(leaf, true);
+        markWritten(x, y, 1, 1);
+        return leaf;
+    }
+
+    List<QuadNode> findLeaves(Rectangle2D bounds, boolean createIfMissing){
+        return findLeaves((long) bounds.getX(), (long) bounds.getY(), (int) bounds.getWidth(), (int) bounds.getHeight(), createIfMissing);
+    }
+
+    /**
+     * Collects every leaf overlapping [x, x+w) x [y, y+h) in one walk of the tree. Each leaf appears once,
+     * however many tiles of the region a merged leaf covers.
+     *
+     * @param createIfMissing If {@code true}, missing tiles are allocated (and co-drawn leaves may merge);
+     *                        otherwise only leaves that hold an image are returned, and they are only for reading
+     */
+    List<QuadNode> findLeaves(long x, long y, int w, int h, boolean createIfMissing){
+        List<QuadNode> nodes = new ArrayList<>();
+        // Evict before collecting, so every returned leaf stays resident until the next lookup
+        if (pager != null) pager.trim();
+        // Zero-sized bounds (e.g. of a vertical line) still touch the pixel row/column at (x, y)
+        long endX = x + Math.max(w, 1);
+        long endY = y + Math.max(h, 1);
+
+        CanvasEvents.TileAllocation event = null;
+        int created = tilesCreated;
+        if (createIfMissing) {
+            event = new CanvasEvents.TileAllocation();
+            event.begin();
+            growToFit(x, y);
+            growToFit(endX - 1, endY - 1);
+            root = owned(root);
+        }
+        collectLeaves(root, x, y, endX, endY, createIfMissing, nodes);
+        if (createIfMissing) {
+            // Draws may reach past their nominal bounds (e.g. stroke widths), so whole leaves are dirty
+            for (QuadNode leaf : nodes) markWritten(leaf.x, leaf.y, leaf.size, leaf.size);
+            if (tilesCreated > created && event.shouldCommit()) {
+                event.tiles = tilesCreated - created;
+                event.setRegion(x, y, endX - x, endY - y);
+                event.commit();
+            }
+        }
+        return nodes;
+    }
+
+    private void collectLeaves(QuadNode node, long x1, long y1, long x2, long y2, boolean create, List<QuadNode> out) {
+        if (node.x >= x2 || node.y >= y2 || node.x + node.size <= x1 || node.y + node.size <= y1) return;
+
+        if (node.isLeaf() && (isAllocated(node) || node.size <= TILE_SIZE)) {
+            if (!isAllocated(node)) {
+                if (!create) return;
+                node.image = newTile(TILE_SIZE);
+            }
+            if (pager != null) pager.access(node, create);
+            out.add(node);
+            return;
+        }
+
+        // Internal node, or an unallocated region larger than a tile
+        if (node.children == null) {
+            if (!create) return;
+            node.children = new QuadNode[4];
+        }
+        if (create) {
+            // Merging only reads the children, so a merge comes first: owning them would copy tiles a snapshot shares
+            if (mergeThreshold > 0 && countCoDraw(node, x1, y1, x2, y2)) {
+                mergeChildren(node);
+                out.add(node);
+                return;
+            }
+            // The node is owned (copied by its parent if it was shared); so must be the children to be written
+            long half = node.size / 2;
+            for (int i = 0; i < 4; i++) {
+                long cx = node.x + (i & 1) * half, cy = node.y + (i >> 1) * half;
+                if (cx >= x2 || cy >= y2 || cx + half <= x1 || cy + half <= y1) continue;
+                node.children[i] = node.children[i] != null ? owned(node.children[i]) : newNode(cx, cy, half);
+            }
+        }
+        for (QuadNode child : node.children) {
+            if (child != null) collectLeaves(child, x1, y1, x2, y2, create, out);
+        }
+    }
+
+    /// Counts a write that spans all four allocated child leaves; @return true once the merge threshold is reached
+    private boolean countCoDraw(QuadNode node, long x1, long y1, long x2, long y2) {
+        if (node.size > maxLeafSize) return false;
+        long midX = node.x + node.size / 2;
+        long midY = node.y + node.size / 2;
+        if (x1 >= midX || x2 <= midX || y1 >= midY || y2 <= midY) return false;
+        for (QuadNode child : node.children) {
+            if (child == null || !child.isLeaf() || child.image == null) return false;
+        }
+        return ++node.coDraws >= mergeThreshold;
+    }
+
+    /// Replaces the four child leaves of {@code node} with a single leaf raster of the node's size
+    private void mergeChildren(QuadNode node) {
+        BufferedImage merged = new BufferedImage((int) node.size, (int) node.size, type); // at most maxLeafSize
+        WritableRaster raster = merged.getRaster();
+        for (QuadNode child : node.children) {
+            copyRect(raster, (int) (child.x - node.x), (int) (child.y - node.y), child.image.getRaster());
+        }
+        node.image = merged;
+        node.children = null;
+        node.coDraws = 0;
     }
 
     /** Blit the quad tree into a graphics context */
-    protected void paint(Graphics g, int offsetX, int offsetY) {
-        root.paint(g, offsetX, offsetY);
+    protected void paint(Graphics g, long offsetX, long offsetY) {
+        if (pager == null) root.paint(g, offsetX, offsetY);
+        else paintPaged(root, g, offsetX, offsetY);
+    }
+
+    /// Like {@link QuadNode#paint}, reading paged-out tiles without making them resident
+    private void paintPaged(QuadNode node, Graphics g, long offsetX, long offsetY) {
+        if (node.isLeaf()) {
+            BufferedImage tile = scanImage(node);
+            // Tiles beyond the int range of the Graphics cannot be drawn
+            if (tile != null && (int) (node.x - offsetX) == node.x - offsetX && (int) (node.y - offsetY) == node.y - offsetY)
+                g.drawImage(tile, (int) (node.x - offsetX), (int) (node.y - offsetY), null);
+            return;
+        }
+        for (QuadNode child : node.children) {
+            if (child != null) paintPaged(child, g, offsetX, offsetY);
+        }
+    }
+
+    /// Counts the bytes written through a stream, without closing it
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final LongAdder count;
+
+        CountingOutputStream(OutputStream out, LongAdder count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count.add(len);
+        }
     }
 }
@@ -0,0 +1,262 @@
+package com.novospir.libraries;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.function.Consumer;
+
+/**
+ * An infinite-space, single-channel floating-point canvas for accumulation buffers.
+ *
+ * <p>InfiniteFloatImage stores density, heat or any other unbounded scalar field at full
+ * {@code float} precision. It uses the same quadtree as {@link InfiniteBufferedImage}, with each
+ * leaf holding a raw {@code float[TILE_SIZE * TILE_SIZE]} tile (row-major) instead of a BufferedImage.
+ * Values are exported to 8-bit images through a {@link ToneMapping}.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * InfiniteFloatImage heat = new InfiniteFloatImage();
+ * for (Point p : samples) heat.add(p.x, p.y, 1f);
+ * heat.addRect(-50, -50, 100, 100, 0.25f);
+ *
+ * Rectangle view = new Rectangle(-500, -500, 1000, 1000);
+ * BufferedImage preview = heat.toBufferedImage(view, ToneMapping.LOG, heat.getMaxValue());
+ * }</pre>
+ *
+ * <h3>Thread Safety:</h3>
+ * <p>Mutators are {@code synchronized}, so concurrent {@link #add} calls from several threads
+ * never lose an update. Reads are not synchronized and may observe a partially applied bulk add.
+ *
+ * @see InfiniteBufferedImage
+ * @see QuadNode
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public class InfiniteFloatImage {
+
+    /**
+     * Maps accumulated values to display intensity in [0, 1].
+     */
+    public enum ToneMapping {
+        /** {@code v / white}, clamped */
+        LINEAR,
+        /** {@code log(1 + v) / log(1 + white)}, clamped; suits heavy-tailed densities */
+        LOG,
+        /** Extended Reinhard {@code v (1 + v / white²) / (1 + v)}; compresses highlights smoothly */
+        REINHARD;
+
+        float apply(float v, float white) {
+            if (v <= 0 || white <= 0) return 0f;
+            switch (this) {
+                case LINEAR:
+                    return Math.min(1f, v / white);
+                case LOG:
+                    return Math.min(1f, (float) (Math.log1p(v) / Math.log1p(white)));
+                default:
+                    return Math.min(1f, v * (1f + v / (white * white)) / (1f + v));
+            }
+        }
+    }
+
+    private final int TILE_SIZE;
+    private QuadNode root;
+
+    /** Creates an empty accumulation canvas with the default tile size */
+    public InfiniteFloatImage() {
+        this(InfiniteImageOptions.defaults());
+    }
+
+    /**
+     * Creates an empty accumulation canvas with the given tile size and origin.
+     * The image type of the options is ignored; tiles always hold floats.
+     * @param options The tile size and origin of this canvas
+     */
+    public InfiniteFloatImage(InfiniteImageOptions options) {
+        this.TILE_SIZE = options.getTileSize();
+        this.root = new QuadNode(options.getOriginX(), options.getOriginY(), TILE_SIZE);
+    }
+
+    /* ------ SINGLE VALUES ------ */
+
+    /** @return the value at (x,y), or 0 if never written */
+    public float get(int x, int y) {
+        QuadNode leaf = root.findLeaf(x, y);
+        if (leaf == null || leaf.data == null) return 0f;
+        return values(leaf)[(int) (y - leaf.y) * TILE_SIZE + (int) (x - leaf.x)];
+    }
+
+    /** Sets the value at (x,y), expanding the tree as needed */
+    public synchronized void set(int x, int y, float value) {
+        QuadNode leaf = findOrCreateLeaf(x, y);
+        values(leaf)[(int) (y - leaf.y) * TILE_SIZE + (int) (x - leaf.x)] = value;
+    }
+
+    /** Adds {@code value} to the value at (x,y), expanding the tree as needed */
+    public synchronized void add(int x, int y, float value) {
+        QuadNode leaf = findOrCreateLeaf(x, y);
+        values(leaf)[(int) (y - leaf.y) * TILE_SIZE + (int) (x - leaf.x)] += value;
+    }
+
+    /* ------ REGIONS ------ */
+
+    /**
+     * Adds a block of values to the region [x, x+w) x [y, y+h).
+     *
+     * @param values Row-major values, at least {@code w * h} long
+     */
+    public synchronized void addRegion(int x, int y, int w, int h, float[] values) {
+        if (w <= 0 || h <= 0) return;
+        if (values.length < w * h) throw new ArrayIndexOutOfBoundsException(
+                String.format("Array too small: %d < %d", values.length, w * h));
+
+        forEachTileIn(x, y, w, h, true, (leaf, r) -> {
+            float[] tile = values(leaf);
+            for (int i = 0; i < r.height; i++) {
+                int row = r.y + i;
+                int src = (row - y) * w + (r.x - x);
+                int dst = (int) (row - leaf.y) * TILE_SIZE + (int) (r.x - leaf.x);
+                for (int col = 0; col < r.width; col++) tile[dst + col] += values[src + col];
+            }
+        });
+    }
+
+    /** Adds a constant to every value in the rectangle [x, x+w) x [y, y+h) */
+    public synchronized void addRect(int x, int y, int w, int h, float value) {
+        if (w <= 0 || h <= 0) return;
+        forEachTileIn(x, y, w, h, true, (leaf, r) -> {
+            float[] tile = values(leaf);
+            for (int i = 0; i < r.height; i++) {
+                int row = r.y + i;
+                int dst = (int) (row - leaf.y) * TILE_SIZE + (int) (r.x - leaf.x);
+                for (int col = 0; col < r.width; col++) tile[dst + col] += value;
+            }
+        });
+    }
+
+    /**
+     * Reads the region [x, x+w) x [y, y+h) into a row-major array; unwritten values are 0.
+     *
+     * @param out Destination array of at least {@code w * h}, or {@code null} to allocate one
+     * @return The array holding the region's values
+     */
+    public float[] getRegion(int x, int y, int w, int h, float[] out) {
+        if (w <= 0 || h <= 0) return out == null ? new float[0] : out;
+        if (out == null) out = new float[w * h];
+        else if (out.length < w * h) throw new ArrayIndexOutOfBoundsException(
+                String.format("Array too small: %d < %d", out.length, w * h));
+
+        float[] dst = out;
+        forEachTileIn(x, y, w, h, false, (leaf, r) -> {
+            float[] tile = values(leaf);
+            for (int i = 0; i < r.height; i++) {
+                int row = r.y + i;
+                System.arraycopy(tile, (int) (row - leaf.y) * TILE_SIZE + (int) (r.x - leaf.x),
+                        dst, (row - y) * w + (r.x - x), r.width);
+            }
+        });
+        return out;
+    }
+
+    /* ------ INFORMATION ------ */
+
+    /// @return the largest value across all allocated tiles, or 0 if nothing was written
+    public float getMaxValue() {
+        float[] max = {0f};
+        forEachTile(root, leaf -> {
+            for (float v : values(leaf)) if (v > max[0]) max[0] = v;
+        });
+        return max[0];
+    }
+
+    /// @return the number of leaves currently allocated for this InfiniteFloatImage
+    public int getAllocatedLeafCount() {
+        int[] count = new int[1];
+        forEachTile(root, leaf -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * Exports a region as a TYPE_BYTE_GRAY image, scaled so the region's largest value is white.
+     *
+     * @param bounds The rectangular region to export
+     * @return A BufferedImage containing the linearly tone-mapped region
+     */
+    public BufferedImage toBufferedImage(Rectangle bounds) {
+        float[] region = getRegion(bounds.x, bounds.y, bounds.width, bounds.height, null);
+        float max = 0f;
+        for (float v : region) if (v > max) max = v;
+        return toneMap(region, bounds.width, bounds.height, ToneMapping.LINEAR, max);
+    }
+
+    /**
+     * Exports a region as a TYPE_BYTE_GRAY image using the given tone mapping.
+     *
+     * @param bounds The rectangular region to export
+     * @param toneMapping How values are compressed into [0, 255]
+     * @param white The value that maps to full white (e.g. {@link #getMaxValue()})
+     * @return A BufferedImage containing the tone-mapped region
+     */
+    public BufferedImage toBufferedImage(Rectangle bounds, ToneMapping toneMapping, float white) {
+        float[] region = getRegion(bounds.x, bounds.y, bounds.width, bounds.height, null);
+        return toneMap(region, bounds.width, bounds.height, toneMapping, white);
+    }
+
+    /* ------ UTILITY ------ */
+
+    private static BufferedImage toneMap(float[] region, int w, int h, ToneMapping toneMapping, float white) {
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] gray = ((DataBufferByte) out.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < region.length; i++) {
+            gray[i] = (byte) Math.round(toneMapping.apply(region[i], white) * 255f);
+        }
+        return out;
+    }
+
+    private static float[] values(QuadNode leaf) {
+        return (float[]) leaf.data;
+    }
+
+    /// Guarantees to return a QuadNode with a non-null value tile
+    private QuadNode findOrCreateLeaf(long x, long y) {
+        while (!root.contains(x, y)) {
+            root = root.growToFit(x, y);
+        }
+        QuadNode leaf = root.getOrCreateLeaf(x, y, TILE_SIZE);
+        if (leaf.data == null) leaf.data = new float[TILE_SIZE * TILE_SIZE];
+        return leaf;
+    }
+
+    private interface TileRegionAction {
+        void apply(QuadNode leaf, Rectangle globalIntersection);
+    }
+
+    /**
+     * Visits every tile overlapping [x, x+w) x [y, y+h) with its intersection in global coordinates. The end of
+     * the region and the tile loop are long, since both pass Integer.MAX_VALUE at the top of the int range; the
+     * intersection's x and y are inside the region, but {@code y + height} may still overflow there.
+     */
+    private void forEachTileIn(int x, int y, int w, int h, boolean createIfMissing, TileRegionAction action) {
+        long endX = (long) x + w;
+        long endY = (long) y + h;
+        for (long tileY = Math.floorDiv(y, TILE_SIZE) * (long) TILE_SIZE; tileY < endY; tileY += TILE_SIZE) {
+            for (long tileX = Math.floorDiv(x, TILE_SIZE) * (long) TILE_SIZE; tileX < endX; tileX += TILE_SIZE) {
+                QuadNode leaf = createIfMissing ? findOrCreateLeaf(tileX, tileY) : root.findLeaf(tileX, tileY);
+                if (leaf == null || leaf.data == null) continue;
+
+                long x1 = Math.max(x, tileX), y1 = Math.max(y, tileY);
+                long x2 = Math.min(endX, tileX + TILE_SIZE), y2 = Math.min(endY, tileY + TILE_SIZE);
+                action.apply(leaf, new Rectangle((int) x1, (int) y1, (int) (x2 - x1), (int) (y2 - y1)));
+            }
+        }
+    }
+
+    /// Visits every leaf that holds a value tile, in quadrant order
+    private static void forEachTile(QuadNode node, Consumer<QuadNode> action) {
+        if (node == null) return;
+        if (node.isLeaf()) {
+            if (node.data != null) action.accept(node);
+            return;
+        }
+        for (QuadNode child : node.children) forEachTile(child, action);
+    }
+}
@@ -0,0 +1,231 @@
+package com.novospir.libraries;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sparse container format for {@link InfiniteBufferedImage}.
+ *
+ * <p>Only allocated leaves are stored, so the file size follows the content rather than the
+ * canvas extent. Tiles are streamed one at a time through a {@link FileChannel}; the tile index is
+ * written after the payloads, so saving never needs more than one tile's payload in memory.
+ *
+ * <h3>Layout (big-endian):</h3>
+ * <pre>
+ * Header (68 bytes)
+ *   int   magic          'IBIF'
+ *   short version        2
+ *   short reserved       0
+ *   int   imageType, tileSize, mergeThreshold, maxLeafSize, originX, originY
+ *   long  rootX, rootY, rootSize       quadtree root, so merged leaves keep their alignment
+ *   long  indexOffset
+ *   int   tileCount
+ * Payloads                             one {@link TileCodec} payload per tile, back to back
+ * Index (tileCount x 33 bytes)
+ *   long x, y; int size; byte encoding; long offset; int length
+ * </pre>
+ *
+ * <p>Version 1 files, from before nodes had long coordinates, store the root and the tile positions as ints
+ * (a 56-byte header and 25-byte index entries); they are still read.
+ *
+ * <p>Tiles whose data is all zero are not stored when the image type has alpha (they read back as
+ * transparent, the same as unallocated space). Uniform tiles store a single pixel.
+ *
+ * @see InfiniteBufferedImage#save(Path)
+ * @see InfiniteBufferedImage#load(Path)
+ * @see TileCodec
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class InfiniteImageFile {
+    static final int MAGIC = 0x49424946; // "IBIF"
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 68;
+    static final int INDEX_ENTRY_SIZE = 33;
+    static final int V1_HEADER_SIZE = 56;
+    static final int V1_INDEX_ENTRY_SIZE = 25;
+
+    private InfiniteImageFile() {
+    }
+
+    /* ------ WRITING ------ */
+
+    static void write(InfiniteBufferedImage image, Path path) throws IOException {
+        TileCodec codec = new TileCodec();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            List<IndexEntry> index = new ArrayList<>();
+            channel.position(HEADER_SIZE);
+            writeLeaves(image, image.getRoot(), codec, channel, index);
+
+            // Index after the payloads, so tiles stream out without knowing the count up front
+            long indexOffset = channel.position();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(index.size(), 1) * INDEX_ENTRY_SIZE);
+            for (IndexEntry entry : index) {
+                buffer.putLong(entry.x).putLong(entry.y).putInt(entry.size)
+                        .put(entry.encoding).putLong(entry.offset).putInt(entry.length);
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            channel.position(0);
+            writeFully(channel, header(image, indexOffset, index.size()));
+        } finally {
+            codec.end();
+        }
+    }
+
+    private static void writeLeaves(InfiniteBufferedImage image, QuadNode node, TileCodec codec,
+                                    FileChannel channel, List<IndexEntry> index) throws IOException {
+        if (node == null) return;
+        if (!node.isLeaf()) {
+            for (QuadNode child : node.children) writeLeaves(image, child, codec, channel, index);
+            return;
+        }
+        // Reads paged-out tiles without making them resident
+        BufferedImage tile = image.scanImage(node);
+        if (tile == null) return;
+        if (image.hasAlpha() && TileCodec.isZero(tile.getRaster())) return;
+
+        codec.encode(tile.getRaster());
+        long offset = channel.position();
+        writeFully(channel, ByteBuffer.wrap(codec.payload(), 0, codec.length()));
+        index.add(new IndexEntry(node.x, node.y, tile.getWidth(), codec.encoding(), offset, codec.length()));
+    }
+
+    private static ByteBuffer header(InfiniteBufferedImage image, long indexOffset, int tileCount) {
+        InfiniteImageOptions options = image.getOptions();
+        QuadNode root = image.getRoot();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                .putInt(options.getImageType()).putInt(options.getTileSize())
+                .putInt(options.getMergeThreshold()).putInt(options.getMaxLeafSize())
+                .putInt(options.getOriginX()).putInt(options.getOriginY())
+                .putLong(root.x).putLong(root.y).putLong(root.size)
+                .putLong(indexOffset).putInt(tileCount);
+        buffer.flip();
+        return buffer;
+    }
+
+    /* ------ READING ------ */
+
+    static InfiniteBufferedImage read(Path path) throws IOException {
+        TileCodec codec = new TileCodec();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header.limit(V1_HEADER_SIZE), 0);
+            if (header.getInt() != MAGIC) throw new IOException("Not an infinite image file: " + path);
+            short version = header.getShort();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported infinite image file version: " + version);
+            boolean wide = version == VERSION;
+            if (wide) {
+                // The rest of the longer header
+                header.clear().position(V1_HEADER_SIZE);
+                readFully(channel, header, V1_HEADER_SIZE);
+                header.position(6);
+            }
+            header.getShort();
+
+            InfiniteImageOptions options;
+            try {
+                options = InfiniteImageOptions.builder()
+                        .imageType(header.getInt())
+                        .tileSize(header.getInt())
+                        .mergeThreshold(header.getInt())
+                        .maxLeafSize(header.getInt())
+                        .origin(header.getInt(), header.getInt())
+                        .build();
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt infinite image header: " + e.getMessage(), e);
+            }
+            QuadNode root = wide ? new QuadNode(header.getLong(), header.getLong(), header.getLong())
+                    : new QuadNode(header.getInt(), header.getInt(), header.getInt());
+            long indexOffset = header.getLong();
+            int tileCount = header.getInt();
+            int entrySize = wide ? INDEX_ENTRY_SIZE : V1_INDEX_ENTRY_SIZE;
+            if (tileCount < 0 || indexOffset < (wide ? HEADER_SIZE : V1_HEADER_SIZE)
+                    || (long) tileCount * entrySize > Integer.MAX_VALUE
+                    || indexOffset + (long) tileCount * entrySize > channel.size()
+                    || root.size < options.getTileSize() || Long.bitCount(root.size) != 1
+                    || root.x < QuadNode.MIN_COORDINATE || root.y < QuadNode.MIN_COORDINATE
+                    || root.size > QuadNode.MAX_COORDINATE - Math.max(root.x, root.y))
+                throw new IOException("Corrupt infinite image index: " + path);
+
+            ByteBuffer index = ByteBuffer.allocate(tileCount * entrySize);
+            readFully(channel, index, indexOffset);
+
+            InfiniteBufferedImage image = new InfiniteBufferedImage(options);
+            image.setRoot(root);
+            byte[] payload = new byte[0];
+            for (int i = 0; i < tileCount; i++) {
+                long x = wide ? index.getLong() : index.getInt(), y = wide ? index.getLong() : index.getInt();
+                int size = index.getInt();
+                byte encoding = index.get();
+                long offset = index.getLong();
+                int length = index.getInt();
+                // Leaves are the tile size doubled up to the max leaf size, which are both powers of two
+                if (!root.contains(x, y) || size < options.getTileSize() || size > options.getMaxLeafSize()
+                        || Integer.bitCount(size) != 1 || size > root.size || length < 0 || offset < 0)
+                    throw new IOException(String.format("Corrupt tile entry (%d, %d) of size %d", x, y, size));
+
+                // An entry over tiles already read finds their parent, which must stay internal
+                QuadNode leaf = root.getOrCreateLeaf(x, y, size);
+                if (leaf.x != x || leaf.y != y || leaf.size != size || leaf.image != null || leaf.children != null)
+                    throw new IOException(String.format("Tile entry (%d, %d) of size %d is not aligned to the tree", x, y, size));
+
+                if (payload.length < length) payload = new byte[length];
+                readFully(channel, ByteBuffer.wrap(payload, 0, length), offset);
+                leaf.image = new BufferedImage(size, size, options.getImageType());
+                try {
+                    codec.decode(encoding, payload, length, leaf.image.getRaster());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(String.format("Corrupt tile (%d, %d): %s", x, y, e.getMessage()), e);
+                }
+            }
+            image.markBoundsDirty();
+            return image;
+        } finally {
+            codec.end();
+        }
+    }
+
+    /* ------ UTILITY ------ */
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of infinite image file");
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private static final class IndexEntry {
+        final long x, y;
+        final int size;
+        final byte encoding;
+        final long offset;
+        final int length;
+
+        IndexEntry(long x, long y, int size, byte encoding, long offset, int length) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.encoding = encoding;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
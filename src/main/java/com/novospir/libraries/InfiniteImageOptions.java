@@ -0,0 +1,390 @@
+package com.novospir.libraries;
+
+import com.novospir.libraries.config.ConfigLoader;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Immutable per-image tuning options for {@link InfiniteBufferedImage} and the other infinite canvases.
+ *
+ * <p>Options replace the process-wide {@code tile.size} lookup so that each layer can be tuned
+ * for its own access pattern: large tiles for dense photographic layers (fewer nodes, fewer
+ * per-tile Graphics setups), small tiles for sparse annotation layers (less wasted memory per stroke).
+ * Values not set on the builder fall back to {@code config.properties}, then to built-in defaults.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * InfiniteImageOptions photo = InfiniteImageOptions.builder()
+ *         .tileSize(512)
+ *         .build();
+ * InfiniteImageOptions mask = InfiniteImageOptions.builder()
+ *         .tileSize(64)
+ *         .imageType(BufferedImage.TYPE_BYTE_GRAY)
+ *         .build();
+ *
+ * InfiniteBufferedImage photoLayer = new InfiniteBufferedImage(photo);
+ * InfiniteBufferedImage maskLayer = new InfiniteBufferedImage(mask);
+ *
+ * // Merge dense regions into leaves of up to 1024² after 4 draws that span a 2x2 block of leaves
+ * InfiniteImageOptions adaptive = InfiniteImageOptions.builder()
+ *         .mergeThreshold(4)
+ *         .maxLeafSize(1024)
+ *         .build();
+ *
+ * // Edit a canvas larger than the heap: keep 256 MB of tiles resident, page the rest to a mapped file
+ * InfiniteImageOptions huge = InfiniteImageOptions.builder()
+ *         .mappedStorage(Path.of("/scratch"), 256L << 20)
+ *         .build();
+ *
+ * // Bound a long editing session: compress least recently used tiles to a spill file beyond 512 MB
+ * InfiniteImageOptions bounded = InfiniteImageOptions.builder()
+ *         .spillStorage(Path.of("/scratch"), 512L << 20)
+ *         .build();
+ *
+ * // Keep line art resident, compressing tiles that have not been touched for 30 seconds
+ * InfiniteImageOptions lineArt = InfiniteImageOptions.builder()
+ *         .compressedStorage(Duration.ofSeconds(30))
+ *         .build();
+ * }</pre>
+ *
+ * @see InfiniteBufferedImage
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public final class InfiniteImageOptions {
+
+    /** Smallest accepted tile size; bit-packed tiles need whole bytes per row */
+    public static final int MIN_TILE_SIZE = 8;
+    /** Largest accepted tile size (a 8192² ARGB tile is already 256 MB) */
+    public static final int MAX_TILE_SIZE = 8192;
+
+    /** Where tiles live beyond the in-heap budget */
+    public enum TileStorage {
+        /** All tiles stay in the heap (the default) */
+        HEAP,
+        /** Tiles are paged to fixed slots of a memory-mapped scratch file */
+        MAPPED,
+        /** Tiles are compressed and spilled to a scratch file */
+        SPILL,
+        /** Idle tiles are compressed in the heap */
+        COMPRESSED
+    }
+
+    private final int tileSize;
+    private final int imageType;
+    private final int originX, originY;
+    private final int mergeThreshold;
+    private final int maxLeafSize;
+    private final TileStorage storage;
+    private final Path storageDirectory;
+    private final long maxResidentBytes;
+    private final Duration idleTimeout;
+    private final boolean collectStats;
+
+    private InfiniteImageOptions(Builder builder, int maxLeafSize) {
+        this.tileSize = builder.tileSize;
+        this.imageType = builder.imageType;
+        this.originX = builder.originX;
+        this.originY = builder.originY;
+        this.mergeThreshold = builder.mergeThreshold;
+        this.maxLeafSize = maxLeafSize;
+        this.storage = builder.storage;
+        this.storageDirectory = builder.storageDirectory;
+        this.maxResidentBytes = builder.maxResidentBytes;
+        this.idleTimeout = builder.idleTimeout;
+        this.collectStats = builder.collectStats;
+    }
+
+    /// @return a builder initialized with the default options
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /// @return the default options ({@code tile.size} from config.properties, TYPE_INT_ARGB, origin (0, 0))
+    public static InfiniteImageOptions defaults() {
+        return new Builder().build();
+    }
+
+    /// @return a builder initialized with these options, for deriving a variant
+    public Builder toBuilder() {
+        Builder builder = new Builder()
+                .tileSize(tileSize)
+                .imageType(imageType)
+                .origin(originX, originY)
+                .mergeThreshold(mergeThreshold)
+                .collectStats(collectStats);
+        // Only carry over an explicit max leaf size, so the default follows a later change of tile size
+        if (maxLeafSize != defaultMaxLeafSize(tileSize)) builder.maxLeafSize(maxLeafSize);
+        if (storage == TileStorage.MAPPED) builder.mappedStorage(storageDirectory, maxResidentBytes);
+        if (storage == TileStorage.SPILL) builder.spillStorage(storageDirectory, maxResidentBytes);
+        if (storage == TileStorage.COMPRESSED) builder.compressedStorage(idleTimeout);
+        return builder;
+    }
+
+    /// @return the width and height of every leaf tile, in pixels (always a power of two)
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /// @return the {@link BufferedImage} type used for tiles
+    public int getImageType() {
+        return imageType;
+    }
+
+    /// @return the x-coordinate of the initial root tile
+    public int getOriginX() {
+        return originX;
+    }
+
+    /// @return the y-coordinate of the initial root tile
+    public int getOriginY() {
+        return originY;
+    }
+
+    /// @return the number of co-drawn writes before four sibling leaves merge, or 0 if merging is disabled
+    public int getMergeThreshold() {
+        return mergeThreshold;
+    }
+
+    /// @return the largest size a merged leaf may grow to (a power of two, at least the tile size)
+    public int getMaxLeafSize() {
+        return maxLeafSize;
+    }
+
+    /// @return where tiles live beyond the in-heap budget
+    public TileStorage getTileStorage() {
+        return storage;
+    }
+
+    /// @return the directory of the scratch file for paged-out tiles, or {@code null} if all tiles stay in the heap
+    public Path getStorageDirectory() {
+        return storageDirectory;
+    }
+
+    /// @return the bytes of tile data kept in the heap when tiles are paged out, or 0 if all tiles stay in the heap
+    public long getMaxResidentBytes() {
+        return maxResidentBytes;
+    }
+
+    /// @return how long a tile stays untouched before it is compressed, or {@code null} without compressed storage
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /// @return true if images count their work in {@link InfiniteBufferedImage#getStats()}
+    public boolean isCollectingStats() {
+        return collectStats;
+    }
+
+    /// @return a new pager for one image created with these options, or {@code null} for in-heap tiles
+    TilePager createPager() {
+        switch (storage) {
+            case MAPPED:
+                return new MappedTileStore(storageDirectory, tileSize, imageType, maxResidentBytes);
+            case SPILL:
+                return new SpillTileStore(storageDirectory, tileSize, imageType, maxResidentBytes);
+            case COMPRESSED:
+                return new CompressedTileStore(tileSize, imageType, saturatedNanos(idleTimeout));
+            default:
+                return null;
+        }
+    }
+
+    private static long saturatedNanos(Duration duration) {
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static int defaultMaxLeafSize(int tileSize) {
+        return Math.min(tileSize * 8, MAX_TILE_SIZE);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InfiniteImageOptions[tileSize=%d, imageType=%d, origin=(%d, %d), mergeThreshold=%d, maxLeafSize=%d%s%s]",
+                tileSize, imageType, originX, originY, mergeThreshold, maxLeafSize, collectStats ? ", collectStats" : "",
+                storage == TileStorage.HEAP ? "" : storage == TileStorage.COMPRESSED
+                        ? String.format(", storage=%s, idleTimeout=%s", storage, idleTimeout)
+                        : String.format(", storage=%s, storageDirectory=%s, maxResidentBytes=%d", storage, storageDirectory, maxResidentBytes));
+    }
+
+    /**
+     * Builder for {@link InfiniteImageOptions}. Validation happens in the setters, so an invalid
+     * value fails where it is set rather than when the image is created.
+     */
+    public static final class Builder {
+        private int tileSize = ConfigLoader.getInstance().getInt("tile.size", 128);
+        private int imageType = BufferedImage.TYPE_INT_ARGB;
+        private int originX, originY;
+        private int mergeThreshold;
+        private int maxLeafSize; // 0 = eight tiles wide
+        private TileStorage storage = TileStorage.HEAP;
+        private Path storageDirectory;
+        private long maxResidentBytes;
+        private Duration idleTimeout;
+        private boolean collectStats;
+
+        private Builder() {
+        }
+
+        /**
+         * @param tileSize Width and height of every leaf tile; a power of two in
+         *                 [{@value #MIN_TILE_SIZE}, {@value #MAX_TILE_SIZE}]
+         * @throws IllegalArgumentException if the size is out of range or not a power of two
+         */
+        public Builder tileSize(int tileSize) {
+            if (tileSize < MIN_TILE_SIZE || tileSize > MAX_TILE_SIZE || Integer.bitCount(tileSize) != 1)
+                throw new IllegalArgumentException(String.format(
+                        "Tile size must be a power of two in [%,d, %,d]: %,d", MIN_TILE_SIZE, MAX_TILE_SIZE, tileSize));
+            this.tileSize = tileSize;
+            return this;
+        }
+
+        /**
+         * @param imageType One of the predefined {@link BufferedImage} types, e.g. {@link BufferedImage#TYPE_BYTE_GRAY}
+         * @throws IllegalArgumentException if {@code imageType} is {@link BufferedImage#TYPE_CUSTOM} or unknown
+         */
+        public Builder imageType(int imageType) {
+            if (imageType == BufferedImage.TYPE_CUSTOM)
+                throw new IllegalArgumentException("TYPE_CUSTOM is not supported as a tile format");
+            // Throws IllegalArgumentException for unknown types
+            new BufferedImage(1, 1, imageType);
+            this.imageType = imageType;
+            return this;
+        }
+
+        /**
+         * @param x The x-coordinate for the position of the starting image
+         * @param y The y-coordinate for the position of the starting image
+         */
+        public Builder origin(int x, int y) {
+            this.originX = x;
+            this.originY = y;
+            return this;
+        }
+
+        /**
+         * Enables adaptive leaves: once {@code mergeThreshold} writes have spanned all four leaves
+         * below a quadtree node, those leaves are merged into one leaf raster of the node's size.
+         * Dense regions then cost one BufferedImage and one per-draw Graphics setup instead of four.
+         * Use {@link InfiniteBufferedImage#compact()} to split merged leaves again once they become sparse.
+         *
+         * @param mergeThreshold Number of co-drawn writes before merging, or 0 to disable merging (the default)
+         * @throws IllegalArgumentException if the threshold is negative
+         */
+        public Builder mergeThreshold(int mergeThreshold) {
+            if (mergeThreshold < 0)
+                throw new IllegalArgumentException("Merge threshold must not be negative: " + mergeThreshold);
+            this.mergeThreshold = mergeThreshold;
+            return this;
+        }
+
+        /**
+         * @param maxLeafSize Largest merged leaf; a power of two in [tile size, {@value #MAX_TILE_SIZE}].
+         *                    Defaults to eight tiles.
+         * @throws IllegalArgumentException if the size is out of range or not a power of two
+         */
+        public Builder maxLeafSize(int maxLeafSize) {
+            if (maxLeafSize < MIN_TILE_SIZE || maxLeafSize > MAX_TILE_SIZE || Integer.bitCount(maxLeafSize) != 1)
+                throw new IllegalArgumentException(String.format(
+                        "Max leaf size must be a power of two in [%,d, %,d]: %,d", MIN_TILE_SIZE, MAX_TILE_SIZE, maxLeafSize));
+            this.maxLeafSize = maxLeafSize;
+            return this;
+        }
+
+        /**
+         * Pages tiles out to a memory-mapped scratch file, for canvases larger than the heap.
+         * Only {@code maxResidentBytes} of tile data stay in the heap; least recently used tiles are
+         * written back to the file and read in again on the next access. Each image creates its own
+         * file in {@code directory}, deleted by {@link InfiniteBufferedImage#close()}.
+         * Cannot be combined with {@link #mergeThreshold(int) adaptive leaves}.
+         *
+         * @param directory Existing directory for the scratch file, ideally on a local disk
+         * @param maxResidentBytes Bytes of tile data to keep in the heap, e.g. {@code 256L << 20}
+         * @throws IllegalArgumentException if the directory is null or the budget is not positive
+         */
+        public Builder mappedStorage(Path directory, long maxResidentBytes) {
+            return storage(TileStorage.MAPPED, directory, maxResidentBytes);
+        }
+
+        /**
+         * Bounds the tile memory of long sessions: once more than {@code maxResidentBytes} of tile data
+         * is in the heap, least recently used tiles are compressed and spilled to a scratch file, and read
+         * back on their next access. Uniform tiles are kept as one pixel and never written. For a budget in
+         * tiles, pass the tile count times the bytes of one tile (e.g. {@code 128 * 128 * 4} for TYPE_INT_ARGB).
+         * Each image creates its own file in {@code directory}, deleted by {@link InfiniteBufferedImage#close()}.
+         * Cannot be combined with {@link #mergeThreshold(int) adaptive leaves}.
+         *
+         * @param directory Existing directory for the scratch file, ideally on a local disk
+         * @param maxResidentBytes Bytes of tile data to keep in the heap, e.g. {@code 512L << 20}
+         * @throws IllegalArgumentException if the directory is null or the budget is not positive
+         * @see InfiniteBufferedImage#getTileCacheStats()
+         */
+        public Builder spillStorage(Path directory, long maxResidentBytes) {
+            return storage(TileStorage.SPILL, directory, maxResidentBytes);
+        }
+
+        /**
+         * Compresses tiles in the heap once they have not been accessed for {@code idleTimeout}, and
+         * decompresses them on their next access. Tiles are checked at the start of each lookup, so an
+         * image that is not used keeps its tiles as they are. Line art and flat fills typically shrink
+         * 10-50x; tiles of photographic noise barely compress and are best kept on a shorter leash with
+         * {@link #spillStorage(Path, long)}. Cannot be combined with {@link #mergeThreshold(int) adaptive leaves}.
+         *
+         * @param idleTimeout Time without access after which a tile is compressed, e.g. {@code Duration.ofSeconds(30)}
+         * @throws IllegalArgumentException if the timeout is null or negative
+         * @see InfiniteBufferedImage#getTileCacheStats()
+         */
+        public Builder compressedStorage(Duration idleTimeout) {
+            if (idleTimeout == null || idleTimeout.isNegative())
+                throw new IllegalArgumentException("Idle timeout must not be null or negative: " + idleTimeout);
+            this.storage = TileStorage.COMPRESSED;
+            this.storageDirectory = null;
+            this.maxResidentBytes = 0;
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * Counts tile, lookup, draw and export activity in {@link InfiniteBufferedImage#getStats()}, e.g. to find
+         * out in production why a canvas is slow or large. Off by default; images without it pay one null check
+         * per operation.
+         *
+         * @param collectStats Whether to collect statistics
+         * @see ImageStats
+         */
+        public Builder collectStats(boolean collectStats) {
+            this.collectStats = collectStats;
+            return this;
+        }
+
+        private Builder storage(TileStorage storage, Path directory, long maxResidentBytes) {
+            if (directory == null)
+                throw new IllegalArgumentException("Storage directory must not be null");
+            if (maxResidentBytes <= 0)
+                throw new IllegalArgumentException("Resident tile budget must be positive: " + maxResidentBytes);
+            this.storage = storage;
+            this.storageDirectory = directory;
+            this.maxResidentBytes = maxResidentBytes;
+            this.idleTimeout = null;
+            return this;
+        }
+
+        /// @return the immutable options
+        public InfiniteImageOptions build() {
+            // Re-validate the config-provided default, which bypassed the setter
+            tileSize(tileSize);
+            if (maxLeafSize != 0 && maxLeafSize < tileSize)
+                throw new IllegalArgumentException(String.format(
+                        "Max leaf size [%,d] is smaller than the tile size [%,d]", maxLeafSize, tileSize));
+            if (storage != TileStorage.HEAP && mergeThreshold > 0)
+                throw new IllegalArgumentException("Adaptive leaves cannot be combined with " + storage + " tile storage");
+            return new InfiniteImageOptions(this, maxLeafSize != 0 ? maxLeafSize : defaultMaxLeafSize(tileSize));
+        }
+    }
+}
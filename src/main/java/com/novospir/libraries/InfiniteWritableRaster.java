@@ -36,10 +36,9 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
     private final InfiniteBufferedImage image;
     private final int bands;
 
-    // todo: move band calculation to InfiniteBufferedImage.getType()
     protected InfiniteWritableRaster(InfiniteBufferedImage image) {
         this.image = image;
-        this.bands = new BufferedImage(1, 1, image.getType()).getRaster().getNumBands();
+        this.bands = image.getNumBands();
     }
 
     /* ------ UTILITY ------ */
@@ -50,8 +49,17 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
         return leaf.image.getRaster();
     }
 
+    // Copies a compact (w x h x bands) block into a larger destination array at (dstX, dstY)
+    private void copyRows(Object block, int blockW, int blockH, Object dst, int dstX, int dstY, int dstW) {
+        for (int row = 0; row < blockH; row++) {
+            System.arraycopy(block, row * blockW * bands,
+                    dst, ((dstY + row) * dstW + dstX) * bands,
+                    blockW * bands);
+        }
+    }
+
     private int[] globalToLocal(int x, int y, QuadNode leaf) {
-        return new int[]{x - leaf.x, y - leaf.y};
+        return new int[]{(int) (x - leaf.x), (int) (y - leaf.y)};
     }
 
     @Override
@@ -139,22 +147,29 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
             final DataBuffer db = tileRaster.getDataBuffer();
             final DataBufferDecoder decoder = new DataBufferDecoder(tileRaster.getSampleModel(), db);
 
-            final int tileX = node.x, tileY = node.y;
+            final long tileX = node.x, tileY = node.y; // a leaf may start before Integer.MIN_VALUE
             final int tileW = node.image.getWidth(), tileH = node.image.getHeight();
 
-            final int interX1 = Math.max(x, tileX);
-            final int interY1 = Math.max(y, tileY);
-            final int interX2 = Math.min(x + w, tileX + tileW);
-            final int interY2 = Math.min(y + h, tileY + tileH);
+            final int interX1 = (int) Math.max(x, tileX);
+            final int interY1 = (int) Math.max(y, tileY);
+            final int interX2 = (int) Math.min((long) x + w, tileX + tileW);
+            final int interY2 = (int) Math.min((long) y + h, tileY + tileH);
             final int interW = interX2 - interX1;
             final int interH = interY2 - interY1;
             if (interW <= 0 || interH <= 0) continue;
 
-            final int localX = interX1 - tileX;
-            final int localY = interY1 - tileY;
+            final int localX = (int) (interX1 - tileX);
+            final int localY = (int) (interY1 - tileY);
             final int dstX = interX1 - x;
             final int dstY = interY1 - y;
 
+            if (!(db instanceof DataBufferInt)) {
+                // Byte/short and bit-packed formats: let the tile raster unpack the samples
+                copyRows(tileRaster.getPixels(localX, localY, interW, interH, (int[]) null),
+                        interW, interH, iArray, dstX, dstY, w);
+                continue;
+            }
+
             // Get direct access to data array based on DataBuffer type
             final int[] data = DataBufferDecoder.getDataArray(db);
 
@@ -216,22 +231,29 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
             final DataBuffer db = tileRaster.getDataBuffer();
             final DataBufferDecoder decoder = new DataBufferDecoder(tileRaster.getSampleModel(), db);
 
-            final int tileX = node.x, tileY = node.y;
+            final long tileX = node.x, tileY = node.y; // a leaf may start before Integer.MIN_VALUE
             final int tileW = node.image.getWidth(), tileH = node.image.getHeight();
 
-            final int interX1 = Math.max(x, tileX);
-            final int interY1 = Math.max(y, tileY);
-            final int interX2 = Math.min(x + w, tileX + tileW);
-            final int interY2 = Math.min(y + h, tileY + tileH);
+            final int interX1 = (int) Math.max(x, tileX);
+            final int interY1 = (int) Math.max(y, tileY);
+            final int interX2 = (int) Math.min((long) x + w, tileX + tileW);
+            final int interY2 = (int) Math.min((long) y + h, tileY + tileH);
             final int interW = interX2 - interX1;
             final int interH = interY2 - interY1;
             if (interW <= 0 || interH <= 0) continue;
 
-            final int localX = interX1 - tileX;
-            final int localY = interY1 - tileY;
+            final int localX = (int) (interX1 - tileX);
+            final int localY = (int) (interY1 - tileY);
             final int dstX = interX1 - x;
             final int dstY = interY1 - y;
 
+            if (!(db instanceof DataBufferFloat)) {
+                // Integral tiles: let the tile raster convert its samples
+                copyRows(tileRaster.getPixels(localX, localY, interW, interH, (float[]) null),
+                        interW, interH, fArray, dstX, dstY, w);
+                continue;
+            }
+
             // Get direct access to data array based on DataBuffer type
             final float[] data = DataBufferDecoder.getDataArrayFloat(db);
 
@@ -284,22 +306,29 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
             final DataBuffer db = tileRaster.getDataBuffer();
             final DataBufferDecoder decoder = new DataBufferDecoder(tileRaster.getSampleModel(), db);
 
-            final int tileX = node.x, tileY = node.y;
+            final long tileX = node.x, tileY = node.y; // a leaf may start before Integer.MIN_VALUE
             final int tileW = node.image.getWidth(), tileH = node.image.getHeight();
 
-            final int interX1 = Math.max(x, tileX);
-            final int interY1 = Math.max(y, tileY);
-            final int interX2 = Math.min(x + w, tileX + tileW);
-            final int interY2 = Math.min(y + h, tileY + tileH);
+            final int interX1 = (int) Math.max(x, tileX);
+            final int interY1 = (int) Math.max(y, tileY);
+            final int interX2 = (int) Math.min((long) x + w, tileX + tileW);
+            final int interY2 = (int) Math.min((long) y + h, tileY + tileH);
             final int interW = interX2 - interX1;
             final int interH = interY2 - interY1;
             if (interW <= 0 || interH <= 0) continue;
 
-            final int localX = interX1 - tileX;
-            final int localY = interY1 - tileY;
+            final int localX = (int) (interX1 - tileX);
+            final int localY = (int) (interY1 - tileY);
             final int dstX = interX1 - x;
             final int dstY = interY1 - y;
 
+            if (!(db instanceof DataBufferDouble)) {
+                // Integral tiles: let the tile raster convert its samples
+                copyRows(tileRaster.getPixels(localX, localY, interW, interH, (double[]) null),
+                        interW, interH, dArray, dstX, dstY, w);
+                continue;
+            }
+
             // Get direct access to data array based on DataBuffer type
             final double[] data = DataBufferDecoder.getDataArrayDouble(db);
 
@@ -340,7 +369,7 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
                 String.format("Allocated array was too small [%,d] < [%,d]", iArray.length, bands)
         );
         QuadNode leaf = this.image.findOrCreateLeaf(x, y);
-        leaf.image.getRaster().setPixel(x - leaf.x, y - leaf.y, iArray);
+        leaf.image.getRaster().setPixel((int) (x - leaf.x), (int) (y - leaf.y), iArray);
         this.image.markBoundsDirty();
     }
 
@@ -351,7 +380,7 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
                 String.format("Allocated array was too small [%,d] < [%,d]", fArray.length, bands)
         );
         QuadNode leaf = this.image.findOrCreateLeaf(x, y);
-        leaf.image.getRaster().setPixel(x - leaf.x, y - leaf.y, fArray);
+        leaf.image.getRaster().setPixel((int) (x - leaf.x), (int) (y - leaf.y), fArray);
         this.image.markBoundsDirty();
     }
 
@@ -362,7 +391,7 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
                 String.format("Allocated array was too small [%,d] < [%,d]", dArray.length, bands)
         );
         QuadNode leaf = this.image.findOrCreateLeaf(x, y);
-        leaf.image.getRaster().setPixel(x - leaf.x, y - leaf.y, dArray);
+        leaf.image.getRaster().setPixel((int) (x - leaf.x), (int) (y - leaf.y), dArray);
         this.image.markBoundsDirty();
     }
 
@@ -386,15 +415,15 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
             if (node == null || node.image == null) continue;
 
             // Calculate intersection between requested region and tile
-            int tileX = node.x;
-            int tileY = node.y;
-            int tileWidth = node.size;
-            int tileHeight = node.size;
+            long tileX = node.x; // a leaf may start before Integer.MIN_VALUE
+            long tileY = node.y;
+            long tileWidth = node.size;
+            long tileHeight = node.size;
 
-            int interX1 = Math.max(x, tileX);
-            int interY1 = Math.max(y, tileY);
-            int interX2 = Math.min(x + w, tileX + tileWidth);
-            int interY2 = Math.min(y + h, tileY + tileHeight);
+            int interX1 = (int) Math.max(x, tileX);
+            int interY1 = (int) Math.max(y, tileY);
+            int interX2 = (int) Math.min((long) x + w, tileX + tileWidth);
+            int interY2 = (int) Math.min((long) y + h, tileY + tileHeight);
 
             int interW = interX2 - interX1;
             int interH = interY2 - interY1;
@@ -402,26 +431,24 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
             if (interW <= 0 || interH <= 0) continue;
 
             // Convert to tile-local coordinates
-            int localX = interX1 - tileX;
-            int localY = interY1 - tileY;
+            int localX = (int) (interX1 - tileX);
+            int localY = (int) (interY1 - tileY);
             int srcX = interX1 - x;
             int srcY = interY1 - y;
 
-            // Get the tile's writable raster
-            WritableRaster tileRaster = node.image.getRaster();
-
-            // Copy pixels from source array to tile
+            // Gather the overlapping block, then let the tile raster pack it in its own format
+            int[] block = new int[interW * interH * bands];
             for (int row = 0; row < interH; row++) {
-                int srcOffset = ((srcY + row) * w + srcX) * bands;
-                int dstOffset = ((localY + row) * tileWidth + localX) * bands;
-
                 System.arraycopy(
-                        iArray, srcOffset,
-                        ((DataBufferInt) tileRaster.getDataBuffer()).getData(), dstOffset,
+                        iArray, ((srcY + row) * w + srcX) * bands,
+                        block, row * interW * bands,
                         interW * bands
                 );
             }
+            node.image.getRaster().setPixels(localX, localY, interW, interH, block);
         }
+
+        this.image.markBoundsDirty();
     }
 
     /// @see java.awt.image.WritableRaster#setPixels(int, int, int, int, float[])
@@ -485,15 +512,15 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
             if (node == null || node.image == null) continue;
 
             // Calculate intersection between requested region and tile
-            int tileX = node.x;
-            int tileY = node.y;
-            int tileWidth = node.size;
-            int tileHeight = node.size;
+            long tileX = node.x; // a leaf may start before Integer.MIN_VALUE
+            long tileY = node.y;
+            long tileWidth = node.size;
+            long tileHeight = node.size;
 
-            int interX1 = Math.max(x, tileX);
-            int interY1 = Math.max(y, tileY);
-            int interX2 = Math.min(x + w, tileX + tileWidth);
-            int interY2 = Math.min(y + h, tileY + tileHeight);
+            int interX1 = (int) Math.max(x, tileX);
+            int interY1 = (int) Math.max(y, tileY);
+            int interX2 = (int) Math.min((long) x + w, tileX + tileWidth);
+            int interY2 = (int) Math.min((long) y + h, tileY + tileHeight);
 
             int interW = interX2 - interX1;
             int interH = interY2 - interY1;
@@ -501,8 +528,8 @@ class InfiniteWritableRaster implements AbstractWritableRaster {
             if (interW <= 0 || interH <= 0) continue;
 
             // Convert to tile-local coordinates
-            int localX = interX1 - tileX;
-            int localY = interY1 - tileY;
+            int localX = (int) (interX1 - tileX);
+            int localY = (int) (interY1 - tileY);
             int dstX = interX1 - x;
             int dstY = interY1 - y;
 
@@ -0,0 +1,111 @@
+package com.novospir.libraries;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Walks the allocated leaves of a quadtree in a {@link TileOrder}, and splits by subtree.
+ *
+ * <p>The pending work is a stack of subtrees, the next one on top. Advancing pops a subtree and either
+ * returns its leaf or pushes its children in visiting order. Splitting hands the first half of the stack to
+ * a new spliterator; when only one subtree is left, it is first opened into its children. Each half is then
+ * a run of whole subtrees, so threads work on separate regions of the canvas and never share a leaf.
+ *
+ * <p>The tree must not change structurally while it is walked. Writing pixels to the tiles of the visited
+ * leaves is fine.
+ *
+ * @param <T> the type of the elements made from each leaf
+ * @see TileOrder
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class LeafSpliterator<T> implements Spliterator<T> {
+    private final TileOrder order;
+    private final Function<QuadNode, ? extends T> view;
+
+    private QuadNode[] nodes;
+    private int[] states; // orientation of each pending subtree in the order
+    private int size;
+    private long estimate;
+
+    /**
+     * @param root     The root of the tree to walk
+     * @param order    The order of the leaves
+     * @param view     Makes the element for an allocated leaf
+     * @param estimate The number of allocated leaves, or an estimate of it
+     */
+    LeafSpliterator(QuadNode root, TileOrder order, Function<QuadNode, ? extends T> view, long estimate) {
+        this(order, view, new QuadNode[]{root}, new int[1], 1, estimate);
+    }
+
+    private LeafSpliterator(TileOrder order, Function<QuadNode, ? extends T> view, QuadNode[] nodes, int[] states,
+                            int size, long estimate) {
+        this.order = order;
+        this.view = view;
+        this.nodes = nodes;
+        this.states = states;
+        this.size = size;
+        this.estimate = estimate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (size > 0) {
+            QuadNode node = nodes[--size];
+            if (node.isLeaf()) {
+                if (!InfiniteBufferedImage.isAllocated(node)) continue;
+                if (estimate > 0) estimate--;
+                action.accept(view.apply(node));
+                return true;
+            }
+            open(node, states[size]);
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        // A single subtree splits into its quadrants; a single leaf cannot split
+        while (size == 1 && !nodes[0].isLeaf()) {
+            size = 0;
+            open(nodes[0], states[0]);
+        }
+        if (size < 2) return null;
+
+        // The top of the stack comes first, so the prefix is the upper half
+        int half = size / 2;
+        LeafSpliterator<T> prefix = new LeafSpliterator<>(order, view,
+                Arrays.copyOfRange(nodes, size - half, size), Arrays.copyOfRange(states, size - half, size),
+                half, estimate / 2);
+        Arrays.fill(nodes, size - half, size, null);
+        size -= half;
+        estimate -= prefix.estimate;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL;
+    }
+
+    /// Pushes the children of an internal node, so the first to visit ends up on top
+    private void open(QuadNode node, int state) {
+        if (size + 4 > nodes.length) {
+            nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, size + 4));
+            states = Arrays.copyOf(states, nodes.length);
+        }
+        for (int i = 3; i >= 0; i--) {
+            QuadNode child = node.children[order.quadrant(state, i)];
+            if (child == null) continue;
+            nodes[size] = child;
+            states[size++] = order.childState(state, i);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.novospir.libraries;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pages tiles out to fixed-size slots of a memory-mapped scratch file.
+ *
+ * <p>Each paged-out leaf owns one slot of exactly one tile's raw data elements, in native byte
+ * order; the slot index is kept in {@link QuadNode#data}. The file is mapped in regions of
+ * {@value #REGION_BYTES} bytes (a single {@link MappedByteBuffer} cannot exceed 2 GB), created as slots
+ * are first needed. The file is sparse where the file system supports it, and tile data lives in the
+ * OS page cache rather than the Java heap, so a logical canvas can be far larger than both.
+ *
+ * <p>Slots of released leaves are reused. The scratch file is created in the configured directory and
+ * opened with {@link StandardOpenOption#DELETE_ON_CLOSE}; on Unix its name is removed right away, so the
+ * space is reclaimed even if the process dies. It is not a persistence format (see {@link InfiniteImageFile}).
+ *
+ * @see TilePager
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class MappedTileStore extends TilePager {
+    static final long REGION_BYTES = 64L << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int slotsPerRegion;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+    private boolean closed;
+
+    /**
+     * @param directory Directory for the scratch file
+     * @throws UncheckedIOException if the scratch file cannot be created
+     */
+    MappedTileStore(Path directory, int tileSize, int type, long maxResidentBytes) {
+        super(tileSize, type, maxResidentBytes, Long.MAX_VALUE);
+        this.slotsPerRegion = (int) Math.max(1, REGION_BYTES / tileBytes);
+        try {
+            this.file = Files.createTempFile(directory, "infinite-image-", ".tiles");
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create tile store in " + directory, e);
+        }
+    }
+
+    @Override
+    void read(QuadNode leaf, BufferedImage tile) {
+        TileCodec.getElements(slot((Integer) leaf.data), tile.getRaster().getDataBuffer());
+    }
+
+    @Override
+    void write(QuadNode leaf) {
+        if (leaf.data == null) leaf.data = allocateSlot();
+        TileCodec.putElements(leaf.image.getRaster().getDataBuffer(), slot((Integer) leaf.data));
+    }
+
+    @Override
+    void free(QuadNode leaf) {
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = (Integer) leaf.data;
+    }
+
+    /// @return the number of slots handed out so far, including free ones (the file holds this many tiles)
+    int slotCount() {
+        return nextSlot;
+    }
+
+    @Override
+    long storedBytes() {
+        return (long) nextSlot * tileBytes;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        // Mappings are released by the garbage collector; the file is deleted on close
+        regions.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete tile store " + file, e);
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) return freeSlots[--freeCount];
+        if (nextSlot == Integer.MAX_VALUE)
+            throw new IllegalStateException("Tile store is full: " + file);
+        return nextSlot++;
+    }
+
+    /// @return a view of exactly one slot, in native byte order
+    private ByteBuffer slot(int slot) {
+        if (closed) throw new IllegalStateException("Tile store is closed: " + file);
+        int region = slot / slotsPerRegion;
+        while (regions.size() <= region) mapRegion(regions.size());
+
+        int offset = (slot % slotsPerRegion) * tileBytes;
+        ByteBuffer view = regions.get(region).duplicate();
+        view.position(offset).limit(offset + tileBytes);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private void mapRegion(int region) {
+        long size = (long) slotsPerRegion * tileBytes;
+        try {
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, region * size, size));
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot map region [%,d] of tile store %s", region, file), e);
+        }
+    }
+}
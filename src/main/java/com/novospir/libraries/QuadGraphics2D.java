@@ -1,7 +1,5 @@
 package com.novospir.libraries;
 
-import com.novospir.libraries.config.ConfigLoader;
-
 import java.awt.*;
 import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
@@ -10,6 +8,7 @@ import java.awt.geom.*;
 import java.awt.image.*;
 import java.awt.image.renderable.RenderableImage;
 import java.text.AttributedCharacterIterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -53,11 +52,14 @@ import java.util.Map;
  */
 class QuadGraphics2D extends Graphics2D {
     private final InfiniteBufferedImage image;
+    private final long originX, originY; // canvas point at (0, 0) of user space
     private final Graphics2D delegate;
     private volatile boolean isDisposed;
 
-    public QuadGraphics2D(InfiniteBufferedImage image) {
+    public QuadGraphics2D(InfiniteBufferedImage image, long originX, long originY) {
         this.image = image;
+        this.originX = originX;
+        this.originY = originY;
         this.delegate = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
                 .createGraphics();
     }
@@ -234,14 +236,31 @@ class QuadGraphics2D extends Graphics2D {
 
     /* ------ UTILITY ------ */
 
+    /// Leaves a draw writes to, created as needed; counted per primitive if the image collects statistics
+    private List<QuadNode> drawTargets(String primitive, int x, int y, int w, int h) {
+        List<QuadNode> leaves = image.findLeaves(originX + x, originY + y, w, h, true);
+        ImageStats stats = image.stats();
+        if (stats != null) stats.countDraw(primitive, leaves.size());
+        return leaves;
+    }
+
+    private List<QuadNode> drawTargets(String primitive, Rectangle2D bounds) {
+        return drawTargets(primitive, (int) bounds.getX(), (int) bounds.getY(), (int) bounds.getWidth(), (int) bounds.getHeight());
+    }
+
+    /// @return the bounds of a leaf in user space; leaves a draw touches lie within reach of its int coordinates
+    private Rectangle userBounds(QuadNode leaf) {
+        return new Rectangle((int) (leaf.x - originX), (int) (leaf.y - originY), (int) leaf.size, (int) leaf.size);
+    }
+
     private AffineTransform buildLocalTransform(QuadNode leaf) {
         AffineTransform t = new AffineTransform(); // global/user transform
-        t.translate(-leaf.x, -leaf.y);             // move into tile-local space
+        t.translate(originX - leaf.x, originY - leaf.y); // move into tile-local space
         t.concatenate(getTransform());
         return t;
     }
 
-    private Graphics2D prepareTileGraphics(QuadNode leaf) {
+    Graphics2D prepareTileGraphics(QuadNode leaf) {
         Graphics2D g = leaf.image.createGraphics();
         g.setRenderingHints(getRenderingHints());
         g.setComposite(getComposite());
@@ -287,7 +306,7 @@ class QuadGraphics2D extends Graphics2D {
         Rectangle2D bounds = getTransformedBoundsRect(shape);
 
         // 2. Find all leaves that intersect the bounding box
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("draw", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g2 = prepareTileGraphics(leaf);
             g2.draw(shape);
@@ -329,7 +348,7 @@ class QuadGraphics2D extends Graphics2D {
         Rectangle bounds = getTransformedBoundsRect(shape);
 
         // 3. Find all leaves that intersect the bounding box
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawString", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.drawString(str, x, y);
@@ -358,7 +377,7 @@ class QuadGraphics2D extends Graphics2D {
         Rectangle bounds = getTransformedBoundsRect(shape);
 
         // 3. Find all leaves that intersect the bounding box
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawString", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             layout.draw(g, x, y);
@@ -377,7 +396,6 @@ class QuadGraphics2D extends Graphics2D {
 
     @Override
     public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
-        int TILE_SIZE = ConfigLoader.getInstance().getInt("tile.size", 128);
         if (isDisposed) throw new IllegalStateException("Dispose was called on this object");
         // Handle null image
         if (img == null) return true;
@@ -392,56 +410,33 @@ class QuadGraphics2D extends Graphics2D {
             return false; // Not yet fully loaded
         }
 
-        // Prepare transformed image for drawing
-        BufferedImage src;
-        boolean srcIsBuffered = img instanceof BufferedImage;
-
-        if (srcIsBuffered && xform.isIdentity()) {
-            // Shortcut: draw directly if image is BufferedImage and no transform
-            src = (BufferedImage) img;
-        } else {
-            // Convert image to a BufferedImage (if not already)
-            src = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = src.createGraphics();
-            g2d.setComposite(AlphaComposite.Src);
-            g2d.drawImage(img, 0, 0, obs);
-            g2d.dispose();
-        }
-
-        // Create transformed image
-        AffineTransformOp xformOp = new AffineTransformOp(xform, AffineTransformOp.TYPE_BILINEAR);
-        BufferedImage transformed = xformOp.createCompatibleDestImage(src, null);
-        xformOp.filter(src, transformed);
-
-        // Now, draw the transformed image to your internal tile system
-        Rectangle bounds = xformOp.getBounds2D(src).getBounds();
+        // Device-space footprint of the transformed image; each tile applies the transform itself,
+        // so negative translations need no intermediate image
+        Rectangle bounds = xform.createTransformedShape(new Rectangle(0, 0, width, height)).getBounds();
+        CanvasEvents.TransformedDrawImage event = new CanvasEvents.TransformedDrawImage();
+        event.begin();
 
-        // Loop through affected tiles
-        for (int tileY = bounds.y / TILE_SIZE; tileY <= (bounds.y + bounds.height) / TILE_SIZE; tileY++) {
-            for (int tileX = bounds.x / TILE_SIZE; tileX <= (bounds.x + bounds.width) / TILE_SIZE; tileX++) {
-                BufferedImage tile = image.findOrCreateLeaf(tileX * TILE_SIZE, tileY * TILE_SIZE).image;
-                if (tile == null) continue;
-
-                Graphics2D g2d = tile.createGraphics();
+        // Loop through affected leaves
+        for (QuadNode leaf : drawTargets("drawImage", bounds)) {
+            if (leaf == null || leaf.image == null) continue;
+            event.tiles++;
 
-                // Set clip so we don’t overdraw outside this tile
-                g2d.setClip(0, 0, TILE_SIZE, TILE_SIZE);
+            Graphics2D g2d = leaf.image.createGraphics();
 
-                // Calculate destination offset
-                int offsetX = tileX * TILE_SIZE;
-                int offsetY = tileY * TILE_SIZE;
+            // Set clip so we don’t overdraw outside this leaf
+            g2d.setClip(0, 0, (int) leaf.size, (int) leaf.size);
 
-                // Translate graphics context so tile is correctly aligned
-                g2d.translate(-offsetX, -offsetY);
+            // Translate graphics context so the leaf is correctly aligned
+            g2d.translate(originX - leaf.x, originY - leaf.y);
 
-                // Composite mode (if you have a composite state, set here)
-                g2d.setComposite(AlphaComposite.SrcOver);
+            // Composite mode (if you have a composite state, set here)
+            g2d.setComposite(AlphaComposite.SrcOver);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
 
-                // Actually draw the image
-                g2d.drawImage(transformed, 0, 0, null);
+            // Actually draw the image
+            g2d.drawImage(img, xform, null);
 
-                g2d.dispose();
-            }
+            g2d.dispose();
         }
 
         // Notify observer (we assume draw completed)
@@ -450,6 +445,10 @@ class QuadGraphics2D extends Graphics2D {
         }
 
         this.image.markBoundsDirty();
+        if (event.shouldCommit()) {
+            event.setRegion(originX + bounds.x, originY + bounds.y, bounds.width, bounds.height);
+            event.commit();
+        }
         return true;
     }
 
@@ -518,7 +517,7 @@ class QuadGraphics2D extends Graphics2D {
         int h = Math.abs(dHeight);
         Rectangle dstBounds = new Rectangle(minDx, minDy, w, h);
 
-        for (QuadNode leaf : image.findLeaves(dstBounds.x, dstBounds.y, dstBounds.width, dstBounds.height, true)) {
+        for (QuadNode leaf : drawTargets("drawImage", dstBounds.x, dstBounds.y, dstBounds.width, dstBounds.height)) {
             if (leaf == null || leaf.image == null) continue;
 
             Graphics2D g = leaf.image.createGraphics();
@@ -528,18 +527,19 @@ class QuadGraphics2D extends Graphics2D {
 
             // Optional background fill (only inside dst rect for this tile)
             if (bgcolor != null) {
-                Rectangle tileRect = new Rectangle(leaf.x, leaf.y, leaf.size, leaf.size);
+                Rectangle tileRect = userBounds(leaf);
                 Rectangle r = dstBounds.intersection(tileRect);
                 if (!r.isEmpty()) {
                     Color oc = g.getColor();
                     g.setColor(bgcolor);
-                    g.fillRect(r.x - leaf.x, r.y - leaf.y, r.width, r.height);
+                    g.fillRect(r.x - tileRect.x, r.y - tileRect.y, r.width, r.height);
                     g.setColor(oc);
                 }
             }
 
+            int tileX = (int) (leaf.x - originX), tileY = (int) (leaf.y - originY);
             g.drawImage(img,
-                    dx1 - leaf.x, dy1 - leaf.y, dx2 - leaf.x, dy2 - leaf.y,
+                    dx1 - tileX, dy1 - tileY, dx2 - tileX, dy2 - tileY,
                     sx1, sy1, sx2, sy2,
                     observer);
 
@@ -568,7 +568,7 @@ class QuadGraphics2D extends Graphics2D {
         int searchWidth = (int) Math.ceil(width);
         int searchHeight = (int) Math.ceil(height);
 
-        for (QuadNode leaf : image.findLeaves(searchMinX, searchMinY, searchWidth, searchHeight, true)) {
+        for (QuadNode leaf : drawTargets("drawGlyphVector", searchMinX, searchMinY, searchWidth, searchHeight)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g2 = prepareTileGraphics(leaf);
             g2.drawGlyphVector(g, x, y);
@@ -591,7 +591,7 @@ class QuadGraphics2D extends Graphics2D {
         int height = (int) Math.ceil(bounds.getHeight());
 
         // 2. Find all leaves that intersect the bounding box
-        for (QuadNode leaf : image.findLeaves(minX, minY, width, height, true)) {
+        for (QuadNode leaf : drawTargets("fill", minX, minY, width, height)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.fill(s);
@@ -608,7 +608,7 @@ class QuadGraphics2D extends Graphics2D {
         Rectangle bounds = getTransformedBoundsRect(shape);
 
         // 2. Find all leaves in the bounding box
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawLine", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.drawLine(x1, y1, x2, y2);
@@ -624,7 +624,7 @@ class QuadGraphics2D extends Graphics2D {
         Shape shape = new Rectangle2D.Double(x, y, width, height);
         Rectangle bounds = getTransformedBoundsRect(shape);
 
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawRect", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.drawRect(x, y, width, height);
@@ -638,7 +638,7 @@ class QuadGraphics2D extends Graphics2D {
     private void applyLocalClip(Graphics2D g, QuadNode leaf) {
         Shape clip = getClip();
         if (clip == null) return;
-        AffineTransform toLocal = AffineTransform.getTranslateInstance(-leaf.x, -leaf.y);
+        AffineTransform toLocal = AffineTransform.getTranslateInstance(originX - leaf.x, originY - leaf.y);
         g.setClip(toLocal.createTransformedShape(clip));
     }
 
@@ -673,7 +673,7 @@ class QuadGraphics2D extends Graphics2D {
         Shape shape = new Rectangle2D.Double(x, y, width, height);
         Rectangle bounds = getTransformedBoundsRect(shape);
 
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("fillRect", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.fillRect(x, y, width, height);
@@ -689,7 +689,7 @@ class QuadGraphics2D extends Graphics2D {
         Shape shape = new Rectangle2D.Double(x, y, width, height);
         Rectangle bounds = getTransformedBoundsRect(shape);
 
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("clearRect", bounds)) {
         // todo: not sure - should we deleted leaf node?
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
@@ -706,7 +706,7 @@ class QuadGraphics2D extends Graphics2D {
         Shape shape = new Rectangle2D.Double(x, y, width, height);
         Rectangle bounds = getTransformedBoundsRect(shape);
 
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawRoundRect", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.drawRoundRect(x, y, width, height, arcWidth, arcHeight);
@@ -722,7 +722,7 @@ class QuadGraphics2D extends Graphics2D {
         Shape shape = new Rectangle2D.Double(x, y, width, height);
         Rectangle bounds = getTransformedBoundsRect(shape);
 
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("fillRoundRect", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.fillRoundRect(x, y, width, height, arcWidth, arcHeight);
@@ -738,7 +738,7 @@ class QuadGraphics2D extends Graphics2D {
         Shape shape = new Ellipse2D.Double(x, y, width, height);
         Rectangle bounds = getTransformedBoundsRect(shape);
 
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawOval", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.drawOval(x, y, width, height);
@@ -754,7 +754,7 @@ class QuadGraphics2D extends Graphics2D {
         Shape shape = new Ellipse2D.Double(x, y, width, height);
         Rectangle bounds = getTransformedBoundsRect(shape);
         
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("fillOval", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.fillOval(x, y, width, height);
@@ -771,7 +771,7 @@ class QuadGraphics2D extends Graphics2D {
         Rectangle bounds = getTransformedBoundsRect(shape);
 
         // 1. Find all leaves that intersect the bounding box
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawArc", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g = prepareTileGraphics(leaf);
             g.drawArc(x, y, width, height, startAngle, arcAngle);
@@ -788,7 +788,7 @@ class QuadGraphics2D extends Graphics2D {
         Rectangle bounds = getTransformedBoundsRect(shape);
 
         // 1. Find all leaves that intersect the bounding box
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("fillArc", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g2 = prepareTileGraphics(leaf);
             g2.fillArc(x, y, width, height, startAngle, arcAngle);
@@ -813,7 +813,7 @@ class QuadGraphics2D extends Graphics2D {
         Rectangle bounds = getTransformedBoundsRect(path);
 
         // 2. Find all leaves that intersect the bounding box
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawPolyline", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g2 = prepareTileGraphics(leaf);
             g2.drawPolyline(xPoints, yPoints, nPoints);
@@ -839,7 +839,7 @@ class QuadGraphics2D extends Graphics2D {
         Rectangle bounds = getTransformedBoundsRect(path);
 
         // 2. Find all leaves that intersect the bounding box
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawPolygon", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g2 = prepareTileGraphics(leaf);
             g2.drawPolygon(xPoints, yPoints, nPoints);
@@ -865,7 +865,7 @@ class QuadGraphics2D extends Graphics2D {
         Rectangle bounds = getTransformedBoundsRect(path);
 
         // 2. Find all leaves that intersect the bounding box
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("fillPolygon", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g2 = prepareTileGraphics(leaf);
             g2.fillPolygon(xPoints, yPoints, nPoints);
@@ -881,7 +881,7 @@ class QuadGraphics2D extends Graphics2D {
         if (p == null || p.npoints < 2) return;
 
         Rectangle bounds = getTransformedBoundsRect(p);
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("drawPolygon", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g2 = prepareTileGraphics(leaf);
             g2.drawPolygon(p);
@@ -897,7 +897,7 @@ class QuadGraphics2D extends Graphics2D {
         if (p == null || p.npoints < 3) return;
 
         Rectangle bounds = getTransformedBoundsRect(p);
-        for (QuadNode leaf : image.findLeaves(bounds, true)) {
+        for (QuadNode leaf : drawTargets("fillPolygon", bounds)) {
             if (leaf == null || leaf.image == null) continue;
             Graphics2D g2 = prepareTileGraphics(leaf);
             g2.fillPolygon(p);
@@ -980,6 +980,9 @@ class QuadGraphics2D extends Graphics2D {
         if (isDisposed) throw new IllegalStateException("Dispose was called on this object");
         if (width <= 0 || height <= 0) return;
         
+        CanvasEvents.CopyArea event = new CanvasEvents.CopyArea();
+        event.begin();
+
         // Calculate source and destination bounds
         Rectangle srcBounds = new Rectangle(x, y, width, height);
         Rectangle dstBounds = new Rectangle(x + dx, y + dy, width, height);
@@ -987,15 +990,15 @@ class QuadGraphics2D extends Graphics2D {
         // Find all leaves that intersect either source or destination
         Rectangle combinedBounds = srcBounds.union(dstBounds);
         
-        // First, read all source pixels into a temporary buffer
-        BufferedImage srcBuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        // First, read all source pixels into a temporary buffer (same format as the tiles, so the copy is lossless)
+        BufferedImage srcBuffer = new BufferedImage(width, height, image.getType());
         Graphics2D srcGraphics = srcBuffer.createGraphics();
         
         // Copy source pixels from all tiles
-        for (QuadNode leaf : image.findLeaves(srcBounds, false)) {
+        for (QuadNode leaf : image.findLeaves(originX + x, originY + y, width, height, false)) {
             if (leaf == null || leaf.image == null) continue;
             
-            Rectangle tileBounds = new Rectangle(leaf.x, leaf.y, leaf.size, leaf.size);
+            Rectangle tileBounds = userBounds(leaf);
             Rectangle intersection = srcBounds.intersection(tileBounds);
             
             if (!intersection.isEmpty()) {
@@ -1004,8 +1007,8 @@ class QuadGraphics2D extends Graphics2D {
                 int bufferY = intersection.y - srcBounds.y;
                 
                 // Calculate source region in the tile
-                int tileX = intersection.x - leaf.x;
-                int tileY = intersection.y - leaf.y;
+                int tileX = intersection.x - tileBounds.x;
+                int tileY = intersection.y - tileBounds.y;
                 
                 // Copy from tile to buffer
                 srcGraphics.drawImage(leaf.image,
@@ -1017,20 +1020,21 @@ class QuadGraphics2D extends Graphics2D {
         srcGraphics.dispose();
         
         // Now draw the source buffer to all destination tiles
-        for (QuadNode leaf : image.findLeaves(dstBounds, true)) {
+        for (QuadNode leaf : drawTargets("copyArea", dstBounds)) {
             if (leaf == null || leaf.image == null) continue;
+            event.tiles++;
             
             Graphics2D g = leaf.image.createGraphics();
             g.setRenderingHints(getRenderingHints());
             g.setComposite(getComposite());
             
-            Rectangle tileBounds = new Rectangle(leaf.x, leaf.y, leaf.size, leaf.size);
+            Rectangle tileBounds = userBounds(leaf);
             Rectangle intersection = dstBounds.intersection(tileBounds);
             
             if (!intersection.isEmpty()) {
                 // Calculate destination region in the tile
-                int tileX = intersection.x - leaf.x;
-                int tileY = intersection.y - leaf.y;
+                int tileX = intersection.x - tileBounds.x;
+                int tileY = intersection.y - tileBounds.y;
                 
                 // Calculate source region in the buffer
                 int bufferX = intersection.x - dstBounds.x;
@@ -1047,6 +1051,12 @@ class QuadGraphics2D extends Graphics2D {
         }
 
         this.image.markBoundsDirty();
+        if (event.shouldCommit()) {
+            event.setRegion(originX + x, originY + y, width, height);
+            event.dx = dx;
+            event.dy = dy;
+            event.commit();
+        }
     }
 
     @Override
@@ -10,13 +10,16 @@ import java.awt.image.BufferedImage;
  * that enables infinite image dimensions. Each node represents a rectangular region
  * of the image space and either contains:
  * <ul>
- *   <li><b>Leaf nodes:</b> A tile (BufferedImage) with actual pixel data
+ *   <li><b>Leaf nodes:</b> A tile (BufferedImage) with actual pixel data, or the {@code data}
+ *       handle of a tile store that holds the tile outside the heap (see {@link TilePager})
  *   <li><b>Internal nodes:</b> References to 4 child nodes partitioning the space into quadrants
  * </ul>
  * 
  * <h3>Node States:</h3>
  * <ul>
- *   <li><b>Leaf node</b> ({@code children == null}): Contains a BufferedImage tile
+ *   <li><b>Leaf node</b> ({@code children == null}): Contains a BufferedImage tile. Leaves are usually
+ *       one tile in size, but adaptive images may merge four sibling leaves into one larger leaf
+ *       whose image covers the whole node (see {@link InfiniteImageOptions.Builder#mergeThreshold(int)})
  *   <li><b>Internal node</b> ({@code children != null}): Contains 0-4 child nodes
  *   <li><b>Unused regions</b>: Child array slots may be null if that quadrant is empty
  * </ul>
@@ -46,9 +49,19 @@ import java.awt.image.BufferedImage;
  * @since 1.0
  */
 class QuadNode {
-    final int x, y, size;
+    /** Largest node size; a root this large spans 2^62 pixels per axis */
+    static final long MAX_SIZE = 1L << 62;
+    /** Smallest coordinate a node may cover; nodes lie within [MIN_COORDINATE, MAX_COORDINATE) */
+    static final long MIN_COORDINATE = -(1L << 62);
+    /** Exclusive upper bound of the coordinates a node may cover, so x + size never overflows */
+    static final long MAX_COORDINATE = 1L << 62;
+
+    final long x, y, size;
     BufferedImage image; // only used if leaf
+    Object data; // only used if leaf, by the tile store of a paged-out tile
     QuadNode[] children;
+    int coDraws; // only used if internal, counts writes that touched all four children (adaptive merging)
+    int epoch; // generation allowed to modify this node in place; older nodes are shared with snapshots
 
     /**
      * Creates a new quadtree node representing a spatial region.
@@ -57,12 +70,28 @@ class QuadNode {
      * @param y The y-coordinate of the top-left corner in global image space
      * @param size The width and height of this node's region (always square)
      */
-    public QuadNode(int x, int y, int size) {
+    public QuadNode(long x, long y, long size) {
         this.x = x;
         this.y = y;
         this.size = size;
     }
 
+    /**
+     * Copies this node for a newer generation, sharing its image, data and children with the original.
+     *
+     * @param epoch The generation of the copy
+     * @return A node with the same region and content, whose children array can be modified independently
+     */
+    QuadNode copy(int epoch) {
+        QuadNode copy = new QuadNode(x, y, size);
+        copy.image = image;
+        copy.data = data;
+        copy.children = children != null ? children.clone() : null;
+        copy.coDraws = coDraws;
+        copy.epoch = epoch;
+        return copy;
+    }
+
     /**
      * Determines if this node is a leaf node (contains pixel data).
      *
@@ -79,8 +108,9 @@ class QuadNode {
      * @param py The y-coordinate of the point to test
      * @return {@code true} if the point is within bounds [x, x+size) x [y, y+size), {@code false} otherwise
      */
-    boolean contains(int px, int py) {
-        return px >= x && px < x + size && py >= y && py < y + size;
+    boolean contains(long px, long py) {
+        // Unsigned differences: points left of or above the node wrap around to large values
+        return Long.compareUnsigned(px - x, size) < 0 && Long.compareUnsigned(py - y, size) < 0;
     }
 
     /**
@@ -98,44 +128,132 @@ class QuadNode {
      * @param py The y-coordinate of the point
      * @return An integer in [0, 3] representing the quadrant containing the point
      */
-    int getQuadrant(int px, int py) {
-        int half = size / 2;
+    int getQuadrant(long px, long py) {
+        long half = size / 2;
         boolean right = px >= x + half;
         boolean bottom = py >= y + half;
         return (bottom ? 2 : 0) + (right ? 1 : 0);
     }
 
     /**
-     * Creates a new parent node to accommodate a point outside this node's bounds.
+     * Descends from this node to the node of {@code leafSize} that contains the given point,
+     * creating any missing intermediate nodes along the path.
+     *
+     * <p>The point must lie within this node, and {@code leafSize} must divide this node's size
+     * by a power of two. The descent stops early at a merged leaf that already covers the point.
+     *
+     * @param px The x-coordinate of the point
+     * @param py The y-coordinate of the point
+     * @param leafSize The size of the node to descend to (usually the tile size)
+     * @return The (possibly newly created) node of {@code leafSize}, or the larger merged leaf, containing the point
+     */
+    QuadNode getOrCreateLeaf(long px, long py, long leafSize) {
+        QuadNode current = this;
+        while (current.size > leafSize && !(current.isLeaf() && current.image != null)) {
+            long half = current.size / 2;
+            int cx = (px >= current.x + half) ? 1 : 0;
+            int cy = (py >= current.y + half) ? 1 : 0;
+            int childIndex = cy * 2 + cx;
+
+            if (current.children == null)
+                current.children = new QuadNode[4];
+
+            if (current.children[childIndex] == null)
+                current.children[childIndex] = new QuadNode(current.x + cx * half, current.y + cy * half, half);
+
+            current = current.children[childIndex];
+        }
+        return current;
+    }
+
+    /**
+     * Descends from this node to the existing leaf containing the given point, without creating nodes.
+     *
+     * @param px The x-coordinate of the point
+     * @param py The y-coordinate of the point
+     * @return The leaf containing the point, or {@code null} if that part of the tree was never allocated
+     */
+    QuadNode findLeaf(long px, long py) {
+        QuadNode node = this;
+        while (!node.isLeaf()) {
+            int index = node.getQuadrant(px, py);
+            if (node.children[index] == null) return null;
+            node = node.children[index];
+        }
+        return node.contains(px, py) ? node : null;
+    }
+
+    /**
+     * Creates the smallest root that contains both this node and a point outside it, in one step.
      *
      * <p>This method is called when attempting to access coordinates beyond the current
-     * tree's spatial extent. It creates a new root node that is 2x larger, then repositions
-     * this node to be one of the four quadrants of the new root. The new root is positioned
-     * to contain both the existing tree and the new point.
+     * tree's spatial extent. The new root is this node's size times the power of two needed to span
+     * both this node and the point, aligned so that this node becomes one of its descendants. The nodes
+     * in between are created as a chain. The new root is centered on that span, so content added later on
+     * either side is equally likely to fit without growing again.
      *
-     * <p>Example: If current root is [0, 128] x [0, 128] and we need to access point (200, 0),
-     * the new root becomes [-64, 192] x [-64, 192] with the old root positioned appropriately.
+     * <p>Example: If current root is [0, 128) x [0, 128) and we need to access point (1000, 0),
+     * the span [0, 1024) x [0, 128) is eight roots wide, so the new root becomes [0, 1024) x [-384, 640),
+     * three levels above the old root, instead of three separate doublings that leave the old root in a corner.
      *
      * @param px The x-coordinate of the point that needs to be accommodated
      * @param py The y-coordinate of the point that needs to be accommodated
-     * @return A new QuadNode that is the parent of this node and can contain both this tree and the point
+     * @return A new QuadNode that contains both this tree and the point, or this node if it already contains the point
+     * @throws IllegalArgumentException if the point lies outside [{@link #MIN_COORDINATE}, {@link #MAX_COORDINATE}),
+     *                                  the new root would be larger than {@link #MAX_SIZE}, or the point lies in a
+     *                                  node that would extend past that range
      */
-    QuadNode growToFit(int px, int py) {
-        int newSize = size * 2;
-        int newX = x, newY = y;
-        int qx = px < x ? -1 : (px >= x + size ? 1 : 0);
-        int qy = py < y ? -1 : (py >= y + size ? 1 : 0);
-
-        if (qx < 0) newX -= size;
-        if (qy < 0) newY -= size;
+    QuadNode growToFit(long px, long py) {
+        if (contains(px, py)) return this;
+        if (px < MIN_COORDINATE || px >= MAX_COORDINATE || py < MIN_COORDINATE || py >= MAX_COORDINATE)
+            throw new IllegalArgumentException(String.format(
+                    "Point (%,d, %,d) is outside the coordinate range [%,d, %,d)", px, py, MIN_COORDINATE, MAX_COORDINATE));
+        // The span of this node and the point, in multiples of this node's size relative to it
+        long loX = Math.min(Math.floorDiv(px - x, size), 0), hiX = Math.max(Math.floorDiv(px - x, size) + 1, 1);
+        long loY = Math.min(Math.floorDiv(py - y, size), 0), hiY = Math.max(Math.floorDiv(py - y, size) + 1, 1);
+        long span = Math.max(hiX - loX, hiY - loY);
+        int levels = 64 - Long.numberOfLeadingZeros(span - 1); // ceil(log2(span))
+        if (size > MAX_SIZE >> levels)
+            throw new IllegalArgumentException(String.format(
+                    "Point (%,d, %,d) is too far from [%,d, %,d]: content may span at most %,d pixels per axis",
+                    px, py, x, y, MAX_SIZE));
+        long newSize = size << levels;
+        long newX = place(x, size, loX, hiX, newSize, px, py);
+        long newY = place(y, size, loY, hiY, newSize, px, py);
 
         QuadNode newRoot = new QuadNode(newX, newY, newSize);
-        newRoot.children = new QuadNode[4];
-        int oldQuadrant = (y >= newY + size ? 2 : 0) + (x >= newX + size ? 1 : 0);
-        newRoot.children[oldQuadrant] = this;
+        QuadNode node = newRoot;
+        while (node.size > size) {
+            long half = node.size / 2;
+            int quadrant = node.getQuadrant(x, y);
+            node.children = new QuadNode[4];
+            node = node.children[quadrant] = half == size ? this
+                    : new QuadNode(node.x + (quadrant & 1) * half, node.y + (quadrant >> 1) * half, half);
+        }
         return newRoot;
     }
 
+    /**
+     * Places one axis of a new root of {@code newSize} on this node's grid: centered on the span [lo, hi) of
+     * this node's size, then shifted back into [{@link #MIN_COORDINATE}, {@link #MAX_COORDINATE}) if needed.
+     *
+     * @return the new root's coordinate on this axis
+     */
+    private static long place(long start, long size, long lo, long hi, long newSize, long px, long py) {
+        long slack = newSize / size - (hi - lo);
+        long placed = start + (lo - slack / 2) * size;
+        if (placed < MIN_COORDINATE) placed += ceilDiv(MIN_COORDINATE - placed, size) * size;
+        if (placed + newSize > MAX_COORDINATE) placed -= ceilDiv(placed + newSize - MAX_COORDINATE, size) * size;
+        if (placed < MIN_COORDINATE || placed > start + lo * size || placed + newSize < start + hi * size)
+            throw new IllegalArgumentException(String.format(
+                    "Point (%,d, %,d) lies in a tile that extends past the coordinate range", px, py));
+        return placed;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+
     /**
      * Recursively paints this node and its children to a Graphics context.
      *
@@ -146,10 +264,11 @@ class QuadNode {
      * @param offsetX The x-offset to apply to the drawing position
      * @param offsetY The y-offset to apply to the drawing position
      */
-    void paint(Graphics g, int offsetX, int offsetY) {
+    void paint(Graphics g, long offsetX, long offsetY) {
         if (isLeaf()) {
-            if (image != null)
-                g.drawImage(image, x - offsetX, y - offsetY, null);
+            // Tiles beyond the int range of the Graphics cannot be drawn
+            if (image != null && (int) (x - offsetX) == x - offsetX && (int) (y - offsetY) == y - offsetY)
+                g.drawImage(image, (int) (x - offsetX), (int) (y - offsetY), null);
         } else {
             for (QuadNode child : children) {
                 if (child != null) child.paint(g, offsetX, offsetY);
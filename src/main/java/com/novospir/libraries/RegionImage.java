@@ -0,0 +1,189 @@
+package com.novospir.libraries;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+/**
+ * Read-only {@link RenderedImage} view of a region of an {@link InfiniteBufferedImage}, tiled in
+ * full-width strips of one canvas tile row.
+ *
+ * <p>Strips are rendered from the tiles on demand and the last one is cached, so a consumer that pulls
+ * rows top to bottom (the PNG, TIFF and BMP writers of ImageIO call {@link #getData(Rectangle)} per row
+ * or per strip) renders each strip once and never needs more than one strip of
+ * {@code width x tileSize} pixels. Requests spanning several strips are assembled strip by strip;
+ * {@link #getData()} therefore allocates the whole region.
+ *
+ * <p>The view reads the canvas lazily: changes made while it is being consumed show up in strips that
+ * have not been rendered yet. Pixels are in the canvas's image type.
+ *
+ * @see InfiniteBufferedImage#asRenderedImage(Rectangle)
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class RegionImage implements RenderedImage {
+    private final InfiniteBufferedImage image;
+    private final Rectangle region;
+    private final int stripHeight;
+    private final int gridYOffset;
+    private final ColorModel colorModel;
+    private final SampleModel sampleModel;
+
+    private int cachedStrip = Integer.MIN_VALUE;
+    private Raster cached;
+    int renderedStrips; // for tests
+
+    RegionImage(InfiniteBufferedImage image, Rectangle region) {
+        if (region.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Region %dx%d is empty", region.width, region.height));
+        }
+        this.image = image;
+        this.region = new Rectangle(region);
+        this.stripHeight = image.getTileSize();
+        // Strip boundaries fall on canvas tile rows, so each strip reads one row of tiles
+        this.gridYOffset = -Math.floorMod(region.y - image.getOptions().getOriginY(), stripHeight);
+        BufferedImage prototype = new BufferedImage(1, 1, image.getType());
+        this.colorModel = prototype.getColorModel();
+        this.sampleModel = prototype.getSampleModel().createCompatibleSampleModel(region.width, stripHeight);
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        if (tileX != 0 || tileY < 0 || tileY >= getNumYTiles()) {
+            throw new IllegalArgumentException(String.format("No strip (%d, %d) in a region of %d strips", tileX, tileY, getNumYTiles()));
+        }
+        if (tileY != cachedStrip) {
+            int top = Math.max(0, gridYOffset + tileY * stripHeight);
+            int bottom = Math.min(region.height, gridYOffset + (tileY + 1) * stripHeight);
+            BufferedImage strip = image.toBufferedImage(new Rectangle(region.x, region.y + top, region.width, bottom - top));
+            cached = strip.getRaster().createTranslatedChild(0, top);
+            cachedStrip = tileY;
+            renderedStrips++;
+        }
+        return cached;
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        Rectangle bounds = rect.intersection(new Rectangle(0, 0, region.width, region.height));
+        if (bounds.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Rectangle %s is outside the %dx%d region", rect, region.width, region.height));
+        }
+        return copyData(Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(bounds.width, bounds.height),
+                bounds.getLocation()));
+    }
+
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, region.width, region.height));
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            raster = Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(region.width, region.height), null);
+        }
+        int top = Math.max(raster.getMinY(), 0);
+        int bottom = Math.min(raster.getMinY() + raster.getHeight(), region.height);
+        int left = Math.max(raster.getMinX(), 0);
+        int right = Math.min(raster.getMinX() + raster.getWidth(), region.width);
+        if (left >= right) return raster;
+        for (int row = top; row < bottom; ) {
+            Raster strip = getTile(0, Math.floorDiv(row - gridYOffset, stripHeight));
+            int rows = Math.min(bottom, strip.getMinY() + strip.getHeight()) - row;
+            raster.setDataElements(0, 0, strip.createChild(left, row, right - left, rows, left, row, null));
+            row += rows;
+        }
+        return raster;
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    @Override
+    public int getWidth() {
+        return region.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return region.height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return Math.floorDiv(region.height - 1 - gridYOffset, stripHeight) + 1;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return region.width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return stripHeight;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return gridYOffset;
+    }
+}
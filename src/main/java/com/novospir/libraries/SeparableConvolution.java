@@ -0,0 +1,252 @@
+package com.novospir.libraries;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Convolves an {@link InfiniteBufferedImage} with a {@link SeparableKernel} into another one, tile by tile.
+ *
+ * <h3>Tiles:</h3>
+ * <ul>
+ *   <li>Output tiles are the cells of the source's tile grid that lie within the kernel radius of an allocated
+ *       leaf, listed in Hilbert order of the leaves; the rest of the canvas stays unallocated, since the kernel
+ *       cannot reach content from there
+ *   <li>Each output tile reads its input with a halo of {@code radius} pixels on every side, one region copy
+ *       that spans the neighbouring tiles, so results are seamless across tile edges
+ *   <li>Output tiles whose every pixel ends up transparent are not written
+ * </ul>
+ *
+ * <p>Pixels are convolved with premultiplied alpha, as {@link java.awt.image.ConvolveOp} does for premultiplied
+ * images, so transparent pixels do not darken the edges of blurred content. A horizontal pass over the halo rows
+ * is followed by a vertical pass; a box kernel uses running sums instead, whose cost does not depend on the radius.
+ *
+ * <p>Tiles run in parallel on the common {@link ForkJoinPool}. Reads from the source and writes to the
+ * destination are serialized per image, like the reads of {@link TilePyramid}; the two passes, which dominate,
+ * run concurrently. Neither image may be modified by anything else meanwhile.
+ *
+ * @see InfiniteBufferedImage#convolve(SeparableKernel, InfiniteBufferedImage)
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class SeparableConvolution {
+    private final InfiniteBufferedImage source;
+    private final InfiniteBufferedImage destination;
+    private final SeparableKernel kernel;
+    private final int tileSize;
+    private final int radius;
+    private final int span; // side of the input of one tile, halo included
+    private final AtomicInteger written = new AtomicInteger();
+
+    private SeparableConvolution(InfiniteBufferedImage source, SeparableKernel kernel, InfiniteBufferedImage destination) {
+        this.source = source;
+        this.destination = destination;
+        this.kernel = kernel;
+        this.tileSize = source.getTileSize();
+        this.radius = kernel.getRadius();
+        this.span = tileSize + 2 * radius;
+    }
+
+    /// Filters every allocated tile of the source and its neighbours within the kernel radius into the destination
+    static void apply(InfiniteBufferedImage source, SeparableKernel kernel, InfiniteBufferedImage destination) {
+        if (source == destination) throw new IllegalArgumentException("Cannot convolve an image into itself");
+        SeparableConvolution convolution = new SeparableConvolution(source, kernel, destination);
+        CanvasEvents.Convolution event = new CanvasEvents.Convolution();
+        event.begin();
+        List<Cell> cells = convolution.cells();
+        cells.parallelStream().forEach(convolution::filter);
+        if (event.shouldCommit() && !cells.isEmpty()) {
+            long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+            for (Cell cell : cells) {
+                minX = Math.min(minX, cell.x);
+                minY = Math.min(minY, cell.y);
+                maxX = Math.max(maxX, cell.x + convolution.tileSize);
+                maxY = Math.max(maxY, cell.y + convolution.tileSize);
+            }
+            event.setRegion(minX, minY, maxX - minX, maxY - minY);
+            event.tiles = convolution.written.get();
+            event.radius = convolution.radius;
+            event.commit();
+        }
+    }
+
+    /// @return the tile-grid cells within the kernel radius of an allocated leaf, in Hilbert order of the leaves
+    private List<Cell> cells() {
+        InfiniteImageOptions options = source.getOptions();
+        long originX = options.getOriginX(), originY = options.getOriginY();
+        Set<Cell> cells = new LinkedHashSet<>();
+        source.leafSpliterator(TileOrder.HILBERT, leaf -> leaf).forEachRemaining(leaf -> {
+            long col1 = Math.floorDiv(leaf.x - radius - originX, tileSize);
+            long col2 = Math.floorDiv(leaf.x + leaf.size + radius - 1 - originX, tileSize);
+            long row1 = Math.floorDiv(leaf.y - radius - originY, tileSize);
+            long row2 = Math.floorDiv(leaf.y + leaf.size + radius - 1 - originY, tileSize);
+            for (long row = row1; row <= row2; row++) {
+                for (long col = col1; col <= col2; col++) {
+                    cells.add(new Cell(originX + col * tileSize, originY + row * tileSize));
+                }
+            }
+        });
+        return new ArrayList<>(cells);
+    }
+
+    private void filter(Cell cell) {
+        BufferedImage region;
+        synchronized (source) {
+            region = source.toBufferedImage(cell.x - radius, cell.y - radius, span, span);
+        }
+        float[] input = premultiplied(argb(region));
+        float[] rows = new float[span * tileSize * 4]; // span rows of tileSize pixels after the horizontal pass
+        float[] output = new float[tileSize * tileSize * 4];
+        if (kernel.isBox()) {
+            boxRows(input, rows);
+            boxColumns(rows, output);
+        } else {
+            convolveRows(input, rows);
+            convolveColumns(rows, output);
+        }
+
+        int[] argb = new int[tileSize * tileSize];
+        boolean empty = true;
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = unpremultiply(output, i * 4);
+            empty &= argb[i] == 0;
+        }
+        if (empty) return;
+
+        BufferedImage tile = new BufferedImage(tileSize, tileSize, destination.getType());
+        if (destination.getType() == BufferedImage.TYPE_INT_ARGB) {
+            System.arraycopy(argb, 0, ((DataBufferInt) tile.getRaster().getDataBuffer()).getData(), 0, argb.length);
+        } else {
+            tile.setRGB(0, 0, tileSize, tileSize, argb, 0, tileSize);
+        }
+        synchronized (destination) {
+            destination.writeTile(cell.x, cell.y, tile.getRaster());
+        }
+        written.incrementAndGet();
+    }
+
+    /// Horizontal pass: each of the span rows, from span input pixels to tileSize output pixels, one weight at a
+    /// time over the whole row so the inner loop runs over contiguous floats
+    private void convolveRows(float[] in, float[] out) {
+        float[] weights = kernel.weights();
+        int stride = tileSize * 4;
+        for (int row = 0; row < span; row++) {
+            int q = row * stride;
+            for (int k = 0; k < weights.length; k++) {
+                float w = weights[k];
+                int p = (row * span + k) * 4;
+                for (int i = 0; i < stride; i++) out[q + i] += w * in[p + i];
+            }
+        }
+    }
+
+    /// Vertical pass: whole rows at a time, so the inner loop runs over contiguous floats
+    private void convolveColumns(float[] in, float[] out) {
+        float[] weights = kernel.weights();
+        int stride = tileSize * 4;
+        for (int row = 0; row < tileSize; row++) {
+            int q = row * stride;
+            for (int k = 0; k < weights.length; k++) {
+                float w = weights[k];
+                int p = (row + k) * stride;
+                for (int i = 0; i < stride; i++) out[q + i] += w * in[p + i];
+            }
+        }
+    }
+
+    /// Horizontal box pass: a running sum over each row's window
+    private void boxRows(float[] in, float[] out) {
+        int window = 2 * radius + 1;
+        float scale = 1f / window;
+        for (int row = 0; row < span; row++) {
+            int base = row * span * 4;
+            for (int c = 0; c < 4; c++) {
+                float sum = 0;
+                for (int k = 0; k < window; k++) sum += in[base + k * 4 + c];
+                int q = row * tileSize * 4 + c;
+                out[q] = sum * scale;
+                for (int col = 1; col < tileSize; col++) {
+                    sum += in[base + (col + window - 1) * 4 + c] - in[base + (col - 1) * 4 + c];
+                    out[q + col * 4] = sum * scale;
+                }
+            }
+        }
+    }
+
+    /// Vertical box pass: a running sum of whole rows
+    private void boxColumns(float[] in, float[] out) {
+        int window = 2 * radius + 1;
+        float scale = 1f / window;
+        int stride = tileSize * 4;
+        float[] sum = new float[stride];
+        for (int k = 0; k < window; k++) {
+            for (int i = 0; i < stride; i++) sum[i] += in[k * stride + i];
+        }
+        for (int row = 0; row < tileSize; row++) {
+            if (row > 0) {
+                int add = (row + window - 1) * stride, remove = (row - 1) * stride;
+                for (int i = 0; i < stride; i++) sum[i] += in[add + i] - in[remove + i];
+            }
+            for (int i = 0; i < stride; i++) out[row * stride + i] = sum[i] * scale;
+        }
+    }
+
+    /// @return the pixels of a region copy as ARGB, without converting if the tiles already are
+    private int[] argb(BufferedImage region) {
+        if (region.getType() == BufferedImage.TYPE_INT_ARGB) return ((DataBufferInt) region.getRaster().getDataBuffer()).getData();
+        return region.getRGB(0, 0, span, span, null, 0, span);
+    }
+
+    /// @return alpha, red, green and blue of each pixel as floats, the colors multiplied by alpha / 255
+    private static float[] premultiplied(int[] argb) {
+        float[] out = new float[argb.length * 4];
+        for (int i = 0; i < argb.length; i++) {
+            int pixel = argb[i];
+            int alpha = pixel >>> 24;
+            if (alpha == 0) continue;
+            float scale = alpha / 255f;
+            out[i * 4] = alpha;
+            out[i * 4 + 1] = (pixel >> 16 & 0xFF) * scale;
+            out[i * 4 + 2] = (pixel >> 8 & 0xFF) * scale;
+            out[i * 4 + 3] = (pixel & 0xFF) * scale;
+        }
+        return out;
+    }
+
+    private static int unpremultiply(float[] pixels, int p) {
+        float alpha = pixels[p];
+        int a = clamp(alpha);
+        if (a == 0) return 0;
+        float scale = 255f / alpha;
+        return a << 24 | clamp(pixels[p + 1] * scale) << 16 | clamp(pixels[p + 2] * scale) << 8 | clamp(pixels[p + 3] * scale);
+    }
+
+    private static int clamp(float value) {
+        return value <= 0 ? 0 : value >= 255 ? 255 : (int) (value + 0.5f);
+    }
+
+    /// The top-left corner of one cell of the tile grid
+    private static final class Cell {
+        final long x, y;
+
+        Cell(long x, long y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Cell && ((Cell) o).x == x && ((Cell) o).y == y;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(x * 31 + y);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.novospir.libraries;
+
+import java.util.Arrays;
+
+/**
+ * A convolution kernel that is the outer product of one odd-length row of weights with itself, applied as a
+ * horizontal pass followed by a vertical pass: {@code 2 * (2r + 1)} multiplications per pixel instead of
+ * {@code (2r + 1)²} for the equivalent 2D kernel of radius {@code r}.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * InfiniteBufferedImage soft = canvas.convolve(SeparableKernel.gaussian(4.0));
+ * canvas.convolve(SeparableKernel.box(2), shadowLayer);
+ * }</pre>
+ *
+ * @see InfiniteBufferedImage#convolve(SeparableKernel, InfiniteBufferedImage)
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public final class SeparableKernel {
+    /** Largest supported radius; the halo read around each tile grows with it */
+    public static final int MAX_RADIUS = 1024;
+
+    private final float[] weights;
+    private final boolean box; // all weights equal, so a running sum replaces the multiplications
+
+    private SeparableKernel(float[] weights, boolean box) {
+        this.weights = weights;
+        this.box = box;
+    }
+
+    /**
+     * Creates a Gaussian blur truncated at three standard deviations and normalized to sum to 1.
+     *
+     * @param sigma The standard deviation in pixels
+     * @throws IllegalArgumentException if sigma is not positive or the radius would exceed {@link #MAX_RADIUS}
+     */
+    public static SeparableKernel gaussian(double sigma) {
+        if (!(sigma > 0) || Math.ceil(3 * sigma) > MAX_RADIUS)
+            throw new IllegalArgumentException(String.format(
+                    "Sigma must be in (0, %,.1f]: %s", MAX_RADIUS / 3.0, sigma));
+        int radius = (int) Math.ceil(3 * sigma);
+        float[] weights = new float[2 * radius + 1];
+        double sum = 0;
+        for (int i = -radius; i <= radius; i++) sum += Math.exp(-i * i / (2 * sigma * sigma));
+        for (int i = -radius; i <= radius; i++) weights[i + radius] = (float) (Math.exp(-i * i / (2 * sigma * sigma)) / sum);
+        return new SeparableKernel(weights, false);
+    }
+
+    /**
+     * Creates a box blur: the mean of the {@code (2 * radius + 1)²} pixels around each pixel. It runs in
+     * constant time per pixel whatever the radius.
+     *
+     * @param radius The number of pixels on each side of the center, at least 1
+     * @throws IllegalArgumentException if the radius is outside [1, {@link #MAX_RADIUS}]
+     */
+    public static SeparableKernel box(int radius) {
+        if (radius < 1 || radius > MAX_RADIUS)
+            throw new IllegalArgumentException(String.format("Radius must be in [1, %,d]: %,d", MAX_RADIUS, radius));
+        float[] weights = new float[2 * radius + 1];
+        Arrays.fill(weights, 1f / weights.length);
+        return new SeparableKernel(weights, true);
+    }
+
+    /**
+     * Creates a kernel from one row of weights, used for both passes. The weights are not normalized.
+     *
+     * @param weights An odd number of weights, the center one applying to the pixel itself
+     * @throws IllegalArgumentException if the number of weights is even or exceeds {@code 2 * MAX_RADIUS + 1}
+     */
+    public static SeparableKernel of(float... weights) {
+        if (weights.length % 2 == 0 || weights.length > 2 * MAX_RADIUS + 1)
+            throw new IllegalArgumentException(String.format(
+                    "Kernel needs an odd number of weights, at most %,d: %,d", 2 * MAX_RADIUS + 1, weights.length));
+        return new SeparableKernel(weights.clone(), false);
+    }
+
+    /// @return the number of pixels the kernel reaches on each side of the center
+    public int getRadius() {
+        return weights.length / 2;
+    }
+
+    /// @return a copy of the row of weights
+    public float[] getWeights() {
+        return weights.clone();
+    }
+
+    float[] weights() {
+        return weights;
+    }
+
+    boolean isBox() {
+        return box;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SeparableKernel[radius=%d%s]", getRadius(), box ? ", box" : "");
+    }
+}
@@ -0,0 +1,166 @@
+package com.novospir.libraries;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spills evicted tiles, compressed with {@link TileCodec}, to a scratch file.
+ *
+ * <p>Unlike {@link MappedTileStore}, entries are variable-sized: a uniform tile is kept in the heap as its
+ * single pixel and never touches the file, other tiles take only their Deflate-compressed size. Each
+ * entry reserves an extent of a power-of-two size class (at least {@value #MIN_EXTENT} bytes, at most one
+ * raw tile), so a re-spilled tile that compresses to a similar size is rewritten in place. Extents that
+ * are outgrown or released are reused by the next spill of the same class; the file only grows when that
+ * class has no free extent, so its size stays within about twice the compressed size of the spilled tiles.
+ *
+ * <p>The scratch file is opened with {@link StandardOpenOption#DELETE_ON_CLOSE}; it is not a
+ * persistence format (see {@link InfiniteImageFile}).
+ *
+ * @see TilePager
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class SpillTileStore extends TilePager {
+    static final int MIN_EXTENT = 512;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final TileCodec codec = new TileCodec();
+    // Free extent offsets by size class
+    private final Map<Integer, ArrayDeque<Long>> freeExtents = new HashMap<>();
+    private byte[] payload = new byte[0];
+    private long end;
+    private boolean closed;
+
+    /// Where a spilled tile lives: in the file, or inline for uniform tiles
+    private static final class Entry {
+        long offset = -1;
+        int capacity;
+        int length;
+        byte encoding;
+        byte[] inline;
+    }
+
+    /**
+     * @param directory Directory for the scratch file
+     * @throws UncheckedIOException if the scratch file cannot be created
+     */
+    SpillTileStore(Path directory, int tileSize, int type, long maxResidentBytes) {
+        super(tileSize, type, maxResidentBytes, Long.MAX_VALUE);
+        try {
+            this.file = Files.createTempFile(directory, "infinite-image-", ".spill");
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create spill file in " + directory, e);
+        }
+    }
+
+    @Override
+    void read(QuadNode leaf, BufferedImage tile) {
+        ensureOpen();
+        Entry entry = (Entry) leaf.data;
+        if (entry.inline != null) {
+            codec.decode(entry.encoding, entry.inline, entry.length, tile.getRaster());
+            return;
+        }
+        if (payload.length < entry.length) payload = new byte[entry.length];
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 0, entry.length);
+        try {
+            long position = entry.offset;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) throw new IOException("Unexpected end of spill file");
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot read spilled tile (%d, %d) from %s", leaf.x, leaf.y, file), e);
+        }
+        codec.decode(entry.encoding, payload, entry.length, tile.getRaster());
+    }
+
+    @Override
+    void write(QuadNode leaf) {
+        ensureOpen();
+        Entry entry = leaf.data != null ? (Entry) leaf.data : new Entry();
+        codec.encode(leaf.image.getRaster());
+        entry.encoding = codec.encoding();
+        entry.length = codec.length();
+
+        if (entry.encoding == TileCodec.UNIFORM) {
+            // One pixel: cheaper to keep than to seek for
+            releaseExtent(entry);
+            entry.inline = Arrays.copyOf(codec.payload(), codec.length());
+        } else {
+            entry.inline = null;
+            if (entry.offset < 0 || entry.capacity < entry.length) {
+                releaseExtent(entry);
+                allocateExtent(entry);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(codec.payload(), 0, entry.length);
+            try {
+                long position = entry.offset;
+                while (buffer.hasRemaining()) position += channel.write(buffer, position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Cannot spill tile (%d, %d) to %s", leaf.x, leaf.y, file), e);
+            }
+        }
+        leaf.data = entry;
+    }
+
+    @Override
+    void free(QuadNode leaf) {
+        releaseExtent((Entry) leaf.data);
+    }
+
+    @Override
+    long storedBytes() {
+        return end;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        codec.end();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete spill file " + file, e);
+        }
+    }
+
+    private void allocateExtent(Entry entry) {
+        // Payloads never exceed a raw tile, so the largest class is exactly one raw tile
+        int capacity = Math.min(Math.max(MIN_EXTENT, Integer.highestOneBit(entry.length - 1) << 1), tileBytes);
+        ArrayDeque<Long> free = freeExtents.get(capacity);
+        entry.capacity = capacity;
+        if (free != null && !free.isEmpty()) {
+            entry.offset = free.pop();
+        } else {
+            entry.offset = end;
+            end += capacity;
+        }
+    }
+
+    private void releaseExtent(Entry entry) {
+        if (entry.offset < 0) return;
+        freeExtents.computeIfAbsent(entry.capacity, c -> new ArrayDeque<>()).push(entry.offset);
+        entry.offset = -1;
+        entry.capacity = 0;
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Spill file is closed: " + file);
+    }
+}
@@ -0,0 +1,88 @@
+package com.novospir.libraries;
+
+/**
+ * Snapshot of the tile cache counters of an {@link InfiniteBufferedImage} whose tiles are paged out
+ * to a store ({@link InfiniteImageOptions.Builder#mappedStorage mapped},
+ * {@link InfiniteImageOptions.Builder#spillStorage spilled} or
+ * {@link InfiniteImageOptions.Builder#compressedStorage compressed in the heap}).
+ *
+ * <h3>Counters:</h3>
+ * <ul>
+ *   <li><b>Hits</b> - lookups that found the tile in the heap
+ *   <li><b>Misses</b> - lookups that read the tile back in from the store
+ *   <li><b>Evictions</b> - tiles removed from the heap to stay within the budget
+ *   <li><b>Write-backs</b> - evicted tiles that had been modified and were written to the store
+ * </ul>
+ *
+ * <p>Counters are cumulative since the image was created. Images whose tiles always stay in the heap
+ * report all zeros.
+ *
+ * @see InfiniteBufferedImage#getTileCacheStats()
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public final class TileCacheStats {
+    static final TileCacheStats NONE = new TileCacheStats(0, 0, 0, 0, 0, 0, 0);
+
+    private final long hits, misses, evictions, writeBacks;
+    private final int residentTiles;
+    private final long residentBytes, storedBytes;
+
+    TileCacheStats(long hits, long misses, long evictions, long writeBacks,
+                   int residentTiles, long residentBytes, long storedBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.writeBacks = writeBacks;
+        this.residentTiles = residentTiles;
+        this.residentBytes = residentBytes;
+        this.storedBytes = storedBytes;
+    }
+
+    /// @return lookups of tiles that were in the heap
+    public long getHits() {
+        return hits;
+    }
+
+    /// @return lookups of tiles that had to be read back from the store
+    public long getMisses() {
+        return misses;
+    }
+
+    /// @return tiles removed from the heap to stay within the budget
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /// @return evicted tiles that were written to the store because they had been modified
+    public long getWriteBacks() {
+        return writeBacks;
+    }
+
+    /// @return hits / (hits + misses), or 1 if no lookup has happened
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 1 : (double) hits / lookups;
+    }
+
+    /// @return the number of tiles currently in the heap
+    public int getResidentTiles() {
+        return residentTiles;
+    }
+
+    /// @return the bytes of tile data currently in the heap
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /// @return the bytes the backing store occupies (on disk, or in the heap for compressed storage), including space freed but not yet reused
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TileCacheStats[hits=%d, misses=%d, evictions=%d, writeBacks=%d, residentTiles=%d, residentBytes=%d, storedBytes=%d]",
+                hits, misses, evictions, writeBacks, residentTiles, residentBytes, storedBytes);
+    }
+}
@@ -0,0 +1,206 @@
+package com.novospir.libraries;
+
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes single tiles to compact byte payloads and back.
+ *
+ * <p>A tile's data buffer bank is serialized as raw big-endian elements, then stored in the
+ * cheapest of three encodings:
+ * <ul>
+ *   <li>{@link #UNIFORM} - every pixel is identical; only one pixel's data elements are stored
+ *   <li>{@link #DEFLATE} - the raw elements compressed with {@link Deflater}
+ *   <li>{@link #RAW} - the raw elements, when compression would not make them smaller
+ * </ul>
+ *
+ * <p>Tiles are the BufferedImages created by {@link InfiniteBufferedImage}, so every data buffer has
+ * a single bank starting at offset 0. A codec reuses its buffers and zlib state between tiles and is
+ * <b>not thread-safe</b>; call {@link #end()} to release the native zlib memory.
+ *
+ * @see InfiniteImageFile
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class TileCodec {
+    static final byte UNIFORM = 1;
+    static final byte DEFLATE = 2;
+    static final byte RAW = 3;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private byte[] raw = new byte[0];
+    private byte[] packed = new byte[0];
+
+    private byte encoding;
+    private byte[] payload;
+    private int length;
+
+    /* ------ ENCODING ------ */
+
+    /**
+     * Encodes a tile; the result is available from {@link #encoding()}, {@link #payload()} and {@link #length()}
+     * until the next call.
+     */
+    void encode(Raster tile) {
+        DataBuffer db = tile.getDataBuffer();
+        int period = tile.getSampleModel().getNumDataElements();
+        int elementSize = DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+        int rawLength = toBytes(db, elementSize);
+
+        if (isPeriodic(raw, rawLength, period * elementSize)) {
+            encoding = UNIFORM;
+            payload = raw;
+            length = period * elementSize;
+            return;
+        }
+
+        if (packed.length < rawLength + 64) packed = new byte[rawLength + 64];
+        deflater.reset();
+        deflater.setInput(raw, 0, rawLength);
+        deflater.finish();
+        int compressed = deflater.deflate(packed, 0, packed.length);
+        if (deflater.finished() && compressed < rawLength) {
+            encoding = DEFLATE;
+            payload = packed;
+            length = compressed;
+        } else {
+            encoding = RAW;
+            payload = raw;
+            length = rawLength;
+        }
+    }
+
+    /// @return the encoding chosen by the last {@link #encode} call
+    byte encoding() {
+        return encoding;
+    }
+
+    /// @return the buffer holding the last payload; only the first {@link #length()} bytes are valid
+    byte[] payload() {
+        return payload;
+    }
+
+    /// @return the number of valid bytes in {@link #payload()}
+    int length() {
+        return length;
+    }
+
+    /// @return {@code true} if every data element of the tile is zero (fully transparent for formats with alpha)
+    static boolean isZero(Raster tile) {
+        DataBuffer db = tile.getDataBuffer();
+        if (db instanceof DataBufferInt) {
+            for (int v : ((DataBufferInt) db).getData()) if (v != 0) return false;
+        } else if (db instanceof DataBufferByte) {
+            for (byte v : ((DataBufferByte) db).getData()) if (v != 0) return false;
+        } else if (db instanceof DataBufferUShort) {
+            for (short v : ((DataBufferUShort) db).getData()) if (v != 0) return false;
+        } else {
+            throw new UnsupportedOperationException("Unsupported tile data buffer: " + db.getClass().getSimpleName());
+        }
+        return true;
+    }
+
+    /* ------ DECODING ------ */
+
+    /**
+     * Decodes a payload produced by {@link #encode} into a tile of the same size and type.
+     *
+     * @throws IllegalArgumentException if the payload does not match the tile's data buffer
+     */
+    void decode(byte encoding, byte[] payload, int length, WritableRaster tile) {
+        DataBuffer db = tile.getDataBuffer();
+        int elementSize = DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+        int rawLength = db.getSize() * elementSize;
+        if (raw.length < rawLength) raw = new byte[rawLength];
+
+        switch (encoding) {
+            case UNIFORM:
+                if (length == 0 || rawLength % length != 0) throw new IllegalArgumentException(
+                        String.format("Uniform pixel of [%,d] bytes does not tile [%,d] bytes", length, rawLength));
+                for (int i = 0; i < rawLength; i += length) System.arraycopy(payload, 0, raw, i, length);
+                break;
+            case DEFLATE:
+                inflater.reset();
+                inflater.setInput(payload, 0, length);
+                try {
+                    if (inflater.inflate(raw, 0, rawLength) != rawLength || !inflater.finished())
+                        throw new IllegalArgumentException("Compressed tile does not match the tile size");
+                } catch (DataFormatException e) {
+                    throw new IllegalArgumentException("Corrupt compressed tile", e);
+                }
+                break;
+            case RAW:
+                if (length != rawLength) throw new IllegalArgumentException(
+                        String.format("Raw tile has [%,d] bytes, expected [%,d]", length, rawLength));
+                System.arraycopy(payload, 0, raw, 0, rawLength);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown tile encoding: " + encoding);
+        }
+        fromBytes(db, elementSize);
+    }
+
+    /// Releases the native zlib state; the codec must not be used afterwards
+    void end() {
+        deflater.end();
+        inflater.end();
+    }
+
+    /* ------ UTILITY ------ */
+
+    /// Copies the data buffer bank into {@code raw} as big-endian elements; @return the number of bytes
+    private int toBytes(DataBuffer db, int elementSize) {
+        int rawLength = db.getSize() * elementSize;
+        if (raw.length < rawLength) raw = new byte[rawLength];
+        putElements(db, ByteBuffer.wrap(raw, 0, rawLength));
+        return rawLength;
+    }
+
+    private void fromBytes(DataBuffer db, int elementSize) {
+        getElements(ByteBuffer.wrap(raw, 0, db.getSize() * elementSize), db);
+    }
+
+    /// @return the number of bytes needed to hold the data buffer bank, e.g. by {@link #putElements}
+    static int byteSize(DataBuffer db) {
+        return db.getSize() * (DataBuffer.getDataTypeSize(db.getDataType()) / 8);
+    }
+
+    /// Writes the data buffer bank to {@code dst} from its position, in the byte order of {@code dst}
+    static void putElements(DataBuffer db, ByteBuffer dst) {
+        if (db instanceof DataBufferByte) {
+            dst.duplicate().put(((DataBufferByte) db).getData());
+        } else if (db instanceof DataBufferInt) {
+            dst.asIntBuffer().put(((DataBufferInt) db).getData());
+        } else if (db instanceof DataBufferUShort) {
+            dst.asShortBuffer().put(((DataBufferUShort) db).getData());
+        } else {
+            throw new UnsupportedOperationException("Unsupported tile data buffer: " + db.getClass().getSimpleName());
+        }
+    }
+
+    /// Fills the data buffer bank from {@code src} at its position, in the byte order of {@code src}
+    static void getElements(ByteBuffer src, DataBuffer db) {
+        if (db instanceof DataBufferByte) {
+            src.duplicate().get(((DataBufferByte) db).getData());
+        } else if (db instanceof DataBufferInt) {
+            src.asIntBuffer().get(((DataBufferInt) db).getData());
+        } else if (db instanceof DataBufferUShort) {
+            src.asShortBuffer().get(((DataBufferUShort) db).getData());
+        } else {
+            throw new UnsupportedOperationException("Unsupported tile data buffer: " + db.getClass().getSimpleName());
+        }
+    }
+
+    /// @return {@code true} if {@code bytes[0, length)} repeats its first {@code period} bytes
+    private static boolean isPeriodic(byte[] bytes, int length, int period) {
+        if (length % period != 0) return false;
+        for (int i = period; i < length; i++) {
+            if (bytes[i] != bytes[i - period]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,329 @@
+package com.novospir.libraries;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Incremental autosave of an {@link InfiniteBufferedImage}: a checkpoint file plus an append-only journal
+ * of the tiles written since.
+ *
+ * <p>{@link #commit()} appends one compressed record per tile written since the last commit, taken from
+ * {@link InfiniteBufferedImage#drainDirtyRegions()}, followed by a commit marker, and forces them to disk.
+ * Its I/O is proportional to the edits, not to the canvas. Once the journal grows past its budget, a commit
+ * also writes a new checkpoint with {@link InfiniteBufferedImage#save(Path)} and empties the journal.
+ * {@link InfiniteBufferedImage#recover(Path)} loads the checkpoint and replays the committed records.
+ *
+ * <h3>Files in the directory:</h3>
+ * <pre>
+ * checkpoint.ibif    the image at the last checkpoint, see {@link InfiniteImageFile}
+ * journal.log        (big-endian)
+ *   int   magic      'IBJL'
+ *   short version    1
+ *   short reserved   0
+ *   int   imageType, tileSize
+ *   Records, each ending with the CRC-32 of its preceding bytes:
+ *     byte TILE;   int x, y; byte encoding; int length; byte[length] payload; int crc   one tile of the grid
+ *     byte COMMIT; int count; int crc                                                   end of a batch
+ * </pre>
+ *
+ * <h3>Crash safety:</h3>
+ * <ul>
+ *   <li>Recovery replays whole batches only: records after the last intact commit marker (a torn write,
+ *       or a batch interrupted by a crash) are ignored
+ *   <li>A batch that fails to write is cut from the journal back to the last commit marker, so later
+ *       batches are not stranded behind a torn record; its tiles are already drained, so the next commit
+ *       writes a checkpoint instead
+ *   <li>A checkpoint is written to a temporary file and moved over the old one before the journal is
+ *       emptied. Replaying the old journal onto the new checkpoint, after a crash in between, is harmless:
+ *       each tile ends at its last journaled content, which the checkpoint already holds
+ * </ul>
+ *
+ * <p>The journal takes over the dirty regions of the image: other consumers should use an
+ * {@link ImageChangeListener} instead. It is not thread-safe; commit between edits, e.g. from the same
+ * timer or event thread that edits the image.
+ *
+ * @see InfiniteBufferedImage#openJournal(Path, long)
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public final class TileJournal implements Closeable {
+    static final int MAGIC = 0x49424A4C; // "IBJL"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final byte TILE = 1;
+    static final byte COMMIT = 2;
+    static final byte CLEAR = 0; // encoding of a tile without content, which has no payload
+    static final int TILE_HEADER_SIZE = 14;
+    static final int COMMIT_SIZE = 5;
+    static final String CHECKPOINT = "checkpoint.ibif";
+    static final String JOURNAL = "journal.log";
+
+    private final InfiniteBufferedImage image;
+    private final Path directory;
+    private final long maxJournalBytes;
+    private final int tileSize;
+    private final TileCodec codec = new TileCodec();
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long committedSize; // end of the last commit marker
+    private boolean checkpointPending; // a drained batch is in neither the checkpoint nor the journal
+    private boolean closed;
+    IntConsumer beforeTile = index -> { }; // replaced in tests
+
+    private TileJournal(InfiniteBufferedImage image, Path directory, long maxJournalBytes) {
+        this.image = image;
+        this.directory = directory;
+        this.maxJournalBytes = maxJournalBytes;
+        this.tileSize = image.getTileSize();
+    }
+
+    /// Starts journaling with a checkpoint of the current content, replacing any previous checkpoint and journal
+    static TileJournal open(InfiniteBufferedImage image, Path directory, long maxJournalBytes) throws IOException {
+        if (maxJournalBytes <= 0) {
+            throw new IllegalArgumentException("Journal budget must be positive: " + maxJournalBytes);
+        }
+        TileJournal journal = new TileJournal(image, directory, maxJournalBytes);
+        // A journal left by another session must not be replayed onto the new checkpoint
+        Files.deleteIfExists(directory.resolve(JOURNAL));
+        try {
+            journal.checkpoint();
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * Appends the tiles written since the last commit and forces them to disk; writes a checkpoint instead
+     * if the journal has outgrown its budget.
+     *
+     * @return The number of tiles appended, 0 if nothing was written or a checkpoint was taken
+     * @throws IOException if the journal cannot be written; the batch is then cut from the journal and the next
+     *                     commit writes a checkpoint, which holds its tiles
+     * @throws IllegalStateException if the journal is closed
+     */
+    public int commit() throws IOException {
+        ensureOpen();
+        // An interrupt during any channel call closes it; the checkpoint reopens it
+        if (checkpointPending || !channel.isOpen() || channel.size() > maxJournalBytes) {
+            checkpoint();
+            return 0;
+        }
+        List<Rectangle> regions = image.drainDirtyRegions();
+        if (regions.isEmpty()) return 0;
+        int originX = image.getOptions().getOriginX(), originY = image.getOptions().getOriginY();
+        try {
+            for (int i = 0; i < regions.size(); i++) {
+                beforeTile.accept(i);
+                Rectangle region = regions.get(i);
+                // A region lies within one tile of the grid; journal all of that tile
+                int x = region.x - Math.floorMod(region.x - originX, tileSize);
+                int y = region.y - Math.floorMod(region.y - originY, tileSize);
+                appendTile(x, y, image.toBufferedImage(new Rectangle(x, y, tileSize, tileSize)).getRaster());
+            }
+            append(ByteBuffer.allocate(COMMIT_SIZE).put(COMMIT).putInt(regions.size()));
+            channel.force(false);
+            committedSize = channel.position();
+        } catch (IOException | RuntimeException e) {
+            // The drained tiles are only in the image now; recovery must not stop at a torn record before later batches
+            checkpointPending = true;
+            if (channel.isOpen()) {
+                try {
+                    channel.truncate(committedSize);
+                    channel.position(committedSize);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        return regions.size();
+    }
+
+    /**
+     * Saves the whole image as the new checkpoint and empties the journal. This costs a full
+     * {@link InfiniteBufferedImage#save(Path) save}; {@link #commit()} calls it once the journal exceeds its budget.
+     *
+     * @throws IOException if the checkpoint or the journal cannot be written
+     * @throws IllegalStateException if the journal is closed
+     */
+    public void checkpoint() throws IOException {
+        ensureOpen();
+        // Everything written so far goes into the checkpoint, until it is written
+        checkpointPending = true;
+        image.drainDirtyRegions();
+        Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+        image.save(temporary);
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (channel == null || !channel.isOpen()) {
+            // Opening, or after an interrupt closed the channel
+            channel = FileChannel.open(directory.resolve(JOURNAL), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        channel.truncate(0);
+        channel.position(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(image.getType()).putInt(tileSize);
+        header.flip();
+        writeFully(header);
+        channel.force(true);
+        committedSize = HEADER_SIZE;
+        checkpointPending = false;
+    }
+
+    /// @return the current size of the journal file in bytes
+    public long size() throws IOException {
+        ensureOpen();
+        return channel.size();
+    }
+
+    /** Closes the journal file without committing; the checkpoint and the committed batches remain */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        codec.end();
+        if (channel != null) channel.close();
+    }
+
+    private void appendTile(int x, int y, Raster tile) throws IOException {
+        boolean clear = image.hasAlpha() && TileCodec.isZero(tile);
+        if (!clear) codec.encode(tile);
+        int length = clear ? 0 : codec.length();
+        ByteBuffer record = ByteBuffer.allocate(TILE_HEADER_SIZE + length);
+        record.put(TILE).putInt(x).putInt(y).put(clear ? CLEAR : codec.encoding()).putInt(length);
+        if (!clear) record.put(codec.payload(), 0, length);
+        append(record);
+    }
+
+    /// Writes a filled record buffer followed by its CRC
+    private void append(ByteBuffer record) throws IOException {
+        crc.reset();
+        crc.update(record.array(), 0, record.position());
+        record.flip();
+        writeFully(record);
+        writeFully(ByteBuffer.allocate(4).putInt(0, (int) crc.getValue()));
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Journal is closed");
+    }
+
+    /* ------ RECOVERY ------ */
+
+    /// Loads the checkpoint of a journal directory and replays every committed batch of the journal
+    static InfiniteBufferedImage recover(Path directory) throws IOException {
+        InfiniteBufferedImage image = InfiniteImageFile.read(directory.resolve(CHECKPOINT));
+        Path journal = directory.resolve(JOURNAL);
+        if (!Files.exists(journal)) return image;
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (!readFully(channel, header, 0)) return image; // crashed while starting the journal
+            if (header.getInt() != MAGIC) throw new IOException("Not a tile journal: " + journal);
+            short version = header.getShort();
+            if (version != VERSION) throw new IOException("Unsupported tile journal version: " + version);
+            header.getShort();
+            if (header.getInt() != image.getType() || header.getInt() != image.getTileSize()) {
+                throw new IOException("Tile journal does not match its checkpoint: " + journal);
+            }
+
+            // Find the end of the last intact batch, then apply the records before it
+            CRC32 crc = new CRC32();
+            long committed = HEADER_SIZE;
+            for (long position = HEADER_SIZE; ; ) {
+                ByteBuffer record = readRecord(channel, position, crc);
+                if (record == null) break;
+                position += record.limit();
+                if (record.get(0) == COMMIT) committed = position;
+            }
+            TileCodec codec = new TileCodec();
+            try {
+                BufferedImage tile = new BufferedImage(image.getTileSize(), image.getTileSize(), image.getType());
+                for (long position = HEADER_SIZE; position < committed; ) {
+                    ByteBuffer record = readRecord(channel, position, crc);
+                    position += record.limit();
+                    if (record.get(0) == TILE) replayTile(image, record, codec, tile);
+                }
+            } finally {
+                codec.end();
+            }
+        }
+        // Replayed tiles are saved already
+        image.drainDirtyRegions();
+        return image;
+    }
+
+    /// @return the record at the position including its CRC, or {@code null} if it is torn, corrupt or past the end
+    private static ByteBuffer readRecord(FileChannel channel, long position, CRC32 crc) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(TILE_HEADER_SIZE);
+        readFully(channel, head, position);
+        int size;
+        if (head.limit() >= COMMIT_SIZE && head.get(0) == COMMIT) {
+            size = COMMIT_SIZE;
+        } else if (head.limit() == TILE_HEADER_SIZE && head.get(0) == TILE) {
+            int length = head.getInt(10);
+            if (length < 0 || length > channel.size() - position - TILE_HEADER_SIZE - 4) return null;
+            size = TILE_HEADER_SIZE + length;
+        } else {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(size + 4);
+        if (!readFully(channel, record, position)) return null;
+        crc.reset();
+        crc.update(record.array(), 0, size);
+        return record.getInt(size) == (int) crc.getValue() ? record : null;
+    }
+
+    private static void replayTile(InfiniteBufferedImage image, ByteBuffer record, TileCodec codec, BufferedImage tile)
+            throws IOException {
+        int x = record.getInt(1), y = record.getInt(5);
+        byte encoding = record.get(9);
+        int length = record.getInt(10);
+        if (encoding == CLEAR) {
+            // Unallocated space is transparent already
+            if (!image.hasAllocatedLeaf(new Rectangle(x, y, tile.getWidth(), tile.getHeight()))) return;
+            tile.getRaster().setRect(new BufferedImage(tile.getWidth(), tile.getHeight(), tile.getType()).getRaster());
+        } else {
+            byte[] payload = new byte[length];
+            System.arraycopy(record.array(), TILE_HEADER_SIZE, payload, 0, length);
+            try {
+                codec.decode(encoding, payload, length, tile.getRaster());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(String.format("Corrupt journaled tile (%d, %d): %s", x, y, e.getMessage()), e);
+            }
+        }
+        image.writeTile(x, y, tile.getRaster());
+    }
+
+    /// Reads until the buffer is full or the file ends; @return whether the buffer was filled, and flips it
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+        }
+        boolean full = !buffer.hasRemaining();
+        buffer.flip();
+        return full;
+    }
+}
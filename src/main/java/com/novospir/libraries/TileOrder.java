@@ -0,0 +1,49 @@
+package com.novospir.libraries;
+
+/**
+ * The order in which {@link InfiniteBufferedImage#tileIterator(TileOrder)} visits allocated tiles.
+ *
+ * <p>Both orders are depth-first walks of the quadtree that differ in the order of the four quadrants of
+ * each node, so every subtree is visited as one contiguous run. Tiles that are close in the sequence are
+ * close on the canvas, which keeps a pass that also reads neighbouring tiles within the CPU caches, and a
+ * run of the sequence can be handed to another thread as one subtree.
+ *
+ * @see InfiniteBufferedImage#tileSpliterator(TileOrder)
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public enum TileOrder {
+    /**
+     * Morton order: NW, NE, SW, SE within every node, the order of {@link QuadNode#getQuadrant}. Cheapest to
+     * walk; consecutive tiles jump across the canvas at the end of each quadrant.
+     */
+    Z_ORDER(new int[][]{{0, 1, 2, 3}}, new int[][]{{0, 0, 0, 0}}),
+
+    /**
+     * Hilbert order: the quadrants of each node are visited in a rotated U shape, so that consecutive tiles of
+     * a fully allocated subtree are always edge neighbours. Better locality than Z-order at the same cost.
+     */
+    HILBERT(
+            // Quadrants (y * 2 + x) in visiting order for each of the four orientations of the curve
+            new int[][]{{0, 2, 3, 1}, {0, 1, 3, 2}, {3, 1, 0, 2}, {3, 2, 0, 1}},
+            // Orientation of each visited quadrant
+            new int[][]{{1, 0, 0, 3}, {0, 1, 1, 2}, {3, 2, 2, 1}, {2, 3, 3, 0}});
+
+    private final int[][] quadrants;
+    private final int[][] states;
+
+    TileOrder(int[][] quadrants, int[][] states) {
+        this.quadrants = quadrants;
+        this.states = states;
+    }
+
+    /// @return the quadrant visited {@code i}-th within a node of the given orientation
+    int quadrant(int state, int i) {
+        return quadrants[state][i];
+    }
+
+    /// @return the orientation of the quadrant visited {@code i}-th within a node of the given orientation
+    int childState(int state, int i) {
+        return states[state][i];
+    }
+}
@@ -0,0 +1,168 @@
+package com.novospir.libraries;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps a bounded set of tile images in the heap and pages the others out to a backing store.
+ *
+ * <p>A paged-out leaf is still allocated: its {@code image} is {@code null} and {@link QuadNode#data}
+ * holds the store's handle for it. {@link InfiniteBufferedImage} calls {@link #access} for every leaf a
+ * lookup returns, which reads the tile back in if needed, and calls {@link #trim()} only at the
+ * <em>start</em> of a lookup. The leaves returned by one operation therefore stay resident until the
+ * next one begins, so a large draw may briefly exceed the budget by the tiles it touches.
+ *
+ * <h3>Eviction:</h3>
+ * <ul>
+ *   <li>Resident leaves are kept in least-recently-used order
+ *   <li>A leaf is evicted when the budget is exceeded, or when it has not been accessed for the idle period
+ *   <li>Leaves returned for writing are dirty and written back to the store when evicted
+ *   <li>Clean leaves are dropped; their stored copy is still current
+ * </ul>
+ *
+ * <p>Paging relies on every leaf being one tile, so it cannot be combined with adaptive merging.
+ * Like the image that owns it, a pager is <b>not thread-safe</b>.
+ *
+ * @see MappedTileStore
+ * @see SpillTileStore
+ * @see CompressedTileStore
+ * @see TileCacheStats
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+abstract class TilePager implements Closeable {
+    final int tileSize;
+    final int type;
+    final int tileBytes;
+    private final long maxResidentBytes;
+    private final long idleNanos;
+    // Access-ordered, eldest first
+    private final LinkedHashMap<QuadNode, Residency> resident = new LinkedHashMap<>(64, 0.75f, true);
+    private long residentBytes;
+    private long hits, misses, evictions, writeBacks;
+    private BufferedImage scratch;
+    LongSupplier clock = System::nanoTime; // replaced in tests
+
+    private static final class Residency {
+        boolean dirty;
+        long lastAccess;
+    }
+
+    /**
+     * @param tileSize Width and height of every tile
+     * @param type The {@link BufferedImage} type of every tile
+     * @param maxResidentBytes Tile bytes to keep in the heap before evicting
+     * @param idleNanos Time after which an untouched tile is evicted, or {@link Long#MAX_VALUE} to evict only over budget
+     */
+    TilePager(int tileSize, int type, long maxResidentBytes, long idleNanos) {
+        this.tileSize = tileSize;
+        this.type = type;
+        this.tileBytes = TileCodec.byteSize(new BufferedImage(tileSize, tileSize, type).getRaster().getDataBuffer());
+        this.maxResidentBytes = maxResidentBytes;
+        this.idleNanos = idleNanos;
+    }
+
+    /**
+     * Makes an allocated leaf resident and marks it most recently used.
+     *
+     * @param leaf A leaf with an image, or with a store handle if it was paged out
+     * @param write {@code true} if the caller may modify the tile, so it must be written back on eviction
+     */
+    final void access(QuadNode leaf, boolean write) {
+        Residency residency = resident.get(leaf);
+        if (residency == null) {
+            if (leaf.image == null) {
+                misses++;
+                leaf.image = new BufferedImage(tileSize, tileSize, type);
+                read(leaf, leaf.image);
+            }
+            residentBytes += tileBytes;
+            residency = new Residency();
+            // A tile that was never stored has no copy to fall back on
+            residency.dirty = leaf.data == null;
+            resident.put(leaf, residency);
+        } else {
+            hits++;
+        }
+        residency.dirty |= write;
+        if (idleNanos != Long.MAX_VALUE) residency.lastAccess = clock.getAsLong();
+    }
+
+    /// Evicts least recently used leaves until the resident tiles fit the budget and none has been idle too long
+    final void trim() {
+        boolean expires = idleNanos != Long.MAX_VALUE;
+        long now = expires ? clock.getAsLong() : 0;
+        Iterator<Map.Entry<QuadNode, Residency>> it = resident.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<QuadNode, Residency> eldest = it.next();
+            boolean idle = expires && now - eldest.getValue().lastAccess >= idleNanos;
+            if (residentBytes <= maxResidentBytes && !idle) break;
+            QuadNode leaf = eldest.getKey();
+            if (eldest.getValue().dirty) {
+                write(leaf);
+                writeBacks++;
+            }
+            evictions++;
+            leaf.image = null;
+            residentBytes -= tileBytes;
+            it.remove();
+        }
+    }
+
+    /**
+     * Reads a leaf for a one-off scan (bounds, compaction, saving) without making it resident, so a walk
+     * over the whole tree neither evicts the working set nor inflates every cold tile.
+     *
+     * @return the leaf's image if it is resident, otherwise a scratch tile holding its pixels that is
+     *         only valid until the next call
+     */
+    final BufferedImage peek(QuadNode leaf) {
+        if (leaf.image != null) return leaf.image;
+        if (scratch == null) scratch = new BufferedImage(tileSize, tileSize, type);
+        read(leaf, scratch);
+        return scratch;
+    }
+
+    /// Drops a leaf from the heap and the store, e.g. when {@link InfiniteBufferedImage#compact()} releases it
+    final void release(QuadNode leaf) {
+        if (resident.remove(leaf) != null) residentBytes -= tileBytes;
+        if (leaf.data != null) free(leaf);
+        leaf.image = null;
+        leaf.data = null;
+    }
+
+    /// @return the number of tiles currently held in the heap
+    final int residentCount() {
+        return resident.size();
+    }
+
+    /// @return the bytes of tile data currently held in the heap
+    final long residentBytes() {
+        return residentBytes;
+    }
+
+    /// @return a snapshot of the counters
+    final TileCacheStats stats() {
+        return new TileCacheStats(hits, misses, evictions, writeBacks, resident.size(), residentBytes, storedBytes());
+    }
+
+    /// @return the bytes the store currently occupies, including space not yet reused
+    abstract long storedBytes();
+
+    /// Fills {@code tile} from the store entry in {@code leaf.data}
+    abstract void read(QuadNode leaf, BufferedImage tile);
+
+    /// Writes {@code leaf.image} to the store, creating an entry in {@code leaf.data} if it has none
+    abstract void write(QuadNode leaf);
+
+    /// Releases the store entry in {@code leaf.data}
+    abstract void free(QuadNode leaf);
+
+    /// Releases the store; the owning image must not be used afterwards
+    @Override
+    public abstract void close();
+}
@@ -0,0 +1,180 @@
+package com.novospir.libraries;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Writes the content of an {@link InfiniteBufferedImage} as a zoom-level tile pyramid of PNGs, laid out as
+ * {@code <directory>/<z>/<x>/<y>.png} like slippy-map and deep-zoom viewers expect.
+ *
+ * <h3>Levels:</h3>
+ * <ul>
+ *   <li>The pyramid covers a square from the top-left corner of the logical bounds, of side
+ *       {@code tileSize * 2^maxZoom}, the smallest that contains the bounds
+ *   <li>Level {@code maxZoom} is the canvas at full resolution; level {@code z} has {@code 2^z x 2^z} tiles,
+ *       each pixel averaging {@code 2^(maxZoom - z)} canvas pixels squared; level 0 is one tile
+ * </ul>
+ *
+ * <p>Each level is built from the one below by averaging 2x2 blocks, weighted by alpha so transparent
+ * pixels do not darken edges. The pass is depth-first and bottom-up: a pyramid tile renders (or
+ * downsamples) its four children before itself, so only the tiles on the current path are held.
+ * Subtrees that no allocated quadtree leaf intersects are skipped without rendering, and their tiles are
+ * not written; viewers treat the missing files as blank.
+ *
+ * <p>Subtrees run in parallel on the common {@link ForkJoinPool}. Reads from the canvas are serialized,
+ * since a paged image updates its tile cache on every lookup; downsampling and PNG encoding, which
+ * dominate, run concurrently. The image must not be modified during the export.
+ *
+ * @see InfiniteBufferedImage#exportTilePyramid(Path, int)
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+final class TilePyramid {
+    private final InfiniteBufferedImage image;
+    private final Path directory;
+    private final int tileSize;
+    private final Rectangle bounds;
+    private final int maxZoom;
+
+    private TilePyramid(InfiniteBufferedImage image, Path directory, int tileSize, Rectangle bounds) {
+        this.image = image;
+        this.directory = directory;
+        this.tileSize = tileSize;
+        this.bounds = bounds;
+        long tiles = (Math.max(bounds.width, bounds.height) + (long) tileSize - 1) / tileSize;
+        this.maxZoom = 64 - Long.numberOfLeadingZeros(tiles - 1);
+    }
+
+    /// @return the deepest zoom level written, or -1 if the image is empty
+    static int write(InfiniteBufferedImage image, Path directory, int tileSize) throws IOException {
+        if (tileSize < 2 || Integer.bitCount(tileSize) != 1) {
+            throw new IllegalArgumentException(String.format("Pyramid tile size must be a power of two: %,d", tileSize));
+        }
+        Rectangle bounds = image.getLogicalBounds();
+        if (bounds.isEmpty()) return -1;
+        TilePyramid pyramid = new TilePyramid(image, directory, tileSize, bounds);
+        try {
+            ForkJoinPool.commonPool().invoke(pyramid.new Tile(0, 0, 0));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return pyramid.maxZoom;
+    }
+
+    /// One pyramid tile; computes its pixels from its children and writes them
+    private final class Tile extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+        private final int z;
+        private final long x, y;
+
+        Tile(int z, long x, long y) {
+            this.z = z;
+            this.x = x;
+            this.y = y;
+        }
+
+        /// @return the ARGB pixels of this tile, or {@code null} if it is empty
+        @Override
+        protected int[] compute() {
+            Rectangle region = canvasRegion();
+            if (region.isEmpty()) return null;
+            int[] pixels;
+            if (z == maxZoom) {
+                pixels = render(region);
+            } else {
+                Tile[] children = new Tile[4];
+                for (int i = 0; i < 4; i++) children[i] = new Tile(z + 1, 2 * x + (i & 1), 2 * y + (i >> 1));
+                invokeAll(children);
+                int[][] quadrants = new int[4][];
+                for (int i = 0; i < 4; i++) quadrants[i] = children[i].join();
+                pixels = downsample(quadrants);
+            }
+            if (pixels != null) save(pixels);
+            return pixels;
+        }
+
+        /// @return the part of the canvas under this tile that lies within the bounds and holds allocated leaves
+        private Rectangle canvasRegion() {
+            long span = (long) tileSize << (maxZoom - z);
+            long left = bounds.x + x * span, top = bounds.y + y * span;
+            long right = Math.min(left + span, (long) bounds.x + bounds.width);
+            long bottom = Math.min(top + span, (long) bounds.y + bounds.height);
+            if (left >= right || top >= bottom) return new Rectangle();
+            Rectangle region = new Rectangle((int) left, (int) top, (int) (right - left), (int) (bottom - top));
+            synchronized (image) {
+                return image.hasAllocatedLeaf(region) ? region : new Rectangle();
+            }
+        }
+
+        private int[] render(Rectangle region) {
+            BufferedImage tile = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+            BufferedImage content;
+            synchronized (image) {
+                content = image.toBufferedImage(region);
+            }
+            Graphics2D g = tile.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(content, region.x - bounds.x - (int) (x * tileSize), region.y - bounds.y - (int) (y * tileSize), null);
+            g.dispose();
+            int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+            for (int p : pixels) if (p != 0) return pixels;
+            return null; // allocated but empty
+        }
+
+        private void save(int[] pixels) {
+            BufferedImage tile = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+            tile.getRaster().setDataElements(0, 0, tileSize, tileSize, pixels);
+            Path file = directory.resolve(Integer.toString(z)).resolve(Long.toString(x)).resolve(y + ".png");
+            try {
+                Files.createDirectories(file.getParent());
+                if (!ImageIO.write(tile, "png", file.toFile())) throw new IOException("No ImageIO writer for PNG");
+                image.countExported(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write pyramid tile " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Averages each 2x2 block of the four quadrants (top-left, top-right, bottom-left, bottom-right) into one
+     * pixel. Colors are weighted by alpha, i.e. averaged premultiplied, so a pixel next to transparency keeps
+     * its color and only loses opacity.
+     *
+     * @return the downsampled tile, or {@code null} if every quadrant is empty
+     */
+    private int[] downsample(int[][] quadrants) {
+        if (quadrants[0] == null && quadrants[1] == null && quadrants[2] == null && quadrants[3] == null) return null;
+        int half = tileSize / 2;
+        int[] out = new int[tileSize * tileSize];
+        for (int q = 0; q < 4; q++) {
+            int[] src = quadrants[q];
+            if (src == null) continue;
+            int offset = (q >> 1) * half * tileSize + (q & 1) * half;
+            for (int oy = 0; oy < half; oy++) {
+                for (int ox = 0; ox < half; ox++) {
+                    int i = 2 * oy * tileSize + 2 * ox;
+                    out[offset + oy * tileSize + ox] = average(src[i], src[i + 1], src[i + tileSize], src[i + tileSize + 1]);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static int average(int p0, int p1, int p2, int p3) {
+        int a0 = p0 >>> 24, a1 = p1 >>> 24, a2 = p2 >>> 24, a3 = p3 >>> 24;
+        int alpha = a0 + a1 + a2 + a3;
+        if (alpha == 0) return 0;
+        int r = (a0 * (p0 >> 16 & 0xFF) + a1 * (p1 >> 16 & 0xFF) + a2 * (p2 >> 16 & 0xFF) + a3 * (p3 >> 16 & 0xFF) + alpha / 2) / alpha;
+        int g = (a0 * (p0 >> 8 & 0xFF) + a1 * (p1 >> 8 & 0xFF) + a2 * (p2 >> 8 & 0xFF) + a3 * (p3 >> 8 & 0xFF) + alpha / 2) / alpha;
+        int b = (a0 * (p0 & 0xFF) + a1 * (p1 & 0xFF) + a2 * (p2 & 0xFF) + a3 * (p3 & 0xFF) + alpha / 2) / alpha;
+        return (alpha + 2) / 4 << 24 | r << 16 | g << 8 | b;
+    }
+}
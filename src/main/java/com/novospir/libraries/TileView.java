@@ -0,0 +1,121 @@
+package com.novospir.libraries;
+
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * An allocated tile of an {@link InfiniteBufferedImage}, as visited by {@link InfiniteBufferedImage#tiles()}
+ * and {@link InfiniteBufferedImage#tileIterator(TileOrder)}: the square {@code [x, x+size) x [y, y+size)} of the
+ * canvas, with direct access to its pixels.
+ *
+ * <p>A tile is usually {@link InfiniteBufferedImage#getTileSize()} wide; with adaptive leaves it may be a
+ * merged leaf of a larger power-of-two size. A view is only valid until the image is next modified other than
+ * through the views of the same walk.
+ *
+ * <h3>Reading and writing:</h3>
+ * <ul>
+ *   <li>{@link #getRaster()} and {@link #getData()} are for reading only
+ *   <li>{@link #getWritableRaster()} and {@link #getWritableData()} first copy the tile if a snapshot shares it,
+ *       and mark the whole tile as written for dirty regions, bounds and change listeners
+ *   <li>The views of one walk may be written from different threads: each view is a different tile, and the
+ *       copy-on-write step is synchronized on the image
+ * </ul>
+ *
+ * <pre>{@code
+ * try (Stream<TileView> tiles = canvas.tiles()) {
+ *     tiles.parallel().forEach(tile -> {
+ *         int[] argb = tile.getWritableData();
+ *         for (int i = 0; i < argb.length; i++) argb[i] = argb[i] >>> 24 >= 128 ? 0xFF000000 : 0;
+ *     });
+ * } // closing the stream notifies the change listeners
+ * }</pre>
+ *
+ * @author Novospir, Adam
+ * @since 1.1
+ */
+public final class TileView {
+    private final InfiniteBufferedImage image;
+    final QuadNode leaf;
+    private QuadNode writable; // the leaf after its first write access, owned by the current epoch
+
+    TileView(InfiniteBufferedImage image, QuadNode leaf) {
+        this.image = image;
+        this.leaf = leaf;
+    }
+
+    /// @return the x-coordinate of the tile's top-left corner on the canvas
+    public long getX() {
+        return leaf.x;
+    }
+
+    /// @return the y-coordinate of the tile's top-left corner on the canvas
+    public long getY() {
+        return leaf.y;
+    }
+
+    /// @return the width and height of the tile
+    public int getSize() {
+        return (int) leaf.size; // leaves are at most maxLeafSize
+    }
+
+    /**
+     * Returns the pixels of the tile for reading, in tile coordinates: (0, 0) is ({@link #getX()}, {@link #getY()}).
+     *
+     * @throws UnsupportedOperationException if tiles are paged out to a tile store
+     */
+    public Raster getRaster() {
+        return current().image.getRaster();
+    }
+
+    /**
+     * Returns the pixels of the tile for writing, in tile coordinates, and marks the whole tile as written.
+     *
+     * @throws UnsupportedOperationException if tiles are paged out to a tile store
+     */
+    public WritableRaster getWritableRaster() {
+        if (writable == null) writable = image.writableLeaf(leaf);
+        return writable.image.getRaster();
+    }
+
+    /**
+     * Returns the packed pixels of the tile for reading: {@code getSize()} rows of {@code getSize()} ints,
+     * top to bottom, in the tile's image type (e.g. ARGB for {@code TYPE_INT_ARGB}). As with
+     * {@link DataBufferInt#getData()}, Java2D stops caching the tile for faster painting afterwards.
+     *
+     * @throws UnsupportedOperationException if the image type does not store one int per pixel, or tiles are
+     *                                       paged out to a tile store
+     */
+    public int[] getData() {
+        return data(getRaster());
+    }
+
+    /**
+     * Returns the packed pixels of the tile for writing, like {@link #getData()}, and marks the whole tile as written.
+     *
+     * @throws UnsupportedOperationException if the image type does not store one int per pixel, or tiles are
+     *                                       paged out to a tile store
+     */
+    public int[] getWritableData() {
+        return data(getWritableRaster());
+    }
+
+    private QuadNode current() {
+        if (writable != null) return writable;
+        image.requireHeapTiles();
+        return leaf;
+    }
+
+    private static int[] data(Raster raster) {
+        if (!(raster.getDataBuffer() instanceof DataBufferInt) || raster.getNumDataElements() != 1) {
+            throw new UnsupportedOperationException(String.format(
+                    "Tiles in a %s do not store one int per pixel", raster.getDataBuffer().getClass().getSimpleName()));
+        }
+        return ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TileView[x=%d, y=%d, size=%d]", leaf.x, leaf.y, leaf.size);
+    }
+}
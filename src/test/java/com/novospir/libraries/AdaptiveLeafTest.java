@@ -0,0 +1,109 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static com.novospir.libraries.TestImages.assertPixelsEqual;
+import static com.novospir.libraries.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Merging of co-drawn leaves into larger rasters, and splitting them again with {@code compact()}.
+ */
+public class AdaptiveLeafTest {
+
+    private static final Rectangle REGION = new Rectangle(-300, -300, 1200, 1200);
+
+    @Test
+    void denseDrawingMergesLeavesWithoutChangingPixels() {
+        InfiniteBufferedImage adaptive = new InfiniteBufferedImage(adaptiveOptions());
+        InfiniteBufferedImage reference = new InfiniteBufferedImage(adaptiveOptions().toBuilder().mergeThreshold(0).build());
+        for (InfiniteBufferedImage image : new InfiniteBufferedImage[]{adaptive, reference}) {
+            paintDense(image);
+        }
+
+        assertTrue(adaptive.getAllocatedLeafCount() < reference.getAllocatedLeafCount() / 3,
+                "dense area should have merged: " + adaptive.getAllocatedLeafCount() + " leaves");
+        assertPixelsEqual(reference, adaptive, REGION);
+
+        // A merged region is returned as one leaf, however many tiles it spans
+        QuadNode merged = adaptive.findLeaf(10, 10);
+        assertTrue(merged.size > adaptive.getTileSize());
+        assertEquals(1, adaptive.findLeaves(merged.x, merged.y, (int) merged.size, (int) merged.size, false).size());
+    }
+
+    @Test
+    void mergedLeavesRespectMaxLeafSize() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(adaptiveOptions().toBuilder().maxLeafSize(256).build());
+        paintDense(image);
+        for (QuadNode leaf : image.findLeaves(REGION, false)) {
+            assertTrue(leaf.size <= 256, "leaf of " + leaf.size);
+        }
+    }
+
+    @Test
+    void compactSplitsSparseMergedLeaves() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(adaptiveOptions());
+        paintDense(image);
+        QuadNode merged = image.findLeaf(10, 10);
+        assertTrue(merged.size > image.getTileSize());
+
+        // Erase everything but one pixel of the merged leaf
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(REGION.x, REGION.y, REGION.width, REGION.height);
+        g.dispose();
+        image.setRGB(merged.x + 1, merged.y + 1, 0xFF00FF00);
+        BufferedImage before = image.toBufferedImage(REGION);
+
+        image.compact();
+
+        assertEquals(1, image.getAllocatedLeafCount());
+        assertEquals(image.getTileSize(), image.findLeaf(merged.x + 1, merged.y + 1).size);
+        assertArrayEquals(pixels(before), pixels(image.toBufferedImage(REGION)));
+    }
+
+    @Test
+    void compactReleasesEmptyTilesWithoutMerging() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage();
+        image.setRGB(0, 0, 0xFF0000FF);
+        image.setRGB(1000, 1000, 0xFF0000FF);
+        image.setRGB(1000, 1000, 0);
+        assertEquals(2, image.getAllocatedLeafCount());
+
+        image.compact();
+        assertEquals(1, image.getAllocatedLeafCount());
+        assertEquals(0xFF0000FF, image.getRGB(0, 0));
+
+        image.setRGB(1000, 1000, 0xFFFF0000);
+        assertEquals(0xFFFF0000, image.getRGB(1000, 1000));
+    }
+
+    @Test
+    void mergingIsOffByDefault() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage();
+        paintDense(image);
+        for (QuadNode leaf : image.findLeaves(REGION, false)) {
+            assertEquals(image.getTileSize(), leaf.size);
+        }
+    }
+
+    /* ==== helpers ======================================================= */
+
+    private static InfiniteImageOptions adaptiveOptions() {
+        return InfiniteImageOptions.builder().tileSize(64).mergeThreshold(2).maxLeafSize(512).build();
+    }
+
+    /// Repeated full-area strokes, as when painting a photographic layer
+    private static void paintDense(InfiniteBufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        for (int pass = 0; pass < 8; pass++) {
+            g.setColor(new Color(pass * 30, 255 - pass * 30, 128, 200));
+            g.fillRect(-256, -256, 1024, 1024);
+            g.drawLine(-256, -200 + pass * 40, 767, 300 - pass * 40);
+        }
+        g.dispose();
+    }
+}
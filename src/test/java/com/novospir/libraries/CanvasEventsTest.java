@@ -0,0 +1,97 @@
+package com.novospir.libraries;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Flight recorder events of expensive canvas operations.
+ */
+public class CanvasEventsTest {
+
+    private static final int TILE = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recordsEachExpensiveOperationWithRegionAndTiles() throws IOException {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.novospir.libraries.*");
+            recording.start();
+
+            InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+            Graphics2D g = image.createGraphics();
+            g.fillRect(0, 0, 2 * TILE, TILE);                                   // two tiles, root grows once
+            g.drawImage(new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB),
+                    AffineTransform.getTranslateInstance(TILE - 5, 5), null);   // spans the two tiles
+            g.copyArea(0, 0, 10, 10, 0, TILE);                                  // allocates a tile below
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, TILE, 2 * TILE, TILE);                                // allocates the other tile below
+            g.dispose();
+            image.getLogicalBounds();
+            image.toBufferedImage(new Rectangle(0, 0, 3 * TILE, TILE));
+            image.compact();
+
+            recording.stop();
+            Path file = tempDir.resolve("canvas.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        RecordedEvent growth = single(events, "TreeGrowth");
+        assertEquals(1, growth.getInt("levels"));
+        assertEquals(2 * TILE, growth.getLong("width"));
+
+        List<RecordedEvent> allocations = all(events, "TileAllocation");
+        assertEquals(List.of(2, 1, 1), allocations.stream().map(e -> e.getInt("tiles")).collect(Collectors.toList()));
+        assertEquals(TILE, allocations.get(1).getLong("y"));
+
+        RecordedEvent drawImage = single(events, "TransformedDrawImage");
+        assertEquals(2, drawImage.getInt("tiles"));
+        assertEquals(TILE - 5, drawImage.getLong("x"));
+
+        RecordedEvent copy = single(events, "CopyArea");
+        assertEquals(TILE, copy.getInt("dy"));
+        assertEquals(1, copy.getInt("tiles"));
+
+        RecordedEvent bounds = single(events, "BoundsRecomputation");
+        assertEquals(4, bounds.getInt("tiles"));
+        assertEquals(2 * TILE, bounds.getLong("width"));
+        assertEquals(TILE, bounds.getLong("height"));
+
+        RecordedEvent export = single(events, "Export");
+        assertEquals(2, export.getInt("tiles"));
+        assertEquals(3 * TILE, export.getLong("width"));
+
+        RecordedEvent compaction = single(events, "Compaction");
+        assertEquals(2, compaction.getInt("tiles"), "the cleared row of tiles is released");
+        assertNotNull(compaction.getStackTrace());
+        assertFalse(compaction.getDuration().isNegative());
+    }
+
+    private static List<RecordedEvent> all(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.novospir.libraries." + name))
+                .collect(Collectors.toList());
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = all(events, name);
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+}
@@ -0,0 +1,103 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The array-based quadtree behind InfiniteBitmap, checked against the object tree.
+ */
+public class CompactQuadTreeTest {
+
+    private static final int TILE = 64;
+
+    @Test
+    void findsTheTilesItCreatedAnywhere() {
+        CompactQuadTree<String> tree = new CompactQuadTree<>(TILE);
+        assertEquals(-1, tree.find(0, 0));
+        int first = tree.findOrCreate(5, 7, () -> "first");
+        assertEquals(0, tree.depth(), "a single tile is the root");
+        assertEquals(first, tree.find(TILE - 1, TILE - 1));
+        assertEquals(-1, tree.find(TILE, 0));
+        assertEquals(-1, tree.find(-1, 0));
+
+        long far = 1L << 40;
+        int second = tree.findOrCreate(-far - 1, far, () -> "second");
+        assertEquals(second, tree.find(-far - TILE, far + TILE - 1));
+        assertEquals(-far - TILE, tree.tileX(second));
+        assertEquals(far, tree.tileY(second));
+        assertEquals(first, tree.find(0, 0), "the old root is linked below the new one");
+        assertEquals("first", tree.get(first));
+        assertEquals(second, tree.findOrCreate(-far - 1, far, () -> "unused"));
+        assertEquals("second", tree.get(second));
+        assertEquals(2, tree.size());
+        assertEquals(-1, tree.find(Long.MAX_VALUE, Long.MIN_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> tree.findOrCreate(Long.MAX_VALUE, 0, () -> "beyond"));
+    }
+
+    @Test
+    void matchesTheObjectTreeOnRandomWrites() {
+        CompactQuadTree<long[]> tree = new CompactQuadTree<>(TILE);
+        QuadNode root = new QuadNode(0, 0, TILE);
+        Random rng = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            long x = rng.nextInt(1 << 16) - (1 << 15), y = rng.nextInt(1 << 12);
+            long[] point = {x, y};
+            tree.findOrCreate(x, y, () -> point);
+            while (!root.contains(x, y)) root = root.growToFit(x, y);
+            QuadNode leaf = root.getOrCreateLeaf(x, y, TILE);
+            if (leaf.data == null) leaf.data = point;
+        }
+        assertEquals(root.size, tree.rootSize(), "grown like the object tree");
+        for (int i = 0; i < 20_000; i++) {
+            long x = rng.nextInt(1 << 17) - (1 << 16), y = rng.nextInt(1 << 13) - (1 << 12);
+            int tile = tree.find(x, y);
+            QuadNode leaf = root.findLeaf(x, y);
+            if (leaf == null || leaf.data == null) {
+                assertEquals(-1, tile);
+            } else {
+                assertSame(leaf.data, tree.get(tile));
+                assertEquals(leaf.x, tree.tileX(tile));
+                assertEquals(leaf.y, tree.tileY(tile));
+            }
+        }
+    }
+
+    @Test
+    void releasedTilesAreForgottenAndTheirIndicesReused() {
+        CompactQuadTree<Integer> tree = new CompactQuadTree<>(TILE);
+        Map<Integer, Integer> tiles = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            tiles.put(i, tree.findOrCreate((long) i * TILE, -i * 3L * TILE, () -> value));
+        }
+        int nodes = tree.nodeCount();
+        for (int i = 0; i < 100; i += 2) tree.release(tiles.get(i));
+        assertEquals(50, tree.size());
+        assertEquals(-1, tree.find(0, 0));
+        assertEquals(tiles.get(1), tree.find(TILE, -3 * TILE));
+
+        int[] visited = new int[1];
+        tree.forEach(tile -> {
+            assertEquals(1, tree.get(tile) % 2);
+            tree.release(tile);
+            visited[0]++;
+        });
+        assertEquals(50, visited[0]);
+        assertEquals(0, tree.size());
+
+        int reused = tree.findOrCreate(0, 0, () -> -1);
+        assertTrue(reused < 100, "index " + reused + " is taken from the released ones");
+        assertEquals(nodes, tree.nodeCount(), "the path of a released tile is reused");
+        assertEquals(-1, tree.get(tree.find(1, 1)));
+
+        tree.clear();
+        assertEquals(0, tree.size());
+        assertEquals(TILE, tree.rootSize());
+        assertEquals(-1, tree.find(0, 0));
+    }
+}
@@ -0,0 +1,141 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.novospir.libraries.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * In-heap compression of tiles that have not been accessed for the idle period.
+ */
+public class CompressedTileStoreTest {
+
+    private static final int TILE = 128;
+    private static final long TILE_BYTES = TILE * TILE * 4;
+    private static final Rectangle REGION = new Rectangle(-600, -600, 1200, 1200);
+
+    private final long[] now = {0};
+
+    @Test
+    void idleLineArtCompressesAndReadsBack() {
+        InfiniteBufferedImage reference = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        InfiniteBufferedImage compressed = compressedImage(Duration.ofSeconds(30));
+        for (InfiniteBufferedImage image : new InfiniteBufferedImage[]{reference, compressed}) {
+            paintLineArt(image);
+        }
+        int leaves = compressed.getAllocatedLeafCount();
+        assertEquals(leaves, compressed.getTileCacheStats().getResidentTiles(), "nothing is idle yet");
+
+        advance(31);
+        compressed.getRGB(0, 0);
+        TileCacheStats stats = compressed.getTileCacheStats();
+        assertTrue(stats.getResidentTiles() <= 1, stats.toString());
+        assertEquals(leaves, compressed.getAllocatedLeafCount());
+        assertTrue(stats.getStoredBytes() * 10 < leaves * TILE_BYTES,
+                "line art should compress at least 10x: " + stats.getStoredBytes() + " of " + leaves * TILE_BYTES);
+
+        assertArrayEquals(pixels(reference.toBufferedImage(REGION)), pixels(compressed.toBufferedImage(REGION)));
+        assertEquals(reference.getLogicalBounds(), compressed.getLogicalBounds());
+    }
+
+    @Test
+    void recentlyUsedTilesStayUncompressed() {
+        InfiniteBufferedImage image = compressedImage(Duration.ofSeconds(10));
+        for (int t = 0; t < 8; t++) image.setRGB(t * TILE, 0, 0xFF000000 | t);
+
+        for (int second = 0; second < 30; second++) {
+            advance(1);
+            image.getRGB(0, 0); // keeps the first tile hot
+        }
+        assertEquals(1, image.getTileCacheStats().getResidentTiles());
+        assertNotNull(image.findLeaf(0, 0).image);
+        assertNull(image.getRoot().findLeaf(TILE, 0).image, "idle tile should be compressed");
+    }
+
+    @Test
+    void editsToDecompressedTilesSurviveRecompression() {
+        InfiniteBufferedImage image = compressedImage(Duration.ofSeconds(1));
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillRect(0, 0, 3 * TILE, TILE);
+        g.dispose();
+
+        for (int round = 1; round <= 5; round++) {
+            advance(2);
+            image.setRGB(round, round, 0xFF000000 | round); // decompresses, edits and re-dirties the tile
+            advance(2);
+            image.getRGB(2 * TILE, 0);
+            assertNull(image.getRoot().findLeaf(0, 0).image);
+            for (int r = 1; r <= round; r++) assertEquals(0xFF000000 | r, image.getRGB(r, r), "round " + round);
+            assertEquals(Color.ORANGE.getRGB(), image.getRGB(TILE + 5, 5));
+        }
+        TileCacheStats stats = image.getTileCacheStats();
+        assertTrue(stats.getWriteBacks() >= 5 && stats.getMisses() >= 5, stats.toString());
+    }
+
+    @Test
+    void scansDoNotDecompressColdTiles() {
+        InfiniteBufferedImage image = compressedImage(Duration.ZERO);
+        paintLineArt(image);
+        image.compact(); // evicts every idle tile
+        assertEquals(0, image.getTileCacheStats().getResidentTiles());
+        long misses = image.getTileCacheStats().getMisses();
+
+        Rectangle bounds = image.getLogicalBounds();
+        assertFalse(bounds.isEmpty());
+        image.compact();
+        assertEquals(0, image.getTileCacheStats().getResidentTiles(), "bounds and compact read tiles in place");
+        assertEquals(misses, image.getTileCacheStats().getMisses());
+    }
+
+    @Test
+    void optionsValidation() {
+        assertThrows(IllegalArgumentException.class,
+                () -> InfiniteImageOptions.builder().compressedStorage(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> InfiniteImageOptions.builder().compressedStorage(null));
+        assertThrows(IllegalArgumentException.class,
+                () -> InfiniteImageOptions.builder().compressedStorage(Duration.ZERO).mergeThreshold(3).build());
+
+        InfiniteImageOptions options = InfiniteImageOptions.builder().compressedStorage(Duration.ofMinutes(2)).build();
+        assertEquals(InfiniteImageOptions.TileStorage.COMPRESSED, options.getTileStorage());
+        assertEquals(Duration.ofMinutes(2), options.toBuilder().build().getIdleTimeout());
+        assertNull(options.getStorageDirectory());
+        // Effectively never idle, without overflowing the nanosecond clock
+        new InfiniteBufferedImage(InfiniteImageOptions.builder().compressedStorage(Duration.ofDays(365 * 1000)).build())
+                .setRGB(0, 0, -1);
+    }
+
+    /* ==== helpers ======================================================= */
+
+    private InfiniteBufferedImage compressedImage(Duration idle) {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(
+                InfiniteImageOptions.builder().tileSize(TILE).compressedStorage(idle).build());
+        image.getPager().clock = () -> now[0];
+        return image;
+    }
+
+    private void advance(int seconds) {
+        now[0] += TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    /// Thin strokes over a white page, as in a sketch or a diagram
+    private static void paintLineArt(InfiniteBufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(REGION.x, REGION.y, REGION.width, REGION.height);
+        g.setColor(Color.BLACK);
+        g.setStroke(new BasicStroke(2));
+        Random rng = new Random(2);
+        for (int i = 0; i < 60; i++) {
+            g.drawLine(rng.nextInt(1200) - 600, rng.nextInt(1200) - 600, rng.nextInt(1200) - 600, rng.nextInt(1200) - 600);
+        }
+        g.dispose();
+    }
+}
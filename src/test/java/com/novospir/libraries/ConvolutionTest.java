@@ -0,0 +1,122 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tile-by-tile separable convolution against {@link ConvolveOp} on one large image.
+ */
+public class ConvolutionTest {
+
+    private static final int TILE = 64;
+
+    @Test
+    void matchesConvolveOpAcrossTileEdges() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        Graphics2D g = image.createGraphics();
+        Random rng = new Random(3);
+        for (int i = 0; i < 30; i++) {
+            g.setColor(new Color(rng.nextInt(0x1000000)));
+            g.fillRect(rng.nextInt(300) - 100, rng.nextInt(300) - 100, 10 + rng.nextInt(80), 10 + rng.nextInt(80));
+        }
+        g.dispose();
+
+        for (SeparableKernel kernel : new SeparableKernel[]{SeparableKernel.gaussian(2.5), SeparableKernel.box(5)}) {
+            int r = kernel.getRadius();
+            // Pad the expected region so ConvolveOp sees the same transparent surroundings as the tiles do
+            Rectangle bounds = image.getLogicalBounds();
+            Rectangle padded = new Rectangle(bounds.x - 2 * r, bounds.y - 2 * r, bounds.width + 4 * r, bounds.height + 4 * r);
+            // ConvolveOp only convolves premultiplied pixels when it is given them
+            BufferedImage reference = new BufferedImage(padded.width, padded.height, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D copy = reference.createGraphics();
+            copy.drawImage(image.toBufferedImage(padded), 0, 0, null);
+            copy.dispose();
+            BufferedImage expected = new ConvolveOp(outer(kernel), ConvolveOp.EDGE_ZERO_FILL, null).filter(reference, null);
+            BufferedImage actual = image.convolve(kernel).toBufferedImage(padded);
+
+            for (int y = r; y < padded.height - r; y++) {
+                for (int x = r; x < padded.width - r; x++) {
+                    int e = expected.getRGB(x, y), a = actual.getRGB(x, y);
+                    // Compare premultiplied: the color of a nearly transparent pixel is mostly rounding
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        assertEquals(premultiplied(e, shift), premultiplied(a, shift), 2,
+                                String.format("%s at (%d, %d): %08x vs %08x", kernel, x + padded.x, y + padded.y, e, a));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void blursOnlyAroundContentWithPremultipliedAlpha() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        image.setRGB(0, 0, 0xFFFF0000);
+        InfiniteBufferedImage blurred = image.convolve(SeparableKernel.gaussian(2));
+        assertEquals(4, blurred.getAllocatedLeafCount(), "the tile and its neighbours up and to the left");
+
+        long alpha = 0;
+        for (int y = -10; y <= 10; y++) {
+            for (int x = -10; x <= 10; x++) {
+                int argb = blurred.getRGB(x, y);
+                alpha += argb >>> 24;
+                if (argb >>> 24 >= 8) assertEquals(0xFF0000, argb & 0xFFFFFF, "transparent pixels do not darken red");
+            }
+        }
+        assertEquals(255, alpha, 25);
+        assertEquals(0, blurred.getRGB(3 * TILE, 3 * TILE));
+    }
+
+    @Test
+    void writesIntoAnotherImageFarFromTheOrigin() {
+        long far = 1L << 40;
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        image.setRGB(far + 5, -far - 5, 0xFF00FF00);
+
+        InfiniteBufferedImage argb = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(2 * TILE).build());
+        image.convolve(SeparableKernel.box(1), argb);
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                assertEquals(Math.round(255f / 9) << 24 | 0x00FF00, argb.getRGB(far + 5 + dx, -far - 5 + dy));
+            }
+        }
+        assertEquals(0, argb.getRGB(far + 7, -far - 5));
+
+        InfiniteBufferedImage rgb = new InfiniteBufferedImage(InfiniteImageOptions.builder()
+                .tileSize(TILE).imageType(BufferedImage.TYPE_INT_RGB).build());
+        image.convolve(SeparableKernel.box(1), rgb);
+        assertEquals(0xFF00FF00, rgb.getRGB(far + 4, -far - 4), "opaque types drop the alpha");
+    }
+
+    @Test
+    void rejectsBadKernelsAndItself() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage();
+        assertThrows(IllegalArgumentException.class, () -> image.convolve(SeparableKernel.box(1), image));
+        assertThrows(IllegalArgumentException.class, () -> SeparableKernel.gaussian(0));
+        assertThrows(IllegalArgumentException.class, () -> SeparableKernel.gaussian(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> SeparableKernel.box(0));
+        assertThrows(IllegalArgumentException.class, () -> SeparableKernel.box(SeparableKernel.MAX_RADIUS + 1));
+        assertThrows(IllegalArgumentException.class, () -> SeparableKernel.of(1, 2));
+        assertEquals(1, SeparableKernel.of(0.25f, 0.5f, 0.25f).getRadius());
+        assertEquals(0, image.convolve(SeparableKernel.gaussian(1)).getAllocatedLeafCount());
+    }
+
+    private static int premultiplied(int argb, int shift) {
+        return shift == 24 ? argb >>> 24 : (argb >>> shift & 0xFF) * (argb >>> 24) / 255;
+    }
+
+    private static Kernel outer(SeparableKernel kernel) {
+        float[] row = kernel.getWeights();
+        float[] data = new float[row.length * row.length];
+        for (int y = 0; y < row.length; y++) {
+            for (int x = 0; x < row.length; x++) data[y * row.length + x] = row[y] * row[x];
+        }
+        return new Kernel(row.length, row.length, data);
+    }
+}
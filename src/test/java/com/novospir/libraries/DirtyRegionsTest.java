@@ -0,0 +1,115 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.novospir.libraries.TestImages.options;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dirty-tile tracking and change listeners.
+ */
+public class DirtyRegionsTest {
+
+    private static final int TILE = 64;
+
+    @Test
+    void pixelWritesMarkTheirBoundingBoxPerTile() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        assertTrue(image.drainDirtyRegions().isEmpty());
+
+        image.setRGB(10, 10, 0xFF000000);
+        image.setRGB(20, 5, 0xFF000000);
+        image.setRGB(70, 10, 0xFF000000);  // next tile to the right
+        image.setRGB(-1, -1, 0xFF000000);  // tile above left
+        image.getRaster().setPixel(30, 40, new int[]{1, 2, 3, 255});
+
+        assertEquals(List.of(
+                new Rectangle(-1, -1, 1, 1),
+                new Rectangle(10, 5, 21, 36),
+                new Rectangle(70, 10, 1, 1)), image.drainDirtyRegions());
+        assertTrue(image.drainDirtyRegions().isEmpty(), "draining forgets the regions");
+    }
+
+    @Test
+    void drawsAndBulkWritesMarkWholeTiles() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE).toBuilder().origin(32, 0).build());
+        Graphics2D g = image.createGraphics();
+        g.fillRect(40, 10, 50, 20); // within the tile [32, 96) x [0, 64)
+        g.dispose();
+        assertEquals(List.of(new Rectangle(32, 0, TILE, TILE)), image.drainDirtyRegions());
+
+        image.getRaster().setPixels(90, 70, 20, 2, new int[20 * 2 * 4]);
+        assertEquals(List.of(new Rectangle(32, 64, TILE, TILE), new Rectangle(96, 64, TILE, TILE)), image.drainDirtyRegions());
+
+        // Far apart writes stay separate tiles
+        image.setRGB(1_000_000, -1_000_000, 0xFFFFFFFF);
+        image.setRGB(-1_000_000, 1_000_000, 0xFFFFFFFF);
+        assertEquals(2, image.drainDirtyRegions().size());
+    }
+
+    @Test
+    void mergedLeavesMarkEveryTileTheyCover() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE).toBuilder().mergeThreshold(1).maxLeafSize(2 * TILE).build());
+        image.setRGB(0, 0, 1);
+        image.setRGB(TILE, 0, 1);
+        image.setRGB(0, TILE, 1);
+        image.setRGB(TILE, TILE, 1);
+        image.drainDirtyRegions();
+
+        Graphics2D g = image.createGraphics();
+        g.fillRect(TILE - 5, TILE - 5, 10, 10); // co-draw merges the four leaves into one 128² leaf
+        g.dispose();
+        assertEquals(2 * TILE, image.findLeaf(0, 0).size);
+        assertEquals(4, image.drainDirtyRegions().size());
+    }
+
+    @Test
+    void listenersSeeEachWriteAfterItHappened() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        List<Rectangle> regions = new ArrayList<>();
+        ImageChangeListener listener = (source, region) -> {
+            assertSame(image, source);
+            assertEquals(0xFF123456, image.getRGB(5, 6), "notified after the write");
+            regions.add(region);
+        };
+        image.setRGB(5, 6, 0xFF123456);
+        image.addChangeListener(listener);
+
+        image.setRGB(7, 8, 0xFF000000);
+        Graphics2D g = image.createGraphics();
+        g.fillRect(100, 0, 10, 10);
+        g.dispose();
+        image.compact(); // no pixel changes
+        assertEquals(List.of(new Rectangle(7, 8, 1, 1), new Rectangle(TILE, 0, TILE, TILE)), regions);
+
+        image.removeChangeListener(listener);
+        image.setRGB(9, 9, 0xFF000000);
+        assertEquals(2, regions.size());
+    }
+
+    @Test
+    void restoreMarksOnlyTilesThatDifferFromTheSnapshot() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        Graphics2D g = image.createGraphics();
+        g.fillRect(0, 0, 10 * TILE, 10 * TILE);
+        g.dispose();
+        ImageSnapshot snapshot = image.snapshot();
+        image.setRGB(3 * TILE + 1, 2 * TILE + 1, 0);
+        image.setRGB(50_000, 50_000, 0xFFFFFFFF); // grows the root
+        image.drainDirtyRegions();
+
+        List<Rectangle> restored = new ArrayList<>();
+        image.addChangeListener((source, region) -> restored.add(region));
+        image.restore(snapshot);
+        assertEquals(List.of(new Rectangle(3 * TILE, 2 * TILE, TILE, TILE), new Rectangle(49_984, 49_984, TILE, TILE)),
+                image.drainDirtyRegions());
+        assertEquals(1, restored.size());
+
+        image.restore(snapshot);
+        assertTrue(image.drainDirtyRegions().isEmpty(), "restoring the current state changes nothing");
+    }
+}
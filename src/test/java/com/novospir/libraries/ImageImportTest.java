@@ -0,0 +1,171 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static com.novospir.libraries.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Banded import of image files into the canvas.
+ */
+public class ImageImportTest {
+
+    private static final int TILE = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void importedPngMatchesDrawImage() throws IOException {
+        // Not tile aligned in either direction, with transparent margins and translucent content
+        BufferedImage source = sketch(300, 230, BufferedImage.TYPE_INT_ARGB);
+        for (String format : new String[]{"png", "bmp", "gif"}) {
+            BufferedImage written = format.equals("png") ? source : sketch(300, 230, BufferedImage.TYPE_INT_RGB);
+            Path file = tempDir.resolve("sketch." + format);
+            assertTrue(ImageIO.write(written, format, file.toFile()), format);
+            assertMatchesDrawImage(file, -77, 45, format);
+        }
+    }
+
+    @Test
+    void importedJpegMatchesDrawImage() throws IOException {
+        Path file = tempDir.resolve("photo.jpg");
+        ImageIO.write(sketch(333, 201, BufferedImage.TYPE_INT_RGB), "jpeg", file.toFile());
+        assertMatchesDrawImage(file, 10, -130, "jpeg");
+    }
+
+    @Test
+    void interlacedPngFallsBackToBands() throws IOException {
+        Path file = tempDir.resolve("interlaced.png");
+        BufferedImage source = sketch(200, 190, BufferedImage.TYPE_INT_ARGB);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT); // Adam7
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(source, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        assertEquals("adam7", interlaceMethod(file));
+        assertMatchesDrawImage(file, 5, 5, "interlaced png");
+    }
+
+    @Test
+    void transparentBlocksAllocateNoTiles() throws IOException {
+        // 8x8 tiles of source with content in only two of them
+        BufferedImage source = new BufferedImage(8 * TILE, 8 * TILE, BufferedImage.TYPE_INT_ARGB);
+        source.setRGB(3, 3, 0xFF112233);
+        source.setRGB(5 * TILE + 9, 6 * TILE + 1, 0x80FFFFFF);
+        Path file = tempDir.resolve("sparse.png");
+        ImageIO.write(source, "png", file.toFile());
+
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        image.importImage(file, 0, 0);
+        assertEquals(2, image.getAllocatedLeafCount());
+        assertEquals(0xFF112233, image.getRGB(3, 3));
+        assertEquals(0x80FFFFFF, image.getRGB(5 * TILE + 9, 6 * TILE + 1));
+        assertEquals(new Rectangle(3, 3, 5 * TILE + 7, 6 * TILE - 1), image.getLogicalBounds());
+    }
+
+    @Test
+    void importComposesOverExistingContentIntoPagedTiles() throws IOException {
+        Path file = tempDir.resolve("overlay.png");
+        BufferedImage overlay = new BufferedImage(3 * TILE, 3 * TILE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D og = overlay.createGraphics();
+        og.setColor(new Color(255, 0, 0, 128));
+        og.fillRect(TILE, TILE, TILE, TILE);
+        og.dispose();
+        ImageIO.write(overlay, "png", file.toFile());
+
+        InfiniteBufferedImage reference = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        try (InfiniteBufferedImage paged = new InfiniteBufferedImage(InfiniteImageOptions.builder()
+                .tileSize(TILE).spillStorage(tempDir, 2L * TILE * TILE * 4).build())) {
+            for (InfiniteBufferedImage image : new InfiniteBufferedImage[]{reference, paged}) {
+                Graphics2D g = image.createGraphics();
+                g.setColor(Color.BLUE);
+                g.fillRect(0, 0, 6 * TILE, 6 * TILE);
+                g.dispose();
+            }
+            Graphics2D g = reference.createGraphics();
+            g.drawImage(ImageIO.read(file.toFile()), 2 * TILE, 2 * TILE, null);
+            g.dispose();
+            paged.importImage(file, 2 * TILE, 2 * TILE);
+
+            Rectangle region = new Rectangle(0, 0, 6 * TILE, 6 * TILE);
+            assertArrayEquals(pixels(reference.toBufferedImage(region)), pixels(paged.toBufferedImage(region)));
+            assertNotEquals(Color.BLUE.getRGB(), paged.getRGB(3 * TILE + 1, 3 * TILE + 1));
+        }
+    }
+
+    @Test
+    void errors() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage();
+        assertThrows(IOException.class, () -> image.importImage(tempDir.resolve("missing.png"), 0, 0));
+        Path text = Files.writeString(tempDir.resolve("notes.txt"), "not an image");
+        assertThrows(IOException.class, () -> image.importImage(text, 0, 0));
+
+        Path file = tempDir.resolve("small.png");
+        ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB), "png", file.toFile());
+        assertThrows(IllegalArgumentException.class, () -> image.importImage(file, Integer.MAX_VALUE - 5, 0));
+        assertEquals(0, image.getAllocatedLeafCount());
+    }
+
+    /* ==== helpers ======================================================= */
+
+    private static void assertMatchesDrawImage(Path file, int x, int y, String message) throws IOException {
+        BufferedImage decoded = ImageIO.read(file.toFile());
+        InfiniteBufferedImage reference = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        Graphics2D g = reference.createGraphics();
+        g.drawImage(decoded, x, y, null);
+        g.dispose();
+
+        InfiniteBufferedImage imported = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        imported.importImage(file, x, y);
+
+        Rectangle region = new Rectangle(x - 10, y - 10, decoded.getWidth() + 20, decoded.getHeight() + 20);
+        assertArrayEquals(pixels(reference.toBufferedImage(region)), pixels(imported.toBufferedImage(region)), message);
+        assertTrue(imported.getAllocatedLeafCount() <= reference.getAllocatedLeafCount(), message);
+    }
+
+    /// Shapes and noise over a transparent (or black, for opaque types) background with a margin
+    private static BufferedImage sketch(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        Random rng = new Random(width * 31 + height);
+        for (int i = 0; i < 25; i++) {
+            g.setColor(new Color(rng.nextInt(), true));
+            g.fillOval(rng.nextInt(width - 60), 40 + rng.nextInt(height - 100), 10 + rng.nextInt(50), 10 + rng.nextInt(50));
+        }
+        g.dispose();
+        for (int i = 0; i < 300; i++) image.setRGB(rng.nextInt(width), 40 + rng.nextInt(height - 40), rng.nextInt());
+        return image;
+    }
+
+    private static String interlaceMethod(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = ImageIO.getImageReaders(in).next();
+            reader.setInput(in);
+            IIOMetadata metadata = reader.getImageMetadata(0);
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(metadata.getNativeMetadataFormatName());
+            return ((IIOMetadataNode) root.getElementsByTagName("IHDR").item(0)).getAttribute("interlaceMethod");
+        }
+    }
+}
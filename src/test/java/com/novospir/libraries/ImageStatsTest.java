@@ -0,0 +1,133 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static com.novospir.libraries.TestImages.optionsWithStats;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statistics of tile, lookup, draw and export activity.
+ */
+public class ImageStatsTest {
+
+    private static final int TILE = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void statsAreOptIn() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        image.setRGB(1, 1, 0xFFFFFFFF);
+        assertThrows(IllegalStateException.class, image::getStats);
+
+        InfiniteImageOptions options = InfiniteImageOptions.builder().collectStats(true).build();
+        assertTrue(options.isCollectingStats());
+        assertTrue(options.toBuilder().tileSize(32).build().isCollectingStats());
+        assertFalse(options.toBuilder().collectStats(false).build().isCollectingStats());
+    }
+
+    @Test
+    void countsTreeGrowthLookupsAndBoundsScans() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(optionsWithStats(TILE));
+        ImageStats stats = image.getStats();
+        assertEquals(0, stats.getTreeDepth());
+
+        image.setRGB(10, 10, 0xFFFFFFFF);
+        image.setRGB(20, 20, 0xFFFFFFFF);    // same tile
+        image.setRGB(4 * TILE, 0, 0xFFFFFFFF); // the root doubles three times
+        assertEquals(2, stats.getTileCreations());
+        assertEquals(3, stats.getTreeGrowths());
+        assertEquals(2, stats.getAllocatedTiles());
+        assertEquals(3, stats.getTreeDepth());
+        assertEquals(5, stats.getInternalNodes(), "the 512², 256² and 128² nodes above the first tile, two more above the second");
+
+        assertEquals(0xFFFFFFFF, image.getRGB(4 * TILE, 0));
+        assertEquals(0, image.getRGB(-1, -1)); // outside the tree: a lookup without a leaf
+        assertEquals(5, stats.getLeafLookups());
+        assertTrue(stats.getAverageLookupDepth() > 0 && stats.getAverageLookupDepth() <= 3);
+
+        image.getLogicalBounds();
+        image.getLogicalBounds(); // cached
+        assertEquals(1, stats.getBoundsRecomputations());
+        assertEquals(2L * TILE * TILE, stats.getPixelsScanned());
+    }
+
+    @Test
+    void countsDrawsPerPrimitiveAndTheirFanOut() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(optionsWithStats(TILE));
+        Graphics2D g = image.createGraphics();
+        g.fillRect(TILE - 5, TILE - 5, 10, 10); // four tiles
+        g.fillRect(5, 5, 10, 10);               // one tile
+        g.drawLine(0, 0, 3 * TILE - 1, 0);      // three tiles
+        g.dispose();
+
+        ImageStats stats = image.getStats();
+        assertEquals(Map.of("fillRect", 2L, "drawLine", 1L), stats.getDrawCounts());
+        assertEquals((4 + 1 + 3) / 3.0, stats.getAverageDrawFanOut(), 1e-9);
+        assertEquals(5, stats.getTileCreations(), "the line reuses two tiles of the first fill");
+
+        Map<String, Number> map = stats.toMap();
+        assertEquals(2L, map.get("draws.fillRect"));
+        assertEquals(5, map.get("allocatedTiles"));
+        assertTrue(map.containsKey("bytesExported"));
+    }
+
+    @Test
+    void countsExportedBytes() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(optionsWithStats(TILE));
+        Graphics2D g = image.createGraphics();
+        g.fillOval(0, 0, 200, 200);
+        g.dispose();
+        ImageStats stats = image.getStats();
+
+        Path saved = tempDir.resolve("canvas.ibif");
+        image.save(saved);
+        assertEquals(Files.size(saved), stats.getBytesExported());
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        image.exportImage(new Rectangle(0, 0, 200, 200), "png", png);
+        assertEquals(Files.size(saved) + png.size(), stats.getBytesExported());
+
+        Path pyramid = tempDir.resolve("pyramid");
+        image.exportTilePyramid(pyramid, 128);
+        long pyramidBytes = 0;
+        try (var files = Files.walk(pyramid)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) pyramidBytes += Files.size(file);
+        }
+        assertEquals(Files.size(saved) + png.size() + pyramidBytes, stats.getBytesExported());
+    }
+
+    @Test
+    void registersAsAnMXBean() throws JMException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(optionsWithStats(TILE));
+        image.setRGB(0, 0, 0xFFFFFFFF);
+        Graphics2D g = image.createGraphics();
+        g.fillRect(0, 0, 10, 10);
+        g.dispose();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = image.getStats().registerMBean("layer: background");
+        try {
+            assertEquals(1L, server.getAttribute(name, "TileCreations"));
+            assertEquals(1, server.getAttribute(name, "AllocatedTiles"));
+            assertEquals(1, ((TabularData) server.getAttribute(name, "DrawCounts")).size());
+            assertThrows(IllegalStateException.class, () -> image.getStats().registerMBean("layer: background"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
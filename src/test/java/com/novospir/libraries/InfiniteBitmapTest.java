@@ -0,0 +1,165 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Correctness of the bit-packed mask canvas against a plain boolean grid.
+ */
+public class InfiniteBitmapTest {
+
+    private static final int SIZE = 600;
+    private static final int OFFSET = -300; // covers all four quadrants around the origin
+
+    @Test
+    void setClearAndGet() {
+        InfiniteBitmap bitmap = new InfiniteBitmap();
+        assertFalse(bitmap.get(5, 5));
+
+        bitmap.set(5, 5);
+        bitmap.set(-1, -1);
+        bitmap.set(1_000_000, -2_000_000);
+        assertTrue(bitmap.get(5, 5));
+        assertTrue(bitmap.get(-1, -1));
+        assertTrue(bitmap.get(1_000_000, -2_000_000));
+        assertFalse(bitmap.get(6, 5));
+        assertEquals(3, bitmap.cardinality());
+
+        bitmap.clear(5, 5);
+        assertFalse(bitmap.get(5, 5));
+        assertEquals(2, bitmap.cardinality());
+    }
+
+    @Test
+    void rectanglesMatchReference() {
+        InfiniteBitmap bitmap = new InfiniteBitmap();
+        boolean[][] reference = new boolean[SIZE][SIZE];
+        Random rng = new Random(42);
+
+        for (int i = 0; i < 200; i++) {
+            int x = rng.nextInt(SIZE - 1), y = rng.nextInt(SIZE - 1);
+            int w = 1 + rng.nextInt(SIZE - x - 1), h = 1 + rng.nextInt(Math.min(200, SIZE - y - 1));
+            boolean fill = rng.nextInt(3) != 0;
+            if (fill) bitmap.fillRect(x + OFFSET, y + OFFSET, w, h);
+            else bitmap.clearRect(x + OFFSET, y + OFFSET, w, h);
+            for (int yy = y; yy < y + h; yy++)
+                for (int xx = x; xx < x + w; xx++) reference[yy][xx] = fill;
+        }
+
+        assertMatches(reference, bitmap);
+    }
+
+    @Test
+    void rectanglesAtTheEdgeOfTheIntRange() {
+        InfiniteBitmap bitmap = new InfiniteBitmap();
+        int near = Integer.MAX_VALUE - 10;
+        bitmap.fillRect(near, near, 11, 11); // ends exactly at 2^31
+        assertTrue(bitmap.get(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        assertTrue(bitmap.get(near, near));
+        assertFalse(bitmap.get(near - 1, near));
+        assertEquals(121, bitmap.cardinality());
+
+        BufferedImage export = bitmap.toBufferedImage(new Rectangle(near - 5, near, 16, 11));
+        assertEquals(0xFFFFFFFF, export.getRGB(15, 10), "the bit at (MAX_VALUE, MAX_VALUE)");
+        assertEquals(0xFFFFFFFF, export.getRGB(5, 0));
+        assertEquals(0xFF000000, export.getRGB(4, 0));
+
+        bitmap.clearRect(near, near, 11, 11);
+        assertEquals(0, bitmap.cardinality());
+
+        bitmap.fillRect(Integer.MIN_VALUE, Integer.MIN_VALUE, 3, 3);
+        assertTrue(bitmap.get(Integer.MIN_VALUE + 2, Integer.MIN_VALUE + 2));
+        assertEquals(9, bitmap.cardinality());
+    }
+
+    @Test
+    void booleanOperationsMatchReference() {
+        Random rng = new Random(7);
+        boolean[][] a = new boolean[SIZE][SIZE], b = new boolean[SIZE][SIZE];
+        InfiniteBitmap bitmapA = randomBitmap(rng, a);
+        InfiniteBitmap bitmapB = randomBitmap(rng, b);
+
+        InfiniteBitmap and = copy(bitmapA), or = copy(bitmapA), xor = copy(bitmapA), andNot = copy(bitmapA);
+        and.and(bitmapB);
+        or.or(bitmapB);
+        xor.xor(bitmapB);
+        andNot.andNot(bitmapB);
+
+        boolean[][] rAnd = new boolean[SIZE][SIZE], rOr = new boolean[SIZE][SIZE];
+        boolean[][] rXor = new boolean[SIZE][SIZE], rAndNot = new boolean[SIZE][SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                rAnd[y][x] = a[y][x] && b[y][x];
+                rOr[y][x] = a[y][x] || b[y][x];
+                rXor[y][x] = a[y][x] ^ b[y][x];
+                rAndNot[y][x] = a[y][x] && !b[y][x];
+            }
+        }
+        assertMatches(rAnd, and);
+        assertMatches(rOr, or);
+        assertMatches(rXor, xor);
+        assertMatches(rAndNot, andNot);
+    }
+
+    @Test
+    void emptyTilesAreReleased() {
+        InfiniteBitmap bitmap = new InfiniteBitmap();
+        bitmap.fillRect(0, 0, 1000, 1000);
+        int allocated = bitmap.getAllocatedLeafCount();
+        assertTrue(allocated > 0);
+
+        bitmap.xor(bitmap);
+        assertEquals(0, bitmap.cardinality());
+        assertEquals(0, bitmap.getAllocatedLeafCount());
+    }
+
+    @Test
+    void exportsBinaryImage() {
+        InfiniteBitmap bitmap = new InfiniteBitmap();
+        bitmap.fillRect(-10, -10, 20, 20);
+
+        BufferedImage out = bitmap.toBufferedImage(new Rectangle(-20, -20, 40, 40));
+        assertEquals(BufferedImage.TYPE_BYTE_BINARY, out.getType());
+        assertEquals(0xFFFFFFFF, out.getRGB(10, 10));   // (-10, -10)
+        assertEquals(0xFFFFFFFF, out.getRGB(29, 29));   // (9, 9)
+        assertEquals(0xFF000000, out.getRGB(30, 30));   // (10, 10)
+        assertEquals(0xFF000000, out.getRGB(9, 9));     // (-11, -11)
+    }
+
+    /* ==== helpers ======================================================= */
+
+    private static InfiniteBitmap randomBitmap(Random rng, boolean[][] reference) {
+        InfiniteBitmap bitmap = new InfiniteBitmap();
+        for (int i = 0; i < 20; i++) {
+            int x = rng.nextInt(SIZE - 100), y = rng.nextInt(SIZE - 100);
+            int w = 1 + rng.nextInt(100), h = 1 + rng.nextInt(100);
+            bitmap.fillRect(x + OFFSET, y + OFFSET, w, h);
+            for (int yy = y; yy < y + h; yy++)
+                for (int xx = x; xx < x + w; xx++) reference[yy][xx] = true;
+        }
+        return bitmap;
+    }
+
+    private static InfiniteBitmap copy(InfiniteBitmap source) {
+        InfiniteBitmap copy = new InfiniteBitmap();
+        copy.or(source);
+        return copy;
+    }
+
+    private static void assertMatches(boolean[][] reference, InfiniteBitmap bitmap) {
+        long expectedCount = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                if (reference[y][x]) expectedCount++;
+                if (reference[y][x] != bitmap.get(x + OFFSET, y + OFFSET))
+                    fail("Bit mismatch at (" + (x + OFFSET) + "," + (y + OFFSET) + ")");
+            }
+        }
+        assertEquals(expectedCount, bitmap.cardinality());
+    }
+}
@@ -0,0 +1,117 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Accumulation, bulk region access and tone-mapped export of the float canvas.
+ */
+public class InfiniteFloatImageTest {
+
+    @Test
+    void accumulatesAcrossTilesAndQuadrants() {
+        InfiniteFloatImage image = new InfiniteFloatImage();
+        image.add(-1, -1, 0.5f);
+        image.add(-1, -1, 0.25f);
+        image.set(200, 300, 3.5f);
+        image.add(200, 300, -1f);
+
+        assertEquals(0.75f, image.get(-1, -1));
+        assertEquals(2.5f, image.get(200, 300));
+        assertEquals(0f, image.get(5_000, 5_000));
+        assertEquals(2.5f, image.getMaxValue());
+    }
+
+    @Test
+    void regionAddMatchesPointAdds() {
+        InfiniteFloatImage bulk = new InfiniteFloatImage();
+        InfiniteFloatImage single = new InfiniteFloatImage();
+        int x = -70, y = 90, w = 300, h = 50;
+        float[] values = new float[w * h];
+        for (int i = 0; i < values.length; i++) values[i] = i * 0.001f;
+
+        bulk.addRegion(x, y, w, h, values);
+        bulk.addRect(x, y, w, h, 1f);
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                single.add(x + col, y + row, values[row * w + col]);
+                single.add(x + col, y + row, 1f);
+            }
+        }
+
+        assertArrayEquals(single.getRegion(x - 5, y - 5, w + 10, h + 10, null),
+                bulk.getRegion(x - 5, y - 5, w + 10, h + 10, null));
+    }
+
+    @Test
+    void regionsAtTheEdgeOfTheIntRange() {
+        InfiniteFloatImage image = new InfiniteFloatImage();
+        int near = Integer.MAX_VALUE - 4;
+        image.addRect(near, near, 5, 5, 1f); // ends exactly at 2^31
+        image.addRegion(near, near, 5, 5, new float[25]);
+        assertEquals(1f, image.get(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        float[] region = image.getRegion(near - 1, near, 6, 5, null);
+        assertEquals(0f, region[0]);
+        assertEquals(1f, region[29]);
+
+        assertEquals(0, image.getRegion(0, 0, -1, -1, null).length);
+        assertEquals(0, image.getRegion(0, 0, -5, 3, null).length);
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws InterruptedException {
+        InfiniteFloatImage image = new InfiniteFloatImage();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) image.add(i % 300, 0, 1f);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        float sum = 0;
+        for (float v : image.getRegion(0, 0, 300, 1, null)) sum += v;
+        assertEquals(40_000f, sum);
+    }
+
+    @Test
+    void toneMappedExport() {
+        InfiniteFloatImage image = new InfiniteFloatImage();
+        image.set(0, 0, 10f);
+        image.set(1, 0, 5f);
+
+        BufferedImage linear = image.toBufferedImage(new Rectangle(0, 0, 3, 1));
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, linear.getType());
+        assertEquals(255, linear.getRaster().getSample(0, 0, 0));
+        assertEquals(128, linear.getRaster().getSample(1, 0, 0));
+        assertEquals(0, linear.getRaster().getSample(2, 0, 0));
+
+        BufferedImage log = image.toBufferedImage(new Rectangle(0, 0, 3, 1),
+                InfiniteFloatImage.ToneMapping.LOG, 10f);
+        assertTrue(log.getRaster().getSample(1, 0, 0) > 128, "Log mapping should lift mid values");
+
+        BufferedImage reinhard = image.toBufferedImage(new Rectangle(0, 0, 3, 1),
+                InfiniteFloatImage.ToneMapping.REINHARD, 10f);
+        assertEquals(255, reinhard.getRaster().getSample(0, 0, 0));
+    }
+
+    @Test
+    void floatPixelsFromIntegerTiles() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage();
+        image.setRGB(127, 0, 0x80FF4020);
+        image.setRGB(128, 0, 0xFF000001);
+
+        float[] pixels = image.getRaster().getPixels(127, 0, 2, 1, (float[]) null);
+        assertArrayEquals(new float[]{0xFF, 0x40, 0x20, 0x80, 0, 0, 1, 0xFF}, pixels);
+        double[] doubles = image.getRaster().getPixels(127, 0, 2, 1, (double[]) null);
+        assertEquals(0x80, doubles[3]);
+    }
+}
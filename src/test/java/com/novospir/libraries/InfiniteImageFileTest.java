@@ -0,0 +1,195 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static com.novospir.libraries.TestImages.assertPixelsEqual;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips through the sparse tiled file format behind {@code save(Path)} / {@code load(Path)}.
+ */
+public class InfiniteImageFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void roundTripsNoiseUniformAndTransparentTiles() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage();
+        Random rng = new Random(3);
+        for (int i = 0; i < 5_000; i++) {
+            image.setRGB(rng.nextInt(300) - 150, rng.nextInt(300) - 150, rng.nextInt());
+        }
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillRect(1024, 1024, 256, 256); // two uniform tiles
+        g.dispose();
+        image.setRGB(5_000, 5_000, 0x12345678);
+        image.setRGB(5_000, 5_000, 0);    // allocated but fully transparent
+
+        Path file = tempDir.resolve("canvas.ibif");
+        image.save(file);
+        InfiniteBufferedImage loaded = InfiniteBufferedImage.load(file);
+
+        assertEquals(image.getAllocatedLeafCount() - 1, loaded.getAllocatedLeafCount(), "transparent tile is skipped");
+        assertEquals(image.getLogicalBounds(), loaded.getLogicalBounds());
+        assertPixelsEqual(image, loaded, new Rectangle(-200, -200, 1600, 1600));
+        assertEquals(0, loaded.getRGB(5_000, 5_000));
+    }
+
+    @Test
+    void sparseCanvasWritesOnlyContent() throws IOException {
+        // Extent of 40,000² ARGB pixels (6.4 GB as a single BufferedImage), content in a few tiles
+        InfiniteBufferedImage image = new InfiniteBufferedImage();
+        image.setRGB(-20_000, -20_000, 0xFFFF0000);
+        image.setRGB(20_000, 20_000, 0xFF00FF00);
+        image.setRGB(20_000, -20_000, 0xFF0000FF);
+        image.setRGB(0, 0, 0xFFFFFFFF);
+
+        Path file = tempDir.resolve("sparse.ibif");
+        image.save(file);
+        assertTrue(Files.size(file) < 4_096, "file holds only content: " + Files.size(file) + " bytes");
+
+        InfiniteBufferedImage loaded = InfiniteBufferedImage.load(file);
+        assertEquals(4, loaded.getAllocatedLeafCount());
+        assertEquals(0xFFFF0000, loaded.getRGB(-20_000, -20_000));
+        assertEquals(0xFF00FF00, loaded.getRGB(20_000, 20_000));
+        assertEquals(0xFF0000FF, loaded.getRGB(20_000, -20_000));
+        assertEquals(0xFFFFFFFF, loaded.getRGB(0, 0));
+        assertEquals(0, loaded.getRGB(1, 1));
+    }
+
+    @Test
+    void roundTripsEveryTileFormat() throws IOException {
+        int[] types = {
+                BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_USHORT_GRAY,
+                BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_BINARY, BufferedImage.TYPE_BYTE_INDEXED
+        };
+        for (int type : types) {
+            InfiniteBufferedImage image = new InfiniteBufferedImage(type);
+            Random rng = new Random(type);
+            for (int i = 0; i < 2_000; i++) {
+                image.setRGB(rng.nextInt(200) - 100, rng.nextInt(200) - 100, rng.nextInt() | 0xFF000000);
+            }
+            image.setRGB(-500, -500, 0xFF000000); // opaque black tile: all-zero data, but still content
+
+            Path file = tempDir.resolve("type-" + type + ".ibif");
+            image.save(file);
+            InfiniteBufferedImage loaded = InfiniteBufferedImage.load(file);
+
+            assertEquals(type, loaded.getType(), "type " + type);
+            assertEquals(image.getAllocatedLeafCount(), loaded.getAllocatedLeafCount(), "type " + type);
+            assertPixelsEqual(image, loaded, new Rectangle(-520, -520, 640, 640));
+        }
+    }
+
+    @Test
+    void keepsOptionsAndMergedLeaves() throws IOException {
+        InfiniteImageOptions options = InfiniteImageOptions.builder()
+                .tileSize(32).mergeThreshold(1).maxLeafSize(256).origin(7, -3).build();
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options);
+        Graphics2D g = image.createGraphics();
+        for (int pass = 0; pass < 4; pass++) {
+            g.setColor(new Color(40 * pass, 90, 200, 255));
+            g.fillOval(-200, -150, 500, 400);
+        }
+        g.dispose();
+        QuadNode merged = image.findLeaf(50, 50);
+        assertTrue(merged.size > 32, "centre of the oval should be a merged leaf");
+
+        Path file = tempDir.resolve("merged.ibif");
+        image.save(file);
+        InfiniteBufferedImage loaded = InfiniteBufferedImage.load(file);
+
+        assertEquals(32, loaded.getTileSize());
+        assertEquals(1, loaded.getOptions().getMergeThreshold());
+        assertEquals(256, loaded.getOptions().getMaxLeafSize());
+        QuadNode loadedLeaf = loaded.findLeaf(50, 50);
+        assertEquals(merged.x, loadedLeaf.x);
+        assertEquals(merged.y, loadedLeaf.y);
+        assertEquals(merged.size, loadedLeaf.size);
+        assertPixelsEqual(image, loaded, new Rectangle(-220, -170, 540, 440));
+    }
+
+    @Test
+    void rejectsForeignAndTruncatedFiles() throws IOException {
+        Path foreign = tempDir.resolve("foreign.ibif");
+        Files.write(foreign, new byte[100]);
+        assertThrows(IOException.class, () -> InfiniteBufferedImage.load(foreign));
+
+        InfiniteBufferedImage image = new InfiniteBufferedImage();
+        image.setRGB(3, 3, 0xFF336699);
+        Path file = tempDir.resolve("truncated.ibif");
+        image.save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> InfiniteBufferedImage.load(file));
+    }
+
+    @Test
+    void rejectsCorruptIndexOffsetsAndOverlappingEntries() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(32).build());
+        image.setRGB(0, 0, 0xFF336699);
+        image.setRGB(40, 0, 0xFF336699);
+        Path file = tempDir.resolve("corrupt.ibif");
+        image.save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        long indexOffset = header.getLong(56);
+        assertEquals(2, header.getInt(64));
+
+        // An index offset inside the header, or before the file
+        for (long offset : new long[]{-1, Long.MIN_VALUE, 0}) {
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putLong(56, offset);
+            Files.write(file, corrupt);
+            assertThrows(IOException.class, () -> InfiniteBufferedImage.load(file), "index offset " + offset);
+        }
+
+        // The second entry covering the first as a 64 px tile, whose node is already internal
+        byte[] overlapping = bytes.clone();
+        ByteBuffer.wrap(overlapping).putLong((int) indexOffset + 33, 0).putLong((int) indexOffset + 41, 0)
+                .putInt((int) indexOffset + 49, 64);
+        Files.write(file, overlapping);
+        assertThrows(IOException.class, () -> InfiniteBufferedImage.load(file));
+    }
+
+    @Test
+    void rejectsLeafAndRootSizesTheOptionsCannotProduce() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(32).build());
+        image.setRGB(0, 0, 0xFF336699);
+        image.setRGB(5_000, 5_000, 0xFF336699);
+        Path file = tempDir.resolve("sizes.ibif");
+        image.save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        int indexOffset = (int) ByteBuffer.wrap(bytes).getLong(56);
+        assertEquals(256, image.getOptions().getMaxLeafSize());
+
+        // Larger than the max leaf size, not the tile size doubled, or too large to allocate, under a root that fits them
+        for (int size : new int[]{512, 96, 48, 1 << 30}) {
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putLong(48, 1L << 31).putLong(indexOffset, 0).putLong(indexOffset + 8, 0).putInt(indexOffset + 16, size);
+            Files.write(file, corrupt);
+            IOException e = assertThrows(IOException.class, () -> InfiniteBufferedImage.load(file), "tile size " + size);
+            assertTrue(e.getMessage().startsWith("Corrupt tile entry"), "rejected before decoding: " + e.getMessage());
+        }
+
+        // A root that is not the tile size doubled
+        for (long size : new long[]{16, 96, 5_000, (1L << 40) + 32}) {
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putLong(48, size);
+            Files.write(file, corrupt);
+            assertThrows(IOException.class, () -> InfiniteBufferedImage.load(file), "root size " + size);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Validation of per-image options and behaviour of canvases with non-default tile sizes.
+ */
+public class InfiniteImageOptionsTest {
+
+    @Test
+    void rejectsInvalidTileSizes() {
+        for (int size : new int[]{0, -128, 4, 100, 16384, Integer.MIN_VALUE}) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> InfiniteImageOptions.builder().tileSize(size), "tile size " + size);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> InfiniteImageOptions.builder().imageType(BufferedImage.TYPE_CUSTOM));
+        assertThrows(IllegalArgumentException.class,
+                () -> InfiniteImageOptions.builder().imageType(999));
+    }
+
+    @Test
+    void defaultsAndDerivation() {
+        InfiniteImageOptions defaults = InfiniteImageOptions.defaults();
+        assertEquals(128, defaults.getTileSize());
+        assertEquals(BufferedImage.TYPE_INT_ARGB, defaults.getImageType());
+
+        InfiniteImageOptions derived = defaults.toBuilder().tileSize(32).origin(-64, 64).build();
+        assertEquals(32, derived.getTileSize());
+        assertEquals(-64, derived.getOriginX());
+        assertEquals(64, derived.getOriginY());
+        assertEquals(128, defaults.getTileSize(), "Options must be immutable");
+    }
+
+    @Test
+    void tileSizeIsPerInstance() {
+        InfiniteBufferedImage small = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(32).build());
+        InfiniteBufferedImage large = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(512).build());
+        for (InfiniteBufferedImage image : new InfiniteBufferedImage[]{small, large}) {
+            image.setRGB(-1, -1, 0xFF112233);
+            image.setRGB(200, 200, 0xFF445566);
+        }
+
+        assertEquals(32, small.getTileSize());
+        assertEquals(512, large.getTileSize());
+        assertEquals(2, small.getAllocatedLeafCount());
+        assertEquals(2, large.getAllocatedLeafCount());
+        assertEquals(32 * 32, small.findLeaf(200, 200).image.getWidth() * small.findLeaf(200, 200).image.getHeight());
+        assertEquals(0xFF445566, small.getRGB(200, 200));
+        assertEquals(0xFF112233, large.getRGB(-1, -1));
+    }
+
+    @Test
+    void transformedDrawImageWithNegativeCoordinates() {
+        BufferedImage stamp = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D sg = stamp.createGraphics();
+        sg.setColor(Color.GREEN);
+        sg.fillRect(0, 0, 10, 10);
+        sg.dispose();
+
+        for (int tileSize : new int[]{16, 64, 256}) {
+            InfiniteBufferedImage image = new InfiniteBufferedImage(
+                    InfiniteImageOptions.builder().tileSize(tileSize).build());
+            Graphics2D g = image.createGraphics();
+            g.drawImage(stamp, AffineTransform.getTranslateInstance(-5 - tileSize, -5), null);
+            g.dispose();
+
+            assertEquals(Color.GREEN.getRGB(), image.getRGB(-tileSize, 0), "tile size " + tileSize);
+            assertEquals(Color.GREEN.getRGB(), image.getRGB(-5 - tileSize, -5), "tile size " + tileSize);
+            assertEquals(0, image.getRGB(5 - tileSize, 5), "tile size " + tileSize);
+        }
+    }
+
+    @Test
+    void otherCanvasesHonourTileSize() {
+        InfiniteImageOptions tiny = InfiniteImageOptions.builder().tileSize(InfiniteImageOptions.MIN_TILE_SIZE).build();
+
+        InfiniteBitmap bitmap = new InfiniteBitmap(tiny);
+        bitmap.fillRect(-4, -4, 8, 8);
+        assertEquals(64, bitmap.cardinality());
+        assertEquals(4, bitmap.getAllocatedLeafCount());
+        assertThrows(IllegalArgumentException.class, () -> bitmap.or(new InfiniteBitmap()));
+
+        InfiniteFloatImage floats = new InfiniteFloatImage(tiny);
+        floats.addRect(0, 0, 16, 8, 1f);
+        assertEquals(2, floats.getAllocatedLeafCount());
+        assertEquals(1f, floats.get(15, 7));
+    }
+}
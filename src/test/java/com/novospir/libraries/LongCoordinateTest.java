@@ -0,0 +1,126 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.novospir.libraries.TestImages.options;
+import static com.novospir.libraries.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pixels, regions and Graphics beyond the int coordinate range.
+ */
+public class LongCoordinateTest {
+
+    private static final int TILE = 64;
+    private static final long FAR = 1L << 40;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void pixelsAndRegionsBeyondTheIntRange() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        image.setRGB(FAR, -FAR, 0xFF123456);
+        image.setRGB(-FAR * 1000, 7, 0xFF654321);
+        assertEquals(0xFF123456, image.getRGB(FAR, -FAR));
+        assertEquals(0xFF654321, image.getRGB(-FAR * 1000, 7));
+        assertEquals(0, image.getRGB(FAR + 1, -FAR));
+        assertEquals(0, image.getRGB((int) FAR, (int) -FAR), "int coordinates are not wrapped into the long range");
+
+        // A region straddling the end of the int range
+        long edge = Integer.MAX_VALUE;
+        for (long x = edge - 2; x <= edge + 2; x++) image.setRGB(x, 0, 0xFF000000 | (int) (x - edge + 2));
+        BufferedImage region = image.toBufferedImage(edge - 2, 0, 5, 1);
+        for (int i = 0; i < 5; i++) assertEquals(0xFF000000 | i, region.getRGB(i, 0));
+        assertEquals(0xFF123456, image.toBufferedImage(FAR - 1, -FAR - 1, 2, 2).getRGB(1, 1));
+    }
+
+    @Test
+    void graphicsWithALongOrigin() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        Graphics2D g = image.createGraphics(FAR, FAR);
+        g.setColor(Color.RED);
+        g.fillRect(-10, -10, 20, 20);
+        g.copyArea(-10, -10, 20, 20, 3 * TILE, 0);
+        g.drawImage(solid(20, 20, Color.BLUE), -10, 3 * TILE - 10, null);
+        g.dispose();
+
+        int red = Color.RED.getRGB(), blue = Color.BLUE.getRGB();
+        assertEquals(red, image.getRGB(FAR - 10, FAR - 10));
+        assertEquals(red, image.getRGB(FAR + 9, FAR + 9));
+        assertEquals(0, image.getRGB(FAR + 10, FAR));
+        assertEquals(red, image.getRGB(FAR + 3 * TILE, FAR), "copied within the long-origin space");
+        assertEquals(blue, image.getRGB(FAR, FAR + 3 * TILE));
+
+        assertEquals(new Rectangle(-10, -10, 3 * TILE + 20, 3 * TILE + 20), image.getLogicalBounds(FAR, FAR));
+        assertThrows(ArithmeticException.class, image::getLogicalBounds, "the content lies outside the int range");
+
+        // A long-origin Graphics at 0 draws like createGraphics()
+        InfiniteBufferedImage reference = new InfiniteBufferedImage(options(TILE));
+        InfiniteBufferedImage origin = new InfiniteBufferedImage(options(TILE));
+        for (InfiniteBufferedImage target : List.of(reference, origin)) {
+            Graphics2D g2 = target == reference ? target.createGraphics() : target.createGraphics(0, 0);
+            g2.setColor(Color.GREEN);
+            g2.rotate(0.3);
+            g2.fillOval(-50, -20, 200, 90);
+            g2.dispose();
+        }
+        Rectangle bounds = reference.getLogicalBounds();
+        assertEquals(bounds, origin.getLogicalBounds());
+        assertArrayEquals(pixels(reference.toBufferedImage(bounds)), pixels(origin.toBufferedImage(bounds)));
+    }
+
+    @Test
+    void intReportsOnlySeeTheIntRange() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        List<Rectangle> changes = new ArrayList<>();
+        image.addChangeListener((source, region) -> changes.add(region));
+
+        image.setRGB(FAR, 0, 0xFFFFFFFF);
+        assertTrue(changes.isEmpty());
+        assertTrue(image.drainDirtyRegions().isEmpty());
+
+        // A draw across the end of the int range reports its part within it
+        Graphics2D g = image.createGraphics(Integer.MAX_VALUE - 5L, 0);
+        g.fillRect(0, 0, 10, 1);
+        g.dispose();
+        assertEquals(1, changes.size());
+        Rectangle change = changes.get(0);
+        assertTrue(change.x < Integer.MAX_VALUE - 5 && change.x + change.width == Integer.MAX_VALUE, change.toString());
+        for (Rectangle dirty : image.drainDirtyRegions()) assertTrue(dirty.x + (long) dirty.width <= Integer.MAX_VALUE);
+    }
+
+    @Test
+    void savesAndLoadsFarContent() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        image.setRGB(FAR, -FAR, 0xFF123456);
+        image.setRGB(FAR + 1000, -FAR + 1000, 0xFF654321);
+        image.setRGB(Integer.MIN_VALUE, Integer.MAX_VALUE, 0xFFABCDEF);
+        Path file = tempDir.resolve("far.ibif");
+        image.save(file);
+
+        InfiniteBufferedImage loaded = InfiniteBufferedImage.load(file);
+        assertEquals(image.getRoot().size, loaded.getRoot().size);
+        assertEquals(0xFF123456, loaded.getRGB(FAR, -FAR));
+        assertEquals(0xFF654321, loaded.getRGB(FAR + 1000, -FAR + 1000));
+        assertEquals(0xFFABCDEF, loaded.getRGB(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(3, loaded.getAllocatedLeafCount());
+    }
+
+    private static BufferedImage solid(int w, int h, Color color) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, w, h);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,166 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static com.novospir.libraries.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Out-of-core images whose tiles are paged to a memory-mapped scratch file.
+ */
+public class MappedTileStoreTest {
+
+    private static final int TILE = 64;
+    private static final long TILE_BYTES = TILE * TILE * 4;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void pagedImageMatchesInHeapImage() {
+        InfiniteBufferedImage reference = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        try (InfiniteBufferedImage paged = new InfiniteBufferedImage(pagedOptions(4 * TILE_BYTES))) {
+            for (InfiniteBufferedImage image : new InfiniteBufferedImage[]{reference, paged}) {
+                Random rng = new Random(11);
+                for (int i = 0; i < 3_000; i++) {
+                    image.setRGB(rng.nextInt(1000) - 500, rng.nextInt(1000) - 500, rng.nextInt());
+                }
+                Graphics2D g = image.createGraphics();
+                g.setColor(new Color(10, 200, 90, 180));
+                g.fillOval(-300, -200, 700, 500);
+                g.setStroke(new BasicStroke(7));
+                g.setColor(Color.MAGENTA);
+                g.drawLine(-500, 500, 500, -500);
+                g.copyArea(-100, -100, 150, 150, 300, 220);
+                g.dispose();
+            }
+
+            Rectangle region = new Rectangle(-520, -520, 1100, 1100);
+            assertArrayEquals(pixels(reference.toBufferedImage(region)), pixels(paged.toBufferedImage(region)));
+            Random rng = new Random(12);
+            for (int i = 0; i < 500; i++) {
+                int x = rng.nextInt(1000) - 500, y = rng.nextInt(1000) - 500;
+                assertEquals(reference.getRGB(x, y), paged.getRGB(x, y), "pixel (" + x + "," + y + ")");
+            }
+            assertEquals(reference.getAllocatedLeafCount(), paged.getAllocatedLeafCount());
+            assertEquals(reference.getLogicalBounds(), paged.getLogicalBounds());
+        }
+    }
+
+    @Test
+    void evictedTilesAreWrittenBackAndPagedIn() {
+        try (InfiniteBufferedImage image = new InfiniteBufferedImage(pagedOptions(2 * TILE_BYTES))) {
+            image.setRGB(5, 5, 0xFF102030);
+            QuadNode first = image.findLeaf(5, 5);
+            for (int i = 1; i <= 10; i++) image.setRGB(i * TILE, 0, 0xFF000000 | i);
+
+            // The next lookup trims the heap down to the budget
+            image.getRGB(10 * TILE, 0);
+            TilePager pager = image.getPager();
+            assertTrue(pager.residentBytes() <= 2 * TILE_BYTES, pager.residentBytes() + " resident bytes");
+            assertNull(first.image, "least recently used tile should be paged out");
+            assertNotNull(first.data);
+
+            assertEquals(0xFF102030, image.getRGB(5, 5));
+            for (int i = 1; i <= 10; i++) assertEquals(0xFF000000 | i, image.getRGB(i * TILE, 0));
+            assertEquals(11, image.getAllocatedLeafCount());
+        }
+    }
+
+    @Test
+    void sparseWritesAcrossHugeLogicalCanvas() {
+        // 200,000² ARGB pixels would be 160 GB in one raster; 256 KB of tiles stay in the heap
+        int extent = 200_000;
+        try (InfiniteBufferedImage image = new InfiniteBufferedImage(pagedOptions(256 << 10))) {
+            Random rng = new Random(5);
+            int[][] points = new int[2_000][];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = new int[]{rng.nextInt(extent) - extent / 2, rng.nextInt(extent) - extent / 2};
+                image.setRGB(points[i][0], points[i][1], 0xFF000000 | i);
+            }
+            for (int i = 0; i < points.length; i++) {
+                assertEquals(0xFF000000 | i, image.getRGB(points[i][0], points[i][1]), "point " + i);
+            }
+            assertTrue(image.getPager().residentCount() <= (256 << 10) / TILE_BYTES + 1);
+        }
+    }
+
+    @Test
+    void compactAndSaveSeePagedOutTiles() throws IOException {
+        try (InfiniteBufferedImage image = new InfiniteBufferedImage(pagedOptions(TILE_BYTES))) {
+            for (int i = 0; i < 8; i++) image.setRGB(i * TILE, i * TILE, 0xFFABCDEF);
+            image.setRGB(0, 0, 0); // first tile now empty, and paged out
+            for (int i = 1; i < 8; i++) image.getRGB(i * TILE, i * TILE);
+
+            image.compact();
+            assertEquals(7, image.getAllocatedLeafCount());
+            assertEquals(new Rectangle(TILE, TILE, 6 * TILE + 1, 6 * TILE + 1), image.getLogicalBounds());
+
+            Path file = tempDir.resolve("paged.ibif");
+            image.save(file);
+            InfiniteBufferedImage loaded = InfiniteBufferedImage.load(file);
+            assertEquals(7, loaded.getAllocatedLeafCount());
+            for (int i = 1; i < 8; i++) assertEquals(0xFFABCDEF, loaded.getRGB(i * TILE, i * TILE));
+
+            // The released slot is reused: eight tiles were ever stored, and one was released
+            image.setRGB(-5_000, -5_000, 0xFF000001);
+            for (int i = 1; i < 8; i++) image.getRGB(i * TILE, i * TILE);
+            assertEquals(8, ((MappedTileStore) image.getPager()).slotCount());
+            assertEquals(0xFF000001, image.getRGB(-5_000, -5_000));
+        }
+    }
+
+    @Test
+    void optionsAndScratchFileLifecycle() throws IOException {
+        assertThrows(IllegalArgumentException.class,
+                () -> InfiniteImageOptions.builder().mappedStorage(tempDir, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> InfiniteImageOptions.builder().mappedStorage(null, 1 << 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> InfiniteImageOptions.builder().mappedStorage(tempDir, 1 << 20).mergeThreshold(2).build());
+
+        InfiniteImageOptions options = pagedOptions(TILE_BYTES);
+        assertEquals(tempDir, options.toBuilder().build().getStorageDirectory());
+        assertNull(InfiniteImageOptions.defaults().getStorageDirectory());
+
+        // Images created from the same options page to separate files
+        InfiniteBufferedImage first = new InfiniteBufferedImage(options);
+        InfiniteBufferedImage second = new InfiniteBufferedImage(options);
+        for (int i = 0; i < 4; i++) {
+            first.setRGB(i * TILE, 0, 0xFF000000 | i);
+            second.setRGB(i * TILE, 0, 0xFFFF0000 | i);
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0xFF000000 | i, first.getRGB(i * TILE, 0));
+            assertEquals(0xFFFF0000 | i, second.getRGB(i * TILE, 0));
+        }
+        first.close();
+        second.close();
+        assertEquals(0, countFiles(), "close deletes the scratch files");
+        // Tiles can no longer be paged out
+        assertThrows(IllegalStateException.class, () -> {
+            for (int i = 0; i < 100; i++) first.setRGB(i * TILE, 0, -1);
+        });
+    }
+
+    /* ==== helpers ======================================================= */
+
+    private InfiniteImageOptions pagedOptions(long maxResidentBytes) {
+        return InfiniteImageOptions.builder().tileSize(TILE).mappedStorage(tempDir, maxResidentBytes).build();
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+}
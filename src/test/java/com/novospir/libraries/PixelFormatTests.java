@@ -0,0 +1,105 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tile pixel formats other than TYPE_INT_ARGB: allocation, raster access, bounds and export.
+ */
+public class PixelFormatTests {
+
+    private static final int[] TYPES = {
+            BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY,
+            BufferedImage.TYPE_BYTE_BINARY
+    };
+
+    @Test
+    void setRGBMatchesBufferedImage() {
+        for (int type : TYPES) setRGBMatchesBufferedImage(type);
+    }
+
+    @Test
+    void bulkPixelsRoundTripAcrossTiles() {
+        for (int type : TYPES) bulkPixelsRoundTripAcrossTiles(type);
+    }
+
+    private void setRGBMatchesBufferedImage(int type) {
+        InfiniteBufferedImage infinite = new InfiniteBufferedImage(type);
+        BufferedImage reference = new BufferedImage(300, 300, type);
+
+        int[][] points = {{0, 0}, {127, 127}, {128, 5}, {299, 299}, {150, 64}};
+        int[] colors = {0xFFFFFFFF, 0xFF336699, 0xFF000000, 0xFFFF0000, 0xFF808080};
+        for (int i = 0; i < points.length; i++) {
+            infinite.setRGB(points[i][0], points[i][1], colors[i]);
+            reference.setRGB(points[i][0], points[i][1], colors[i]);
+        }
+
+        for (int[] p : points) {
+            assertEquals(reference.getRGB(p[0], p[1]), infinite.getRGB(p[0], p[1]),
+                    "Pixel mismatch at (" + p[0] + "," + p[1] + ")");
+        }
+
+        BufferedImage exported = infinite.toBufferedImage(new Rectangle(0, 0, 300, 300));
+        assertEquals(type, exported.getType());
+        for (int[] p : points) {
+            assertEquals(reference.getRGB(p[0], p[1]), exported.getRGB(p[0], p[1]));
+        }
+    }
+
+    private void bulkPixelsRoundTripAcrossTiles(int type) {
+        InfiniteBufferedImage infinite = new InfiniteBufferedImage(type);
+        AbstractWritableRaster raster = infinite.getRaster();
+        int bands = raster.getNumBands();
+        int max = type == BufferedImage.TYPE_BYTE_BINARY ? 1
+                : type == BufferedImage.TYPE_USHORT_GRAY ? 0xFFFF : 0xFF;
+
+        int x = -20, y = 100, w = 170, h = 60; // spans negative and positive tiles
+        int[] data = new int[w * h * bands];
+        for (int i = 0; i < data.length; i++) data[i] = (i * 31) % (max + 1);
+        raster.setPixels(x, y, w, h, data);
+
+        assertArrayEquals(data, raster.getPixels(x, y, w, h, (int[]) null), "Type " + type);
+        assertTrue(new Rectangle(x, y, w, h).contains(infinite.getLogicalBounds()), "Type " + type);
+    }
+
+    @Test
+    void boundsUseNonZeroSamplesForOpaqueFormats() {
+        InfiniteBufferedImage gray = new InfiniteBufferedImage(BufferedImage.TYPE_BYTE_GRAY);
+        gray.setRGB(10, 20, 0xFFFFFFFF);
+        gray.setRGB(300, 5, 0xFF808080);
+        assertEquals(new Rectangle(10, 5, 291, 16), gray.getLogicalBounds());
+    }
+
+    @Test
+    void grayTilesAreQuarterOfArgb() {
+        InfiniteBufferedImage argb = new InfiniteBufferedImage();
+        InfiniteBufferedImage gray = new InfiniteBufferedImage(BufferedImage.TYPE_BYTE_GRAY);
+        InfiniteBufferedImage binary = new InfiniteBufferedImage(BufferedImage.TYPE_BYTE_BINARY);
+        argb.setRGB(0, 0, -1);
+        gray.setRGB(0, 0, -1);
+        binary.setRGB(0, 0, -1);
+
+        long argbBytes = tileBytes(argb.findLeaf(0, 0).image.getRaster());
+        assertEquals(argbBytes / 4, tileBytes(gray.findLeaf(0, 0).image.getRaster()));
+        assertEquals(argbBytes / 32, tileBytes(binary.findLeaf(0, 0).image.getRaster()));
+    }
+
+    @Test
+    void customTypeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new InfiniteBufferedImage(BufferedImage.TYPE_CUSTOM));
+        assertThrows(IllegalArgumentException.class, () -> new InfiniteBufferedImage(99));
+    }
+
+    private static long tileBytes(Raster raster) {
+        int bits = raster.getSampleModel().getTransferType() == DataBuffer.TYPE_INT ? 32
+                : raster.getSampleModel().getTransferType() == DataBuffer.TYPE_USHORT ? 16 : 8;
+        return (long) raster.getDataBuffer().getSize() * bits / 8;
+    }
+}
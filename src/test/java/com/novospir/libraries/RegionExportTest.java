@@ -0,0 +1,113 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static com.novospir.libraries.TestImages.pixels;
+import static com.novospir.libraries.TestImages.scribble;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Strip-by-strip export of canvas regions through a {@link RenderedImage} view.
+ */
+public class RegionExportTest {
+
+    private static final int TILE = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void exportedPngAndTiffMatchToBufferedImage() throws IOException {
+        InfiniteBufferedImage image = painted(InfiniteImageOptions.builder().tileSize(TILE).build());
+        Rectangle region = new Rectangle(-333, -201, 700, 500); // not tile aligned
+        int[] expected = pixels(image.toBufferedImage(region));
+        for (String format : new String[]{"png", "tiff"}) {
+            Path file = tempDir.resolve("region." + format);
+            image.exportImage(region, format, file);
+            BufferedImage read = ImageIO.read(file.toFile());
+            assertEquals(region.width, read.getWidth(), format);
+            assertEquals(region.height, read.getHeight(), format);
+            assertArrayEquals(expected, read.getRGB(0, 0, region.width, region.height, null, 0, region.width), format);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        image.exportImage(region, "png", out);
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertArrayEquals(expected, read.getRGB(0, 0, region.width, region.height, null, 0, region.width));
+    }
+
+    @Test
+    void rowByRowWritersRenderEachStripOnce() throws IOException {
+        InfiniteBufferedImage image = painted(InfiniteImageOptions.builder().tileSize(TILE).build());
+        Rectangle region = new Rectangle(-500, -470, 1000, 900);
+        RegionImage view = (RegionImage) image.asRenderedImage(region);
+        assertEquals(1, view.getNumXTiles());
+        assertEquals(15, view.getNumYTiles()); // rows -470..429 touch tile rows -8..6
+        assertEquals(-(512 - 470), view.getTileGridYOffset(), "strips start on canvas tile rows");
+
+        assertTrue(ImageIO.write(view, "png", new ByteArrayOutputStream()));
+        assertEquals(view.getNumYTiles(), view.renderedStrips);
+
+        Raster strip = view.getTile(0, 3);
+        assertEquals(region.width, strip.getWidth());
+        assertEquals(TILE, strip.getHeight());
+        assertEquals(3 * TILE + view.getTileGridYOffset(), strip.getMinY());
+    }
+
+    @Test
+    void viewReadsAcrossStripsAndKeepsTheImageType() {
+        InfiniteBufferedImage image = painted(InfiniteImageOptions.builder().tileSize(TILE)
+                .imageType(BufferedImage.TYPE_BYTE_GRAY).build());
+        Rectangle region = new Rectangle(100, 100, 300, 300);
+        RenderedImage view = image.asRenderedImage(region);
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, image.toBufferedImage(region).getType());
+
+        Rectangle rect = new Rectangle(20, 50, 200, 150); // spans three strips
+        Raster data = view.getData(rect);
+        assertEquals(rect, data.getBounds());
+        BufferedImage expected = image.toBufferedImage(new Rectangle(120, 150, 200, 150));
+        byte[] actual = new byte[200 * 150];
+        data.getDataElements(20, 50, 200, 150, actual);
+        assertArrayEquals(((DataBufferByte) expected.getRaster().getDataBuffer()).getData(), actual);
+
+        assertEquals(new Rectangle(0, 0, 300, 300), view.getData().getBounds());
+        assertThrows(IllegalArgumentException.class, () -> view.getData(new Rectangle(400, 0, 10, 10)));
+        assertThrows(IllegalArgumentException.class, () -> view.getTile(0, view.getNumYTiles()));
+    }
+
+    @Test
+    void exportsFromPagedStorageAndRejectsBadArguments() throws IOException {
+        try (InfiniteBufferedImage paged = painted(InfiniteImageOptions.builder().tileSize(TILE)
+                .spillStorage(tempDir, 4L * TILE * TILE * 4).build())) {
+            InfiniteBufferedImage heap = painted(InfiniteImageOptions.builder().tileSize(TILE).build());
+            Rectangle region = new Rectangle(-600, -600, 1200, 1200);
+            Path file = tempDir.resolve("paged.png");
+            paged.exportImage(region, "png", file);
+            BufferedImage read = ImageIO.read(file.toFile());
+            assertArrayEquals(pixels(heap.toBufferedImage(region)), read.getRGB(0, 0, 1200, 1200, null, 0, 1200));
+
+            assertThrows(IllegalArgumentException.class, () -> paged.exportImage(new Rectangle(0, 0, 0, 5), "png", file));
+            assertThrows(IOException.class, () -> paged.exportImage(region, "no-such-format", file));
+        }
+    }
+
+    /* ==== helpers ======================================================= */
+
+    private static InfiniteBufferedImage painted(InfiniteImageOptions options) {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options);
+        scribble(image, 36, 120, new Rectangle(-600, -600, 1350, 1350));
+        return image;
+    }
+}
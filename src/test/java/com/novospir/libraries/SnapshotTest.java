@@ -0,0 +1,141 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.novospir.libraries.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Copy-on-write snapshots of the quadtree, and restoring them.
+ */
+public class SnapshotTest {
+
+    private static final Rectangle REGION = new Rectangle(-300, -300, 1200, 1200);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void snapshotKeepsItsContentWhileTheImageChanges() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(64).build());
+        paint(image, Color.RED, 0, 0, 300, 300);
+        int[] before = pixels(image.toBufferedImage(REGION));
+        ImageSnapshot snapshot = image.snapshot();
+
+        paint(image, Color.BLUE, 100, 100, 50, 50);       // overwrite shared tiles
+        paint(image, Color.GREEN, -250, 700, 40, 40);     // new tiles
+        image.setRGB(5_000, -5_000, 0xFFFFFFFF);          // grow the tree
+        image.getRaster().setPixel(1, 1, new int[]{1, 2, 3, 4});
+
+        assertArrayEquals(before, pixels(snapshot.toBufferedImage(REGION)));
+        assertEquals(Color.RED.getRGB(), snapshot.getRGB(120, 120));
+        assertEquals(0, snapshot.getRGB(5_000, -5_000));
+        assertEquals(Color.BLUE.getRGB(), image.getRGB(120, 120));
+
+        image.restore(snapshot);
+        assertArrayEquals(before, pixels(image.toBufferedImage(REGION)));
+        assertEquals(0, image.getRGB(5_000, -5_000));
+        assertEquals(new Rectangle(0, 0, 300, 300), image.getLogicalBounds());
+
+        // Writing after a restore leaves the snapshot intact, so it can be restored again
+        image.setRGB(120, 120, 0xFF000000);
+        assertEquals(Color.RED.getRGB(), snapshot.getRGB(120, 120));
+        image.restore(snapshot);
+        assertEquals(Color.RED.getRGB(), image.getRGB(120, 120));
+    }
+
+    @Test
+    void onlyWrittenTilesAreCopied() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(64).build());
+        paint(image, Color.ORANGE, 0, 0, 640, 640);
+        ImageSnapshot snapshot = image.snapshot();
+        image.setRGB(10, 10, 0xFF000000);
+
+        int shared = 0, copied = 0;
+        for (QuadNode leaf : image.findLeaves(0, 0, 640, 640, false)) {
+            if (leaf.image == snapshot.root.findLeaf(leaf.x, leaf.y).image) shared++;
+            else copied++;
+        }
+        assertEquals(1, copied);
+        assertEquals(99, shared);
+
+        // Snapshots without writes in between share everything
+        ImageSnapshot again = image.snapshot();
+        assertSame(image.getRoot(), again.root);
+        assertSame(image.snapshot().root, again.root);
+    }
+
+    @Test
+    void compactingAndMergingDoNotTouchSnapshots() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(64)
+                .mergeThreshold(2).maxLeafSize(512).build());
+        for (int pass = 0; pass < 4; pass++) paint(image, new Color(pass * 60, 80, 200, 200), -256, -256, 1024, 1024);
+        image.setRGB(2_000, 2_000, 0xFF00FF00);
+        ImageSnapshot painted = image.snapshot();
+        int[] before = pixels(painted.toBufferedImage(REGION));
+
+        // Clear all but one pixel, then split and release the merged leaves
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(REGION.x, REGION.y, REGION.width, REGION.height);
+        g.dispose();
+        image.setRGB(3, 3, 0xFF0000FF);
+        ImageSnapshot cleared = image.snapshot();
+        image.compact();
+
+        assertArrayEquals(before, pixels(painted.toBufferedImage(REGION)));
+        assertEquals(0xFF00FF00, painted.getRGB(2_000, 2_000));
+        assertEquals(0xFF0000FF, cleared.getRGB(3, 3));
+        assertEquals(2, image.getAllocatedLeafCount());
+
+        // Merging again after the snapshots
+        for (int pass = 0; pass < 4; pass++) paint(image, Color.BLACK, -256, -256, 1024, 1024);
+        assertArrayEquals(before, pixels(painted.toBufferedImage(REGION)));
+        image.restore(painted);
+        assertArrayEquals(before, pixels(image.toBufferedImage(REGION)));
+    }
+
+    @Test
+    void manySnapshotsFormAnUndoHistory() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(32).build());
+        List<ImageSnapshot> history = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            history.add(image.snapshot());
+            image.setRGB(i * 7 % 500, i * 13 % 500, 0xFF000000 | i);
+        }
+        for (int i = history.size() - 1; i >= 0; i--) {
+            image.restore(history.get(i));
+            assertEquals(0, image.getRGB(i * 7 % 500, i * 13 % 500), "undo of stroke " + i);
+            if (i > 0) assertEquals(0xFF000000 | (i - 1), image.getRGB((i - 1) * 7 % 500, (i - 1) * 13 % 500));
+        }
+        assertEquals(0, image.getAllocatedLeafCount());
+
+        InfiniteBufferedImage other = new InfiniteBufferedImage();
+        assertFalse(history.get(0).isSnapshotOf(other));
+        assertThrows(IllegalArgumentException.class, () -> other.restore(history.get(0)));
+    }
+
+    @Test
+    void pagedImagesCannotBeSnapshot() {
+        try (InfiniteBufferedImage paged = new InfiniteBufferedImage(InfiniteImageOptions.builder()
+                .spillStorage(tempDir, 1 << 20).build())) {
+            assertThrows(UnsupportedOperationException.class, paged::snapshot);
+        }
+    }
+
+    /* ==== helpers ======================================================= */
+
+    private static void paint(InfiniteBufferedImage image, Color color, int x, int y, int w, int h) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(x, y, w, h);
+        g.dispose();
+    }
+}
@@ -0,0 +1,136 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static com.novospir.libraries.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Memory-bounded images that compress least recently used tiles to a spill file.
+ */
+public class SpillTileStoreTest {
+
+    private static final int TILE = 64;
+    private static final long TILE_BYTES = TILE * TILE * 4;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void spilledImageMatchesInHeapImageWithinBudget() {
+        InfiniteBufferedImage reference = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        try (InfiniteBufferedImage spilled = new InfiniteBufferedImage(spillOptions(8 * TILE_BYTES))) {
+            for (InfiniteBufferedImage image : new InfiniteBufferedImage[]{reference, spilled}) {
+                Random rng = new Random(21);
+                Graphics2D g = image.createGraphics();
+                for (int i = 0; i < 200; i++) {
+                    g.setColor(new Color(rng.nextInt(), true));
+                    g.fillOval(rng.nextInt(1500) - 750, rng.nextInt(1500) - 750, 10 + rng.nextInt(120), 10 + rng.nextInt(120));
+                }
+                g.dispose();
+                for (int i = 0; i < 2_000; i++) {
+                    image.setRGB(rng.nextInt(1600) - 800, rng.nextInt(1600) - 800, rng.nextInt());
+                }
+            }
+
+            Rectangle region = new Rectangle(-820, -820, 1700, 1700);
+            assertArrayEquals(pixels(reference.toBufferedImage(region)), pixels(spilled.toBufferedImage(region)));
+            assertEquals(reference.getLogicalBounds(), spilled.getLogicalBounds());
+
+            spilled.getRGB(0, 0); // lookups trim to the budget first
+            TileCacheStats stats = spilled.getTileCacheStats();
+            assertTrue(stats.getResidentBytes() <= 8 * TILE_BYTES + TILE_BYTES, stats.toString());
+            assertTrue(stats.getEvictions() > 0 && stats.getMisses() > 0 && stats.getHits() > 0, stats.toString());
+            assertTrue(stats.getWriteBacks() <= stats.getEvictions(), stats.toString());
+            assertTrue(stats.getStoredBytes() < reference.getAllocatedLeafCount() * TILE_BYTES,
+                    "spilled tiles are compressed: " + stats);
+        }
+    }
+
+    @Test
+    void cleanTilesAreNotWrittenBack() {
+        try (InfiniteBufferedImage image = new InfiniteBufferedImage(spillOptions(2 * TILE_BYTES))) {
+            Random rng = new Random(4);
+            for (int t = 0; t < 10; t++) {
+                for (int i = 0; i < 50; i++) image.setRGB(t * TILE + rng.nextInt(TILE), rng.nextInt(TILE), rng.nextInt());
+            }
+            // One read pass evicts every modified tile, so all of them are in the file afterwards
+            for (int t = 0; t < 10; t++) image.getRGB(t * TILE, 0);
+            long writeBacks = image.getTileCacheStats().getWriteBacks();
+            long stored = image.getTileCacheStats().getStoredBytes();
+            assertEquals(10, writeBacks);
+
+            // Reading every tile again pages tiles in and out without writing them again
+            for (int pass = 0; pass < 2; pass++) {
+                for (int t = 0; t < 10; t++) image.getRGB(t * TILE, 0);
+            }
+            TileCacheStats stats = image.getTileCacheStats();
+            assertEquals(writeBacks, stats.getWriteBacks(), stats.toString());
+            assertEquals(stored, stats.getStoredBytes());
+            assertTrue(stats.getMisses() >= 20, stats.toString());
+        }
+    }
+
+    @Test
+    void uniformTilesNeverTouchTheFile() {
+        try (InfiniteBufferedImage image = new InfiniteBufferedImage(spillOptions(TILE_BYTES))) {
+            Graphics2D g = image.createGraphics();
+            g.setColor(Color.CYAN);
+            g.fillRect(0, 0, 16 * TILE, 4 * TILE);
+            g.dispose();
+            for (int t = 0; t < 16; t++) assertEquals(Color.CYAN.getRGB(), image.getRGB(t * TILE + 3, 2 * TILE));
+
+            TileCacheStats stats = image.getTileCacheStats();
+            assertTrue(stats.getEvictions() >= 60, stats.toString());
+            assertEquals(0, stats.getStoredBytes(), stats.toString());
+        }
+    }
+
+    @Test
+    void respilledTilesReuseFileSpace() {
+        try (InfiniteBufferedImage image = new InfiniteBufferedImage(spillOptions(TILE_BYTES))) {
+            Random rng = new Random(8);
+            long afterFirstRound = 0;
+            for (int round = 0; round < 20; round++) {
+                for (int t = 0; t < 6; t++) {
+                    for (int i = 0; i < 200; i++) image.setRGB(t * TILE + rng.nextInt(TILE), rng.nextInt(TILE), rng.nextInt());
+                }
+                if (round == 0) afterFirstRound = image.getTileCacheStats().getStoredBytes();
+            }
+            // Tiles gain noise each round and outgrow their extents; freed extents are reused by size class
+            long stored = image.getTileCacheStats().getStoredBytes();
+            assertTrue(stored <= 2 * 6 * TILE_BYTES,
+                    "file should not grow with every spill: " + stored + " bytes after " + afterFirstRound);
+        }
+    }
+
+    @Test
+    void optionsAndStatsWithoutSpilling() {
+        InfiniteImageOptions options = spillOptions(1 << 20);
+        assertEquals(InfiniteImageOptions.TileStorage.SPILL, options.getTileStorage());
+        assertEquals(InfiniteImageOptions.TileStorage.SPILL, options.toBuilder().tileSize(128).build().getTileStorage());
+        assertEquals(InfiniteImageOptions.TileStorage.HEAP, InfiniteImageOptions.defaults().getTileStorage());
+        assertThrows(IllegalArgumentException.class,
+                () -> options.toBuilder().mergeThreshold(1).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> InfiniteImageOptions.builder().spillStorage(tempDir, -1));
+
+        InfiniteBufferedImage heap = new InfiniteBufferedImage();
+        heap.setRGB(0, 0, -1);
+        assertEquals(0, heap.getTileCacheStats().getHits());
+        assertEquals(1.0, heap.getTileCacheStats().getHitRate());
+        heap.close(); // no store: nothing to release
+    }
+
+    /* ==== helpers ======================================================= */
+
+    private InfiniteImageOptions spillOptions(long maxResidentBytes) {
+        return InfiniteImageOptions.builder().tileSize(TILE).spillStorage(tempDir, maxResidentBytes).build();
+    }
+}
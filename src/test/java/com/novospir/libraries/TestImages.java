@@ -0,0 +1,58 @@
+package com.novospir.libraries;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Options, drawings and pixel comparisons shared by the tests.
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+    /// @return default options with the given tile size
+    static InfiniteImageOptions options(int tileSize) {
+        return InfiniteImageOptions.builder().tileSize(tileSize).build();
+    }
+
+    /// @return options with the given tile size that collect {@link ImageStats}
+    static InfiniteImageOptions optionsWithStats(int tileSize) {
+        return InfiniteImageOptions.builder().tileSize(tileSize).collectStats(true).build();
+    }
+
+    /// Draws translucent ovals of random colors and sizes up to 200 px, all starting inside a region
+    static void scribble(InfiniteBufferedImage image, long seed, int shapes, Rectangle region) {
+        Random rng = new Random(seed);
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < shapes; i++) {
+            g.setColor(new Color(rng.nextInt(), true));
+            g.fillOval(region.x + rng.nextInt(region.width - 200), region.y + rng.nextInt(region.height - 200),
+                    10 + rng.nextInt(190), 10 + rng.nextInt(190));
+        }
+        g.dispose();
+    }
+
+    /// @return the pixels of an image as ARGB, row by row, whatever its type
+    static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    /// Asserts that two canvases hold the same pixels in a region, exported and read one by one
+    static void assertPixelsEqual(InfiniteBufferedImage expected, InfiniteBufferedImage actual, Rectangle region) {
+        BufferedImage a = expected.toBufferedImage(region), b = actual.toBufferedImage(region);
+        for (int y = 0; y < region.height; y++) {
+            for (int x = 0; x < region.width; x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y))
+                    fail(String.format("pixel (%d,%d): %08X != %08X", x + region.x, y + region.y, a.getRGB(x, y), b.getRGB(x, y)));
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            int x = region.x + (i * 37) % region.width, y = region.y + (i * 91) % region.height;
+            assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "getRGB(" + x + "," + y + ")");
+        }
+    }
+}
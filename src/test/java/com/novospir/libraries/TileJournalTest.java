@@ -0,0 +1,176 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static com.novospir.libraries.TestImages.assertPixelsEqual;
+import static com.novospir.libraries.TestImages.options;
+import static com.novospir.libraries.TestImages.pixels;
+import static com.novospir.libraries.TestImages.scribble;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Autosave journal of tile deltas, checkpoints and crash recovery.
+ */
+public class TileJournalTest {
+
+    private static final int TILE = 64;
+    private static final Rectangle REGION = new Rectangle(-500, -500, 1500, 1500);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void commitsAppendOnlyWrittenTilesAndRecoverReplaysThem() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        scribble(image, 1, 40, REGION);
+        try (TileJournal journal = image.openJournal(tempDir, 64L << 20)) {
+            assertEquals(0, journal.commit(), "the checkpoint holds everything so far");
+            long empty = journal.size();
+
+            image.setRGB(5, 5, 0xFF00FF00);
+            image.setRGB(6, 7, 0xFF00FF00);
+            assertEquals(1, journal.commit());
+            long checkpoint = Files.size(tempDir.resolve(TileJournal.CHECKPOINT));
+            assertTrue(journal.size() - empty < checkpoint / 20, "one tile record: " + (journal.size() - empty) + " of " + checkpoint);
+
+            scribble(image, 2, 10, REGION);
+            Graphics2D g = image.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(-200, -200, 300, 300); // cleared tiles must replay as cleared
+            g.dispose();
+            assertTrue(journal.commit() > 0);
+        }
+        assertPixelsEqual(image, InfiniteBufferedImage.recover(tempDir), REGION);
+    }
+
+    @Test
+    void recoveryDropsTornAndUncommittedBatches() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        Path journalFile = tempDir.resolve(TileJournal.JOURNAL);
+        try (TileJournal journal = image.openJournal(tempDir, 64L << 20)) {
+            scribble(image, 3, 20, REGION);
+            journal.commit();
+            BufferedImage committed = image.toBufferedImage(REGION);
+            long end = Files.size(journalFile);
+
+            scribble(image, 4, 20, REGION);
+            journal.commit();
+            long size = Files.size(journalFile);
+            // Crash before the commit marker: the second batch is incomplete
+            truncate(journalFile, size - 9);
+            assertArrayEquals(pixels(committed), pixels(InfiniteBufferedImage.recover(tempDir).toBufferedImage(REGION)));
+            // Torn in the middle of a record
+            truncate(journalFile, end + 30);
+            assertArrayEquals(pixels(committed), pixels(InfiniteBufferedImage.recover(tempDir).toBufferedImage(REGION)));
+        }
+
+        // A flipped byte in the first batch leaves only the checkpoint
+        InfiniteBufferedImage blank = new InfiniteBufferedImage(options(TILE));
+        try (TileJournal journal = blank.openJournal(tempDir, 64L << 20)) {
+            blank.setRGB(1, 1, 0xFFFFFFFF);
+            journal.commit();
+        }
+        byte[] bytes = Files.readAllBytes(journalFile);
+        bytes[TileJournal.HEADER_SIZE + 3] ^= 1;
+        Files.write(journalFile, bytes);
+        assertEquals(0, InfiniteBufferedImage.recover(tempDir).getRGB(1, 1));
+    }
+
+    @Test
+    void aFailedCommitIsCutFromTheJournalAndCheckpointedNext() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        try (TileJournal journal = image.openJournal(tempDir, 64L << 20)) {
+            scribble(image, 7, 10, REGION);
+            assertTrue(journal.commit() > 0);
+            long committed = journal.size();
+
+            // Failing after two tile records: they are cut so that recovery reaches later batches
+            scribble(image, 8, 10, REGION);
+            journal.beforeTile = index -> {
+                if (index == 2) throw new IllegalStateException("failed write");
+            };
+            assertThrows(IllegalStateException.class, journal::commit);
+            assertEquals(committed, journal.size());
+            journal.beforeTile = index -> { };
+            assertEquals(0, journal.commit(), "the drained batch goes into a checkpoint");
+            assertEquals(TileJournal.HEADER_SIZE, journal.size());
+
+            // An interrupt closes the channel in the middle of the batch
+            scribble(image, 9, 10, REGION);
+            journal.beforeTile = index -> {
+                if (index == 2) Thread.currentThread().interrupt();
+            };
+            try {
+                assertThrows(ClosedByInterruptException.class, journal::commit);
+            } finally {
+                Thread.interrupted();
+            }
+            journal.beforeTile = index -> { };
+            assertEquals(0, journal.commit());
+            assertPixelsEqual(image, InfiniteBufferedImage.recover(tempDir), REGION);
+
+            scribble(image, 10, 10, REGION);
+            assertTrue(journal.commit() > 0);
+            image.setRGB(1, 2, 0xFF123456);
+            assertEquals(1, journal.commit());
+        }
+        assertPixelsEqual(image, InfiniteBufferedImage.recover(tempDir), REGION);
+    }
+
+    @Test
+    void commitTakesACheckpointOnceTheJournalOutgrowsItsBudget() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options(TILE));
+        try (TileJournal journal = image.openJournal(tempDir, 20_000)) {
+            Random rng = new Random(5);
+            boolean checkpointed = false;
+            for (int batch = 0; batch < 20; batch++) {
+                for (int i = 0; i < 200; i++) image.setRGB(rng.nextInt(600), rng.nextInt(600), rng.nextInt());
+                if (journal.commit() == 0) {
+                    checkpointed = true;
+                    assertEquals(TileJournal.HEADER_SIZE, journal.size());
+                }
+                assertPixelsEqual(image, InfiniteBufferedImage.recover(tempDir), REGION);
+            }
+            assertTrue(checkpointed);
+        }
+        assertThrows(IllegalArgumentException.class, () -> image.openJournal(tempDir, 0));
+    }
+
+    @Test
+    void journalsPagedImagesAndRejectsForeignFiles() throws IOException {
+        Path journalDir = Files.createDirectory(tempDir.resolve("journal"));
+        try (InfiniteBufferedImage paged = new InfiniteBufferedImage(options(TILE).toBuilder()
+                .spillStorage(tempDir, 4L * TILE * TILE * 4).build());
+             TileJournal journal = paged.openJournal(journalDir, 64L << 20)) {
+            scribble(paged, 6, 30, REGION);
+            assertTrue(journal.commit() > 4, "more tiles than the resident budget");
+            assertPixelsEqual(paged, InfiniteBufferedImage.recover(journalDir), REGION);
+
+            journal.close();
+            assertThrows(IllegalStateException.class, journal::commit);
+        }
+
+        Files.write(journalDir.resolve(TileJournal.JOURNAL), new byte[64]);
+        assertThrows(IOException.class, () -> InfiniteBufferedImage.recover(journalDir));
+        assertThrows(IOException.class, () -> InfiniteBufferedImage.recover(tempDir.resolve("missing")));
+    }
+
+    /* ==== helpers ======================================================= */
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Z-order and Hilbert-order walks over the allocated tiles, and their splits.
+ */
+public class TileOrderTest {
+
+    private static final int TILE = 64;
+    private static final int GRID = 8;
+
+    @Test
+    void zOrderInterleavesTheBitsOfTheTileCoordinates() {
+        InfiniteBufferedImage image = fullGrid();
+        List<TileView> tiles = walk(image, TileOrder.Z_ORDER);
+        assertEquals(GRID * GRID, tiles.size());
+        for (int i = 0; i < tiles.size(); i++) {
+            int col = (int) (tiles.get(i).getX() / TILE), row = (int) (tiles.get(i).getY() / TILE);
+            assertEquals(i, interleave(col, row), tiles.get(i).toString());
+            assertEquals(TILE, tiles.get(i).getSize());
+        }
+    }
+
+    @Test
+    void hilbertOrderStepsBetweenNeighbours() {
+        InfiniteBufferedImage image = fullGrid();
+        List<TileView> tiles = walk(image, TileOrder.HILBERT);
+        assertEquals(GRID * GRID, tiles.size());
+        assertEquals(GRID * GRID, tiles.stream().map(TileOrderTest::key).distinct().count());
+        for (int i = 1; i < tiles.size(); i++) {
+            long step = Math.abs(tiles.get(i).getX() - tiles.get(i - 1).getX())
+                    + Math.abs(tiles.get(i).getY() - tiles.get(i - 1).getY());
+            assertEquals(TILE, step, tiles.get(i - 1) + " -> " + tiles.get(i));
+        }
+        assertEquals(0, tiles.get(0).getX() + tiles.get(0).getY(), "starts in the top-left corner");
+    }
+
+    @Test
+    void visitsEachAllocatedTileOnceIncludingMergedLeaves() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder()
+                .tileSize(TILE).mergeThreshold(1).maxLeafSize(4 * TILE).build());
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < 4; i++) g.fillRect(i, i, 4 * TILE, 4 * TILE); // repeated draws merge the leaves
+        g.dispose();
+        Random rng = new Random(11);
+        for (int i = 0; i < 300; i++) image.setRGB(rng.nextInt(1 << 20) - (1 << 19), rng.nextInt(1 << 14), 0xFF000000);
+        image.setRGB(1L << 40, -(1L << 40), 0xFF000000);
+
+        for (TileOrder order : TileOrder.values()) {
+            List<TileView> tiles = walk(image, order);
+            assertEquals(image.getAllocatedLeafCount(), tiles.size(), order.name());
+            assertEquals(tiles.size(), tiles.stream().map(TileOrderTest::key).distinct().count());
+            assertTrue(tiles.stream().anyMatch(t -> t.getSize() == 4 * TILE), "the merged leaf is one tile");
+            assertTrue(tiles.stream().anyMatch(t -> t.getX() == 1L << 40));
+        }
+        assertFalse(new InfiniteBufferedImage().tileIterator(TileOrder.HILBERT).hasNext());
+    }
+
+    @Test
+    void splitsIntoContiguousRunsOfTheOrder() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        Random rng = new Random(5);
+        for (int i = 0; i < 2000; i++) image.setRGB(rng.nextInt(1 << 15), rng.nextInt(1 << 15), 0xFF000000);
+
+        for (TileOrder order : TileOrder.values()) {
+            List<String> sequential = walk(image, order).stream().map(TileOrderTest::key).collect(Collectors.toList());
+            Spliterator<TileView> spliterator = image.tileSpliterator(order);
+            assertEquals(sequential.size(), spliterator.estimateSize());
+            assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+
+            // Splitting recursively and concatenating the parts in order gives back the sequence
+            List<String> split = new ArrayList<>();
+            collect(spliterator, split, 0);
+            assertEquals(sequential, split, order.name());
+
+            List<String> parallel = StreamSupport.stream(image.tileSpliterator(order), true)
+                    .map(TileOrderTest::key).collect(Collectors.toList());
+            assertEquals(sequential, parallel);
+        }
+
+        // The halves of the first split are disjoint regions of the canvas
+        Spliterator<TileView> rest = image.tileSpliterator(TileOrder.Z_ORDER);
+        Spliterator<TileView> prefix = rest.trySplit();
+        assertNotNull(prefix);
+        Set<String> first = new HashSet<>();
+        prefix.forEachRemaining(t -> first.add(key(t)));
+        rest.forEachRemaining(t -> assertFalse(first.contains(key(t))));
+    }
+
+    private static void collect(Spliterator<TileView> spliterator, List<String> out, int depth) {
+        Spliterator<TileView> prefix = depth < 6 ? spliterator.trySplit() : null;
+        if (prefix != null) collect(prefix, out, depth + 1);
+        if (prefix != null) collect(spliterator, out, depth + 1);
+        else spliterator.forEachRemaining(t -> out.add(key(t)));
+    }
+
+    /// An 8 x 8 grid of tiles from (0, 0), under a root of exactly that size
+    private static InfiniteBufferedImage fullGrid() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        Graphics2D g = image.createGraphics();
+        g.fillRect(0, 0, GRID * TILE, GRID * TILE);
+        g.dispose();
+        image.rebalance();
+        assertEquals(GRID * TILE, image.getRoot().size);
+        assertEquals(0, image.getRoot().x);
+        return image;
+    }
+
+    private static List<TileView> walk(InfiniteBufferedImage image, TileOrder order) {
+        List<TileView> tiles = new ArrayList<>();
+        for (Iterator<TileView> it = image.tileIterator(order); it.hasNext(); ) tiles.add(it.next());
+        return tiles;
+    }
+
+    private static int interleave(int col, int row) {
+        int morton = 0;
+        for (int bit = 0; bit < 16; bit++) morton |= (col >> bit & 1) << 2 * bit | (row >> bit & 1) << 2 * bit + 1;
+        return morton;
+    }
+
+    private static String key(TileView tile) {
+        return tile.getX() + "," + tile.getY();
+    }
+}
@@ -0,0 +1,128 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Zoom-level tile pyramids written as z/x/y PNGs.
+ */
+public class TilePyramidTest {
+
+    private static final int OUT = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void deepestLevelIsTheCanvasAtFullResolution() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(32).build());
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillOval(-100, -40, 150, 90);
+        g.setColor(new Color(0, 0, 255, 100));
+        g.fillRect(20, 10, 80, 20);
+        g.dispose();
+        Rectangle bounds = image.getLogicalBounds();
+
+        int maxZoom = image.exportTilePyramid(tempDir, OUT);
+        assertEquals(2, maxZoom, "200 px wide content needs 4 tiles of 64 per side");
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                Path file = tile(maxZoom, x, y);
+                Rectangle region = new Rectangle(bounds.x + x * OUT, bounds.y + y * OUT, OUT, OUT);
+                BufferedImage expected = image.toBufferedImage(region);
+                if (!Files.exists(file)) {
+                    for (int argb : expected.getRGB(0, 0, OUT, OUT, null, 0, OUT)) assertEquals(0, argb, "missing tile " + file);
+                    continue;
+                }
+                BufferedImage actual = ImageIO.read(file.toFile());
+                assertArrayEquals(expected.getRGB(0, 0, OUT, OUT, null, 0, OUT), actual.getRGB(0, 0, OUT, OUT, null, 0, OUT), file.toString());
+            }
+        }
+        assertTrue(Files.exists(tile(0, 0, 0)));
+        assertTrue(Files.exists(tile(1, 1, 0)));
+        assertFalse(Files.exists(tile(1, 1, 1)), "below the 90 px high content");
+    }
+
+    @Test
+    void levelsAverageTwoByTwoWeightedByAlpha() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage();
+        // Opaque red column next to transparency, and a uniform grey block
+        for (int y = 0; y < 4 * OUT; y++) image.setRGB(0, y, 0xFFFF0000);
+        for (int y = 0; y < 8; y++) for (int x = 100; x < 108; x++) image.setRGB(x, y, 0xFF808080);
+        image.setRGB(4 * OUT - 1, 4 * OUT - 1, 0xFF00FF00);
+
+        assertEquals(2, image.exportTilePyramid(tempDir, OUT));
+        BufferedImage level1 = ImageIO.read(tile(1, 0, 0).toFile());
+        assertEquals(0x80FF0000, level1.getRGB(0, 5), "half-covered pixels keep their color and halve their alpha");
+        assertEquals(0xFF808080, level1.getRGB(50, 3));
+        assertEquals(0, level1.getRGB(1, 5));
+
+        BufferedImage level0 = ImageIO.read(tile(0, 0, 0).toFile());
+        assertEquals(0x40FF0000, level0.getRGB(0, 10));
+        assertEquals(0xFF808080, level0.getRGB(25, 1));
+    }
+
+    @Test
+    void emptyRegionsAreNotWritten() throws IOException {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(64).build());
+        // Two dots far apart: the pyramid is 2^10 tiles wide but almost all of it is empty
+        image.setRGB(0, 0, 0xFFFFFFFF);
+        image.setRGB(40_000, 40_000, 0xFFFFFFFF);
+        int maxZoom = image.exportTilePyramid(tempDir, OUT);
+        assertEquals(10, maxZoom);
+
+        long files;
+        try (Stream<Path> walk = Files.walk(tempDir)) {
+            files = walk.filter(Files::isRegularFile).count();
+        }
+        assertEquals(2 * maxZoom + 1, files, "one path per dot down to the root, which they share");
+        assertTrue(Files.exists(tile(maxZoom, 0, 0)));
+        assertTrue(Files.exists(tile(maxZoom, 40_000 / OUT, 40_000 / OUT)));
+
+        // Allocated but blank: no content, no pyramid
+        InfiniteBufferedImage blank = new InfiniteBufferedImage();
+        blank.setRGB(5, 5, 0xFF000000);
+        blank.setRGB(5, 5, 0);
+        assertEquals(-1, blank.exportTilePyramid(tempDir.resolve("none"), OUT));
+        assertFalse(Files.exists(tempDir.resolve("none")));
+    }
+
+    @Test
+    void pagedImagesExportTheSamePyramid() throws IOException {
+        InfiniteBufferedImage heap = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(32).build());
+        try (InfiniteBufferedImage paged = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(32)
+                .spillStorage(tempDir, 4 * 32 * 32 * 4).build())) {
+            for (InfiniteBufferedImage image : new InfiniteBufferedImage[]{heap, paged}) {
+                Graphics2D g = image.createGraphics();
+                g.setPaint(new GradientPaint(0, 0, Color.RED, 500, 300, Color.CYAN));
+                g.fillOval(0, 0, 500, 300);
+                g.dispose();
+            }
+            heap.exportTilePyramid(tempDir.resolve("heap"), OUT);
+            paged.exportTilePyramid(tempDir.resolve("paged"), OUT);
+        }
+        try (Stream<Path> walk = Files.walk(tempDir.resolve("heap"))) {
+            for (Path file : (Iterable<Path>) walk.filter(Files::isRegularFile)::iterator) {
+                Path other = tempDir.resolve("paged").resolve(tempDir.resolve("heap").relativize(file));
+                BufferedImage a = ImageIO.read(file.toFile()), b = ImageIO.read(other.toFile());
+                assertArrayEquals(a.getRGB(0, 0, OUT, OUT, null, 0, OUT), b.getRGB(0, 0, OUT, OUT, null, 0, OUT), file.toString());
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> heap.exportTilePyramid(tempDir, 100));
+    }
+
+    private Path tile(int z, int x, int y) {
+        return tempDir.resolve(z + "/" + x + "/" + y + ".png");
+    }
+}
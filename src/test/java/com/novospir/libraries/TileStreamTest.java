@@ -0,0 +1,124 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.novospir.libraries.TestImages.pixels;
+import static com.novospir.libraries.TestImages.scribble;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Per-tile transforms through {@code tiles()}, sequential and parallel.
+ */
+public class TileStreamTest {
+
+    private static final int TILE = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parallelTransformMatchesPerPixelTransform() {
+        InfiniteBufferedImage byTile = scribbled(InfiniteImageOptions.builder().tileSize(TILE).mergeThreshold(1).build());
+        InfiniteBufferedImage byPixel = scribbled(InfiniteImageOptions.builder().tileSize(TILE).mergeThreshold(1).build());
+        Rectangle bounds = byPixel.getLogicalBounds();
+        for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+            for (int x = bounds.x; x < bounds.x + bounds.width; x++) {
+                int argb = byPixel.getRGB(x, y);
+                if (argb != 0) byPixel.setRGB(x, y, invert(argb));
+            }
+        }
+
+        try (Stream<TileView> tiles = byTile.tiles()) {
+            tiles.parallel().forEach(tile -> {
+                int[] argb = tile.getWritableData();
+                assertEquals(tile.getSize() * tile.getSize(), argb.length);
+                for (int i = 0; i < argb.length; i++) if (argb[i] != 0) argb[i] = invert(argb[i]);
+            });
+        }
+        assertArrayEquals(pixels(byPixel.toBufferedImage(bounds)), pixels(byTile.toBufferedImage(bounds)));
+        assertTrue(byTile.tiles(TileOrder.HILBERT).count() > 0);
+    }
+
+    @Test
+    void writesCopyTilesSharedWithSnapshots() {
+        InfiniteBufferedImage image = scribbled(InfiniteImageOptions.builder().tileSize(TILE).build());
+        Rectangle bounds = image.getLogicalBounds();
+        BufferedImage before = image.toBufferedImage(bounds);
+        ImageSnapshot snapshot = image.snapshot();
+
+        // Reading shares everything
+        image.tiles().parallel().forEach(tile -> assertEquals(tile.getSize() * tile.getSize(), tile.getData().length));
+        assertSame(snapshot.root, image.getRoot());
+
+        List<TileView> written = new ArrayList<>();
+        image.tiles().parallel().forEach(tile -> tile.getWritableRaster().setPixel(0, 0, new int[]{1, 2, 3, 255}));
+        image.tiles().forEach(written::add);
+        for (TileView tile : written) assertEquals(0xFF010203, image.getRGB(tile.getX(), tile.getY()));
+        assertArrayEquals(pixels(before), pixels(snapshot.toBufferedImage(bounds)), "the snapshot keeps its tiles");
+
+        image.restore(snapshot);
+        assertArrayEquals(pixels(before), pixels(image.toBufferedImage(bounds)));
+    }
+
+    @Test
+    void writesAreTrackedAndReportedOnClose() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(InfiniteImageOptions.builder().tileSize(TILE).build());
+        image.setRGB(10, 10, 0xFFFFFFFF);
+        image.setRGB(3 * TILE + 10, 10, 0xFFFFFFFF);
+        image.drainDirtyRegions();
+        assertEquals(new Rectangle(10, 10, 3 * TILE + 1, 1), image.getLogicalBounds());
+        List<Rectangle> changes = new ArrayList<>();
+        image.addChangeListener((source, region) -> changes.add(region));
+
+        try (Stream<TileView> tiles = image.tiles()) {
+            tiles.filter(tile -> tile.getX() == 0).forEach(tile -> tile.getWritableData()[0] = 0xFF000000);
+            assertTrue(changes.isEmpty(), "listeners wait for the stream to close");
+        }
+        assertEquals(List.of(new Rectangle(0, 0, TILE, TILE)), changes);
+        assertEquals(List.of(new Rectangle(0, 0, TILE, TILE)), image.drainDirtyRegions());
+        assertEquals(new Rectangle(0, 0, 3 * TILE + 11, 11), image.getLogicalBounds(), "bounds are recomputed");
+
+        image.tiles().forEach(TileView::getRaster);
+        assertEquals(1, changes.size(), "reading is not a change");
+    }
+
+    @Test
+    void rejectsAccessItCannotGiveDirectly() {
+        InfiniteBufferedImage gray = new InfiniteBufferedImage(InfiniteImageOptions.builder()
+                .tileSize(TILE).imageType(BufferedImage.TYPE_BYTE_GRAY).build());
+        gray.setRGB(0, 0, 0xFFFFFFFF);
+        TileView tile = gray.tiles().findFirst().orElseThrow();
+        assertThrows(UnsupportedOperationException.class, tile::getData);
+        assertEquals(255, tile.getRaster().getSample(0, 0, 0));
+
+        try (InfiniteBufferedImage mapped = new InfiniteBufferedImage(InfiniteImageOptions.builder()
+                .tileSize(TILE).mappedStorage(tempDir, 1 << 20).build())) {
+            mapped.setRGB(0, 0, 0xFFFFFFFF);
+            TileView paged = mapped.tiles().findFirst().orElseThrow();
+            assertEquals(0, paged.getX());
+            assertThrows(UnsupportedOperationException.class, paged::getRaster);
+            assertThrows(UnsupportedOperationException.class, paged::getWritableData);
+        }
+    }
+
+    private static InfiniteBufferedImage scribbled(InfiniteImageOptions options) {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(options);
+        scribble(image, 17, 40, new Rectangle(-700, -300, 1800, 1100));
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < 4; i++) g.fillRect(i, i, 4 * TILE, 4 * TILE); // merges into a larger leaf
+        g.dispose();
+        return image;
+    }
+
+    private static int invert(int argb) {
+        return argb & 0xFF000000 | ~argb & 0x00FFFFFF;
+    }
+}
@@ -0,0 +1,127 @@
+package com.novospir.libraries;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static com.novospir.libraries.TestImages.optionsWithStats;
+import static com.novospir.libraries.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * One-step root growth, rebalancing and the limits of the coordinate range.
+ */
+public class TreeGrowthTest {
+
+    private static final int TILE = 64;
+
+    @Test
+    void growsStraightToTheRequiredLevel() {
+        QuadNode root = new QuadNode(0, 0, 128);
+        QuadNode grown = root.growToFit(1000, 0);
+        assertEquals(1024, grown.size);
+        assertEquals(0, grown.x);
+        assertEquals(-384, grown.y, "centered on the span of the old root and the point");
+        QuadNode node = grown;
+        while (node.size > 128) node = node.children[node.getQuadrant(0, 0)];
+        assertSame(root, node, "the old root is a descendant");
+        assertSame(root, root.growToFit(5, 5));
+
+        // Far-apart writes: depth is log2(extent / tile), wherever the content lies
+        InfiniteBufferedImage image = new InfiniteBufferedImage(optionsWithStats(TILE));
+        image.setRGB(0, 0, 0xFF0000FF);
+        image.setRGB(1 << 29, -(1 << 29), 0xFF00FF00);
+        image.setRGB(-(1 << 28), 1 << 28, 0xFFFF0000);
+        int depth = image.getStats().getTreeDepth();
+        assertTrue(depth <= 24 + 1, "depth " + depth + " for an extent of 2^30 / 2^6");
+        assertEquals(0xFF0000FF, image.getRGB(0, 0));
+        assertEquals(0xFF00FF00, image.getRGB(1 << 29, -(1 << 29)));
+        assertEquals(0xFFFF0000, image.getRGB(-(1 << 28), 1 << 28));
+    }
+
+    @Test
+    void coversTheWholeIntRangeAndRejectsWritesBeyondTheLongRange() {
+        // Every int coordinate, including both edges of the int range, whatever the origin
+        InfiniteBufferedImage image = new InfiniteBufferedImage(optionsWithStats(TILE).toBuilder().origin(-1000, 5).build());
+        int[] coordinates = {Integer.MIN_VALUE, -1, 0, 1 << 30, Integer.MAX_VALUE};
+        for (int x : coordinates) {
+            for (int y : coordinates) image.setRGB(x, y, 0xFF000000 | x ^ y);
+        }
+        for (int x : coordinates) {
+            for (int y : coordinates) assertEquals(0xFF000000 | x ^ y, image.getRGB(x, y));
+        }
+        assertEquals(4 * 4, image.getAllocatedLeafCount(), "-1 and 0 share a tile on each axis");
+        assertTrue(image.getRoot().size >= 1L << 32);
+
+        // Content anywhere in [-2^62, 2^62), spanning at most 2^62 pixels per axis
+        long limit = 1L << 62;
+        InfiniteBufferedImage far = new InfiniteBufferedImage(optionsWithStats(TILE));
+        far.setRGB(0, 0, 0xFFABCDEF);
+        far.setRGB(limit - 1, limit - 1, 0xFF123456);
+        assertEquals(0xFF123456, far.getRGB(limit - 1, limit - 1));
+        assertEquals(QuadNode.MAX_SIZE, far.getRoot().size);
+        assertThrows(IllegalArgumentException.class, () -> far.setRGB(-1, 0, 0xFFFFFFFF), "a span of 2^62 + 1");
+        assertThrows(IllegalArgumentException.class, () -> far.setRGB(limit, 0, 0xFFFFFFFF));
+        assertThrows(IllegalArgumentException.class, () -> far.setRGB(0, Long.MIN_VALUE, 0xFFFFFFFF));
+        assertEquals(0, far.getRGB(Long.MAX_VALUE, Long.MIN_VALUE));
+        assertEquals(2, far.getAllocatedLeafCount(), "a rejected write leaves the image as it was");
+        assertEquals(0xFFABCDEF, far.getRGB(0, 0));
+
+        InfiniteBufferedImage negative = new InfiniteBufferedImage(optionsWithStats(TILE));
+        negative.setRGB(-limit, -limit, 0xFFFEDCBA);
+        assertEquals(0xFFFEDCBA, negative.getRGB(-limit, -limit));
+    }
+
+    @Test
+    void rebalanceShrinksTheRootToTheRemainingContent() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(optionsWithStats(TILE));
+        Random rng = new Random(7);
+        for (int i = 0; i < 2000; i++) image.setRGB(300 + rng.nextInt(1000), -200 + rng.nextInt(700), rng.nextInt() | 0xFF000000);
+        Rectangle content = new Rectangle(300, -200, 1000, 700);
+        BufferedImage expected = image.toBufferedImage(content);
+        ImageSnapshot before = image.snapshot();
+
+        image.setRGB(1 << 29, 1 << 29, 0xFFFFFFFF);
+        image.setRGB(1 << 29, 1 << 29, 0);
+        image.compact(); // releases the far tile, but the root stays 2^30 wide
+        assertTrue(image.getRoot().size >= 1 << 29);
+
+        image.rebalance();
+        assertTrue(image.getRoot().size <= 2048, "root of " + image.getRoot().size + " for 1000 x 700 of content");
+        assertTrue(image.getStats().getTreeDepth() <= 5);
+        assertArrayEquals(pixels(expected), pixels(image.toBufferedImage(content)));
+        assertEquals(0, image.getRGB(1 << 29, 1 << 29));
+
+        image.setRGB(301, -199, 0xFF000000);
+        image.restore(before);
+        assertArrayEquals(pixels(expected), pixels(image.toBufferedImage(content)), "snapshots are unaffected");
+
+        InfiniteBufferedImage empty = new InfiniteBufferedImage(optionsWithStats(TILE));
+        empty.setRGB(1 << 20, 0, 0xFF000000);
+        empty.setRGB(1 << 20, 0, 0);
+        empty.compact();
+        empty.rebalance();
+        assertEquals(TILE, empty.getRoot().size);
+    }
+
+    @Test
+    void rebalanceKeepsMergedLeavesAligned() {
+        InfiniteBufferedImage image = new InfiniteBufferedImage(optionsWithStats(TILE).toBuilder().mergeThreshold(1).maxLeafSize(4 * TILE).build());
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        for (int i = 0; i < 4; i++) g.fillRect(i * 10, i * 10, 4 * TILE, 4 * TILE);
+        g.fillOval(5000, 3000, 200, 200);
+        g.dispose();
+        Rectangle content = new Rectangle(0, 0, 5300, 3300);
+        BufferedImage expected = image.toBufferedImage(content);
+        int leaves = image.getAllocatedLeafCount();
+
+        image.rebalance();
+        assertArrayEquals(pixels(expected), pixels(image.toBufferedImage(content)));
+        assertEquals(leaves, image.getAllocatedLeafCount());
+        image.setRGB(4 * TILE + 1, 1, 0xFF000000); // writes still find their leaves
+        assertEquals(0xFF000000, image.getRGB(4 * TILE + 1, 1));
+    }
+}